@@ -0,0 +1,102 @@
+package com.repuhire.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.repuhire.common.Common.User;
+import com.repuhire.user.StoredUser;
+import com.repuhire.user.StoredUserStructure;
+
+/***
+ * Measures StoredUserStructure.autocomplete replaying realistic
+ * keystroke sequences against domains of increasing size, with every
+ * user on heap or served from a memory-mapped base.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class AutocompleteBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int numUsers;
+
+	@Param({"10"})
+	public int numResponses;
+
+	@Param({"heap", "mapped"})
+	public String storage;
+
+	private StoredUserStructure structure;
+	private String[] keystrokes;
+	private File baseFile;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		SyntheticUsers generator = new SyntheticUsers(numUsers);
+		List<User> users = generator.users("benchmark", numUsers);
+
+		structure = new StoredUserStructure();
+		for(User user : users) {
+			structure.addUser(new StoredUser(user));
+		}
+
+		if(storage.equals("mapped")) {
+			baseFile = File.createTempFile("benchmark", ".idx");
+			structure.mergeInto(baseFile, null);
+		}
+
+		keystrokes = generator.keystrokes(users, 2000).toArray(new String[0]);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteBase() {
+		if(baseFile != null) {
+			baseFile.delete();
+		}
+	}
+
+	/***
+	 * Each thread replays the keystrokes in order, as a typing user would
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		private String next(String[] keystrokes) {
+			String typed = keystrokes[next];
+			next = (next + 1) % keystrokes.length;
+			return typed;
+		}
+	}
+
+	@Benchmark
+	public Object autocomplete(Cursor cursor) {
+		return structure.autocomplete(cursor.next(keystrokes), numResponses);
+	}
+
+	@Benchmark
+	public Object autocompleteSingleLetter(Cursor cursor) {
+		//The worst case: one character matches a large part of the domain
+		String typed = cursor.next(keystrokes);
+		return structure.autocomplete(typed.substring(0, 1), numResponses);
+	}
+}
@@ -0,0 +1,34 @@
+package com.repuhire.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/***
+ * Runs the benchmarks with the allocation profiler always on.
+ *
+ * Takes the usual JMH command line, e.g. to only run the smallest
+ * domains of AutocompleteBenchmark:
+ *
+ * AutocompleteBenchmark -p numUsers=1000
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+			.parent(commandLine)
+			.addProfiler(GCProfiler.class);
+
+		if(commandLine.getIncludes().isEmpty()) {
+			options.include("com.repuhire.benchmark");
+		}
+
+		new Runner(options.build()).run();
+	}
+}
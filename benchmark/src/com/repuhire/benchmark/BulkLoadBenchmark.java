@@ -0,0 +1,73 @@
+package com.repuhire.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+import com.repuhire.common.Common.User;
+import com.repuhire.user.StoredUser;
+import com.repuhire.user.StoredUserStructure;
+
+/***
+ * Measures reloading a whole domain through StoredUserStructure.addUsers
+ * with index building spread over an increasing number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class BulkLoadBenchmark {
+
+	@Param({"100000", "1000000"})
+	public int numUsers;
+
+	//0 builds on the calling thread alone
+	@Param({"0", "2", "4", "8"})
+	public int numThreads;
+
+	private List<User> users;
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		users = new SyntheticUsers(numUsers).users("benchmark", numUsers);
+		executor = numThreads > 0 ? Executors.newFixedThreadPool(numThreads) : null;
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		if(executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Benchmark
+	public Object reload() {
+		List<StoredUser> batch = Lists.newArrayListWithCapacity(users.size());
+		for(User user : users) {
+			batch.add(new StoredUser(user));
+		}
+
+		StoredUserStructure structure = new StoredUserStructure();
+		structure.addUsers(batch, executor);
+		return structure;
+	}
+}
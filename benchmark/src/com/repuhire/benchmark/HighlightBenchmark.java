@@ -0,0 +1,79 @@
+package com.repuhire.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+import com.repuhire.common.Common.MatchedUser.HighlightIndices;
+import com.repuhire.user.StoredUserStructure;
+
+/***
+ * Measures the per-match helpers of StoredUserStructure:
+ * highlight consolidation and substring search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HighlightBenchmark {
+
+	//Number of highlights of one name; long names typed with
+	//short, repeated tokens produce the most
+	@Param({"2", "8", "32"})
+	public int numHighlights;
+
+	private List<HighlightIndices> highlights;
+	private String[] haystacks;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		Random random = new Random(numHighlights);
+
+		highlights = Lists.newArrayList();
+		for(int i = 0; i < numHighlights; i++) {
+			int start = random.nextInt(4 * numHighlights);
+			highlights.add(HighlightIndices.newBuilder().setStart(start).setEnd(start + 1 + random.nextInt(3)).build());
+		}
+
+		SyntheticUsers generator = new SyntheticUsers(numHighlights);
+		haystacks = new String[256];
+		for(int i = 0; i < haystacks.length; i++) {
+			haystacks[i] = (generator.user("benchmark", i).getFirstName() + " " + generator.user("benchmark", i).getLastName()).toLowerCase();
+		}
+	}
+
+	@Benchmark
+	public Object consolidateHighlightIndices() {
+		//Consolidation works in place, so every call needs its own copy
+		List<HighlightIndices> indices = Lists.newArrayList(highlights);
+		StoredUserStructure.consolidateHighlightIndices(indices);
+		return indices;
+	}
+
+	@Benchmark
+	public int allIndicesOf() {
+		int found = 0;
+		for(String haystack : haystacks) {
+			found += StoredUserStructure.allIndicesOf("a", haystack).size();
+			found += StoredUserStructure.allIndicesOf("an", haystack).size();
+		}
+
+		return found;
+	}
+}
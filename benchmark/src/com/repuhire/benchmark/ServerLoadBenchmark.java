@@ -0,0 +1,298 @@
+package com.repuhire.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ServiceException;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.Request;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.Response;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.Autocompleter;
+import com.repuhire.common.Common.User;
+import com.repuhire.common.Common.Users;
+import com.repuhire.server.Server;
+import com.repuhire.server.ServerConfig;
+
+/***
+ * Load test of the whole server: a number of concurrent clients, each
+ * on a connection of its own, send autocompletes and now and then an
+ * update over the socket RPC wire format as fast as they are answered.
+ * Reports throughput and latency percentiles, e.g. to compare the
+ * fixed thread pool with virtual threads at 10, 100 and 10000 clients.
+ *
+ * Not a JMH benchmark, since the number of clients is what varies:
+ *
+ * ServerLoadBenchmark <CLIENTS> <SECONDS> [<SERVER OPTIONS>]
+ *
+ * The server options are those of Server, e.g. "--execution=virtual-threads"
+ * or "--wal-dir=/tmp/wal" to have updates block on fsync. The server runs
+ * in the same JVM, so each client takes two file descriptors.
+ */
+public class ServerLoadBenchmark {
+
+	private static final String DOMAIN = "load";
+	private static final int NUM_USERS = 100000;
+	private static final int NUM_RESPONSES = 10;
+
+	//One request in this many is an update rather than an autocomplete
+	private static final int UPDATE_EVERY = 10;
+
+	//Clients run this long before latencies are recorded
+	private static final int WARMUP_SECONDS = 5;
+
+	//Clients do little but block on their socket
+	private static final long CLIENT_STACK_SIZE = 256 << 10;
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2) {
+			System.out.println("Arguments: <CLIENTS> <SECONDS> [<SERVER OPTIONS>]\n" + ServerConfig.USAGE);
+			return;
+		}
+
+		int numClients = Integer.parseInt(args[0]);
+		int seconds = Integer.parseInt(args[1]);
+		final ServerConfig config = ServerConfig.parse(Arrays.copyOfRange(args, 2, args.length));
+		config.setPort(freePort());
+
+		SyntheticUsers generator = new SyntheticUsers(NUM_USERS);
+		List<User> users = generator.users(DOMAIN, NUM_USERS);
+		load(users);
+
+		final String[] keystrokes = generator.keystrokes(users, 2000).toArray(new String[0]);
+		final User[] updates = new User[1024];
+		for(int i = 0; i < updates.length; i++) {
+			updates[i] = generator.user(DOMAIN, 0).toBuilder().setUid(users.get(i).getUid()).build();
+		}
+
+		Thread server = new Thread("server") {
+			@Override
+			public void run() {
+				Server.start(config);
+			}
+		};
+		server.setDaemon(true);
+		server.start();
+		if(!awaitServer(server, config.getPort())) {
+			System.exit(1);
+		}
+
+		//Clients start together, record once warmed up and stop together
+		final Client[] clients = new Client[numClients];
+		final CountDownLatch connected = new CountDownLatch(numClients);
+		final CountDownLatch stopped = new CountDownLatch(numClients);
+		for(int i = 0; i < numClients; i++) {
+			clients[i] = new Client(i, config.getPort(), keystrokes, updates, connected, stopped);
+			Thread thread = new Thread(null, clients[i], "client-" + i, CLIENT_STACK_SIZE);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		connected.await();
+		Thread.sleep(WARMUP_SECONDS * 1000L);
+		for(Client client : clients) {
+			client.recording = true;
+		}
+
+		long start = System.nanoTime();
+		Thread.sleep(seconds * 1000L);
+		for(Client client : clients) {
+			client.recording = false;
+		}
+
+		long elapsed = System.nanoTime() - start;
+		for(Client client : clients) {
+			client.running = false;
+		}
+
+		stopped.await();
+		report(config, numClients, clients, elapsed);
+		System.exit(0);
+	}
+
+	private static void load(List<User> users) throws ServiceException {
+		AutocompleterService.getInstance().addUsers(null, Users.newBuilder().addAllUsers(users).build());
+	}
+
+	private static int freePort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		} finally {
+			socket.close();
+		}
+	}
+
+	/***
+	 * @return Whether the server came up, rather than failing to start
+	 */
+	private static boolean awaitServer(Thread server, int port) throws InterruptedException {
+		while(server.isAlive()) {
+			try {
+				new Socket("localhost", port).close();
+				return true;
+			} catch(IOException e) {
+				Thread.sleep(50);
+			}
+		}
+
+		return false;
+	}
+
+	private static void report(ServerConfig config, int numClients, Client[] clients, long elapsedNanos) {
+		int numSamples = 0;
+		long errors = 0;
+		for(Client client : clients) {
+			numSamples += client.numSamples;
+			errors += client.errors.get();
+		}
+
+		long[] latencies = new long[numSamples];
+		int next = 0;
+		for(Client client : clients) {
+			System.arraycopy(client.samples, 0, latencies, next, client.numSamples);
+			next += client.numSamples;
+		}
+
+		Arrays.sort(latencies);
+
+		String execution = config.getExecution() == ServerConfig.Execution.VIRTUAL_THREADS
+				? "virtual-threads" : "fixed-pool(" + config.getThreadPoolSize() + ")";
+		System.out.println(String.format("%s, %d clients: %.0f requests/s, p50 %s, p99 %s, p99.9 %s, max %s, %d errors",
+				execution, numClients, numSamples * 1e9 / elapsedNanos,
+				micros(latencies, 0.5), micros(latencies, 0.99), micros(latencies, 0.999), micros(latencies, 1), errors));
+	}
+
+	private static String micros(long[] sorted, double percentile) {
+		if(sorted.length == 0) {
+			return "-";
+		}
+
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+		return String.format("%.0fus", sorted[Math.max(index, 0)] / 1e3);
+	}
+
+	/***
+	 * One client, sending its next request as soon as the last is answered
+	 */
+	private static class Client implements Runnable {
+
+		private final int id;
+		private final int port;
+		private final String[] keystrokes;
+		private final User[] updates;
+		private final CountDownLatch connected;
+		private final CountDownLatch stopped;
+
+		private volatile boolean recording = false;
+		private volatile boolean running = true;
+		private long[] samples = new long[1024];
+		private int numSamples = 0;
+		private final AtomicLong errors = new AtomicLong();
+
+		private Client(int id, int port, String[] keystrokes, User[] updates, CountDownLatch connected, CountDownLatch stopped) {
+			this.id = id;
+			this.port = port;
+			this.keystrokes = keystrokes;
+			this.updates = updates;
+			this.connected = connected;
+			this.stopped = stopped;
+		}
+
+		@Override
+		public void run() {
+			try {
+				sendRequests();
+			} finally {
+				stopped.countDown();
+			}
+		}
+
+		private void sendRequests() {
+			Socket socket;
+			try {
+				socket = new Socket("localhost", port);
+				socket.setTcpNoDelay(true);
+			} catch(IOException e) {
+				System.err.println("Client " + id + " could not connect: " + e.getMessage());
+				connected.countDown();
+				return;
+			}
+
+			connected.countDown();
+			try {
+				OutputStream out = socket.getOutputStream();
+				InputStream in = new BufferedInputStream(socket.getInputStream());
+
+				//Clients start at different points of the keystrokes
+				for(int i = id * 7919; running; i++) {
+					byte[] request = request(i);
+					long start = System.nanoTime();
+					out.write(request);
+					out.flush();
+
+					Response response = Response.parseDelimitedFrom(in);
+					long latency = System.nanoTime() - start;
+					if(response == null) {
+						return;
+					}
+
+					if(response.hasError()) {
+						errors.incrementAndGet();
+					}
+
+					if(recording) {
+						record(latency);
+					}
+				}
+			} catch(IOException e) {
+				errors.incrementAndGet();
+			} finally {
+				try {
+					socket.close();
+				} catch(IOException e) {
+					//Done anyway
+				}
+			}
+		}
+
+		private byte[] request(int i) throws IOException {
+			Request.Builder request = Request.newBuilder().setServiceName(Autocompleter.getDescriptor().getFullName());
+			if(i % UPDATE_EVERY == 0) {
+				request.setMethodName("Update").setRequestProto(updates[(i / UPDATE_EVERY) % updates.length].toByteString());
+			} else {
+				AutocompleteRequest autocomplete = AutocompleteRequest.newBuilder()
+						.setDomain(DOMAIN)
+						.setTyped(keystrokes[i % keystrokes.length])
+						.setNumResponses(NUM_RESPONSES)
+						.build();
+				request.setMethodName("Autocomplete").setRequestProto(autocomplete.toByteString());
+			}
+
+			Request built = request.build();
+			int size = built.getSerializedSize();
+			byte[] bytes = new byte[CodedOutputStream.computeRawVarint32Size(size) + size];
+			CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+			out.writeRawVarint32(size);
+			built.writeTo(out);
+			return bytes;
+		}
+
+		private void record(long latency) {
+			if(numSamples == samples.length) {
+				samples = Arrays.copyOf(samples, samples.length * 2);
+			}
+
+			samples[numSamples++] = latency;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.repuhire.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.protobuf.ServiceException;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.DeleteRequest;
+import com.repuhire.common.Common.User;
+import com.repuhire.common.Common.Users;
+
+/***
+ * Measures the AutocompleterService RPC implementations directly,
+ * without the socket transport in the way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ServiceBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int numUsers;
+
+	private final AutocompleterService service = AutocompleterService.getInstance();
+	private String domain;
+	private String[] keystrokes;
+	private User[] updates;
+
+	@Setup(Level.Trial)
+	public void load() throws ServiceException {
+		domain = "benchmark" + numUsers;
+		SyntheticUsers generator = new SyntheticUsers(numUsers);
+		List<User> users = generator.users(domain, numUsers);
+
+		service.addUsers(null, Users.newBuilder().addAllUsers(users).build());
+		keystrokes = generator.keystrokes(users, 2000).toArray(new String[0]);
+
+		//Updates rename existing users to other generated names
+		updates = new User[1024];
+		for(int i = 0; i < updates.length; i++) {
+			User renamed = generator.user(domain, 0);
+			updates[i] = renamed.toBuilder().setUid(users.get(i % users.size()).getUid()).build();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void clear() throws ServiceException {
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains(domain).build());
+	}
+
+	//DeleteRequest carries an int32 UID, so per-thread scratch users
+	//count down from the top of the int range
+	private static final AtomicInteger scratchUids = new AtomicInteger(Integer.MAX_VALUE);
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+		private final int uid = scratchUids.getAndDecrement();
+
+		private int next(int length) {
+			int current = next;
+			next = (next + 1) % length;
+			return current;
+		}
+	}
+
+	@Benchmark
+	public Object autocomplete(Cursor cursor) throws ServiceException {
+		AutocompleteRequest.Builder request = AutocompleteRequest.newBuilder();
+		request.setDomain(domain);
+		request.setTyped(keystrokes[cursor.next(keystrokes.length)]);
+		request.setNumResponses(10);
+
+		return service.autocomplete(null, request.build());
+	}
+
+	@Benchmark
+	public Object update(Cursor cursor) throws ServiceException {
+		return service.update(null, updates[cursor.next(updates.length)]);
+	}
+
+	@Benchmark
+	public Object addThenDelete(Cursor cursor) throws ServiceException {
+		//Leaves the domain as it found it, so iterations stay comparable
+		User user = updates[cursor.next(updates.length)].toBuilder().setUid(cursor.uid).build();
+		service.addUser(null, user);
+		return service.delete(null, DeleteRequest.newBuilder().setDomain(domain).setUid(cursor.uid).build());
+	}
+}
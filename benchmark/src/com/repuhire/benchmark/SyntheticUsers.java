@@ -0,0 +1,176 @@
+package com.repuhire.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+import com.repuhire.common.Common.User;
+
+/***
+ * Generates reproducible domains of users whose names follow a
+ * realistic, heavily skewed distribution, along with the keystroke
+ * sequences someone looking those users up would type.
+ */
+public class SyntheticUsers {
+
+	private static final String[] FIRST_NAMES = {
+		"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+		"David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+		"Christopher", "Nancy", "Daniel", "Lisa", "Matthew", "Betty", "Anthony", "Margaret", "Mark", "Sandra",
+		"Donald", "Ashley", "Steven", "Kimberly", "Paul", "Emily", "Andrew", "Donna", "Joshua", "Michelle",
+		"Kenneth", "Dorothy", "Kevin", "Carol", "Brian", "Amanda", "George", "Melissa", "Edward", "Deborah",
+		"Hari", "Priya", "Wei", "Mei", "Jose", "Maria", "Mohammed", "Fatima", "Olga", "Ivan",
+		"Mary Ann", "Jo Ann", "Juan Carlos", "Anne Marie"
+	};
+
+	private static final String[] LAST_NAMES = {
+		"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+		"Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+		"Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson",
+		"Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen", "Hill", "Flores",
+		"Seshadri", "Tackie", "Wang", "Li", "Zhang", "Kumar", "Singh", "Ivanov", "Kowalski", "O'Brien",
+		"Van der Berg", "De la Cruz"
+	};
+
+	private static final String[] SYLLABLES = {
+		"an", "ar", "el", "en", "ka", "ko", "la", "li", "ma", "mi", "na", "ni", "ra", "ri", "sa", "shi",
+		"ta", "to", "va", "vi", "ya", "zu", "bel", "dor", "gan", "hal", "kin", "mor", "son", "ton", "wick"
+	};
+
+	//Fraction of names drawn from the long tail rather than the common lists
+	private static final double TAIL_FRACTION = 0.3;
+
+	private final Random random;
+	private final ZipfSampler firstNameSampler;
+	private final ZipfSampler lastNameSampler;
+
+	/***
+	 * @param seed Seed making the generated users reproducible
+	 */
+	public SyntheticUsers(long seed) {
+		this.random = new Random(seed);
+		this.firstNameSampler = new ZipfSampler(FIRST_NAMES.length, 1.0);
+		this.lastNameSampler = new ZipfSampler(LAST_NAMES.length, 1.0);
+	}
+
+	/***
+	 * Generates a domain worth of users with UIDs 0 through numUsers - 1
+	 *
+	 * @param domain The domain of the users
+	 * @param numUsers How many users to generate
+	 * @return The users
+	 */
+	public List<User> users(String domain, int numUsers) {
+		List<User> users = Lists.newArrayListWithCapacity(numUsers);
+
+		for(int uid = 0; uid < numUsers; uid++) {
+			users.add(user(domain, uid));
+		}
+
+		return users;
+	}
+
+	/***
+	 * Generates a single user
+	 *
+	 * @param domain The domain of the user
+	 * @param uid The UID of the user
+	 * @return The user
+	 */
+	public User user(String domain, long uid) {
+		String firstName = random.nextDouble() < TAIL_FRACTION ? tailName() : FIRST_NAMES[firstNameSampler.next(random)];
+		String lastName = random.nextDouble() < TAIL_FRACTION ? tailName() : LAST_NAMES[lastNameSampler.next(random)];
+
+		User.Builder userBuilder = User.newBuilder();
+		userBuilder.setUid(uid);
+		userBuilder.setFirstName(firstName);
+		userBuilder.setLastName(lastName);
+		userBuilder.setDomain(domain);
+		userBuilder.setEmail(firstName.replace(' ', '.').toLowerCase() + "." + uid + "@" + domain);
+
+		//Most users are rarely recommended, a few are very popular
+		userBuilder.setTimesRecommended((long) Math.floor(Math.pow(random.nextDouble(), 4) * 200));
+		return userBuilder.build();
+	}
+
+	/***
+	 * Generates what people type while looking users up: growing prefixes
+	 * of a first name, optionally followed by a growing last name prefix.
+	 *
+	 * @param users The users being looked up
+	 * @param numSequences How many lookups to generate
+	 * @return Every keystroke of every lookup, in typing order
+	 */
+	public List<String> keystrokes(List<User> users, int numSequences) {
+		List<String> keystrokes = Lists.newArrayList();
+
+		for(int i = 0; i < numSequences; i++) {
+			User user = users.get(random.nextInt(users.size()));
+			String target = user.getFirstName();
+			if(random.nextBoolean()) {
+				target += " " + user.getLastName();
+			}
+
+			//Few people type the whole name before picking a suggestion
+			int typedLength = 1 + random.nextInt(target.length());
+			for(int length = 1; length <= typedLength; length++) {
+				if(target.charAt(length - 1) != ' ') {
+					keystrokes.add(target.substring(0, length));
+				}
+			}
+		}
+
+		return keystrokes;
+	}
+
+	private String tailName() {
+		StringBuilder sb = new StringBuilder();
+		int numSyllables = 2 + random.nextInt(3);
+
+		for(int i = 0; i < numSyllables; i++) {
+			sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+
+		sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+		return sb.toString();
+	}
+
+	/***
+	 * Samples ranks 0 through n - 1 with probability proportional to 1 / (rank + 1)^s
+	 */
+	private static class ZipfSampler {
+
+		private final double[] cumulative;
+
+		private ZipfSampler(int n, double s) {
+			cumulative = new double[n];
+			double total = 0;
+
+			for(int rank = 0; rank < n; rank++) {
+				total += 1 / Math.pow(rank + 1, s);
+				cumulative[rank] = total;
+			}
+
+			for(int rank = 0; rank < n; rank++) {
+				cumulative[rank] /= total;
+			}
+		}
+
+		private int next(Random random) {
+			double target = random.nextDouble();
+			int low = 0;
+			int high = cumulative.length - 1;
+
+			while(low < high) {
+				int mid = (low + high) >>> 1;
+				if(cumulative[mid] < target) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+
+			return low;
+		}
+	}
+}
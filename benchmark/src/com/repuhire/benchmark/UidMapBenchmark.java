@@ -0,0 +1,169 @@
+package com.repuhire.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.repuhire.datastructures.LongIntHashMap;
+
+/***
+ * Compares the LongIntHashMap mapping UIDs to slots in UserColumns
+ * with the HashMap of boxed UIDs it replaced, on lookups, updates,
+ * deletes followed by adds, and a mix of the three.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class UidMapBenchmark {
+
+	@Param({"10000", "1000000"})
+	public int numUsers;
+
+	@Param({"hashmap", "primitive"})
+	public String map;
+
+	//Operations are drawn from these, cycling
+	private static final int NUM_OPERATIONS = 1 << 16;
+
+	//Out of 100 operations of the mix: lookups, then updates, then churn
+	private static final int MIX_LOOKUPS = 80;
+	private static final int MIX_UPDATES = 10;
+
+	private UidMap uidMap;
+
+	//UIDs stored, and the ones to look up, half of which are stored
+	private long[] stored;
+	private long[] lookedUp;
+	private int[] mix;
+	private int next;
+	private long nextUid;
+	private Random random;
+
+	@Setup(Level.Trial)
+	public void fill() {
+		uidMap = map.equals("primitive") ? new PrimitiveUidMap() : new BoxedUidMap();
+		random = new Random(numUsers);
+
+		stored = new long[numUsers];
+		for(int i = 0; i < numUsers; i++) {
+			stored[i] = nextUid();
+			uidMap.put(stored[i], i);
+		}
+
+		lookedUp = new long[NUM_OPERATIONS];
+		mix = new int[NUM_OPERATIONS];
+		for(int i = 0; i < NUM_OPERATIONS; i++) {
+			lookedUp[i] = random.nextBoolean() ? stored[random.nextInt(numUsers)] : nextUid();
+			mix[i] = random.nextInt(100);
+		}
+	}
+
+	/***
+	 * UIDs are handed out in increasing order with gaps,
+	 * as a database sequence shared by many domains would
+	 */
+	private long nextUid() {
+		nextUid += 1 + random.nextInt(16);
+		return nextUid;
+	}
+
+	@Benchmark
+	public int lookup() {
+		return uidMap.get(lookedUp[next++ & (NUM_OPERATIONS - 1)]);
+	}
+
+	@Benchmark
+	public int update() {
+		int slot = next++ % numUsers;
+		return uidMap.put(stored[slot], slot);
+	}
+
+	@Benchmark
+	public int deleteThenAdd() {
+		//The size stays the same, as does the set of slots
+		int slot = next++ % numUsers;
+		int removed = uidMap.remove(stored[slot]);
+		stored[slot] = nextUid();
+		uidMap.put(stored[slot], slot);
+		return removed;
+	}
+
+	@Benchmark
+	public int mixed() {
+		int operation = mix[next & (NUM_OPERATIONS - 1)];
+		if(operation < MIX_LOOKUPS) {
+			return lookup();
+		} else if(operation < MIX_LOOKUPS + MIX_UPDATES) {
+			return update();
+		} else {
+			return deleteThenAdd();
+		}
+	}
+
+	/***
+	 * The operations benchmarked, over either map
+	 */
+	private interface UidMap {
+		int get(long uid);
+		int put(long uid, int slot);
+		int remove(long uid);
+	}
+
+	private static class PrimitiveUidMap implements UidMap {
+		private final LongIntHashMap slots = new LongIntHashMap();
+
+		@Override
+		public int get(long uid) {
+			return slots.get(uid);
+		}
+
+		@Override
+		public int put(long uid, int slot) {
+			return slots.put(uid, slot);
+		}
+
+		@Override
+		public int remove(long uid) {
+			return slots.remove(uid);
+		}
+	}
+
+	private static class BoxedUidMap implements UidMap {
+		private final Map<Long, Integer> slots = new HashMap<Long, Integer>();
+
+		@Override
+		public int get(long uid) {
+			Integer slot = slots.get(uid);
+			return slot != null ? slot : -1;
+		}
+
+		@Override
+		public int put(long uid, int slot) {
+			Integer previous = slots.put(uid, slot);
+			return previous != null ? previous : -1;
+		}
+
+		@Override
+		public int remove(long uid) {
+			Integer removed = slots.remove(uid);
+			return removed != null ? removed : -1;
+		}
+	}
+}
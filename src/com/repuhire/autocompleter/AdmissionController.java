@@ -0,0 +1,169 @@
+package com.repuhire.autocompleter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Supplier;
+import com.googlecode.protobuf.socketrpc.SocketRpcController;
+
+/***
+ * Decides how much work an autocomplete gets from how many requests
+ * are waiting to be answered and how long autocompletes took lately,
+ * so that a spike of traffic gets quick, smaller answers rather than
+ * stale ones seconds later.
+ *
+ * Once the queue, or the latency if given a threshold for it, passes
+ * its degrade threshold, autocompletes get at most
+ * DEGRADED_NUM_RESPONSES matches, from the query cache when it has the
+ * matches of an earlier keystroke. Once the queue passes the shed
+ * threshold, they are answered from the query cache or refused.
+ *
+ * The server admits queries as it queues them, and their latency runs
+ * from then on, so a queue building up degrades them before they wait
+ * in it rather than after. Without a queue, e.g. on virtual threads,
+ * only the latency threshold can degrade them.
+ *
+ * Mutations do not go through here: the server queues them apart from
+ * the queries, so they neither wait behind a flood of autocompletes
+ * nor hold one up.
+ */
+public class AdmissionController {
+
+	/***
+	 * How much work autocompletes get
+	 */
+	public enum Level {
+		//As much as they ask for
+		NORMAL,
+
+		//A few matches, from the query cache when possible
+		DEGRADED,
+
+		//A few matches from the query cache, or none at all
+		SHED
+	}
+
+	//Matches given to each autocomplete under load
+	public static final int DEGRADED_NUM_RESPONSES = 3;
+
+	//The latest latency weighs 1/2^SMOOTHING_SHIFT in the moving average
+	private static final int SMOOTHING_SHIFT = 4;
+
+	private final Supplier<Integer> queueDepth;
+	private final int degradeQueueDepth;
+	private final int shedQueueDepth;
+	private final long degradeLatencyNanos;
+
+	//Moving average of recent latencies; updates racing each other
+	//may be lost, which only makes it a little less recent
+	private volatile long averageNanos = 0;
+
+	private final AtomicLong degraded = new AtomicLong();
+	private final AtomicLong shed = new AtomicLong();
+
+	/***
+	 * @param queueDepth The number of requests waiting to be answered
+	 * @param degradeQueueDepth The number waiting from which autocompletes are degraded
+	 * @param shedQueueDepth The number waiting from which they are shed
+	 * @param degradeLatencyMillis The average latency from which they are
+	 * degraded, or 0 or less to never degrade them for latency alone
+	 */
+	public AdmissionController(Supplier<Integer> queueDepth, int degradeQueueDepth, int shedQueueDepth, long degradeLatencyMillis) {
+		if(degradeQueueDepth <= 0 || shedQueueDepth < degradeQueueDepth) {
+			throw new IllegalArgumentException("Queue depths must be positive, shedding from no fewer than degrading, got "
+					+ degradeQueueDepth + " and " + shedQueueDepth);
+		}
+
+		this.queueDepth = queueDepth;
+		this.degradeQueueDepth = degradeQueueDepth;
+		this.shedQueueDepth = shedQueueDepth;
+		this.degradeLatencyNanos = degradeLatencyMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(degradeLatencyMillis) : Long.MAX_VALUE;
+	}
+
+	/***
+	 * Admits an autocomplete
+	 *
+	 * @return How much work it gets
+	 */
+	public Level admit() {
+		int depth = queueDepth.get();
+
+		if(depth >= shedQueueDepth) {
+			shed.incrementAndGet();
+			return Level.SHED;
+		}
+
+		if(depth >= degradeQueueDepth || averageNanos >= degradeLatencyNanos) {
+			degraded.incrementAndGet();
+			return Level.DEGRADED;
+		}
+
+		return Level.NORMAL;
+	}
+
+	/***
+	 * Admits an RPC as it is queued, before it waits for a thread
+	 *
+	 * @return The controller to answer it with, carrying how much work it gets
+	 */
+	public Admitted admitQueued() {
+		return new Admitted(admit(), System.nanoTime());
+	}
+
+	/***
+	 * @param nanos How long an admitted autocomplete took, queueing included
+	 */
+	public void recordLatency(long nanos) {
+		long average = averageNanos;
+		averageNanos = average + ((nanos - average) >> SMOOTHING_SHIFT);
+	}
+
+	/***
+	 * @return The moving average of recent latencies, in nanoseconds
+	 */
+	public long getAverageLatencyNanos() {
+		return averageNanos;
+	}
+
+	/***
+	 * @return The number of autocompletes degraded so far
+	 */
+	public long getDegraded() {
+		return degraded.get();
+	}
+
+	/***
+	 * @return The number of autocompletes shed so far, whether or not
+	 * the query cache could answer them
+	 */
+	public long getShed() {
+		return shed.get();
+	}
+
+	/***
+	 * The controller of an RPC admitted as it was queued
+	 */
+	public static class Admitted extends SocketRpcController {
+		private final Level level;
+		private final long queuedNanos;
+
+		private Admitted(Level level, long queuedNanos) {
+			this.level = level;
+			this.queuedNanos = queuedNanos;
+		}
+
+		/***
+		 * @return How much work the RPC gets
+		 */
+		public Level getLevel() {
+			return level;
+		}
+
+		/***
+		 * @return The System.nanoTime() the RPC was queued at
+		 */
+		public long getQueuedNanos() {
+			return queuedNanos;
+		}
+	}
+}
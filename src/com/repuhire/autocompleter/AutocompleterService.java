@@ -1,20 +1,49 @@
 package com.repuhire.autocompleter;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.RpcController;
 import com.google.protobuf.ServiceException;
+import com.repuhire.autocompleter.ServiceMetrics.Rpc;
 import com.repuhire.common.Common.AutocompleteRequest;
 import com.repuhire.common.Common.Autocompleter.BlockingInterface;
+import com.repuhire.common.Common.BatchAutocompleteRequest;
+import com.repuhire.common.Common.BatchMatchedUsers;
 import com.repuhire.common.Common.ClearRequest;
 import com.repuhire.common.Common.DeleteRequest;
+import com.repuhire.common.Common.FederatedAutocompleteRequest;
 import com.repuhire.common.Common.MatchedUser;
 import com.repuhire.common.Common.MatchedUsers;
+import com.repuhire.common.Common.SnapshotRequest;
 import com.repuhire.common.Common.Status;
 import com.repuhire.common.Common.User;
 import com.repuhire.common.Common.Users;
+import com.repuhire.datastructures.SingleFlight;
+import com.repuhire.user.Deadline;
 import com.repuhire.user.Domain;
+import com.repuhire.user.MutationLog;
+import com.repuhire.user.QueryTrace;
+import com.repuhire.user.ScoreThreshold;
 import com.repuhire.user.StoredUser;
 import com.repuhire.user.StoredUserStructure;
 
@@ -25,11 +54,48 @@ import com.repuhire.user.StoredUserStructure;
  * AutocompleterService is a singleton class; the single instance can be
  * accessed via AutocompleterService.getInstance()
  *
+ * The service is called from every thread of the RPC server's pool, so
+ * the domain map is concurrent and each StoredUserStructure guards itself.
  */
 public class AutocompleterService implements BlockingInterface {
 
 	//Maps each domain to a collection of users in that domain
-	private Map<Domain, StoredUserStructure> userMap = new HashMap<Domain, StoredUserStructure>();
+	private final ConcurrentMap<Domain, StoredUserStructure> userMap = new ConcurrentHashMap<Domain, StoredUserStructure>();
+
+	//Cap on the failures listed in the status of a batch, which
+	//would otherwise grow with the batch
+	private static final int MAX_REPORTED_FAILURES = 100;
+
+	//Shared by every bulk load to build index entries on all cores
+	private static final ExecutorService INDEX_BUILDER = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(),
+			new ThreadFactoryBuilder().setNameFormat("index-builder-%d").setDaemon(true).build());
+
+	//Answers the domains of batch and federated autocompletes in parallel
+	private static final ExecutorService QUERY_FAN_OUT = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(),
+			new ThreadFactoryBuilder().setNameFormat("query-fan-out-%d").setDaemon(true).build());
+
+	//Takes snapshots on demand, null if snapshots are disabled
+	private volatile SnapshotManager snapshotManager = null;
+
+	//Logs every mutation, null if logging is disabled
+	private volatile WriteAheadLog writeAheadLog = null;
+
+	//Whether domains keep the names and emails of their users off heap
+	private volatile boolean offHeapRecords = false;
+
+	//Latencies and counters of every RPC
+	private final ServiceMetrics metrics = new ServiceMetrics(this);
+
+	//Logs the autocompletes slower than its threshold, null if none are
+	private volatile SlowQueryLog slowQueryLog = null;
+
+	//Degrades and sheds autocompletes under load, null if none are
+	private volatile AdmissionController admissionController = null;
+
+	//Autocompletes under way, which identical ones share the answers of
+	private final SingleFlight<QueryKey, SharedAnswer> inFlight = new SingleFlight<QueryKey, SharedAnswer>();
 
 	//Singleton state var
 	private static AutocompleterService service = null;
@@ -43,6 +109,23 @@ public class AutocompleterService implements BlockingInterface {
 		VALID_STATUS = statusBuilder.build();
 	}
 
+	//Answered, but with fewer matches than asked for because of load
+	private static final int DEGRADED_STATUS_CODE = 203;
+	private static final Status DEGRADED_STATUS = Status.newBuilder()
+			.setStatusCode(DEGRADED_STATUS_CODE)
+			.setMessage("Success, with at most " + AdmissionController.DEGRADED_NUM_RESPONSES + " matches under load")
+			.build();
+
+	//Answered with the best matches found before the budget ran out,
+	//which may not be the best there are
+	private static final int PARTIAL_STATUS_CODE = 206;
+
+	//Refused because of load
+	private static final Status OVERLOADED_STATUS = Status.newBuilder()
+			.setStatusCode(503)
+			.setMessage("Server is overloaded, try again later")
+			.build();
+
 	/***
 	 * Prevent instantiation
 	 */
@@ -53,7 +136,7 @@ public class AutocompleterService implements BlockingInterface {
 	 *
 	 * @return The same instance of AutocompleterService everytime.
 	 */
-	public static AutocompleterService getInstance() {
+	public static synchronized AutocompleterService getInstance() {
 		if(service == null) {
 			service = new AutocompleterService();
 		}
@@ -64,92 +147,448 @@ public class AutocompleterService implements BlockingInterface {
 	@Override
 	public Status addUsers(RpcController controller, Users request)
 			throws ServiceException {
+		long start = System.nanoTime();
 
 		try {
-			int numUsers = request.getUsersCount();
+			List<String> failures = addUsers(request.getUsersList());
+			syncLog();
 
-			//TODO Improve perf by using a batch collection addAll request
-			for(int userIndex = 0; userIndex < numUsers; userIndex++) {
-				addUser(request.getUsers(userIndex));
+			if(failures.isEmpty()) {
+				return recorded(Rpc.ADD_USERS, null, start, VALID_STATUS);
 			}
 
-			return VALID_STATUS;
+			return recorded(Rpc.ADD_USERS, null, start, getPartialFailureStatus(failures, request.getUsersCount()));
 		} catch (Exception e) {
-			return getInvalidStatus(e, request);
+			return recorded(Rpc.ADD_USERS, null, start, getInvalidStatus(e, request));
 		}
 	}
 
 	@Override
 	public Status addUser(RpcController controller, User request)
 			throws ServiceException {
+		long start = System.nanoTime();
+
 		try {
 			addUser(request);
-			return VALID_STATUS;
+			syncLog();
+			return recorded(Rpc.ADD_USER, new Domain(request.getDomain()), start, VALID_STATUS);
 		} catch (Exception e) {
-			return getInvalidStatus(e, request);
+			return recorded(Rpc.ADD_USER, new Domain(request.getDomain()), start, getInvalidStatus(e, request));
 		}
 	}
 
 	@Override
 	public Status update(RpcController controller, User request)
 			throws ServiceException {
+		long start = System.nanoTime();
+
 		try {
 			updateUser(request);
-			return VALID_STATUS;
+			syncLog();
+			return recorded(Rpc.UPDATE, new Domain(request.getDomain()), start, VALID_STATUS);
 		} catch (Exception e) {
-			return getInvalidStatus(e, request);
+			return recorded(Rpc.UPDATE, new Domain(request.getDomain()), start, getInvalidStatus(e, request));
 		}
 	}
 
 	@Override
 	public Status delete(RpcController controller, DeleteRequest request)
 			throws ServiceException {
+		long start = System.nanoTime();
+
 		try {
 			deleteUser(request.getDomain(), request.getUid());
-			return VALID_STATUS;
+			syncLog();
+			return recorded(Rpc.DELETE, new Domain(request.getDomain()), start, VALID_STATUS);
 		} catch(Exception e) {
-			return getInvalidStatus(e, request);
+			return recorded(Rpc.DELETE, new Domain(request.getDomain()), start, getInvalidStatus(e, request));
 		}
 	}
 
 	@Override
 	public Status clearUsers(RpcController controller, ClearRequest request)
 			throws ServiceException {
+		long start = System.nanoTime();
 
 		try {
 			for(String domain : request.getDomainsList()) {
 				clearUsersFromDomain(new Domain(domain));
 			}
 
-			return VALID_STATUS;
+			syncLog();
+			return recorded(Rpc.CLEAR_USERS, null, start, VALID_STATUS);
+		} catch (Exception e) {
+			return recorded(Rpc.CLEAR_USERS, null, start, getInvalidStatus(e, request));
+		}
+	}
+
+	@Override
+	public Status snapshot(RpcController controller, SnapshotRequest request)
+			throws ServiceException {
+		long start = System.nanoTime();
+
+		try {
+			SnapshotManager snapshots = snapshotManager;
+			if(snapshots == null) {
+				throw new IllegalArgumentException("Snapshots are not enabled");
+			}
+
+			snapshots.snapshot();
+			return recorded(Rpc.SNAPSHOT, null, start, VALID_STATUS);
 		} catch (Exception e) {
-			return getInvalidStatus(e, request);
+			return recorded(Rpc.SNAPSHOT, null, start, getInvalidStatus(e, request));
 		}
 	}
 
 	@Override
 	public MatchedUsers autocomplete(RpcController controller,
 			AutocompleteRequest request) throws ServiceException {
+		long start = System.nanoTime();
 		MatchedUsers.Builder matchedUsers = MatchedUsers.newBuilder();
+		Domain domain = new Domain(request.getDomain());
+
+		//Only traced when slow queries are logged
+		SlowQueryLog slowQueries = slowQueryLog;
+		QueryTrace trace = slowQueries != null ? new QueryTrace() : null;
+		long answered = 0;
+		Deadline deadline = null;
+
+		AdmissionController admission = admissionController;
+		AdmissionController.Level level = admit(admission, controller);
 
 		try {
 			String typedSoFar = request.getTyped();
-			Domain domain = new Domain(request.getDomain());
 			int numResponses = request.getNumResponses();
+			StoredUserStructure userStore = userMap.get(domain);
+
+			if(request.hasBudgetMillis()) {
+				if(request.getBudgetMillis() <= 0) {
+					throw new IllegalArgumentException("Budget must be positive, got " + request.getBudgetMillis() + "ms");
+				}
 
-			for(MatchedUser matchedUser : userMap.get(domain).autocomplete(typedSoFar, numResponses)) {
-				matchedUsers.addMatchedUsers(matchedUser);
+				deadline = new Deadline(start + TimeUnit.MILLISECONDS.toNanos(request.getBudgetMillis()));
 			}
 
-			matchedUsers.setStatus(VALID_STATUS);
-			return matchedUsers.build();
+			//Under load, a few matches, refining those of an earlier keystroke if cached
+			Collection<MatchedUser> matches = null;
+			if(level != AdmissionController.Level.NORMAL) {
+				numResponses = Math.min(numResponses, AdmissionController.DEGRADED_NUM_RESPONSES);
+				matches = userStore.autocompleteCached(typedSoFar, numResponses);
+			}
+
+			if(matches == null && level == AdmissionController.Level.SHED) {
+				matchedUsers.setStatus(OVERLOADED_STATUS);
+			} else {
+				if(matches == null) {
+					matches = autocompleteShared(userStore, typedSoFar, numResponses, trace, deadline);
+					answered = trace != null ? System.nanoTime() : 0;
+				}
+
+				for(MatchedUser matchedUser : matches) {
+					matchedUsers.addMatchedUsers(matchedUser);
+				}
+
+				if(deadline != null && deadline.isMissed()) {
+					matchedUsers.setStatus(getPartialStatus(request.getBudgetMillis()));
+				} else {
+					matchedUsers.setStatus(level == AdmissionController.Level.NORMAL ? VALID_STATUS : DEGRADED_STATUS);
+				}
+			}
 		} catch (Exception e) {
 			matchedUsers.setStatus(getInvalidStatus(e, request));
 		}
 
+		MatchedUsers response = matchedUsers.build();
+		if(admission != null && response.getStatus().getStatusCode() != OVERLOADED_STATUS.getStatusCode()) {
+			admission.recordLatency(System.nanoTime() - queuedSince(controller, start));
+		}
+
+		metrics.record(Rpc.AUTOCOMPLETE, domain, start, failed(response.getStatus()), response.getMatchedUsersCount());
+
+		if(answered != 0) {
+			long now = System.nanoTime();
+			slowQueries.record(request.getDomain(), request.getTyped(), request.getNumResponses(), trace, now - answered, now - start);
+		}
+
+		return response;
+	}
+
+	@Override
+	public BatchMatchedUsers batchAutocomplete(RpcController controller,
+			BatchAutocompleteRequest request) throws ServiceException {
+		long start = System.nanoTime();
+		BatchMatchedUsers.Builder batch = BatchMatchedUsers.newBuilder();
+		int numResults = 0;
+		AdmissionController.Level level = admit(admissionController, controller);
+
+		try {
+			if(level == AdmissionController.Level.SHED) {
+				batch.setStatus(OVERLOADED_STATUS);
+			} else {
+				int maxResponses = level == AdmissionController.Level.NORMAL ? Integer.MAX_VALUE : AdmissionController.DEGRADED_NUM_RESPONSES;
+				for(MatchedUsers result : autocompleteAll(request.getRequestsList(), maxResponses)) {
+					batch.addResults(result);
+					numResults += result.getMatchedUsersCount();
+				}
+
+				batch.setStatus(level == AdmissionController.Level.NORMAL ? VALID_STATUS : DEGRADED_STATUS);
+			}
+		} catch (Exception e) {
+			batch.clearResults();
+			batch.setStatus(getInvalidStatus(e, request));
+		}
+
+		metrics.record(Rpc.BATCH_AUTOCOMPLETE, null, start, failed(batch.getStatus()), numResults);
+		return batch.build();
+	}
+
+	@Override
+	public MatchedUsers federatedAutocomplete(RpcController controller,
+			FederatedAutocompleteRequest request) throws ServiceException {
+		long start = System.nanoTime();
+		MatchedUsers.Builder matchedUsers = MatchedUsers.newBuilder();
+		AdmissionController.Level level = admit(admissionController, controller);
+
+		try {
+			Deadline deadline = null;
+			if(request.hasBudgetMillis()) {
+				if(request.getBudgetMillis() <= 0) {
+					throw new IllegalArgumentException("Budget must be positive, got " + request.getBudgetMillis() + "ms");
+				}
+
+				deadline = new Deadline(start + TimeUnit.MILLISECONDS.toNanos(request.getBudgetMillis()));
+			}
+
+			if(level == AdmissionController.Level.SHED) {
+				matchedUsers.setStatus(OVERLOADED_STATUS);
+			} else {
+				int numResponses = level == AdmissionController.Level.NORMAL
+						? request.getNumResponses()
+						: Math.min(request.getNumResponses(), AdmissionController.DEGRADED_NUM_RESPONSES);
+				matchedUsers.addAllMatchedUsers(autocompleteAcross(request.getDomainsList(), request.getTyped(), numResponses, deadline));
+
+				if(deadline != null && deadline.isMissed()) {
+					matchedUsers.setStatus(getPartialStatus(request.getBudgetMillis()));
+				} else {
+					matchedUsers.setStatus(level == AdmissionController.Level.NORMAL ? VALID_STATUS : DEGRADED_STATUS);
+				}
+			}
+		} catch (Exception e) {
+			matchedUsers.clearMatchedUsers();
+			matchedUsers.setStatus(getInvalidStatus(e, request));
+		}
+
+		metrics.record(Rpc.FEDERATED_AUTOCOMPLETE, null, start, failed(matchedUsers.getStatus()), matchedUsers.getMatchedUsersCount());
 		return matchedUsers.build();
 	}
 
+	/***
+	 * @return The latencies and counters of every RPC
+	 */
+	public ServiceMetrics getMetrics() {
+		return metrics;
+	}
+
+	/***
+	 * @return The number of autocompletes which shared the answer of
+	 * an identical one under way rather than computing their own
+	 */
+	public long getSharedAutocompletes() {
+		return inFlight.getShared();
+	}
+
+	/***
+	 * @param slowQueryLog What logs slow autocompletes, or null to
+	 * log none and stop timing their phases
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+		this.slowQueryLog = slowQueryLog;
+	}
+
+	/***
+	 * @param admissionController What degrades and sheds autocompletes
+	 * under load, or null to answer every one in full
+	 */
+	public void setAdmissionController(AdmissionController admissionController) {
+		this.admissionController = admissionController;
+	}
+
+	/***
+	 * @param snapshotManager What takes snapshots when asked
+	 * to over RPC, or null to disable that
+	 */
+	public void setSnapshotManager(SnapshotManager snapshotManager) {
+		this.snapshotManager = snapshotManager;
+	}
+
+	/***
+	 * Starts logging every mutation. Must be called before
+	 * the service takes any RPC.
+	 *
+	 * @param writeAheadLog The log
+	 */
+	public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+		this.writeAheadLog = writeAheadLog;
+
+		for(StoredUserStructure userStore : userMap.values()) {
+			userStore.setMutationLog(writeAheadLog);
+		}
+	}
+
+	/***
+	 * Moves the names and emails of the users of every domain, current
+	 * and future, on or off heap
+	 *
+	 * @param offHeapRecords Whether to keep them off heap
+	 */
+	public void setOffHeapRecords(boolean offHeapRecords) {
+		this.offHeapRecords = offHeapRecords;
+
+		for(StoredUserStructure userStore : userMap.values()) {
+			userStore.setOffHeapRecords(offHeapRecords);
+		}
+	}
+
+	/***
+	 * @return What applies logged mutations to the service, skipping
+	 * those which no longer apply, e.g. because a snapshot already
+	 * holds their effect
+	 */
+	public MutationLog getReplayTarget() {
+		return new MutationLog() {
+			@Override
+			public void added(User user) {
+				try {
+					addUser(user);
+				} catch(IllegalArgumentException e) {
+					//Already there
+				}
+			}
+
+			@Override
+			public void addedAll(List<User> users) {
+				addUsers(users);
+			}
+
+			@Override
+			public void updated(User user) {
+				try {
+					updateUser(user);
+				} catch(IllegalArgumentException e) {
+					//Deleted later on
+				}
+			}
+
+			@Override
+			public void deleted(User user) {
+				try {
+					deleteUser(user.getDomain(), user.getUid());
+				} catch(IllegalArgumentException e) {
+					//Already gone
+				}
+			}
+
+			@Override
+			public void cleared(String domainIdentifier) {
+				clearUsersFromDomain(new Domain(domainIdentifier));
+			}
+		};
+	}
+
+	/***
+	 * @return A live view of every domain
+	 */
+	Map<Domain, StoredUserStructure> getDomains() {
+		return userMap;
+	}
+
+	/***
+	 * @return The pool shared by every bulk build of index entries
+	 */
+	ExecutorService getIndexBuilder() {
+		return INDEX_BUILDER;
+	}
+
+	/***
+	 * Replaces every domain, e.g. with those of a snapshot
+	 *
+	 * @param domains The new domains
+	 */
+	void replaceDomains(Map<Domain, StoredUserStructure> domains) {
+		for(StoredUserStructure userStore : domains.values()) {
+			userStore.setMutationLog(writeAheadLog);
+			userStore.setOffHeapRecords(offHeapRecords);
+		}
+
+		userMap.clear();
+		userMap.putAll(domains);
+	}
+
+	/***
+	 * Waits for the mutations of the calling thread to be logged
+	 * as durably as the log is configured to
+	 */
+	private void syncLog() throws IOException {
+		WriteAheadLog log = writeAheadLog;
+		if(log != null) {
+			log.sync();
+		}
+	}
+
+	/***
+	 * @param admission What admits autocompletes, or null to admit them all in full
+	 * @param controller The controller of the call, which the server
+	 * admitted already if it queued the call
+	 * @return How much work an autocomplete gets
+	 */
+	private static AdmissionController.Level admit(AdmissionController admission, RpcController controller) {
+		if(controller instanceof AdmissionController.Admitted) {
+			return ((AdmissionController.Admitted) controller).getLevel();
+		}
+
+		return admission != null ? admission.admit() : AdmissionController.Level.NORMAL;
+	}
+
+	/***
+	 * @param controller The controller of the call
+	 * @param start The System.nanoTime() the call started at
+	 * @return The System.nanoTime() the call was queued at, or started
+	 * at if it was not queued
+	 */
+	private static long queuedSince(RpcController controller, long start) {
+		return controller instanceof AdmissionController.Admitted ? ((AdmissionController.Admitted) controller).getQueuedNanos() : start;
+	}
+
+	/***
+	 * Records a call of an RPC in the metrics
+	 *
+	 * @param rpc The RPC called
+	 * @param domain The domain it was called on, or null if it is not about one
+	 * @param start The System.nanoTime() the call started at
+	 * @param status What it is answering with
+	 * @return The status
+	 */
+	private Status recorded(Rpc rpc, Domain domain, long start, Status status) {
+		metrics.record(rpc, domain, start, failed(status), 0);
+		return status;
+	}
+
+	/***
+	 * @return Whether a status is that of a failed call; degraded and
+	 * partial answers are not failures
+	 */
+	private static boolean failed(Status status) {
+		int statusCode = status.getStatusCode();
+		return statusCode != VALID_STATUS.getStatusCode() && statusCode != DEGRADED_STATUS_CODE && statusCode != PARTIAL_STATUS_CODE;
+	}
+
+	private Status getPartialStatus(int budgetMillis) {
+		Status.Builder status = Status.newBuilder();
+		status.setStatusCode(PARTIAL_STATUS_CODE);
+		status.setMessage("Partial results: the budget of " + budgetMillis + "ms ran out");
+		return status.build();
+	}
+
 	private Status getInvalidStatus(Exception e, Object request) {
 		Status.Builder status = Status.newBuilder();
 		status.setStatusCode(500);
@@ -157,6 +596,337 @@ public class AutocompleterService implements BlockingInterface {
 		return status.build();
 	}
 
+	/***
+	 * Builds the status of a batch some of whose users could not be
+	 * handled, listing the first few failures
+	 *
+	 * @param failures Why each failed user failed
+	 * @param batchSize The number of users in the batch
+	 */
+	private Status getPartialFailureStatus(List<String> failures, int batchSize) {
+		StringBuilder message = new StringBuilder();
+		message.append(failures.size()).append(" of ").append(batchSize).append(" users failed: ");
+		Joiner.on("; ").appendTo(message, Iterables.limit(failures, MAX_REPORTED_FAILURES));
+
+		if(failures.size() > MAX_REPORTED_FAILURES) {
+			message.append("; and ").append(failures.size() - MAX_REPORTED_FAILURES).append(" more");
+		}
+
+		Status.Builder status = Status.newBuilder();
+		status.setStatusCode(500);
+		status.setMessage(message.toString());
+		return status.build();
+	}
+
+	/***
+	 * Adds a batch of users, a domain at a time, indexing each domain's
+	 * users in bulk. A user which cannot be added does not stop the others,
+	 * nor does a domain cleared while its users are being added.
+	 *
+	 * @param users The users to store
+	 * @return Why each user which could not be added failed
+	 */
+	private List<String> addUsers(List<User> users) {
+
+		//Group by domain so each structure is resolved and locked once
+		Map<String, List<StoredUser>> byDomain = Maps.newLinkedHashMap();
+		for(User user : users) {
+			List<StoredUser> domainUsers = byDomain.get(user.getDomain());
+			if(domainUsers == null) {
+				domainUsers = Lists.newArrayList();
+				byDomain.put(user.getDomain(), domainUsers);
+			}
+
+			domainUsers.add(new StoredUser(user));
+		}
+
+		List<String> failures = Lists.newArrayList();
+		for(Map.Entry<String, List<StoredUser>> entry : byDomain.entrySet()) {
+			StoredUserStructure userStore = getOrCreateUserStore(new Domain(entry.getKey()));
+
+			List<StoredUser> skipped;
+			try {
+				skipped = userStore.addUsers(entry.getValue(), INDEX_BUILDER);
+			} catch(IllegalArgumentException e) {
+				for(StoredUser failed : entry.getValue()) {
+					failures.add("UID " + failed.getUid() + " could not be added to domain " + entry.getKey() + ": " + e.getMessage());
+				}
+
+				continue;
+			}
+
+			for(StoredUser user : skipped) {
+				failures.add("UID " + user.getUid() + " already exists in domain " + entry.getKey());
+			}
+		}
+
+		return failures;
+	}
+
+	/***
+	 * Answers autocompletes of any number of domains, each domain's at
+	 * once and the domains in parallel, the first on the calling thread.
+	 * Those with a budget fail, as they would hold up the rest of their domain.
+	 *
+	 * @param requests The autocompletes
+	 * @param maxResponses The most matches any request gets, whatever it asks for
+	 * @return The answer to each request, in the order of the requests
+	 * @throws InterruptedException if interrupted while waiting for a domain
+	 * @throws ExecutionException if answering a domain fails unexpectedly
+	 */
+	private List<MatchedUsers> autocompleteAll(final List<AutocompleteRequest> requests, final int maxResponses) throws InterruptedException, ExecutionException {
+		final MatchedUsers[] results = new MatchedUsers[requests.size()];
+		Map<Domain, List<Integer>> byDomain = Maps.newLinkedHashMap();
+		for(int i = 0; i < requests.size(); i++) {
+
+			//A domain's requests are answered together, so none can stop early on its own
+			if(requests.get(i).hasBudgetMillis()) {
+				results[i] = MatchedUsers.newBuilder()
+						.setStatus(getInvalidStatus(new IllegalArgumentException("Budgets are not supported in batches"), requests.get(i)))
+						.build();
+				continue;
+			}
+
+			Domain domain = new Domain(requests.get(i).getDomain());
+			List<Integer> domainRequests = byDomain.get(domain);
+			if(domainRequests == null) {
+				domainRequests = Lists.newArrayList();
+				byDomain.put(domain, domainRequests);
+			}
+
+			domainRequests.add(i);
+		}
+
+		List<Runnable> domains = Lists.newArrayList();
+		for(final Map.Entry<Domain, List<Integer>> entry : byDomain.entrySet()) {
+			domains.add(new Runnable() {
+				@Override
+				public void run() {
+					autocompleteDomain(entry.getKey(), entry.getValue(), requests, maxResponses, results);
+				}
+			});
+		}
+
+		fanOut(domains);
+		return Arrays.asList(results);
+	}
+
+	/***
+	 * Autocompletes on a domain, sharing the answer of an identical
+	 * autocomplete under way if there is one. It must have started since
+	 * the last mutation of the domain, so the answer still reflects
+	 * every mutation acknowledged before this autocomplete came in.
+	 *
+	 * An autocomplete with a deadline spends at most half of the time
+	 * left waiting for the one under way, then gives up on it and looks
+	 * alone with the other half. Handed matches cut short by another
+	 * deadline, it takes them as the best to be had in time; without a
+	 * deadline of its own, it looks alone for all of them instead.
+	 *
+	 * @param userStore The users of the domain
+	 * @param typedSoFar What was typed
+	 * @param numResponses The maximum number of matches
+	 * @param trace Where to record the timings, or null; only filled in
+	 * if this autocomplete computes the answer itself
+	 * @param deadline When to stop looking, or null
+	 * @return The best matches, best first, which must not be modified
+	 */
+	private Collection<MatchedUser> autocompleteShared(final StoredUserStructure userStore, final String typedSoFar,
+			final int numResponses, final QueryTrace trace, final Deadline deadline) {
+		long generation = userStore.getGeneration();
+
+		//Cleared if this autocomplete turns out to compute the answer
+		if(trace != null) {
+			trace.setShared(true);
+		}
+
+		QueryKey key = new QueryKey(userStore, StoredUserStructure.normalize(typedSoFar), numResponses);
+		long timeoutNanos = deadline != null ? Math.max(deadline.remainingNanos() / 2, 0) : Long.MAX_VALUE;
+		SharedAnswer answer = inFlight.get(key, generation, timeoutNanos, new Supplier<SharedAnswer>() {
+			@Override
+			public SharedAnswer get() {
+				if(trace != null) {
+					trace.setShared(false);
+				}
+
+				Collection<MatchedUser> matches = userStore.autocomplete(typedSoFar, numResponses, null, trace, deadline);
+				return new SharedAnswer(matches, deadline != null && deadline.isMissed() ? deadline : null);
+			}
+		});
+
+		if(answer != null && answer.cutShortBy != null && answer.cutShortBy != deadline) {
+			if(deadline != null) {
+				deadline.miss();
+				return answer.matches;
+			}
+
+			answer = null;
+		}
+
+		//Gave up waiting, or was handed too few matches
+		if(answer == null) {
+			if(trace != null) {
+				trace.setShared(false);
+			}
+
+			return userStore.autocomplete(typedSoFar, numResponses, null, trace, deadline);
+		}
+
+		return answer.matches;
+	}
+
+	/***
+	 * Runs tasks in parallel, the first on the calling thread
+	 *
+	 * @param tasks The tasks
+	 * @throws InterruptedException if interrupted while waiting for a task
+	 * @throws ExecutionException if a task other than the first fails
+	 */
+	private static void fanOut(List<Runnable> tasks) throws InterruptedException, ExecutionException {
+		List<Future<?>> pending = Lists.newArrayListWithCapacity(tasks.size());
+		for(Runnable task : tasks.subList(Math.min(1, tasks.size()), tasks.size())) {
+			pending.add(QUERY_FAN_OUT.submit(task));
+		}
+
+		if(!tasks.isEmpty()) {
+			tasks.get(0).run();
+		}
+
+		for(Future<?> task : pending) {
+			task.get();
+		}
+	}
+
+	/***
+	 * Autocompletes across domains, each domain in parallel, and ranks
+	 * the matches of all of them together. The domains share a
+	 * ScoreThreshold, so each stops looking as soon as it cannot beat
+	 * the k-th best match another has found. They share the deadline
+	 * too, so once it passes each returns the best it found so far.
+	 *
+	 * @param domainIdentifiers The domains, ties going to the earlier listed
+	 * @param typedSoFar What was typed
+	 * @param numResponses The maximum number of matches
+	 * @param deadline When to stop looking, or null
+	 * @return The best matches of all domains, best first
+	 * @throws IllegalArgumentException if a domain does not exist
+	 * @throws InterruptedException if interrupted while waiting for a domain
+	 * @throws ExecutionException if a domain fails unexpectedly
+	 */
+	private List<MatchedUser> autocompleteAcross(List<String> domainIdentifiers, final String typedSoFar, final int numResponses,
+			final Deadline deadline) throws InterruptedException, ExecutionException {
+		final List<StoredUserStructure> userStores = Lists.newArrayList();
+		for(String domainIdentifier : Sets.newLinkedHashSet(domainIdentifiers)) {
+			StoredUserStructure userStore = userMap.get(new Domain(domainIdentifier));
+			if(userStore == null) {
+				throw new IllegalArgumentException("Unknown domain: " + domainIdentifier);
+			}
+
+			userStores.add(userStore);
+		}
+
+		final ScoreThreshold threshold = new ScoreThreshold();
+		final List<Collection<MatchedUser>> matches = Collections.synchronizedList(Lists.<Collection<MatchedUser>>newArrayList(
+				Collections.nCopies(userStores.size(), Collections.<MatchedUser>emptyList())));
+
+		List<Runnable> domains = Lists.newArrayListWithCapacity(userStores.size());
+		for(int i = 0; i < userStores.size(); i++) {
+			final int domain = i;
+			domains.add(new Runnable() {
+				@Override
+				public void run() {
+					matches.set(domain, userStores.get(domain).autocomplete(typedSoFar, numResponses, threshold, null, deadline));
+				}
+			});
+		}
+
+		fanOut(domains);
+
+		//Each domain's matches come best first, and sorting is stable,
+		//so ties keep the order of the domains and within each domain
+		List<MatchedUser> merged = Lists.newArrayList();
+		for(Collection<MatchedUser> domainMatches : matches) {
+			merged.addAll(domainMatches);
+		}
+
+		Collections.sort(merged, new Comparator<MatchedUser>() {
+			@Override
+			public int compare(MatchedUser first, MatchedUser second) {
+				return Double.compare(second.getScore(), first.getScore());
+			}
+		});
+
+		return merged.subList(0, Math.min(Math.max(numResponses, 0), merged.size()));
+	}
+
+	/***
+	 * Answers the autocompletes of one domain, each failing on its own
+	 *
+	 * @param domain The domain
+	 * @param indices The indices of its requests
+	 * @param requests Every request of the batch
+	 * @param maxResponses The most matches any request gets, whatever it asks for
+	 * @param results Where to put the answer to each request
+	 */
+	private void autocompleteDomain(Domain domain, List<Integer> indices, List<AutocompleteRequest> requests, int maxResponses, MatchedUsers[] results) {
+		List<String> typed = Lists.newArrayListWithCapacity(indices.size());
+		int[] numResponses = new int[indices.size()];
+		for(int i = 0; i < indices.size(); i++) {
+			AutocompleteRequest request = requests.get(indices.get(i));
+			typed.add(request.getTyped());
+			numResponses[i] = Math.min(request.getNumResponses(), maxResponses);
+		}
+
+		List<List<MatchedUser>> matches = null;
+		Exception failure = null;
+		try {
+			StoredUserStructure userStore = userMap.get(domain);
+			if(userStore == null) {
+				throw new IllegalArgumentException("Unknown domain: " + domain.getDomainIdentifier());
+			}
+
+			matches = userStore.autocompleteAll(typed, numResponses);
+		} catch (Exception e) {
+			failure = e;
+		}
+
+		//Capped requests are degraded ones
+		Status answered = maxResponses == Integer.MAX_VALUE ? VALID_STATUS : DEGRADED_STATUS;
+		for(int i = 0; i < indices.size(); i++) {
+			MatchedUsers.Builder matchedUsers = MatchedUsers.newBuilder();
+			if(failure == null) {
+				matchedUsers.addAllMatchedUsers(matches.get(i));
+				matchedUsers.setStatus(answered);
+			} else {
+				matchedUsers.setStatus(getInvalidStatus(failure, requests.get(indices.get(i))));
+			}
+
+			results[indices.get(i)] = matchedUsers.build();
+		}
+	}
+
+	/***
+	 * Fetches the users of a domain, creating the domain if needed
+	 *
+	 * @param domain The domain
+	 * @return The users of the domain
+	 */
+	private StoredUserStructure getOrCreateUserStore(Domain domain) {
+		StoredUserStructure userStore = userMap.get(domain);
+
+		if(userStore == null) {
+			StoredUserStructure created = new StoredUserStructure();
+			created.setMutationLog(writeAheadLog);
+			created.setOffHeapRecords(offHeapRecords);
+			userStore = userMap.putIfAbsent(domain, created);
+			if(userStore == null) {
+				userStore = created;
+			}
+		}
+
+		return userStore;
+	}
+
 	/***
 	 * Adds a given user to the list of maintained users
 	 * @param user The user to store
@@ -166,13 +936,9 @@ public class AutocompleterService implements BlockingInterface {
 	private void addUser(User user) {
 
 		StoredUser toAdd = new StoredUser(user);
-		Domain domain = toAdd.getDomain();
-		if(!userMap.containsKey(domain)) {
-			userMap.put(domain, new StoredUserStructure());
-		}
-
-		StoredUserStructure userStore = userMap.get(domain);
+		StoredUserStructure userStore = getOrCreateUserStore(toAdd.getDomain());
 
+		//The structure re-checks under its own lock, this is just for the message
 		if(userStore.containsUser(toAdd)) {
 			throw new IllegalArgumentException("Attempt to re-add a user with unique identifier " + toAdd.getUid() + " to domain " + toAdd.getDomain());
 		}
@@ -190,13 +956,12 @@ public class AutocompleterService implements BlockingInterface {
 	private void deleteUser(String domainIdentifier, long uid) {
 
 		Domain domain = new Domain(domainIdentifier);
+		StoredUserStructure userStore = userMap.get(domain);
 
-		if(!userMap.containsKey(domain)) {
+		if(userStore == null) {
 			throw new IllegalArgumentException("UID " + uid + " could not be deleted; unknown domain: " + domainIdentifier);
 		}
 
-		StoredUserStructure userStore = userMap.get(domain);
-
 		if(!userStore.deleteUser(uid)) {
 			throw new IllegalArgumentException("Cannot delete user with UID " + uid + "; no such user exists in domain " + domainIdentifier);
 		}
@@ -212,14 +977,13 @@ public class AutocompleterService implements BlockingInterface {
 	private void updateUser(User user) {
 
 		Domain domain = new Domain(user.getDomain());
+		StoredUserStructure userStore = userMap.get(domain);
 
-		if(!userMap.containsKey(domain)) {
+		if(userStore == null) {
 			throw new IllegalArgumentException("Cannot update user: " + user + "; from an unknown domain " + domain);
 		}
 
-		StoredUserStructure userStore = userMap.get(domain);
-		StoredUser storedUser = userStore.getUser(user.getUid());
-		storedUser.update(user);
+		userStore.updateUser(user);
 	}
 
 	/***
@@ -227,6 +991,59 @@ public class AutocompleterService implements BlockingInterface {
 	 * @param d The domain to purge users from
 	 */
 	private void clearUsersFromDomain(Domain d) {
-		userMap.remove(d);
+		StoredUserStructure removed = userMap.remove(d);
+
+		//Mutations racing the clear fail from now on
+		if(removed != null) {
+			removed.retire(d.getDomainIdentifier());
+		}
+	}
+
+	/***
+	 * The answer to an autocomplete, which the identical ones waiting for
+	 * it may only take if it was not cut short
+	 */
+	private static class SharedAnswer {
+		private final Collection<MatchedUser> matches;
+
+		//The deadline of the autocomplete which answered, if it passed
+		private final Deadline cutShortBy;
+
+		private SharedAnswer(Collection<MatchedUser> matches, Deadline cutShortBy) {
+			this.matches = matches;
+			this.cutShortBy = cutShortBy;
+		}
+	}
+
+	/***
+	 * What identical autocompletes have in common: the structure of the
+	 * domain, rather than its name, so autocompletes on a domain cleared
+	 * and filled again since are not identical
+	 */
+	private static class QueryKey {
+		private final StoredUserStructure userStore;
+		private final String normalizedQuery;
+		private final int numResponses;
+
+		private QueryKey(StoredUserStructure userStore, String normalizedQuery, int numResponses) {
+			this.userStore = userStore;
+			this.normalizedQuery = normalizedQuery;
+			this.numResponses = numResponses;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof QueryKey)) {
+				return false;
+			}
+
+			QueryKey key = (QueryKey) other;
+			return userStore == key.userStore && normalizedQuery.equals(key.normalizedQuery) && numResponses == key.numResponses;
+		}
+
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(userStore) * 31 + normalizedQuery.hashCode()) * 31 + numResponses;
+		}
 	}
 }
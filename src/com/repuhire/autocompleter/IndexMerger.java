@@ -0,0 +1,255 @@
+package com.repuhire.autocompleter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.repuhire.user.Domain;
+import com.repuhire.user.StoredUserStructure;
+
+/***
+ * Moves the large domains of the service onto memory-mapped bases,
+ * and merges the users changed since back into them every so often
+ * so the part of each domain kept on heap stays small.
+ *
+ * A domain gets its first base once it holds minUsers users, and a
+ * new one whenever it holds maxDeltaSize users and tombstones on heap.
+ * Every base is a file of its own in the directory. A file no domain
+ * uses any longer is deleted right away, unless snapshots are taken,
+ * in which case it is kept until a snapshot started after it went out
+ * of use is written, since earlier snapshots may refer to it.
+ */
+public class IndexMerger {
+
+	private static final Logger LOGGER = Logger.getLogger(IndexMerger.class.getName());
+
+	public static final String FILE_SUFFIX = ".idx";
+
+	private final AutocompleterService service;
+	private final File directory;
+	private final int minUsers;
+	private final int maxDeltaSize;
+
+	//Base files which domains may be using
+	private final Set<File> inUse = Sets.newHashSet();
+
+	//Base files out of use, oldest first, which snapshots may refer to
+	private final List<File> retired = Lists.newArrayList();
+	private volatile boolean keepForSnapshots = false;
+
+	private ScheduledExecutorService scheduler = null;
+
+	/***
+	 * @param service The service whose domains to merge
+	 * @param directory Where to keep the bases, created if needed
+	 * @param minUsers The number of users from which a domain gets a base
+	 * @param maxDeltaSize The number of users and tombstones on heap
+	 * from which a domain with a base gets a new one
+	 */
+	public IndexMerger(AutocompleterService service, File directory, int minUsers, int maxDeltaSize) {
+		this.service = service;
+		this.directory = directory;
+		this.minUsers = minUsers;
+		this.maxDeltaSize = maxDeltaSize;
+	}
+
+	/***
+	 * Deletes every base file in the directory which no domain uses, as
+	 * left behind by a crash or by restoring an older snapshot. Must be
+	 * called once the domains are restored and before any merge.
+	 *
+	 * @return The number of files deleted
+	 */
+	public synchronized int deleteUnused() {
+		inUse.clear();
+		inUse.addAll(baseFiles());
+
+		int deleted = 0;
+		File[] files = directory.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				if(file.getName().endsWith(FILE_SUFFIX) && !inUse.contains(file.getAbsoluteFile()) && delete(file)) {
+					deleted++;
+				}
+			}
+		}
+
+		return deleted;
+	}
+
+	/***
+	 * Gives every domain due for it a new base. A domain which fails
+	 * to merge is logged and keeps its current base.
+	 */
+	public synchronized void mergeAll() {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			LOGGER.warning("Cannot create index directory " + directory);
+			return;
+		}
+
+		for(Map.Entry<Domain, StoredUserStructure> entry : service.getDomains().entrySet()) {
+			StoredUserStructure structure = entry.getValue();
+			boolean due = structure.getBaseFile() == null
+					? structure.size() >= minUsers
+					: structure.getDeltaSize() >= maxDeltaSize;
+
+			if(due) {
+				merge(entry.getKey(), structure);
+			}
+		}
+
+		retireUnused();
+	}
+
+	/***
+	 * Merges every domain due for it every so often, in the background
+	 *
+	 * @param intervalSeconds The time between the end of a
+	 * round of merges and the start of the next one
+	 */
+	public synchronized void schedule(long intervalSeconds) {
+		if(scheduler != null) {
+			throw new IllegalStateException("Merges are already scheduled");
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("index-merger-%d").setDaemon(true).build());
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				mergeAll();
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/***
+	 * Stops periodic merges; one under way finishes in the background
+	 */
+	public synchronized void shutdown() {
+		if(scheduler != null) {
+			scheduler.shutdown();
+			scheduler = null;
+		}
+	}
+
+	/***
+	 * @param keepForSnapshots Whether snapshots are taken, and so
+	 * whether files out of use must wait for the next one
+	 */
+	public void setKeepForSnapshots(boolean keepForSnapshots) {
+		this.keepForSnapshots = keepForSnapshots;
+	}
+
+	/***
+	 * To be called as a snapshot starts
+	 *
+	 * @return The mark to hand to snapshotTaken once it is written
+	 */
+	public int snapshotStarting() {
+		synchronized(retired) {
+			return retired.size();
+		}
+	}
+
+	/***
+	 * Deletes the files which went out of use before a snapshot started,
+	 * now that it is written and no snapshot kept refers to them.
+	 * Snapshots must be taken one at a time.
+	 *
+	 * @param mark What snapshotStarting returned for the snapshot
+	 */
+	public void snapshotTaken(int mark) {
+		synchronized(retired) {
+			List<File> deletable = retired.subList(0, mark);
+			for(File file : deletable) {
+				delete(file);
+			}
+
+			deletable.clear();
+		}
+	}
+
+	private void merge(Domain domain, StoredUserStructure structure) {
+		File file = null;
+		boolean merged = false;
+
+		try {
+			file = File.createTempFile("domain-", FILE_SUFFIX, directory).getAbsoluteFile();
+			long start = System.currentTimeMillis();
+			merged = structure.mergeInto(file, service.getIndexBuilder());
+
+			if(merged) {
+				inUse.add(file);
+				LOGGER.info("Merged " + structure.size() + " users of domain " + domain.getDomainIdentifier() + " into " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+			}
+		} catch(IOException e) {
+			LOGGER.log(Level.WARNING, "Could not merge domain " + domain.getDomainIdentifier() + " into " + file, e);
+		} catch(RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Could not merge domain " + domain.getDomainIdentifier() + " into " + file, e);
+		} finally {
+			if(file != null && !merged) {
+				delete(file);
+			}
+		}
+	}
+
+	/***
+	 * Retires the files of bases replaced by a merge or
+	 * dropped along with their domain
+	 */
+	private void retireUnused() {
+		Set<File> live = baseFiles();
+
+		for(Iterator<File> files = inUse.iterator(); files.hasNext(); ) {
+			File file = files.next();
+			if(live.contains(file)) {
+				continue;
+			}
+
+			files.remove();
+			if(keepForSnapshots) {
+				synchronized(retired) {
+					retired.add(file);
+				}
+			} else {
+				delete(file);
+			}
+		}
+	}
+
+	/***
+	 * @return The base file of every domain
+	 */
+	private Set<File> baseFiles() {
+		Set<File> files = Sets.newHashSet();
+
+		for(StoredUserStructure structure : service.getDomains().values()) {
+			File file = structure.getBaseFile();
+			if(file != null) {
+				files.add(file.getAbsoluteFile());
+			}
+		}
+
+		return files;
+	}
+
+	private static boolean delete(File file) {
+		if(!file.delete() && file.exists()) {
+			LOGGER.warning("Could not delete index file " + file);
+			return false;
+		}
+
+		return true;
+	}
+}
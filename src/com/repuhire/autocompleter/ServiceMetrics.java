@@ -0,0 +1,289 @@
+package com.repuhire.autocompleter;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.repuhire.datastructures.LatencyHistogram;
+import com.repuhire.user.Domain;
+import com.repuhire.user.StoredUserStructure;
+
+/***
+ * Latency histograms and counters of the RPCs of the service, kept for
+ * the service as a whole and for each domain, recorded without locking.
+ *
+ * Reports cover the time since the previous one: latency percentiles,
+ * calls, failures and results returned of each RPC, then the same for
+ * the domains called the most, along with the candidates their
+ * autocompletes scanned. They are logged every so often once scheduled.
+ */
+public class ServiceMetrics {
+
+	private static final Logger LOGGER = Logger.getLogger(ServiceMetrics.class.getName());
+
+	//Domains listed in each report, the most called first
+	private static final int MAX_REPORTED_DOMAINS = 10;
+
+	/***
+	 * The RPCs measured
+	 */
+	public enum Rpc {
+		ADD_USERS, ADD_USER, UPDATE, DELETE, AUTOCOMPLETE, BATCH_AUTOCOMPLETE, FEDERATED_AUTOCOMPLETE, CLEAR_USERS, SNAPSHOT
+	}
+
+	private final RpcStats[] rpcs = new RpcStats[Rpc.values().length];
+	private final ConcurrentMap<Domain, DomainStats> domains = new ConcurrentHashMap<Domain, DomainStats>();
+
+	private final AutocompleterService service;
+	private long lastReportNanos = System.nanoTime();
+	private ScheduledExecutorService scheduler = null;
+
+	/***
+	 * @param service The service measured, whose domains report the
+	 * candidates they scanned
+	 */
+	public ServiceMetrics(AutocompleterService service) {
+		this.service = service;
+		for(int i = 0; i < rpcs.length; i++) {
+			rpcs[i] = new RpcStats();
+		}
+	}
+
+	/***
+	 * Records one call of an RPC
+	 *
+	 * @param rpc The RPC called
+	 * @param domain The domain it was called on, or null if it is not about
+	 * one. Domains which do not exist are not measured on their own.
+	 * @param startNanos The System.nanoTime() the call started at
+	 * @param failed Whether it failed
+	 * @param numResults The number of users it returned
+	 */
+	public void record(Rpc rpc, Domain domain, long startNanos, boolean failed, int numResults) {
+		long micros = (System.nanoTime() - startNanos) / 1000;
+		rpcs[rpc.ordinal()].record(micros, failed, numResults);
+
+		if(domain != null) {
+			DomainStats stats = domains.get(domain);
+			if(stats == null) {
+				if(!service.getDomains().containsKey(domain)) {
+					return;
+				}
+
+				DomainStats created = new DomainStats();
+				stats = domains.putIfAbsent(domain, created);
+				if(stats == null) {
+					stats = created;
+				}
+			}
+
+			stats.rpc(rpc).record(micros, failed, numResults);
+		}
+	}
+
+	/***
+	 * Drains everything recorded since the last report
+	 *
+	 * @return The report, one line per RPC and per domain called
+	 */
+	public synchronized String report() {
+		long now = System.nanoTime();
+		double seconds = Math.max(now - lastReportNanos, 1) / 1e9;
+		lastReportNanos = now;
+
+		StringBuilder report = new StringBuilder(String.format("Over the last %.0fs:", seconds));
+		for(Rpc rpc : Rpc.values()) {
+			RpcStats.Drained drained = rpcs[rpc.ordinal()].drain();
+			if(drained.calls > 0) {
+				report.append(String.format("\n  %s: %d calls (%.1f/s), %s",
+						rpc.name().toLowerCase(), drained.calls, drained.calls / seconds, drained.describe()));
+			}
+		}
+
+		//Domains since cleared are dropped, and created
+		//anew should they be called again
+		Map<Domain, StoredUserStructure> structures = service.getDomains();
+		List<DomainReport> called = Lists.newArrayList();
+		for(Map.Entry<Domain, DomainStats> entry : domains.entrySet()) {
+			StoredUserStructure structure = structures.get(entry.getKey());
+			DomainReport domainReport = entry.getValue().drain(entry.getKey(), structure);
+			if(structure == null) {
+				domains.remove(entry.getKey(), entry.getValue());
+			}
+
+			if(domainReport.calls > 0) {
+				called.add(domainReport);
+			}
+		}
+
+		Collections.sort(called, new Comparator<DomainReport>() {
+			@Override
+			public int compare(DomainReport first, DomainReport second) {
+				return Long.valueOf(second.calls).compareTo(first.calls);
+			}
+		});
+
+		for(DomainReport domainReport : called.subList(0, Math.min(MAX_REPORTED_DOMAINS, called.size()))) {
+			domainReport.appendTo(report, seconds);
+		}
+
+		if(called.size() > MAX_REPORTED_DOMAINS) {
+			report.append("\n  ... and ").append(called.size() - MAX_REPORTED_DOMAINS).append(" more domains");
+		}
+
+		return report.toString();
+	}
+
+	/***
+	 * Logs a report every so often, in the background
+	 *
+	 * @param intervalSeconds The time between reports
+	 */
+	public synchronized void schedule(long intervalSeconds) {
+		if(scheduler != null) {
+			throw new IllegalStateException("Reports are already scheduled");
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("metrics-reporter-%d").setDaemon(true).build());
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				LOGGER.info(report());
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/***
+	 * Stops periodic reports
+	 */
+	public synchronized void shutdown() {
+		if(scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/***
+	 * Latencies and counters of one RPC, of the service or of a domain
+	 */
+	private static class RpcStats {
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong results = new AtomicLong();
+
+		private void record(long micros, boolean failed, int numResults) {
+			latencies.record(micros);
+			if(failed) {
+				failures.incrementAndGet();
+			}
+
+			if(numResults > 0) {
+				results.addAndGet(numResults);
+			}
+		}
+
+		private Drained drain() {
+			Drained drained = new Drained();
+			drained.latencies = latencies.drain();
+			drained.calls = drained.latencies.count();
+			drained.failures = failures.getAndSet(0);
+			drained.results = results.getAndSet(0);
+			return drained;
+		}
+
+		private static class Drained {
+			private LatencyHistogram.Snapshot latencies;
+			private long calls;
+			private long failures;
+			private long results;
+
+			private String describe() {
+				return String.format("%d failed, %d results, p50 %dus, p99 %dus, p99.9 %dus, max %dus",
+						failures, results, latencies.percentile(50), latencies.percentile(99), latencies.percentile(99.9), latencies.max());
+			}
+		}
+	}
+
+	/***
+	 * The RPCs called on one domain, each created on its first call
+	 */
+	private static class DomainStats {
+		private final AtomicReferenceArray<RpcStats> rpcs = new AtomicReferenceArray<RpcStats>(Rpc.values().length);
+
+		//What the structure had scanned as of the last report, held weakly
+		//so that the structure of a cleared domain is not kept alive
+		private WeakReference<StoredUserStructure> lastStructure = new WeakReference<StoredUserStructure>(null);
+		private long lastCandidatesScanned = 0;
+
+		private RpcStats rpc(Rpc rpc) {
+			RpcStats stats = rpcs.get(rpc.ordinal());
+			if(stats == null) {
+				rpcs.compareAndSet(rpc.ordinal(), null, new RpcStats());
+				stats = rpcs.get(rpc.ordinal());
+			}
+
+			return stats;
+		}
+
+		private DomainReport drain(Domain domain, StoredUserStructure structure) {
+			DomainReport report = new DomainReport(domain);
+			for(Rpc rpc : Rpc.values()) {
+				RpcStats stats = rpcs.get(rpc.ordinal());
+				if(stats != null) {
+					RpcStats.Drained drained = stats.drain();
+					if(drained.calls > 0) {
+						report.rpcs.add(rpc.name().toLowerCase() + ": " + drained.calls + " calls, " + drained.describe());
+						report.calls += drained.calls;
+					}
+				}
+			}
+
+			//Structures replaced since the last report, e.g. by clearing and
+			//recreating the domain or by a snapshot restore, count from scratch
+			if(structure != null) {
+				if(lastStructure.get() != structure) {
+					lastStructure = new WeakReference<StoredUserStructure>(structure);
+					lastCandidatesScanned = 0;
+				}
+
+				long scanned = structure.getCandidatesScanned();
+				report.candidatesScanned = scanned - lastCandidatesScanned;
+				lastCandidatesScanned = scanned;
+			}
+
+			return report;
+		}
+	}
+
+	private static class DomainReport {
+		private final Domain domain;
+		private final List<String> rpcs = Lists.newArrayList();
+		private long calls = 0;
+		private long candidatesScanned = 0;
+
+		private DomainReport(Domain domain) {
+			this.domain = domain;
+		}
+
+		private void appendTo(StringBuilder report, double seconds) {
+			report.append(String.format("\n  domain %s: %d calls (%.1f/s), %d candidates scanned",
+					domain.getDomainIdentifier(), calls, calls / seconds, candidatesScanned));
+			for(String rpc : rpcs) {
+				report.append("\n    ").append(rpc);
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.repuhire.autocompleter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.repuhire.user.QueryTrace;
+
+/***
+ * Logs the autocompletes which took longer than a threshold, with what
+ * was typed and where the time went phase by phase.
+ *
+ * Slow queries are handed to a background thread through a bounded
+ * queue and formatted and logged there, so an RPC thread never waits
+ * on logging. When the queue is full the query is dropped instead,
+ * and the number dropped is logged with the next one that makes it.
+ */
+public class SlowQueryLog {
+
+	private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+	//Slow queries waiting to be logged before more are dropped
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final long thresholdNanos;
+	private final BlockingQueue<SlowQuery> queue;
+	private final AtomicLong dropped = new AtomicLong();
+	private final Thread writer;
+
+	/***
+	 * Starts the thread logging the slow queries
+	 *
+	 * @param thresholdMillis How long a query takes at least to be logged
+	 * @param capacity The number of slow queries waiting to be logged
+	 * before more are dropped
+	 */
+	public SlowQueryLog(long thresholdMillis, int capacity) {
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this.queue = new ArrayBlockingQueue<SlowQuery>(capacity);
+
+		writer = new Thread("slow-query-log") {
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						SlowQuery query = queue.take();
+						long droppedSoFar = dropped.getAndSet(0);
+						LOGGER.warning(query.describe() + (droppedSoFar > 0 ? " (" + droppedSoFar + " slow queries dropped before)" : ""));
+					}
+				} catch(InterruptedException e) {
+					//Shut down
+				}
+			}
+		};
+
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/***
+	 * Logs a query if it was slow, without waiting
+	 *
+	 * @param domain The domain queried
+	 * @param typedSoFar What was typed
+	 * @param numResponses The number of matches asked for
+	 * @param trace Where the time went in the structure
+	 * @param responseNanos The time spent building the response afterwards
+	 * @param totalNanos The time the whole query took
+	 * @return Whether the query was slow
+	 */
+	public boolean record(String domain, String typedSoFar, int numResponses, QueryTrace trace, long responseNanos, long totalNanos) {
+		if(totalNanos < thresholdNanos) {
+			return false;
+		}
+
+		if(!queue.offer(new SlowQuery(domain, typedSoFar, numResponses, trace, responseNanos, totalNanos))) {
+			dropped.incrementAndGet();
+		}
+
+		return true;
+	}
+
+	/***
+	 * @return How long a query takes at least to be logged
+	 */
+	public long getThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+	}
+
+	/***
+	 * Stops logging; slow queries not logged yet are dropped
+	 */
+	public void shutdown() {
+		writer.interrupt();
+	}
+
+	private static class SlowQuery {
+		private final String domain;
+		private final String typedSoFar;
+		private final int numResponses;
+		private final QueryTrace trace;
+		private final long responseNanos;
+		private final long totalNanos;
+
+		private SlowQuery(String domain, String typedSoFar, int numResponses, QueryTrace trace, long responseNanos, long totalNanos) {
+			this.domain = domain;
+			this.typedSoFar = typedSoFar;
+			this.numResponses = numResponses;
+			this.trace = trace;
+			this.responseNanos = responseNanos;
+			this.totalNanos = totalNanos;
+		}
+
+		private String describe() {
+			if(trace.isShared()) {
+				return String.format("Slow autocomplete of \"%s\" in domain %s for %d responses took %dns: "
+						+ "waiting for an identical one %dns, response %dns",
+						typedSoFar, domain, numResponses, totalNanos, totalNanos - responseNanos, responseNanos);
+			}
+
+			return String.format("Slow autocomplete of \"%s\" in domain %s for %d responses took %dns: "
+					+ "tokenize %dns, lock wait %dns, candidates %dns, match %dns, results %dns, response %dns; "
+					+ "%d candidates at most%s, %d scanned, %d matched",
+					typedSoFar, domain, numResponses, totalNanos,
+					trace.getTokenizeNanos(), trace.getLockWaitNanos(), trace.getCandidatesNanos(),
+					trace.getMatchNanos(), trace.getResultsNanos(), responseNanos,
+					trace.getMaxCandidates(), trace.isRefined() ? " refining an earlier keystroke" : "",
+					trace.getCandidatesScanned(), trace.getMatches());
+		}
+	}
+}
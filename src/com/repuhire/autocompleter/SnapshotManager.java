@@ -0,0 +1,306 @@
+package com.repuhire.autocompleter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.repuhire.user.Domain;
+import com.repuhire.user.StoredUserStructure;
+
+/***
+ * Saves every domain of the service, users and prebuilt index alike,
+ * to a single snapshot file and restores them from it, so a restarted
+ * server serves right away instead of after a full resync.
+ *
+ * A snapshot is written to a temporary file which only replaces the
+ * previous snapshot once it is complete and synced to disk, so a crash
+ * mid-snapshot leaves the previous one intact. Each domain is captured
+ * consistently, but domains are captured one after the other.
+ *
+ * With a write-ahead log, a snapshot first starts a new log segment
+ * and records its number; recovery replays the log from that segment
+ * on, and the older segments are deleted once the snapshot is written.
+ *
+ * Domains served from a memory-mapped base only refer to its file, so
+ * with an IndexMerger, files out of use are kept until a snapshot
+ * which cannot refer to them is written.
+ *
+ * Format: the magic number and version, the first log segment to
+ * replay, the number of domains, then each domain's identifier
+ * followed by its StoredUserStructure.
+ */
+public class SnapshotManager {
+
+	private static final Logger LOGGER = Logger.getLogger(SnapshotManager.class.getName());
+
+	public static final String SNAPSHOT_FILE_NAME = "autocompleter.snapshot";
+
+	//"ACSN"
+	private static final int MAGIC = 0x4e534341;
+	private static final int VERSION = 3;
+
+	private final AutocompleterService service;
+	private final File snapshotFile;
+	private final File tempFile;
+
+	private ScheduledExecutorService scheduler = null;
+	private WriteAheadLog writeAheadLog = null;
+	private IndexMerger indexMerger = null;
+
+	//First log segment not covered by the restored snapshot
+	private long restoredLogSegment = 0;
+
+	/***
+	 * @param service The service whose domains to snapshot
+	 * @param directory Where to keep the snapshot, created if needed
+	 */
+	public SnapshotManager(AutocompleterService service, File directory) {
+		this.service = service;
+		this.snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+		this.tempFile = new File(directory, SNAPSHOT_FILE_NAME + ".tmp");
+	}
+
+	/***
+	 * Replaces every domain of the service with those of the snapshot,
+	 * if there is one
+	 *
+	 * @return True iff a snapshot was restored
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	public synchronized boolean restore() throws IOException {
+		if(!snapshotFile.exists()) {
+			return false;
+		}
+
+		InputStream in = new BufferedInputStream(new FileInputStream(snapshotFile), 1 << 16);
+		try {
+			Snapshot snapshot = read(in);
+			service.replaceDomains(snapshot.getDomains());
+			restoredLogSegment = snapshot.getLogSegment();
+			return true;
+		} finally {
+			in.close();
+		}
+	}
+
+	/***
+	 * Takes a snapshot of every domain right now
+	 *
+	 * @throws IOException if the snapshot cannot be written,
+	 * in which case the previous one is left in place
+	 */
+	public synchronized void snapshot() throws IOException {
+		File directory = snapshotFile.getParentFile();
+		if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create snapshot directory " + directory);
+		}
+
+		//Everything logged from here on may be missing from the snapshot
+		long logSegment = writeAheadLog != null ? writeAheadLog.rotate() : 0;
+		int retiredMark = indexMerger != null ? indexMerger.snapshotStarting() : 0;
+
+		FileOutputStream file = new FileOutputStream(tempFile);
+		try {
+			OutputStream out = new BufferedOutputStream(file, 1 << 16);
+			write(service.getDomains(), logSegment, out);
+			out.flush();
+			file.getFD().sync();
+		} finally {
+			file.close();
+		}
+
+		//Renaming over an existing file fails on some platforms
+		if(!tempFile.renameTo(snapshotFile)) {
+			if(!snapshotFile.delete() || !tempFile.renameTo(snapshotFile)) {
+				throw new IOException("Cannot move " + tempFile + " to " + snapshotFile);
+			}
+		}
+
+		if(writeAheadLog != null) {
+			writeAheadLog.deleteSegmentsBefore(logSegment);
+		}
+
+		if(indexMerger != null) {
+			indexMerger.snapshotTaken(retiredMark);
+		}
+	}
+
+	/***
+	 * Takes a snapshot every so often, in the background
+	 *
+	 * @param intervalSeconds The time between the end of a snapshot
+	 * and the start of the next one
+	 */
+	public synchronized void schedule(long intervalSeconds) {
+		if(scheduler != null) {
+			throw new IllegalStateException("Snapshots are already scheduled");
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("snapshot-%d").setDaemon(true).build());
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					snapshot();
+				} catch(Exception e) {
+					LOGGER.log(Level.WARNING, "Periodic snapshot to " + snapshotFile + " failed", e);
+				}
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/***
+	 * Stops periodic snapshots and takes a last one
+	 */
+	public void shutdown() {
+		synchronized(this) {
+			if(scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+		}
+
+		try {
+			snapshot();
+		} catch(IOException e) {
+			LOGGER.log(Level.WARNING, "Final snapshot to " + snapshotFile + " failed", e);
+		}
+	}
+
+	/***
+	 * @param writeAheadLog The log whose segments snapshots
+	 * make obsolete, or null if there is none
+	 */
+	public synchronized void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+		this.writeAheadLog = writeAheadLog;
+	}
+
+	/***
+	 * @param indexMerger The merger whose files out of use snapshots
+	 * may refer to, or null if there is none
+	 */
+	public synchronized void setIndexMerger(IndexMerger indexMerger) {
+		if(indexMerger != null) {
+			indexMerger.setKeepForSnapshots(true);
+		}
+
+		this.indexMerger = indexMerger;
+	}
+
+	/***
+	 * @return The first log segment to replay on top of the restored snapshot
+	 */
+	public synchronized long getRestoredLogSegment() {
+		return restoredLogSegment;
+	}
+
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/***
+	 * Writes domains in the snapshot format
+	 *
+	 * @param domains The domains to write
+	 * @param logSegment The first log segment to replay on top of them
+	 * @param out The stream to write to
+	 * @throws IOException if the stream fails
+	 */
+	public static void write(Map<Domain, StoredUserStructure> domains, long logSegment, OutputStream out) throws IOException {
+		CodedOutputStream coded = CodedOutputStream.newInstance(out, 1 << 16);
+		coded.writeRawLittleEndian32(MAGIC);
+		coded.writeUInt32NoTag(VERSION);
+		coded.writeUInt64NoTag(logSegment);
+
+		//The map may change meanwhile, so write out a copy
+		List<Map.Entry<Domain, StoredUserStructure>> entries = Lists.newArrayList(domains.entrySet());
+		coded.writeUInt32NoTag(entries.size());
+
+		for(Map.Entry<Domain, StoredUserStructure> entry : entries) {
+			coded.writeStringNoTag(entry.getKey().getDomainIdentifier());
+			entry.getValue().writeTo(coded);
+		}
+
+		coded.flush();
+	}
+
+	/***
+	 * Reads domains in the snapshot format
+	 *
+	 * @param in The stream to read from
+	 * @return The snapshot read
+	 * @throws IOException if the stream fails or holds no snapshot
+	 */
+	public static Snapshot read(InputStream in) throws IOException {
+		CodedInputStream coded = CodedInputStream.newInstance(in);
+		coded.setSizeLimit(Integer.MAX_VALUE);
+
+		if(coded.readRawLittleEndian32() != MAGIC) {
+			throw new IOException("Not a snapshot");
+		}
+
+		int version = coded.readRawVarint32();
+		if(version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+
+		long logSegment = coded.readRawVarint64();
+
+		int numDomains = coded.readRawVarint32();
+		Map<Domain, StoredUserStructure> domains = Maps.newHashMap();
+		for(int i = 0; i < numDomains; i++) {
+			coded.resetSizeCounter();
+			Domain domain = new Domain(coded.readString());
+			domains.put(domain, StoredUserStructure.readFrom(coded));
+		}
+
+		if(!coded.isAtEnd()) {
+			throw new IOException("Trailing data after " + numDomains + " domains");
+		}
+
+		return new Snapshot(domains, logSegment);
+	}
+
+	/***
+	 * The contents of a snapshot file
+	 */
+	public static class Snapshot {
+
+		private final Map<Domain, StoredUserStructure> domains;
+		private final long logSegment;
+
+		private Snapshot(Map<Domain, StoredUserStructure> domains, long logSegment) {
+			this.domains = domains;
+			this.logSegment = logSegment;
+		}
+
+		public Map<Domain, StoredUserStructure> getDomains() {
+			return domains;
+		}
+
+		/***
+		 * @return The first log segment to replay on top of the domains
+		 */
+		public long getLogSegment() {
+			return logSegment;
+		}
+	}
+}
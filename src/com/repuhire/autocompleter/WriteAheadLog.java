@@ -0,0 +1,509 @@
+package com.repuhire.autocompleter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.User;
+import com.repuhire.common.Common.Users;
+import com.repuhire.user.MutationLog;
+
+/***
+ * Append-only log of every mutation of the users, replayed on top of
+ * the latest snapshot after a restart.
+ *
+ * Mutations are appended to an in-memory buffer while the mutated
+ * domain is still locked, which keeps the log in the order the
+ * mutations were applied. Making them durable happens afterwards
+ * through sync(), with group commit: whichever thread finds no write
+ * in progress writes and syncs everything buffered so far, on behalf of
+ * every thread waiting, so concurrent mutations share one fsync.
+ *
+ * The log is split into numbered segment files. A snapshot starts a
+ * new segment first, so once it is written the older segments are
+ * covered by it and can be deleted.
+ *
+ * Each record is the varint length of its payload, the CRC32 of the
+ * payload and the payload: a type byte followed by a protobuf message.
+ */
+public class WriteAheadLog implements MutationLog {
+
+	private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+	/***
+	 * When sync() returns, relative to the mutation being on disk
+	 */
+	public enum SyncPolicy {
+		//After the mutation has been fsynced
+		EVERY_WRITE,
+		//Right away; a background thread fsyncs every interval
+		INTERVAL,
+		//After the mutation has been handed to the OS, which writes it out whenever it likes
+		OS
+	}
+
+	private static final String SEGMENT_PREFIX = "wal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final byte ADDED = 1;
+	private static final byte ADDED_ALL = 2;
+	private static final byte UPDATED = 3;
+	private static final byte DELETED = 4;
+	private static final byte CLEARED = 5;
+
+	private final File directory;
+	private final SyncPolicy syncPolicy;
+
+	//Sequence number of the last record appended by each thread
+	private final ThreadLocal<long[]> lastAppended = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	//Everything below is guarded by this
+	private ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+	private long appendedSequence = 0;
+	private long durableSequence = 0;
+	private boolean writing = false;
+	private IOException failure = null;
+	private long segmentNumber;
+	private FileOutputStream segment;
+
+	private ScheduledExecutorService syncer = null;
+
+	private WriteAheadLog(File directory, SyncPolicy syncPolicy) {
+		this.directory = directory;
+		this.syncPolicy = syncPolicy;
+	}
+
+	/***
+	 * Opens a log which appends to a new segment, after any existing one
+	 *
+	 * @param directory Where the segments live, created if needed
+	 * @param syncPolicy When sync() returns
+	 * @param syncIntervalMillis The time between background fsyncs
+	 * under the INTERVAL policy
+	 * @return The log
+	 * @throws IOException if the segment cannot be created
+	 */
+	public static WriteAheadLog open(File directory, SyncPolicy syncPolicy, long syncIntervalMillis) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create log directory " + directory);
+		}
+
+		final WriteAheadLog log = new WriteAheadLog(directory, syncPolicy);
+		List<Long> segments = segmentNumbers(directory);
+		synchronized(log) {
+			log.openSegment(segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1);
+		}
+
+		if(syncPolicy == SyncPolicy.INTERVAL) {
+			log.syncer = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("wal-sync-%d").setDaemon(true).build());
+			log.syncer.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						log.syncThrough(Long.MAX_VALUE);
+					} catch(IOException e) {
+						LOGGER.log(Level.SEVERE, "Write-ahead log sync failed", e);
+					}
+				}
+			}, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+
+		return log;
+	}
+
+	//------
+	//MutationLog
+	//------
+	@Override
+	public void added(User user) {
+		append(ADDED, user);
+	}
+
+	@Override
+	public void addedAll(List<User> users) {
+		append(ADDED_ALL, Users.newBuilder().addAllUsers(users).build());
+	}
+
+	@Override
+	public void updated(User user) {
+		append(UPDATED, user);
+	}
+
+	@Override
+	public void deleted(User user) {
+		append(DELETED, user);
+	}
+
+	@Override
+	public void cleared(String domainIdentifier) {
+		append(CLEARED, ClearRequest.newBuilder().addDomains(domainIdentifier).build());
+	}
+
+	/***
+	 * Waits, as the sync policy requires, for the mutations the
+	 * calling thread logged to become durable
+	 *
+	 * @throws IOException if the log could not be written
+	 */
+	public void sync() throws IOException {
+		if(syncPolicy == SyncPolicy.INTERVAL) {
+			synchronized(this) {
+				if(failure != null) {
+					throw failure;
+				}
+			}
+
+			return;
+		}
+
+		syncThrough(lastAppended.get()[0]);
+	}
+
+	/***
+	 * Starts a new segment once everything buffered is durable in the
+	 * current one
+	 *
+	 * @return The number of the new segment; every mutation logged from
+	 * now on goes to it or a later one
+	 * @throws IOException if the current segment cannot be completed
+	 */
+	public synchronized long rotate() throws IOException {
+		while(writing) {
+			awaitWrite();
+		}
+
+		writeBuffered(true);
+		segment.close();
+		openSegment(segmentNumber + 1);
+		return segmentNumber;
+	}
+
+	/***
+	 * Deletes the segments older than a given one, e.g. once a snapshot covers them
+	 *
+	 * @param firstKept The oldest segment to keep
+	 */
+	public void deleteSegmentsBefore(long firstKept) {
+		for(long number : segmentNumbers(directory)) {
+			if(number < firstKept && !segmentFile(directory, number).delete()) {
+				LOGGER.warning("Could not delete log segment " + segmentFile(directory, number));
+			}
+		}
+	}
+
+	/***
+	 * Makes everything logged so far durable and closes the log
+	 *
+	 * @throws IOException if the log could not be written
+	 */
+	public void close() throws IOException {
+		if(syncer != null) {
+			syncer.shutdownNow();
+		}
+
+		synchronized(this) {
+			while(writing) {
+				awaitWrite();
+			}
+
+			writeBuffered(true);
+			segment.close();
+		}
+	}
+
+	/***
+	 * Replays the logged mutations, oldest first. A record cut short at
+	 * the end of the last segment, as left by a crash, is truncated away.
+	 *
+	 * @param directory Where the segments live
+	 * @param firstSegment The oldest segment to replay
+	 * @param target What to apply the mutations to
+	 * @return The number of mutations replayed
+	 * @throws IOException if a segment cannot be read or is corrupt
+	 * anywhere but at its end
+	 */
+	public static long replay(File directory, long firstSegment, MutationLog target) throws IOException {
+		List<Long> segments = Lists.newArrayList();
+		for(long number : segmentNumbers(directory)) {
+			if(number >= firstSegment) {
+				segments.add(number);
+			}
+		}
+
+		long replayed = 0;
+		for(int i = 0; i < segments.size(); i++) {
+			replayed += replaySegment(segmentFile(directory, segments.get(i)), i == segments.size() - 1, target);
+		}
+
+		return replayed;
+	}
+
+	//------
+	//Appending and syncing
+	//------
+
+	private void append(byte type, MessageLite message) {
+		byte[] payload = new byte[1 + message.getSerializedSize()];
+		payload[0] = type;
+
+		CodedOutputStream out = CodedOutputStream.newInstance(payload, 1, payload.length - 1);
+		try {
+			message.writeTo(out);
+			out.checkNoSpaceLeft();
+		} catch(IOException e) {
+			throw new IllegalStateException("Cannot serialize " + message, e);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		synchronized(this) {
+			try {
+				CodedOutputStream frame = CodedOutputStream.newInstance(buffered, 16);
+				frame.writeRawVarint32(payload.length);
+				frame.writeRawLittleEndian32((int) crc.getValue());
+				frame.flush();
+			} catch(IOException e) {
+				throw new IllegalStateException("Cannot buffer a log record", e);
+			}
+
+			buffered.write(payload, 0, payload.length);
+			lastAppended.get()[0] = ++appendedSequence;
+		}
+	}
+
+	/***
+	 * Returns once every record up to a sequence number is durable,
+	 * writing out everything buffered unless another thread is at it
+	 */
+	private void syncThrough(long sequence) throws IOException {
+		while(true) {
+			byte[] toWrite;
+			long writtenThrough;
+			FileOutputStream file;
+
+			synchronized(this) {
+				while(true) {
+					if(failure != null) {
+						throw failure;
+					}
+
+					if(durableSequence >= Math.min(sequence, appendedSequence)) {
+						return;
+					}
+
+					if(!writing) {
+						break;
+					}
+
+					awaitWrite();
+				}
+
+				//We lead this group; records appended while
+				//we write belong to the next one
+				writing = true;
+				toWrite = buffered.toByteArray();
+				buffered.reset();
+				writtenThrough = appendedSequence;
+				file = segment;
+			}
+
+			IOException writeFailure = null;
+			try {
+				file.write(toWrite);
+				if(syncPolicy != SyncPolicy.OS) {
+					file.getFD().sync();
+				}
+			} catch(IOException e) {
+				writeFailure = e;
+			}
+
+			synchronized(this) {
+				writing = false;
+				if(writeFailure != null) {
+					failure = writeFailure;
+				} else {
+					durableSequence = writtenThrough;
+				}
+
+				notifyAll();
+			}
+		}
+	}
+
+	/***
+	 * Writes out everything buffered while holding the lock; only for
+	 * the rare operations which need the log to stand still
+	 */
+	private void writeBuffered(boolean fsync) throws IOException {
+		if(failure != null) {
+			throw failure;
+		}
+
+		try {
+			buffered.writeTo(segment);
+			buffered.reset();
+			if(fsync) {
+				segment.getFD().sync();
+			}
+		} catch(IOException e) {
+			failure = e;
+			throw e;
+		}
+
+		durableSequence = appendedSequence;
+		notifyAll();
+	}
+
+	private void awaitWrite() throws IOException {
+		try {
+			wait();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the write-ahead log");
+		}
+	}
+
+	private void openSegment(long number) throws IOException {
+		segmentNumber = number;
+		segment = new FileOutputStream(segmentFile(directory, number), true);
+	}
+
+	//------
+	//Segments and replay
+	//------
+
+	private static File segmentFile(File directory, long number) {
+		return new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+	}
+
+	/***
+	 * @return The numbers of the segments in the directory, ascending
+	 */
+	private static List<Long> segmentNumbers(File directory) {
+		List<Long> numbers = Lists.newArrayList();
+		String[] names = directory.list();
+
+		if(names != null) {
+			for(String name : names) {
+				if(name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+					try {
+						numbers.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+					} catch(NumberFormatException e) {
+						//Not a segment after all
+					}
+				}
+			}
+		}
+
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	private static long replaySegment(File file, boolean last, MutationLog target) throws IOException {
+		long replayed = 0;
+		long validLength = 0;
+		String corruption = null;
+
+		InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+		try {
+			CodedInputStream coded = CodedInputStream.newInstance(in);
+			coded.setSizeLimit(Integer.MAX_VALUE);
+
+			while(!coded.isAtEnd()) {
+				byte[] payload;
+				try {
+					int length = coded.readRawVarint32();
+					int checksum = coded.readRawLittleEndian32();
+					if(length <= 0) {
+						corruption = "record of length " + length;
+						break;
+					}
+
+					payload = coded.readRawBytes(length);
+					CRC32 crc = new CRC32();
+					crc.update(payload);
+					if((int) crc.getValue() != checksum) {
+						corruption = "checksum mismatch";
+						break;
+					}
+				} catch(InvalidProtocolBufferException e) {
+					corruption = e.getMessage();
+					break;
+				}
+
+				apply(payload, target);
+				replayed++;
+				validLength = coded.getTotalBytesRead();
+			}
+		} finally {
+			in.close();
+		}
+
+		if(corruption != null) {
+			if(!last) {
+				throw new IOException("Log segment " + file + " is corrupt after " + validLength + " bytes: " + corruption);
+			}
+
+			LOGGER.warning("Truncating log segment " + file + " after " + validLength + " bytes: " + corruption);
+			RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+			try {
+				truncated.setLength(validLength);
+			} finally {
+				truncated.close();
+			}
+		}
+
+		return replayed;
+	}
+
+	private static void apply(byte[] payload, MutationLog target) throws IOException {
+		CodedInputStream message = CodedInputStream.newInstance(payload, 1, payload.length - 1);
+
+		switch(payload[0]) {
+		case ADDED:
+			target.added(User.parseFrom(message));
+			break;
+		case ADDED_ALL:
+			target.addedAll(Users.parseFrom(message).getUsersList());
+			break;
+		case UPDATED:
+			target.updated(User.parseFrom(message));
+			break;
+		case DELETED:
+			target.deleted(User.parseFrom(message));
+			break;
+		case CLEARED:
+			target.cleared(ClearRequest.parseFrom(message).getDomains(0));
+			break;
+		default:
+			throw new IOException("Unknown log record type " + payload[0]);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.repuhire.autocompleter.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.protobuf.ServiceException;
+import com.repuhire.autocompleter.AdmissionController;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.BatchAutocompleteRequest;
+import com.repuhire.common.Common.BatchMatchedUsers;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.MatchedUsers;
+import com.repuhire.common.Common.User;
+import com.repuhire.common.Common.Users;
+import com.repuhire.user.test.TestUsers;
+
+/***
+ * Tests that autocompletes get less work as the queue grows or they
+ * slow down, while mutations are left alone
+ */
+public class AdmissionControllerTest {
+
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final Supplier<Integer> depthSupplier = new Supplier<Integer>() {
+		@Override
+		public Integer get() {
+			return queueDepth.get();
+		}
+	};
+
+	@After
+	public void release() {
+		AutocompleterService.getInstance().setAdmissionController(null);
+	}
+
+	@Test
+	public void testLevels() {
+		AdmissionController admission = new AdmissionController(depthSupplier, 10, 20, 50);
+		Assert.assertEquals(AdmissionController.Level.NORMAL, admission.admit());
+
+		queueDepth.set(10);
+		Assert.assertEquals(AdmissionController.Level.DEGRADED, admission.admit());
+
+		queueDepth.set(20);
+		Assert.assertEquals(AdmissionController.Level.SHED, admission.admit());
+
+		//Slow autocompletes degrade the next ones, until they speed up again
+		queueDepth.set(0);
+		for(int i = 0; i < 100; i++) {
+			admission.recordLatency(TimeUnit.SECONDS.toNanos(1));
+		}
+
+		Assert.assertEquals(AdmissionController.Level.DEGRADED, admission.admit());
+
+		for(int i = 0; i < 100; i++) {
+			admission.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+
+		Assert.assertEquals(AdmissionController.Level.NORMAL, admission.admit());
+		Assert.assertEquals(2, admission.getDegraded());
+		Assert.assertEquals(1, admission.getShed());
+	}
+
+	@Test
+	public void testNoLatencyThreshold() {
+		AdmissionController admission = new AdmissionController(depthSupplier, 10, 20, 0);
+		for(int i = 0; i < 100; i++) {
+			admission.recordLatency(TimeUnit.SECONDS.toNanos(1));
+		}
+
+		//However slow autocompletes get, only the queue degrades them
+		Assert.assertEquals(AdmissionController.Level.NORMAL, admission.admit());
+
+		queueDepth.set(10);
+		Assert.assertEquals(AdmissionController.Level.DEGRADED, admission.admit());
+		Assert.assertEquals(1, admission.getDegraded());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShedBeforeDegrade() {
+		new AdmissionController(depthSupplier, 20, 10, 50);
+	}
+
+	@Test
+	public void testDegradeAndShed() throws ServiceException {
+		AutocompleterService service = AutocompleterService.getInstance();
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("admissionDomain").build());
+
+		Users.Builder users = Users.newBuilder();
+		for(int uid = 0; uid < 20; uid++) {
+			users.addUsers(makeUser(uid));
+		}
+
+		service.addUsers(null, users.build());
+		service.setAdmissionController(new AdmissionController(depthSupplier, 10, 20, 1000));
+
+		//In full while the queue is short
+		MatchedUsers matched = service.autocomplete(null, request("adm", 10));
+		Assert.assertEquals(200, matched.getStatus().getStatusCode());
+		Assert.assertEquals(10, matched.getMatchedUsersCount());
+
+		//A few matches past the degrade threshold
+		queueDepth.set(10);
+		matched = service.autocomplete(null, request("admission", 10));
+		Assert.assertEquals(203, matched.getStatus().getStatusCode());
+		Assert.assertEquals(AdmissionController.DEGRADED_NUM_RESPONSES, matched.getMatchedUsersCount());
+		Assert.assertTrue(matched.getStatus().getMessage().contains("under load"));
+
+		BatchMatchedUsers batch = service.batchAutocomplete(null, BatchAutocompleteRequest.newBuilder()
+				.addRequests(request("adm", 10))
+				.build());
+		Assert.assertEquals(203, batch.getStatus().getStatusCode());
+		Assert.assertEquals(203, batch.getResults(0).getStatus().getStatusCode());
+		Assert.assertEquals(AdmissionController.DEGRADED_NUM_RESPONSES, batch.getResults(0).getMatchedUsersCount());
+
+		//Past the shed threshold, only what refines a cached keystroke
+		queueDepth.set(20);
+		matched = service.autocomplete(null, request("admi", 10));
+		Assert.assertEquals(203, matched.getStatus().getStatusCode());
+		Assert.assertEquals(AdmissionController.DEGRADED_NUM_RESPONSES, matched.getMatchedUsersCount());
+
+		matched = service.autocomplete(null, request("user", 10));
+		Assert.assertEquals(503, matched.getStatus().getStatusCode());
+		Assert.assertEquals(0, matched.getMatchedUsersCount());
+
+		//Mutations go through regardless
+		Assert.assertEquals(200, service.addUser(null, makeUser(20)).getStatusCode());
+	}
+
+	@Test
+	public void testAdmittedAsQueued() throws Exception {
+		AutocompleterService service = AutocompleterService.getInstance();
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("admissionDomain").build());
+		service.addUser(null, makeUser(0));
+
+		AdmissionController admission = new AdmissionController(depthSupplier, 10, 20, 0);
+		service.setAdmissionController(admission);
+
+		//Shed as queued behind a long queue, however short it is by the time it is answered
+		queueDepth.set(20);
+		AdmissionController.Admitted shed = admission.admitQueued();
+		queueDepth.set(0);
+		Assert.assertEquals(503, service.autocomplete(shed, request("user", 10)).getStatus().getStatusCode());
+
+		//The time waiting in the queue counts towards the latency
+		AdmissionController.Admitted waited = admission.admitQueued();
+		Thread.sleep(20);
+		Assert.assertEquals(200, service.autocomplete(waited, request("user", 10)).getStatus().getStatusCode());
+		Assert.assertTrue(admission.getAverageLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(20) >> 4);
+	}
+
+	private static AutocompleteRequest request(String typed, int numResponses) {
+		return AutocompleteRequest.newBuilder()
+				.setDomain("admissionDomain")
+				.setTyped(typed)
+				.setNumResponses(numResponses)
+				.build();
+	}
+
+	private static User makeUser(long uid) {
+		return TestUsers.makeUser("admissionDomain", "Admission", "User" + uid, uid, uid);
+	}
+}
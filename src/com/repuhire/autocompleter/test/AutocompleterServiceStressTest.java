@@ -0,0 +1,307 @@
+package com.repuhire.autocompleter.test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ServiceException;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.DeleteRequest;
+import com.repuhire.common.Common.MatchedUser;
+import com.repuhire.common.Common.MatchedUsers;
+import com.repuhire.common.Common.Status;
+import com.repuhire.common.Common.User;
+import com.repuhire.common.Common.Users;
+import com.repuhire.user.test.TestUsers;
+
+/***
+ * Hammers the service with mixed RPCs from many threads at once
+ * and checks that nothing breaks and no update gets lost.
+ */
+public class AutocompleterServiceStressTest {
+
+	private static final String SHARED_DOMAIN = "stressShared";
+	private static final String CHURN_DOMAIN = "stressChurn";
+	private static final String POPULAR_DOMAIN = "stressPopular";
+	private static final String BUDGET_DOMAIN = "stressBudget";
+	private static final String CLEARED_DOMAIN = "stressCleared";
+	private static final String KEPT_DOMAIN = "stressKept";
+	private static final int NUM_THREADS = 8;
+	private static final int OPS_PER_THREAD = 4000;
+	private static final String[] NAMES = {"john", "joe", "mary", "ann", "smith", "hari", "jo ann", "tackie"};
+
+	private final AutocompleterService service = AutocompleterService.getInstance();
+
+	@Test
+	public void mixedRpcStressTest() throws Exception {
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains(SHARED_DOMAIN).addDomains(CHURN_DOMAIN).build());
+
+		//Autocompleting an unknown domain fails, so make sure the shared one exists
+		User seed = User.newBuilder().setUid(-1).setFirstName("seed").setLastName("seed").setDomain(SHARED_DOMAIN)
+				.setEmail("seed@" + SHARED_DOMAIN + ".com").setTimesRecommended(0).build();
+		Assert.assertEquals(200, service.addUser(null, seed).getStatusCode());
+
+		ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
+		List<Future<Map<Long, User>>> results = Lists.newArrayList();
+
+		for(int thread = 0; thread < NUM_THREADS; thread++) {
+			results.add(pool.submit(new Worker(thread)));
+		}
+
+		//Every thread owns its own UIDs, so their final states merge cleanly
+		Map<Long, User> expected = Maps.newHashMap();
+		for(Future<Map<Long, User>> result : results) {
+			expected.putAll(result.get());
+		}
+
+		pool.shutdown();
+
+		//Each user carries a unique last name, which must find exactly it
+		for(User user : expected.values()) {
+			MatchedUsers matched = service.autocomplete(null, request(SHARED_DOMAIN, user.getLastName(), 5));
+			Assert.assertEquals(200, matched.getStatus().getStatusCode());
+			Assert.assertEquals("Lost or stale index entry for " + user, 1, matched.getMatchedUsersCount());
+			Assert.assertEquals(user, matched.getMatchedUsers(0).getUser());
+		}
+	}
+
+	@Test
+	public void sharedAutocompletesSeeOwnUpdates() throws Exception {
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains(POPULAR_DOMAIN).build());
+		for(int thread = 0; thread < NUM_THREADS; thread++) {
+			Assert.assertEquals(200, service.addUser(null, makePopularUser(thread, 0)).getStatusCode());
+		}
+
+		//Every thread types the same thing, so their autocompletes get
+		//shared, with a budget or without, yet each must see the update
+		//it just made
+		ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
+		List<Future<Void>> results = Lists.newArrayList();
+		for(int thread = 0; thread < NUM_THREADS; thread++) {
+			final int uid = thread;
+			results.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for(int version = 1; version <= OPS_PER_THREAD; version++) {
+						User updated = makePopularUser(uid, version);
+						Assert.assertEquals(200, service.update(null, updated).getStatusCode());
+
+						AutocompleteRequest request = request(POPULAR_DOMAIN, "pop", NUM_THREADS);
+						if(uid % 2 == 1) {
+							request = request.toBuilder().setBudgetMillis(10000).build();
+						}
+
+						MatchedUsers matched = service.autocomplete(null, request);
+						Assert.assertEquals(200, matched.getStatus().getStatusCode());
+						Assert.assertEquals(NUM_THREADS, matched.getMatchedUsersCount());
+
+						boolean seen = false;
+						for(MatchedUser matchedUser : matched.getMatchedUsersList()) {
+							User user = matchedUser.getUser();
+							Assert.assertTrue("Stale shared autocomplete " + user, user.getUid() != uid || user.getTimesRecommended() >= version);
+							seen |= user.equals(updated);
+						}
+
+						Assert.assertTrue(seen);
+					}
+
+					return null;
+				}
+			}));
+		}
+
+		for(Future<Void> result : results) {
+			result.get();
+		}
+
+		pool.shutdown();
+	}
+
+	@Test
+	public void budgetedAutocompletesOutlastedByAnIdenticalOne() throws Exception {
+
+		//Every user matches inside the last name, so ranking them takes
+		//long enough for another autocomplete to come in meanwhile
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains(BUDGET_DOMAIN).build());
+		Users.Builder users = Users.newBuilder();
+		for(int uid = 0; uid < 100000; uid++) {
+			users.addUsers(TestUsers.makeUser(BUDGET_DOMAIN, "Xavier", "Budget" + uid, uid));
+		}
+
+		Assert.assertEquals(200, service.addUsers(null, users.build()).getStatusCode());
+
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		int cutShortTaken = 0;
+		for(int round = 0; round < 20; round++) {
+
+			//Without a budget the first outlasts the budget of the second
+			//one, and with a tight budget it gets cut short before it
+			final AutocompleteRequest first = round % 2 == 0
+					? request(BUDGET_DOMAIN, "udg", 5)
+					: request(BUDGET_DOMAIN, "udg", 5).toBuilder().setBudgetMillis(2).build();
+			AutocompleteRequest second = request(BUDGET_DOMAIN, "udg", 5).toBuilder().setBudgetMillis(round % 2 == 0 ? 1 : 1000).build();
+
+			Future<MatchedUsers> firstMatched = pool.submit(new Callable<MatchedUsers>() {
+				@Override
+				public MatchedUsers call() throws Exception {
+					return service.autocomplete(null, first);
+				}
+			});
+
+			Thread.sleep(1);
+
+			//Either way the budgeted one gets the best matches found in time
+			MatchedUsers matched = service.autocomplete(null, second);
+			Assert.assertTrue(matched.getStatus().toString(), matched.getStatus().getStatusCode() == 200 || matched.getStatus().getStatusCode() == 206);
+			Assert.assertTrue(matched.getMatchedUsersCount() > 0);
+			Assert.assertTrue(matched.getMatchedUsersCount() <= 5);
+			if(round % 2 == 1 && matched.getStatus().getStatusCode() == 206) {
+				cutShortTaken++;
+			}
+
+			Assert.assertTrue(firstMatched.get().getMatchedUsersCount() > 0);
+		}
+
+		pool.shutdown();
+
+		//A generous budget only runs out by taking the matches of one cut short
+		Assert.assertTrue(cutShortTaken > 0);
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains(BUDGET_DOMAIN).build());
+	}
+
+	@Test
+	public void clearingDomainSparesRestOfBatch() throws Exception {
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains(CLEARED_DOMAIN).addDomains(KEPT_DOMAIN).build());
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread clearer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while(!done.get()) {
+						service.clearUsers(null, ClearRequest.newBuilder().addDomains(CLEARED_DOMAIN).build());
+					}
+				} catch(ServiceException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+
+		clearer.start();
+		try {
+			for(int uid = 0; uid < 200; uid++) {
+
+				//The domain cleared meanwhile comes first, so its users are
+				//still being indexed when it gets cleared
+				Users.Builder batch = Users.newBuilder();
+				for(int cleared = 0; cleared < 1000; cleared++) {
+					batch.addUsers(TestUsers.makeUser(CLEARED_DOMAIN, "Cleared", "User" + cleared, cleared));
+				}
+
+				batch.addUsers(TestUsers.makeUser(KEPT_DOMAIN, "Kept", "User" + uid, uid));
+				Status status = service.addUsers(null, batch.build());
+				Assert.assertTrue(status.getMessage(), status.getStatusCode() == 200 || status.getMessage().contains(" of 1001 users failed"));
+			}
+		} finally {
+			done.set(true);
+			clearer.join();
+		}
+
+		//Every user of the domain left alone made it in
+		MatchedUsers matched = service.autocomplete(null, request(KEPT_DOMAIN, "kept", 1000));
+		Assert.assertEquals(200, matched.getMatchedUsersCount());
+	}
+
+	private static User makePopularUser(long uid, int timesRecommended) {
+		return TestUsers.makeUser(POPULAR_DOMAIN, "Popular", "User" + uid, uid, timesRecommended);
+	}
+
+	/***
+	 * Randomly adds, updates, deletes and autocompletes its own users
+	 * in the shared domain, while also churning a domain which gets cleared.
+	 */
+	private class Worker implements Callable<Map<Long, User>> {
+
+		private final int thread;
+		private final Random random;
+		private final Map<Long, User> owned = Maps.newHashMap();
+
+		private Worker(int thread) {
+			this.thread = thread;
+			this.random = new Random(thread);
+		}
+
+		@Override
+		public Map<Long, User> call() throws Exception {
+
+			for(int op = 0; op < OPS_PER_THREAD; op++) {
+				long uid = thread * 1000L + random.nextInt(200);
+				int choice = random.nextInt(10);
+
+				if(choice < 3) {
+					User user = makeUser(SHARED_DOMAIN, uid, random.nextInt(20));
+					boolean added = service.addUser(null, user).getStatusCode() == 200;
+					Assert.assertEquals(!owned.containsKey(uid), added);
+					if(added) {
+						owned.put(uid, user);
+					}
+				} else if(choice < 5) {
+					User user = makeUser(SHARED_DOMAIN, uid, random.nextInt(20));
+					boolean updated = service.update(null, user).getStatusCode() == 200;
+					Assert.assertEquals(owned.containsKey(uid), updated);
+					if(updated) {
+						owned.put(uid, user);
+					}
+				} else if(choice < 6) {
+					DeleteRequest delete = DeleteRequest.newBuilder().setDomain(SHARED_DOMAIN).setUid((int) uid).build();
+					boolean deleted = service.delete(null, delete).getStatusCode() == 200;
+					Assert.assertEquals(owned.remove(uid) != null, deleted);
+				} else if(choice < 9) {
+					String typed = NAMES[random.nextInt(NAMES.length)].substring(0, 2);
+					MatchedUsers matched = service.autocomplete(null, request(SHARED_DOMAIN, typed, 10));
+					Assert.assertEquals(200, matched.getStatus().getStatusCode());
+					for(MatchedUser matchedUser : matched.getMatchedUsersList()) {
+						User user = matchedUser.getUser();
+						Assert.assertTrue(user.getFirstName().contains(typed) || user.getLastName().contains(typed));
+					}
+				} else {
+					service.addUser(null, makeUser(CHURN_DOMAIN, uid, 0));
+					service.autocomplete(null, request(CHURN_DOMAIN, "jo", 10));
+					if(random.nextInt(20) == 0) {
+						Assert.assertEquals(200, service.clearUsers(null, ClearRequest.newBuilder().addDomains(CHURN_DOMAIN).build()).getStatusCode());
+					}
+				}
+			}
+
+			return owned;
+		}
+
+		private User makeUser(String domain, long uid, int timesRecommended) {
+			return TestUsers.makeUser(domain, NAMES[random.nextInt(NAMES.length)], "u" + uid + "v" + random.nextInt(1000) + "x", uid, timesRecommended);
+		}
+	}
+
+	private static AutocompleteRequest request(String domain, String typed, int numResponses) {
+		AutocompleteRequest.Builder builder = AutocompleteRequest.newBuilder();
+		builder.setDomain(domain);
+		builder.setTyped(typed);
+		builder.setNumResponses(numResponses);
+
+		return builder.build();
+	}
+}
@@ -0,0 +1,101 @@
+package com.repuhire.autocompleter.test;
+
+import java.io.File;
+import java.io.FileFilter;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.io.Files;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.autocompleter.IndexMerger;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.DeleteRequest;
+import com.repuhire.common.Common.MatchedUsers;
+import com.repuhire.common.Common.Users;
+import com.repuhire.user.test.TestUsers;
+
+/***
+ * Tests that large domains move onto mapped indexes, and that
+ * index files are kept for exactly as long as they are needed
+ */
+public class IndexMergerTest {
+
+	//Larger than any other test's domain, so only this one gets merged
+	private static final int NUM_USERS = 40000;
+
+	@Test
+	public void testMergeAndRetire() throws Exception {
+		AutocompleterService service = AutocompleterService.getInstance();
+		File directory = Files.createTempDir();
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("mergeDomain").build());
+		Users.Builder users = Users.newBuilder();
+		for(long uid = 0; uid < NUM_USERS; uid++) {
+			users.addUsers(TestUsers.makeUser("mergeDomain", uid % 10 == 0 ? "Hari" : "John", "Smith" + uid, uid, uid % 7));
+		}
+
+		Assert.assertEquals(200, service.addUsers(null, users.build()).getStatusCode());
+
+		//Left behind by a crash mid-merge
+		Files.touch(new File(directory, "domain-orphan" + IndexMerger.FILE_SUFFIX));
+		IndexMerger merger = new IndexMerger(service, directory, NUM_USERS, 10);
+		Assert.assertEquals(1, merger.deleteUnused());
+
+		merger.mergeAll();
+		Assert.assertEquals(1, indexFiles(directory));
+		Assert.assertEquals(NUM_USERS / 10, autocomplete(service, "hari").getMatchedUsersCount());
+
+		//Too few changes to merge
+		service.delete(null, DeleteRequest.newBuilder().setDomain("mergeDomain").setUid(0).build());
+		merger.mergeAll();
+		Assert.assertEquals(1, indexFiles(directory));
+
+		//Without snapshots, the replaced index goes right away
+		for(int uid = 10; uid < 100; uid += 10) {
+			service.delete(null, DeleteRequest.newBuilder().setDomain("mergeDomain").setUid(uid).build());
+		}
+
+		merger.mergeAll();
+		Assert.assertEquals(1, indexFiles(directory));
+		Assert.assertEquals(NUM_USERS / 10 - 10, autocomplete(service, "hari").getMatchedUsersCount());
+
+		//With snapshots, it waits for a snapshot started after it was replaced
+		merger.setKeepForSnapshots(true);
+		int mark = merger.snapshotStarting();
+		for(int uid = 100; uid < 200; uid += 10) {
+			service.delete(null, DeleteRequest.newBuilder().setDomain("mergeDomain").setUid(uid).build());
+		}
+
+		merger.mergeAll();
+		Assert.assertEquals(2, indexFiles(directory));
+		merger.snapshotTaken(mark);
+		Assert.assertEquals(2, indexFiles(directory));
+		merger.snapshotTaken(merger.snapshotStarting());
+		Assert.assertEquals(1, indexFiles(directory));
+
+		//As does the index of a cleared domain
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("mergeDomain").build());
+		merger.mergeAll();
+		Assert.assertEquals(1, indexFiles(directory));
+		merger.snapshotTaken(merger.snapshotStarting());
+		Assert.assertEquals(0, indexFiles(directory));
+
+		directory.delete();
+	}
+
+	private static int indexFiles(File directory) {
+		return directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().endsWith(IndexMerger.FILE_SUFFIX);
+			}
+		}).length;
+	}
+
+	private static MatchedUsers autocomplete(AutocompleterService service, String typed) throws Exception {
+		return service.autocomplete(null, AutocompleteRequest.newBuilder().setDomain("mergeDomain").setTyped(typed).setNumResponses(NUM_USERS).build());
+	}
+}
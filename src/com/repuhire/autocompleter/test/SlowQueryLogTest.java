@@ -0,0 +1,154 @@
+package com.repuhire.autocompleter.test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.ServiceException;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.autocompleter.SlowQueryLog;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.User;
+import com.repuhire.common.Common.Users;
+import com.repuhire.user.QueryTrace;
+
+/***
+ * Tests that slow autocompletes get logged with their phases, without
+ * ever holding up the query
+ */
+public class SlowQueryLogTest {
+
+	private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+	private final AutocompleterService service = AutocompleterService.getInstance();
+	private final LinkedBlockingQueue<String> logged = new LinkedBlockingQueue<String>();
+	private Handler handler;
+
+	@Before
+	public void capture() {
+		handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				logged.add(record.getMessage());
+			}
+
+			@Override
+			public void flush() {}
+
+			@Override
+			public void close() {}
+		};
+
+		LOGGER.addHandler(handler);
+	}
+
+	@After
+	public void release() {
+		LOGGER.removeHandler(handler);
+		service.setSlowQueryLog(null);
+	}
+
+	@Test
+	public void testPhasesLogged() throws ServiceException, InterruptedException {
+		Users.Builder users = Users.newBuilder();
+		for(int uid = 0; uid < 100; uid++) {
+			users.addUsers(User.newBuilder().setUid(uid).setDomain("slowDomain").setFirstName("John" + uid)
+					.setLastName("Smith").setEmail(uid + "@smith.com").setTimesRecommended(uid));
+		}
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("slowDomain").build());
+		service.addUsers(null, users.build());
+
+		//Every query is slow at a threshold of 0
+		SlowQueryLog slowQueries = new SlowQueryLog(0, SlowQueryLog.DEFAULT_CAPACITY);
+		service.setSlowQueryLog(slowQueries);
+		try {
+			AutocompleteRequest request = AutocompleteRequest.newBuilder().setDomain("slowDomain").setTyped("smi").setNumResponses(5).build();
+			Assert.assertEquals(5, service.autocomplete(null, request).getMatchedUsersCount());
+
+			String message = logged.poll(10, TimeUnit.SECONDS);
+			Assert.assertNotNull(message);
+			Assert.assertTrue(message, message.startsWith("Slow autocomplete of \"smi\" in domain slowDomain for 5 responses"));
+			for(String phase : new String[]{"tokenize", "lock wait", "candidates", "match", "results", "response"}) {
+				Assert.assertTrue(message, message.contains(phase + " "));
+			}
+
+			Assert.assertTrue(message, message.contains("100 scanned, 100 matched"));
+		} finally {
+			slowQueries.shutdown();
+		}
+
+		//Fast queries are not logged
+		SlowQueryLog never = new SlowQueryLog(60000, SlowQueryLog.DEFAULT_CAPACITY);
+		try {
+			Assert.assertFalse(never.record("slowDomain", "smi", 5, new QueryTrace(), 0, 1000));
+		} finally {
+			never.shutdown();
+		}
+	}
+
+	@Test
+	public void testFullQueueDrops() throws InterruptedException {
+
+		//Hold the writer up on the first query so the rest queue up
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		Handler blocking = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				writing.countDown();
+				try {
+					proceed.await();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void flush() {}
+
+			@Override
+			public void close() {}
+		};
+
+		LOGGER.addHandler(blocking);
+		SlowQueryLog slowQueries = new SlowQueryLog(0, 2);
+		try {
+			slowQueries.record("domain", "first", 5, new QueryTrace(), 0, 1);
+			Assert.assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+			//Two fit in the queue, the other three are dropped without waiting
+			for(int i = 0; i < 5; i++) {
+				Assert.assertTrue(slowQueries.record("domain", "queued" + i, 5, new QueryTrace(), 0, 1));
+			}
+
+			proceed.countDown();
+			List<String> messages = Lists.newArrayList();
+			for(int i = 0; i < 3; i++) {
+				String message = logged.poll(10, TimeUnit.SECONDS);
+				Assert.assertNotNull(message);
+				messages.add(message);
+			}
+
+			Assert.assertTrue(messages.get(0), messages.get(0).contains("\"first\""));
+			Assert.assertTrue(messages.get(1), messages.get(1).contains("\"queued0\"") && messages.get(1).contains("3 slow queries dropped"));
+			Assert.assertTrue(messages.get(2), messages.get(2).contains("\"queued1\""));
+			Assert.assertNull(logged.poll(100, TimeUnit.MILLISECONDS));
+		} finally {
+			LOGGER.removeHandler(blocking);
+			slowQueries.shutdown();
+		}
+	}
+}
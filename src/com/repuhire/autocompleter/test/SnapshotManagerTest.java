@@ -0,0 +1,139 @@
+package com.repuhire.autocompleter.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.autocompleter.SnapshotManager;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.SnapshotRequest;
+import com.repuhire.user.Domain;
+import com.repuhire.user.StoredUser;
+import com.repuhire.user.StoredUserStructure;
+import com.repuhire.user.test.TestUsers;
+
+/***
+ * Tests that snapshots bring back every domain exactly as it was
+ */
+public class SnapshotManagerTest {
+
+	private static final String[] NAMES = {"john", "joanna", "mary ann", "smith", "jo", "hari", "annsley", "tackie"};
+
+	@Test
+	public void testRoundTrip() throws IOException {
+
+		Random random = new Random(3);
+		Map<Domain, StoredUserStructure> domains = Maps.newHashMap();
+
+		for(String domain : new String[]{"domain1", "domain2", "empty"}) {
+			StoredUserStructure structure = new StoredUserStructure();
+			for(long uid = -5; uid < (domain.equals("empty") ? -5 : 300); uid++) {
+				structure.addUser(new StoredUser(TestUsers.makeUser(domain, NAMES[random.nextInt(NAMES.length)], NAMES[random.nextInt(NAMES.length)], uid, random.nextInt(1000))));
+			}
+
+			domains.put(new Domain(domain), structure);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SnapshotManager.write(domains, 7, out);
+		SnapshotManager.Snapshot snapshot = SnapshotManager.read(new ByteArrayInputStream(out.toByteArray()));
+		Map<Domain, StoredUserStructure> restored = snapshot.getDomains();
+		Assert.assertEquals(7, snapshot.getLogSegment());
+
+		Assert.assertEquals(domains.keySet(), restored.keySet());
+		for(Domain domain : domains.keySet()) {
+			StoredUserStructure original = domains.get(domain);
+			StoredUserStructure copy = restored.get(domain);
+			Assert.assertEquals(original.size(), copy.size());
+
+			for(String typed : new String[]{"j", "jo", "an", "a s", "ith", "n", "tackie hari"}) {
+				Assert.assertEquals(typed, Lists.newArrayList(original.autocomplete(typed, Integer.MAX_VALUE)), Lists.newArrayList(copy.autocomplete(typed, Integer.MAX_VALUE)));
+			}
+		}
+	}
+
+	@Test
+	public void testMappedDomainRoundTrip() throws IOException {
+
+		Random random = new Random(5);
+		File directory = Files.createTempDir();
+		StoredUserStructure structure = new StoredUserStructure();
+		for(long uid = 0; uid < 300; uid++) {
+			structure.addUser(new StoredUser(TestUsers.makeUser("mapped", NAMES[random.nextInt(NAMES.length)], NAMES[random.nextInt(NAMES.length)], uid, random.nextInt(1000))));
+		}
+
+		//Only a reference to the base is written, along with what changed since
+		Assert.assertTrue(structure.mergeInto(new File(directory, "base.idx"), null));
+		structure.deleteUser(3);
+		structure.updateUser(TestUsers.makeUser("mapped", "hari", "seshadri", 4, 5));
+		structure.addUser(new StoredUser(TestUsers.makeUser("mapped", "tackie", "jo", 300, 1)));
+
+		Map<Domain, StoredUserStructure> domains = Maps.newHashMap();
+		domains.put(new Domain("mapped"), structure);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SnapshotManager.write(domains, 0, out);
+		StoredUserStructure copy = SnapshotManager.read(new ByteArrayInputStream(out.toByteArray())).getDomains().get(new Domain("mapped"));
+
+		Assert.assertEquals(structure.getBaseFile(), copy.getBaseFile());
+		Assert.assertEquals(structure.size(), copy.size());
+		Assert.assertEquals(structure.getDeltaSize(), copy.getDeltaSize());
+		for(String typed : new String[]{"j", "jo", "an", "a s", "ith", "n", "tackie hari", "sesh"}) {
+			Assert.assertEquals(typed, Lists.newArrayList(structure.autocomplete(typed, Integer.MAX_VALUE)), Lists.newArrayList(copy.autocomplete(typed, Integer.MAX_VALUE)));
+		}
+
+		new File(directory, "base.idx").delete();
+		directory.delete();
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsGarbage() throws IOException {
+		SnapshotManager.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+	}
+
+	@Test
+	public void testSnapshotAndRestore() throws Exception {
+
+		AutocompleterService service = AutocompleterService.getInstance();
+		File directory = Files.createTempDir();
+		SnapshotManager snapshots = new SnapshotManager(service, new File(directory, "snapshots"));
+
+		//Nothing to restore yet, and nothing to snapshot over RPC
+		Assert.assertFalse(snapshots.restore());
+		service.setSnapshotManager(null);
+		Assert.assertEquals(500, service.snapshot(null, SnapshotRequest.getDefaultInstance()).getStatusCode());
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("snapshotDomain").build());
+		service.addUser(null, TestUsers.makeUser("snapshotDomain", "Hari", "Seshadri", 1, 0));
+
+		service.setSnapshotManager(snapshots);
+		try {
+			Assert.assertEquals(200, service.snapshot(null, SnapshotRequest.getDefaultInstance()).getStatusCode());
+		} finally {
+			service.setSnapshotManager(null);
+		}
+
+		//Changes after the snapshot are gone once it is restored
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("snapshotDomain").build());
+		Assert.assertTrue(snapshots.restore());
+
+		AutocompleteRequest request = AutocompleteRequest.newBuilder().setDomain("snapshotDomain").setTyped("sesh").setNumResponses(5).build();
+		Assert.assertEquals(1, service.autocomplete(null, request).getMatchedUsersCount());
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("snapshotDomain").build());
+		snapshots.getSnapshotFile().delete();
+		snapshots.getSnapshotFile().getParentFile().delete();
+		directory.delete();
+	}
+}
@@ -0,0 +1,210 @@
+package com.repuhire.autocompleter.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.autocompleter.SnapshotManager;
+import com.repuhire.autocompleter.WriteAheadLog;
+import com.repuhire.autocompleter.WriteAheadLog.SyncPolicy;
+import com.repuhire.common.Common.AutocompleteRequest;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.DeleteRequest;
+import com.repuhire.common.Common.MatchedUsers;
+import com.repuhire.common.Common.User;
+import com.repuhire.user.MutationLog;
+import com.repuhire.user.test.TestUsers;
+
+/***
+ * Tests that logged mutations come back in order after a crash
+ */
+public class WriteAheadLogTest {
+
+	@Test
+	public void testReplayInOrder() throws IOException {
+		File directory = Files.createTempDir();
+
+		WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 50);
+		log.added(TestUsers.makeUser("walDomain", "Joe", "Doe", 1));
+		log.addedAll(Lists.newArrayList(TestUsers.makeUser("walDomain", "John", "Smith", 2), TestUsers.makeUser("walDomain", "Mary", "Ann", 3)));
+		log.updated(TestUsers.makeUser("walDomain", "Moe", "Doe", 1));
+		log.sync();
+		log.deleted(TestUsers.makeUser("walDomain", "John", "Smith", 2));
+		log.cleared("walDomain");
+		log.close();
+
+		RecordingLog replayed = new RecordingLog();
+		Assert.assertEquals(5, WriteAheadLog.replay(directory, 0, replayed));
+		Assert.assertEquals(Lists.newArrayList("added 1", "addedAll 2 3", "updated 1 Moe", "deleted 2", "cleared walDomain"), replayed.records);
+
+		deleteAll(directory);
+	}
+
+	@Test
+	public void testTornTailIsTruncated() throws IOException {
+		File directory = Files.createTempDir();
+
+		WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 50);
+		log.added(TestUsers.makeUser("walDomain", "Joe", "Doe", 1));
+		log.added(TestUsers.makeUser("walDomain", "John", "Smith", 2));
+		log.close();
+
+		//A crash in the middle of writing the third record
+		File segment = directory.listFiles()[0];
+		FileOutputStream out = new FileOutputStream(segment, true);
+		out.write(new byte[]{40, 1, 2, 3, 4, 5});
+		out.close();
+
+		Assert.assertEquals(2, WriteAheadLog.replay(directory, 0, new RecordingLog()));
+
+		//Once truncated, the segment is no longer the last one and must replay cleanly
+		log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 50);
+		log.added(TestUsers.makeUser("walDomain", "Mary", "Ann", 3));
+		log.close();
+
+		RecordingLog replayed = new RecordingLog();
+		Assert.assertEquals(3, WriteAheadLog.replay(directory, 0, replayed));
+		Assert.assertEquals("added 3", replayed.records.get(2));
+
+		deleteAll(directory);
+	}
+
+	@Test
+	public void testConcurrentGroupCommit() throws Exception {
+		final File directory = Files.createTempDir();
+		final WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 50);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<Void>> results = Lists.newArrayList();
+		for(int thread = 0; thread < 8; thread++) {
+			final long firstUid = thread * 1000L;
+			results.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					for(long uid = firstUid; uid < firstUid + 200; uid++) {
+						log.added(TestUsers.makeUser("walDomain", "Joe", "Doe", uid));
+						log.sync();
+					}
+
+					return null;
+				}
+			}));
+		}
+
+		for(Future<Void> result : results) {
+			result.get();
+		}
+
+		pool.shutdown();
+		log.close();
+
+		Assert.assertEquals(1600, WriteAheadLog.replay(directory, 0, new RecordingLog()));
+		deleteAll(directory);
+	}
+
+	@Test
+	public void testRecoveryOnTopOfSnapshot() throws Exception {
+		AutocompleterService service = AutocompleterService.getInstance();
+		File directory = Files.createTempDir();
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("walDomain").build());
+		WriteAheadLog log = WriteAheadLog.open(new File(directory, "wal"), SyncPolicy.EVERY_WRITE, 50);
+		SnapshotManager snapshots = new SnapshotManager(service, new File(directory, "snapshots"));
+		snapshots.setWriteAheadLog(log);
+		service.setWriteAheadLog(log);
+
+		try {
+			service.addUser(null, TestUsers.makeUser("walDomain", "Joe", "Doe", 1));
+			service.addUser(null, TestUsers.makeUser("walDomain", "John", "Smith", 2));
+			snapshots.snapshot();
+
+			//Only in the log
+			service.update(null, TestUsers.makeUser("walDomain", "Moe", "Doe", 1));
+			service.delete(null, DeleteRequest.newBuilder().setDomain("walDomain").setUid(2).build());
+			service.addUser(null, TestUsers.makeUser("walDomain", "Mary", "Tackie", 3));
+		} finally {
+			service.setWriteAheadLog(null);
+			log.close();
+		}
+
+		//Lose everything in memory, as a crash would
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("walDomain").build());
+		Assert.assertTrue(snapshots.restore());
+		Assert.assertEquals(2, autocomplete(service, "o").getMatchedUsersCount());
+
+		WriteAheadLog.replay(new File(directory, "wal"), snapshots.getRestoredLogSegment(), service.getReplayTarget());
+		MatchedUsers result = autocomplete(service, "o");
+		Assert.assertEquals(1, result.getMatchedUsersCount());
+		Assert.assertEquals("Moe", result.getMatchedUsers(0).getUser().getFirstName());
+		Assert.assertEquals(1, autocomplete(service, "tackie").getMatchedUsersCount());
+		Assert.assertEquals(0, autocomplete(service, "smith").getMatchedUsersCount());
+
+		service.clearUsers(null, ClearRequest.newBuilder().addDomains("walDomain").build());
+		deleteAll(directory);
+	}
+
+	private static MatchedUsers autocomplete(AutocompleterService service, String typed) throws Exception {
+		return service.autocomplete(null, AutocompleteRequest.newBuilder().setDomain("walDomain").setTyped(typed).setNumResponses(10).build());
+	}
+
+	private static void deleteAll(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				deleteAll(child);
+			}
+		}
+
+		file.delete();
+	}
+
+	/***
+	 * Remembers what was replayed
+	 */
+	private static class RecordingLog implements MutationLog {
+
+		private final List<String> records = Lists.newArrayList();
+
+		@Override
+		public void added(User user) {
+			records.add("added " + user.getUid());
+		}
+
+		@Override
+		public void addedAll(List<User> users) {
+			StringBuilder record = new StringBuilder("addedAll");
+			for(User user : users) {
+				record.append(" ").append(user.getUid());
+			}
+
+			records.add(record.toString());
+		}
+
+		@Override
+		public void updated(User user) {
+			records.add("updated " + user.getUid() + " " + user.getFirstName());
+		}
+
+		@Override
+		public void deleted(User user) {
+			records.add("deleted " + user.getUid());
+		}
+
+		@Override
+		public void cleared(String domainIdentifier) {
+			records.add("cleared " + domainIdentifier);
+		}
+	}
+}
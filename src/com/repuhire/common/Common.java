@@ -4261,6 +4261,10 @@ public final class Common {
     // required int32 num_responses = 3;
     boolean hasNumResponses();
     int getNumResponses();
+
+    // optional int32 budget_millis = 4;
+    boolean hasBudgetMillis();
+    int getBudgetMillis();
   }
   public static final class AutocompleteRequest extends
       com.google.protobuf.GeneratedMessage
@@ -4373,10 +4377,23 @@ public final class Common {
       return numResponses_;
     }
 
+    // optional int32 budget_millis = 4;
+    public static final int BUDGET_MILLIS_FIELD_NUMBER = 4;
+    private int budgetMillis_;
+    @Override
+	public boolean hasBudgetMillis() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    @Override
+	public int getBudgetMillis() {
+      return budgetMillis_;
+    }
+
     private void initFields() {
       typed_ = "";
       domain_ = "";
       numResponses_ = 0;
+      budgetMillis_ = 0;
     }
     private byte memoizedIsInitialized = -1;
     @Override
@@ -4413,6 +4430,9 @@ public final class Common {
       if (((bitField0_ & 0x00000004) == 0x00000004)) {
         output.writeInt32(3, numResponses_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeInt32(4, budgetMillis_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -4435,6 +4455,10 @@ public final class Common {
         size += com.google.protobuf.CodedOutputStream
           .computeInt32Size(3, numResponses_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(4, budgetMillis_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -4569,6 +4593,8 @@ public final class Common {
         bitField0_ = (bitField0_ & ~0x00000002);
         numResponses_ = 0;
         bitField0_ = (bitField0_ & ~0x00000004);
+        budgetMillis_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
 
@@ -4624,6 +4650,10 @@ public final class Common {
           to_bitField0_ |= 0x00000004;
         }
         result.numResponses_ = numResponses_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.budgetMillis_ = budgetMillis_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -4650,6 +4680,9 @@ public final class Common {
         if (other.hasNumResponses()) {
           setNumResponses(other.getNumResponses());
         }
+        if (other.hasBudgetMillis()) {
+          setBudgetMillis(other.getBudgetMillis());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -4710,6 +4743,11 @@ public final class Common {
               numResponses_ = input.readInt32();
               break;
             }
+            case 32: {
+              bitField0_ |= 0x00000008;
+              budgetMillis_ = input.readInt32();
+              break;
+            }
           }
         }
       }
@@ -4815,6 +4853,29 @@ public final class Common {
         return this;
       }
 
+      // optional int32 budget_millis = 4;
+      private int budgetMillis_ ;
+      @Override
+	public boolean hasBudgetMillis() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      @Override
+	public int getBudgetMillis() {
+        return budgetMillis_;
+      }
+      public Builder setBudgetMillis(int value) {
+        bitField0_ |= 0x00000008;
+        budgetMillis_ = value;
+        onChanged();
+        return this;
+      }
+      public Builder clearBudgetMillis() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        budgetMillis_ = 0;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:AutocompleteRequest)
     }
 
@@ -4826,97 +4887,77 @@ public final class Common {
     // @@protoc_insertion_point(class_scope:AutocompleteRequest)
   }
 
-  public interface DeleteRequestOrBuilder
+  public interface BatchAutocompleteRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
 
-    // required int32 uid = 1;
-    boolean hasUid();
-    int getUid();
-
-    // required string domain = 2;
-    boolean hasDomain();
-    String getDomain();
+    // repeated .AutocompleteRequest requests = 1;
+    java.util.List<Common.AutocompleteRequest>
+        getRequestsList();
+    Common.AutocompleteRequest getRequests(int index);
+    int getRequestsCount();
+    java.util.List<? extends Common.AutocompleteRequestOrBuilder>
+        getRequestsOrBuilderList();
+    Common.AutocompleteRequestOrBuilder getRequestsOrBuilder(
+        int index);
   }
-  public static final class DeleteRequest extends
+  public static final class BatchAutocompleteRequest extends
       com.google.protobuf.GeneratedMessage
-      implements DeleteRequestOrBuilder {
-    // Use DeleteRequest.newBuilder() to construct.
-    private DeleteRequest(Builder builder) {
+      implements BatchAutocompleteRequestOrBuilder {
+    // Use BatchAutocompleteRequest.newBuilder() to construct.
+    private BatchAutocompleteRequest(Builder builder) {
       super(builder);
     }
-    private DeleteRequest(boolean noInit) {}
+    private BatchAutocompleteRequest(boolean noInit) {}
 
-    private static final DeleteRequest defaultInstance;
-    public static DeleteRequest getDefaultInstance() {
+    private static final BatchAutocompleteRequest defaultInstance;
+    public static BatchAutocompleteRequest getDefaultInstance() {
       return defaultInstance;
     }
 
     @Override
-	public DeleteRequest getDefaultInstanceForType() {
+	public BatchAutocompleteRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
 
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
-      return Common.internal_static_DeleteRequest_descriptor;
+      return Common.internal_static_BatchAutocompleteRequest_descriptor;
     }
 
     @Override
 	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return Common.internal_static_DeleteRequest_fieldAccessorTable;
+      return Common.internal_static_BatchAutocompleteRequest_fieldAccessorTable;
     }
 
-    private int bitField0_;
-    // required int32 uid = 1;
-    public static final int UID_FIELD_NUMBER = 1;
-    private int uid_;
+    // repeated .AutocompleteRequest requests = 1;
+    public static final int REQUESTS_FIELD_NUMBER = 1;
+    private java.util.List<Common.AutocompleteRequest> requests_;
     @Override
-	public boolean hasUid() {
-      return ((bitField0_ & 0x00000001) == 0x00000001);
+	public java.util.List<Common.AutocompleteRequest> getRequestsList() {
+      return requests_;
     }
     @Override
-	public int getUid() {
-      return uid_;
+	public java.util.List<? extends Common.AutocompleteRequestOrBuilder>
+        getRequestsOrBuilderList() {
+      return requests_;
     }
-
-    // required string domain = 2;
-    public static final int DOMAIN_FIELD_NUMBER = 2;
-    private java.lang.Object domain_;
     @Override
-	public boolean hasDomain() {
-      return ((bitField0_ & 0x00000002) == 0x00000002);
+	public int getRequestsCount() {
+      return requests_.size();
     }
     @Override
-	public String getDomain() {
-      java.lang.Object ref = domain_;
-      if (ref instanceof String) {
-        return (String) ref;
-      } else {
-        com.google.protobuf.ByteString bs =
-            (com.google.protobuf.ByteString) ref;
-        String s = bs.toStringUtf8();
-        if (com.google.protobuf.Internal.isValidUtf8(bs)) {
-          domain_ = s;
-        }
-        return s;
-      }
+	public Common.AutocompleteRequest getRequests(int index) {
+      return requests_.get(index);
     }
-    private com.google.protobuf.ByteString getDomainBytes() {
-      java.lang.Object ref = domain_;
-      if (ref instanceof String) {
-        com.google.protobuf.ByteString b =
-            com.google.protobuf.ByteString.copyFromUtf8((String) ref);
-        domain_ = b;
-        return b;
-      } else {
-        return (com.google.protobuf.ByteString) ref;
-      }
+    @Override
+	public Common.AutocompleteRequestOrBuilder getRequestsOrBuilder(
+        int index) {
+      return requests_.get(index);
     }
 
     private void initFields() {
-      uid_ = 0;
-      domain_ = "";
+      requests_ = java.util.Collections.emptyList();
     }
     private byte memoizedIsInitialized = -1;
     @Override
@@ -4924,13 +4965,11 @@ public final class Common {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
 
-      if (!hasUid()) {
-        memoizedIsInitialized = 0;
-        return false;
-      }
-      if (!hasDomain()) {
-        memoizedIsInitialized = 0;
-        return false;
+      for (int i = 0; i < getRequestsCount(); i++) {
+        if (!getRequests(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
       }
       memoizedIsInitialized = 1;
       return true;
@@ -4940,11 +4979,8 @@ public final class Common {
 	public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
-      if (((bitField0_ & 0x00000001) == 0x00000001)) {
-        output.writeInt32(1, uid_);
-      }
-      if (((bitField0_ & 0x00000002) == 0x00000002)) {
-        output.writeBytes(2, getDomainBytes());
+      for (int i = 0; i < requests_.size(); i++) {
+        output.writeMessage(1, requests_.get(i));
       }
       getUnknownFields().writeTo(output);
     }
@@ -4956,13 +4992,9 @@ public final class Common {
       if (size != -1) return size;
 
       size = 0;
-      if (((bitField0_ & 0x00000001) == 0x00000001)) {
-        size += com.google.protobuf.CodedOutputStream
-          .computeInt32Size(1, uid_);
-      }
-      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+      for (int i = 0; i < requests_.size(); i++) {
         size += com.google.protobuf.CodedOutputStream
-          .computeBytesSize(2, getDomainBytes());
+          .computeMessageSize(1, requests_.get(i));
       }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
@@ -4976,41 +5008,41 @@ public final class Common {
       return super.writeReplace();
     }
 
-    public static Common.DeleteRequest parseFrom(
+    public static Common.BatchAutocompleteRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data).buildParsed();
     }
-    public static Common.DeleteRequest parseFrom(
+    public static Common.BatchAutocompleteRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data, extensionRegistry)
                .buildParsed();
     }
-    public static Common.DeleteRequest parseFrom(byte[] data)
+    public static Common.BatchAutocompleteRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data).buildParsed();
     }
-    public static Common.DeleteRequest parseFrom(
+    public static Common.BatchAutocompleteRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data, extensionRegistry)
                .buildParsed();
     }
-    public static Common.DeleteRequest parseFrom(java.io.InputStream input)
+    public static Common.BatchAutocompleteRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
       return newBuilder().mergeFrom(input).buildParsed();
     }
-    public static Common.DeleteRequest parseFrom(
+    public static Common.BatchAutocompleteRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
       return newBuilder().mergeFrom(input, extensionRegistry)
                .buildParsed();
     }
-    public static Common.DeleteRequest parseDelimitedFrom(java.io.InputStream input)
+    public static Common.BatchAutocompleteRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
       Builder builder = newBuilder();
       if (builder.mergeDelimitedFrom(input)) {
@@ -5019,7 +5051,7 @@ public final class Common {
         return null;
       }
     }
-    public static Common.DeleteRequest parseDelimitedFrom(
+    public static Common.BatchAutocompleteRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
@@ -5030,12 +5062,12 @@ public final class Common {
         return null;
       }
     }
-    public static Common.DeleteRequest parseFrom(
+    public static Common.BatchAutocompleteRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
       return newBuilder().mergeFrom(input).buildParsed();
     }
-    public static Common.DeleteRequest parseFrom(
+    public static Common.BatchAutocompleteRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
@@ -5046,7 +5078,7 @@ public final class Common {
     public static Builder newBuilder() { return Builder.create(); }
     @Override
 	public Builder newBuilderForType() { return newBuilder(); }
-    public static Builder newBuilder(Common.DeleteRequest prototype) {
+    public static Builder newBuilder(Common.BatchAutocompleteRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     @Override
@@ -5060,19 +5092,19 @@ public final class Common {
     }
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
-       implements Common.DeleteRequestOrBuilder {
+       implements Common.BatchAutocompleteRequestOrBuilder {
       public static final com.google.protobuf.Descriptors.Descriptor
           getDescriptor() {
-        return Common.internal_static_DeleteRequest_descriptor;
+        return Common.internal_static_BatchAutocompleteRequest_descriptor;
       }
 
       @Override
 	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return Common.internal_static_DeleteRequest_fieldAccessorTable;
+        return Common.internal_static_BatchAutocompleteRequest_fieldAccessorTable;
       }
 
-      // Construct using Common.DeleteRequest.newBuilder()
+      // Construct using Common.BatchAutocompleteRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
@@ -5083,6 +5115,7 @@ public final class Common {
       }
       private void maybeForceBuilderInitialization() {
         if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getRequestsFieldBuilder();
         }
       }
       private static Builder create() {
@@ -5092,10 +5125,12 @@ public final class Common {
       @Override
 	public Builder clear() {
         super.clear();
-        uid_ = 0;
-        bitField0_ = (bitField0_ & ~0x00000001);
-        domain_ = "";
-        bitField0_ = (bitField0_ & ~0x00000002);
+        if (requestsBuilder_ == null) {
+          requests_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+        } else {
+          requestsBuilder_.clear();
+        }
         return this;
       }
 
@@ -5107,26 +5142,26 @@ public final class Common {
       @Override
 	public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return Common.DeleteRequest.getDescriptor();
+        return Common.BatchAutocompleteRequest.getDescriptor();
       }
 
       @Override
-	public Common.DeleteRequest getDefaultInstanceForType() {
-        return Common.DeleteRequest.getDefaultInstance();
+	public Common.BatchAutocompleteRequest getDefaultInstanceForType() {
+        return Common.BatchAutocompleteRequest.getDefaultInstance();
       }
 
       @Override
-	public Common.DeleteRequest build() {
-        Common.DeleteRequest result = buildPartial();
+	public Common.BatchAutocompleteRequest build() {
+        Common.BatchAutocompleteRequest result = buildPartial();
         if (!result.isInitialized()) {
           throw newUninitializedMessageException(result);
         }
         return result;
       }
 
-      private Common.DeleteRequest buildParsed()
+      private Common.BatchAutocompleteRequest buildParsed()
           throws com.google.protobuf.InvalidProtocolBufferException {
-        Common.DeleteRequest result = buildPartial();
+        Common.BatchAutocompleteRequest result = buildPartial();
         if (!result.isInitialized()) {
           throw newUninitializedMessageException(
             result).asInvalidProtocolBufferException();
@@ -5135,40 +5170,59 @@ public final class Common {
       }
 
       @Override
-	public Common.DeleteRequest buildPartial() {
-        Common.DeleteRequest result = new Common.DeleteRequest(this);
+	public Common.BatchAutocompleteRequest buildPartial() {
+        Common.BatchAutocompleteRequest result = new Common.BatchAutocompleteRequest(this);
         int from_bitField0_ = bitField0_;
-        int to_bitField0_ = 0;
-        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
-          to_bitField0_ |= 0x00000001;
-        }
-        result.uid_ = uid_;
-        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
-          to_bitField0_ |= 0x00000002;
+        if (requestsBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001)) {
+            requests_ = java.util.Collections.unmodifiableList(requests_);
+            bitField0_ = (bitField0_ & ~0x00000001);
+          }
+          result.requests_ = requests_;
+        } else {
+          result.requests_ = requestsBuilder_.build();
         }
-        result.domain_ = domain_;
-        result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
 
       @Override
 	public Builder mergeFrom(com.google.protobuf.Message other) {
-        if (other instanceof Common.DeleteRequest) {
-          return mergeFrom((Common.DeleteRequest)other);
+        if (other instanceof Common.BatchAutocompleteRequest) {
+          return mergeFrom((Common.BatchAutocompleteRequest)other);
         } else {
           super.mergeFrom(other);
           return this;
         }
       }
 
-      public Builder mergeFrom(Common.DeleteRequest other) {
-        if (other == Common.DeleteRequest.getDefaultInstance()) return this;
-        if (other.hasUid()) {
-          setUid(other.getUid());
-        }
-        if (other.hasDomain()) {
-          setDomain(other.getDomain());
+      public Builder mergeFrom(Common.BatchAutocompleteRequest other) {
+        if (other == Common.BatchAutocompleteRequest.getDefaultInstance()) return this;
+        if (requestsBuilder_ == null) {
+          if (!other.requests_.isEmpty()) {
+            if (requests_.isEmpty()) {
+              requests_ = other.requests_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+            } else {
+              ensureRequestsIsMutable();
+              requests_.addAll(other.requests_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.requests_.isEmpty()) {
+            if (requestsBuilder_.isEmpty()) {
+              requestsBuilder_.dispose();
+              requestsBuilder_ = null;
+              requests_ = other.requests_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+              requestsBuilder_ =
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getRequestsFieldBuilder() : null;
+            } else {
+              requestsBuilder_.addAllMessages(other.requests_);
+            }
+          }
         }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
@@ -5176,13 +5230,11 @@ public final class Common {
 
       @Override
 	public final boolean isInitialized() {
-        if (!hasUid()) {
-
-          return false;
-        }
-        if (!hasDomain()) {
+        for (int i = 0; i < getRequestsCount(); i++) {
+          if (!getRequests(i).isInitialized()) {
 
-          return false;
+            return false;
+          }
         }
         return true;
       }
@@ -5211,14 +5263,10 @@ public final class Common {
               }
               break;
             }
-            case 8: {
-              bitField0_ |= 0x00000001;
-              uid_ = input.readInt32();
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              domain_ = input.readBytes();
+            case 10: {
+              Common.AutocompleteRequest.Builder subBuilder = Common.AutocompleteRequest.newBuilder();
+              input.readMessage(subBuilder, extensionRegistry);
+              addRequests(subBuilder.buildPartial());
               break;
             }
           }
@@ -5227,135 +5275,302 @@ public final class Common {
 
       private int bitField0_;
 
-      // required int32 uid = 1;
-      private int uid_ ;
-      @Override
-	public boolean hasUid() {
-        return ((bitField0_ & 0x00000001) == 0x00000001);
+      // repeated .AutocompleteRequest requests = 1;
+      private java.util.List<Common.AutocompleteRequest> requests_ =
+        java.util.Collections.emptyList();
+      private void ensureRequestsIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          requests_ = new java.util.ArrayList<Common.AutocompleteRequest>(requests_);
+          bitField0_ |= 0x00000001;
+         }
       }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          Common.AutocompleteRequest, Common.AutocompleteRequest.Builder, Common.AutocompleteRequestOrBuilder> requestsBuilder_;
+
       @Override
-	public int getUid() {
-        return uid_;
-      }
-      public Builder setUid(int value) {
-        bitField0_ |= 0x00000001;
-        uid_ = value;
-        onChanged();
-        return this;
-      }
-      public Builder clearUid() {
-        bitField0_ = (bitField0_ & ~0x00000001);
-        uid_ = 0;
-        onChanged();
-        return this;
+	public java.util.List<Common.AutocompleteRequest> getRequestsList() {
+        if (requestsBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(requests_);
+        } else {
+          return requestsBuilder_.getMessageList();
+        }
       }
-
-      // required string domain = 2;
-      private java.lang.Object domain_ = "";
       @Override
-	public boolean hasDomain() {
-        return ((bitField0_ & 0x00000002) == 0x00000002);
+	public int getRequestsCount() {
+        if (requestsBuilder_ == null) {
+          return requests_.size();
+        } else {
+          return requestsBuilder_.getCount();
+        }
       }
       @Override
-	public String getDomain() {
-        java.lang.Object ref = domain_;
-        if (!(ref instanceof String)) {
-          String s = ((com.google.protobuf.ByteString) ref).toStringUtf8();
-          domain_ = s;
-          return s;
+	public Common.AutocompleteRequest getRequests(int index) {
+        if (requestsBuilder_ == null) {
+          return requests_.get(index);
         } else {
-          return (String) ref;
+          return requestsBuilder_.getMessage(index);
         }
       }
-      public Builder setDomain(String value) {
-        if (value == null) {
-    throw new NullPointerException();
-  }
-  bitField0_ |= 0x00000002;
-        domain_ = value;
-        onChanged();
+      public Builder setRequests(
+          int index, Common.AutocompleteRequest value) {
+        if (requestsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureRequestsIsMutable();
+          requests_.set(index, value);
+          onChanged();
+        } else {
+          requestsBuilder_.setMessage(index, value);
+        }
         return this;
       }
-      public Builder clearDomain() {
-        bitField0_ = (bitField0_ & ~0x00000002);
-        domain_ = getDefaultInstance().getDomain();
-        onChanged();
+      public Builder setRequests(
+          int index, Common.AutocompleteRequest.Builder builderForValue) {
+        if (requestsBuilder_ == null) {
+          ensureRequestsIsMutable();
+          requests_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          requestsBuilder_.setMessage(index, builderForValue.build());
+        }
         return this;
       }
-      void setDomain(com.google.protobuf.ByteString value) {
-        bitField0_ |= 0x00000002;
-        domain_ = value;
-        onChanged();
+      public Builder addRequests(Common.AutocompleteRequest value) {
+        if (requestsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureRequestsIsMutable();
+          requests_.add(value);
+          onChanged();
+        } else {
+          requestsBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      public Builder addRequests(
+          int index, Common.AutocompleteRequest value) {
+        if (requestsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureRequestsIsMutable();
+          requests_.add(index, value);
+          onChanged();
+        } else {
+          requestsBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      public Builder addRequests(
+          Common.AutocompleteRequest.Builder builderForValue) {
+        if (requestsBuilder_ == null) {
+          ensureRequestsIsMutable();
+          requests_.add(builderForValue.build());
+          onChanged();
+        } else {
+          requestsBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      public Builder addRequests(
+          int index, Common.AutocompleteRequest.Builder builderForValue) {
+        if (requestsBuilder_ == null) {
+          ensureRequestsIsMutable();
+          requests_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          requestsBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      public Builder addAllRequests(
+          java.lang.Iterable<? extends Common.AutocompleteRequest> values) {
+        if (requestsBuilder_ == null) {
+          ensureRequestsIsMutable();
+          super.addAll(values, requests_);
+          onChanged();
+        } else {
+          requestsBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      public Builder clearRequests() {
+        if (requestsBuilder_ == null) {
+          requests_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+          onChanged();
+        } else {
+          requestsBuilder_.clear();
+        }
+        return this;
+      }
+      public Builder removeRequests(int index) {
+        if (requestsBuilder_ == null) {
+          ensureRequestsIsMutable();
+          requests_.remove(index);
+          onChanged();
+        } else {
+          requestsBuilder_.remove(index);
+        }
+        return this;
+      }
+      public Common.AutocompleteRequest.Builder getRequestsBuilder(
+          int index) {
+        return getRequestsFieldBuilder().getBuilder(index);
+      }
+      @Override
+	public Common.AutocompleteRequestOrBuilder getRequestsOrBuilder(
+          int index) {
+        if (requestsBuilder_ == null) {
+          return requests_.get(index);  } else {
+          return requestsBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      @Override
+	public java.util.List<? extends Common.AutocompleteRequestOrBuilder>
+           getRequestsOrBuilderList() {
+        if (requestsBuilder_ != null) {
+          return requestsBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(requests_);
+        }
+      }
+      public Common.AutocompleteRequest.Builder addRequestsBuilder() {
+        return getRequestsFieldBuilder().addBuilder(
+            Common.AutocompleteRequest.getDefaultInstance());
+      }
+      public Common.AutocompleteRequest.Builder addRequestsBuilder(
+          int index) {
+        return getRequestsFieldBuilder().addBuilder(
+            index, Common.AutocompleteRequest.getDefaultInstance());
+      }
+      public java.util.List<Common.AutocompleteRequest.Builder>
+           getRequestsBuilderList() {
+        return getRequestsFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          Common.AutocompleteRequest, Common.AutocompleteRequest.Builder, Common.AutocompleteRequestOrBuilder>
+          getRequestsFieldBuilder() {
+        if (requestsBuilder_ == null) {
+          requestsBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              Common.AutocompleteRequest, Common.AutocompleteRequest.Builder, Common.AutocompleteRequestOrBuilder>(
+                  requests_,
+                  ((bitField0_ & 0x00000001) == 0x00000001),
+                  getParentForChildren(),
+                  isClean());
+          requests_ = null;
+        }
+        return requestsBuilder_;
       }
 
-      // @@protoc_insertion_point(builder_scope:DeleteRequest)
+      // @@protoc_insertion_point(builder_scope:BatchAutocompleteRequest)
     }
 
     static {
-      defaultInstance = new DeleteRequest(true);
+      defaultInstance = new BatchAutocompleteRequest(true);
       defaultInstance.initFields();
     }
 
-    // @@protoc_insertion_point(class_scope:DeleteRequest)
+    // @@protoc_insertion_point(class_scope:BatchAutocompleteRequest)
   }
 
-  public interface ClearRequestOrBuilder
+  public interface BatchMatchedUsersOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
 
-    // repeated string domains = 1;
-    java.util.List<String> getDomainsList();
-    int getDomainsCount();
-    String getDomains(int index);
+    // required .Status status = 1;
+    boolean hasStatus();
+    Common.Status getStatus();
+    Common.StatusOrBuilder getStatusOrBuilder();
+
+    // repeated .MatchedUsers results = 2;
+    java.util.List<Common.MatchedUsers>
+        getResultsList();
+    Common.MatchedUsers getResults(int index);
+    int getResultsCount();
+    java.util.List<? extends Common.MatchedUsersOrBuilder>
+        getResultsOrBuilderList();
+    Common.MatchedUsersOrBuilder getResultsOrBuilder(
+        int index);
   }
-  public static final class ClearRequest extends
+  public static final class BatchMatchedUsers extends
       com.google.protobuf.GeneratedMessage
-      implements ClearRequestOrBuilder {
-    // Use ClearRequest.newBuilder() to construct.
-    private ClearRequest(Builder builder) {
+      implements BatchMatchedUsersOrBuilder {
+    // Use BatchMatchedUsers.newBuilder() to construct.
+    private BatchMatchedUsers(Builder builder) {
       super(builder);
     }
-    private ClearRequest(boolean noInit) {}
+    private BatchMatchedUsers(boolean noInit) {}
 
-    private static final ClearRequest defaultInstance;
-    public static ClearRequest getDefaultInstance() {
+    private static final BatchMatchedUsers defaultInstance;
+    public static BatchMatchedUsers getDefaultInstance() {
       return defaultInstance;
     }
 
     @Override
-	public ClearRequest getDefaultInstanceForType() {
+	public BatchMatchedUsers getDefaultInstanceForType() {
       return defaultInstance;
     }
 
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
-      return Common.internal_static_ClearRequest_descriptor;
+      return Common.internal_static_BatchMatchedUsers_descriptor;
     }
 
     @Override
 	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return Common.internal_static_ClearRequest_fieldAccessorTable;
+      return Common.internal_static_BatchMatchedUsers_fieldAccessorTable;
     }
 
-    // repeated string domains = 1;
-    public static final int DOMAINS_FIELD_NUMBER = 1;
-    private com.google.protobuf.LazyStringList domains_;
+    private int bitField0_;
+    // required .Status status = 1;
+    public static final int STATUS_FIELD_NUMBER = 1;
+    private Common.Status status_;
     @Override
-	public java.util.List<String>
-        getDomainsList() {
-      return domains_;
+	public boolean hasStatus() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
     }
     @Override
-	public int getDomainsCount() {
-      return domains_.size();
+	public Common.Status getStatus() {
+      return status_;
     }
     @Override
-	public String getDomains(int index) {
-      return domains_.get(index);
+	public Common.StatusOrBuilder getStatusOrBuilder() {
+      return status_;
+    }
+
+    // repeated .MatchedUsers results = 2;
+    public static final int RESULTS_FIELD_NUMBER = 2;
+    private java.util.List<Common.MatchedUsers> results_;
+    @Override
+	public java.util.List<Common.MatchedUsers> getResultsList() {
+      return results_;
+    }
+    @Override
+	public java.util.List<? extends Common.MatchedUsersOrBuilder>
+        getResultsOrBuilderList() {
+      return results_;
+    }
+    @Override
+	public int getResultsCount() {
+      return results_.size();
+    }
+    @Override
+	public Common.MatchedUsers getResults(int index) {
+      return results_.get(index);
+    }
+    @Override
+	public Common.MatchedUsersOrBuilder getResultsOrBuilder(
+        int index) {
+      return results_.get(index);
     }
 
     private void initFields() {
-      domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      status_ = Common.Status.getDefaultInstance();
+      results_ = java.util.Collections.emptyList();
     }
     private byte memoizedIsInitialized = -1;
     @Override
@@ -5363,6 +5578,20 @@ public final class Common {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
 
+      if (!hasStatus()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!getStatus().isInitialized()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      for (int i = 0; i < getResultsCount(); i++) {
+        if (!getResults(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
       memoizedIsInitialized = 1;
       return true;
     }
@@ -5371,8 +5600,11 @@ public final class Common {
 	public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
-      for (int i = 0; i < domains_.size(); i++) {
-        output.writeBytes(1, domains_.getByteString(i));
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeMessage(1, status_);
+      }
+      for (int i = 0; i < results_.size(); i++) {
+        output.writeMessage(2, results_.get(i));
       }
       getUnknownFields().writeTo(output);
     }
@@ -5384,15 +5616,2220 @@ public final class Common {
       if (size != -1) return size;
 
       size = 0;
-      {
-        int dataSize = 0;
-        for (int i = 0; i < domains_.size(); i++) {
-          dataSize += com.google.protobuf.CodedOutputStream
-            .computeBytesSizeNoTag(domains_.getByteString(i));
-        }
-        size += dataSize;
-        size += 1 * getDomainsList().size();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, status_);
+      }
+      for (int i = 0; i < results_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(2, results_.get(i));
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static Common.BatchMatchedUsers parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.BatchMatchedUsers parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.BatchMatchedUsers parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.BatchMatchedUsers parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.BatchMatchedUsers parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.BatchMatchedUsers parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.BatchMatchedUsers parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.BatchMatchedUsers parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.BatchMatchedUsers parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.BatchMatchedUsers parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    @Override
+	public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(Common.BatchMatchedUsers prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    @Override
+	public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements Common.BatchMatchedUsersOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return Common.internal_static_BatchMatchedUsers_descriptor;
+      }
+
+      @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return Common.internal_static_BatchMatchedUsers_fieldAccessorTable;
+      }
+
+      // Construct using Common.BatchMatchedUsers.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
       }
+
+      private Builder(BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getStatusFieldBuilder();
+          getResultsFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      @Override
+	public Builder clear() {
+        super.clear();
+        if (statusBuilder_ == null) {
+          status_ = Common.Status.getDefaultInstance();
+        } else {
+          statusBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        if (resultsBuilder_ == null) {
+          results_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000002);
+        } else {
+          resultsBuilder_.clear();
+        }
+        return this;
+      }
+
+      @Override
+	public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      @Override
+	public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return Common.BatchMatchedUsers.getDescriptor();
+      }
+
+      @Override
+	public Common.BatchMatchedUsers getDefaultInstanceForType() {
+        return Common.BatchMatchedUsers.getDefaultInstance();
+      }
+
+      @Override
+	public Common.BatchMatchedUsers build() {
+        Common.BatchMatchedUsers result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      private Common.BatchMatchedUsers buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        Common.BatchMatchedUsers result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return result;
+      }
+
+      @Override
+	public Common.BatchMatchedUsers buildPartial() {
+        Common.BatchMatchedUsers result = new Common.BatchMatchedUsers(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        if (statusBuilder_ == null) {
+          result.status_ = status_;
+        } else {
+          result.status_ = statusBuilder_.build();
+        }
+        if (resultsBuilder_ == null) {
+          if (((bitField0_ & 0x00000002) == 0x00000002)) {
+            results_ = java.util.Collections.unmodifiableList(results_);
+            bitField0_ = (bitField0_ & ~0x00000002);
+          }
+          result.results_ = results_;
+        } else {
+          result.results_ = resultsBuilder_.build();
+        }
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      @Override
+	public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof Common.BatchMatchedUsers) {
+          return mergeFrom((Common.BatchMatchedUsers)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(Common.BatchMatchedUsers other) {
+        if (other == Common.BatchMatchedUsers.getDefaultInstance()) return this;
+        if (other.hasStatus()) {
+          mergeStatus(other.getStatus());
+        }
+        if (resultsBuilder_ == null) {
+          if (!other.results_.isEmpty()) {
+            if (results_.isEmpty()) {
+              results_ = other.results_;
+              bitField0_ = (bitField0_ & ~0x00000002);
+            } else {
+              ensureResultsIsMutable();
+              results_.addAll(other.results_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.results_.isEmpty()) {
+            if (resultsBuilder_.isEmpty()) {
+              resultsBuilder_.dispose();
+              resultsBuilder_ = null;
+              results_ = other.results_;
+              bitField0_ = (bitField0_ & ~0x00000002);
+              resultsBuilder_ =
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getResultsFieldBuilder() : null;
+            } else {
+              resultsBuilder_.addAllMessages(other.results_);
+            }
+          }
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      @Override
+	public final boolean isInitialized() {
+        if (!hasStatus()) {
+
+          return false;
+        }
+        if (!getStatus().isInitialized()) {
+
+          return false;
+        }
+        for (int i = 0; i < getResultsCount(); i++) {
+          if (!getResults(i).isInitialized()) {
+
+            return false;
+          }
+        }
+        return true;
+      }
+
+      @Override
+	public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              onChanged();
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                onChanged();
+                return this;
+              }
+              break;
+            }
+            case 10: {
+              Common.Status.Builder subBuilder = Common.Status.newBuilder();
+              if (hasStatus()) {
+                subBuilder.mergeFrom(getStatus());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setStatus(subBuilder.buildPartial());
+              break;
+            }
+            case 18: {
+              Common.MatchedUsers.Builder subBuilder = Common.MatchedUsers.newBuilder();
+              input.readMessage(subBuilder, extensionRegistry);
+              addResults(subBuilder.buildPartial());
+              break;
+            }
+          }
+        }
+      }
+
+      private int bitField0_;
+
+      // required .Status status = 1;
+      private Common.Status status_ = Common.Status.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          Common.Status, Common.Status.Builder, Common.StatusOrBuilder> statusBuilder_;
+      @Override
+	public boolean hasStatus() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      @Override
+	public Common.Status getStatus() {
+        if (statusBuilder_ == null) {
+          return status_;
+        } else {
+          return statusBuilder_.getMessage();
+        }
+      }
+      public Builder setStatus(Common.Status value) {
+        if (statusBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          status_ = value;
+          onChanged();
+        } else {
+          statusBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      public Builder setStatus(
+          Common.Status.Builder builderForValue) {
+        if (statusBuilder_ == null) {
+          status_ = builderForValue.build();
+          onChanged();
+        } else {
+          statusBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      public Builder mergeStatus(Common.Status value) {
+        if (statusBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001) &&
+              status_ != Common.Status.getDefaultInstance()) {
+            status_ =
+              Common.Status.newBuilder(status_).mergeFrom(value).buildPartial();
+          } else {
+            status_ = value;
+          }
+          onChanged();
+        } else {
+          statusBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      public Builder clearStatus() {
+        if (statusBuilder_ == null) {
+          status_ = Common.Status.getDefaultInstance();
+          onChanged();
+        } else {
+          statusBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+      public Common.Status.Builder getStatusBuilder() {
+        bitField0_ |= 0x00000001;
+        onChanged();
+        return getStatusFieldBuilder().getBuilder();
+      }
+      @Override
+	public Common.StatusOrBuilder getStatusOrBuilder() {
+        if (statusBuilder_ != null) {
+          return statusBuilder_.getMessageOrBuilder();
+        } else {
+          return status_;
+        }
+      }
+      private com.google.protobuf.SingleFieldBuilder<
+          Common.Status, Common.Status.Builder, Common.StatusOrBuilder>
+          getStatusFieldBuilder() {
+        if (statusBuilder_ == null) {
+          statusBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              Common.Status, Common.Status.Builder, Common.StatusOrBuilder>(
+                  status_,
+                  getParentForChildren(),
+                  isClean());
+          status_ = null;
+        }
+        return statusBuilder_;
+      }
+
+      // repeated .MatchedUsers results = 2;
+      private java.util.List<Common.MatchedUsers> results_ =
+        java.util.Collections.emptyList();
+      private void ensureResultsIsMutable() {
+        if (!((bitField0_ & 0x00000002) == 0x00000002)) {
+          results_ = new java.util.ArrayList<Common.MatchedUsers>(results_);
+          bitField0_ |= 0x00000002;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          Common.MatchedUsers, Common.MatchedUsers.Builder, Common.MatchedUsersOrBuilder> resultsBuilder_;
+
+      @Override
+	public java.util.List<Common.MatchedUsers> getResultsList() {
+        if (resultsBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(results_);
+        } else {
+          return resultsBuilder_.getMessageList();
+        }
+      }
+      @Override
+	public int getResultsCount() {
+        if (resultsBuilder_ == null) {
+          return results_.size();
+        } else {
+          return resultsBuilder_.getCount();
+        }
+      }
+      @Override
+	public Common.MatchedUsers getResults(int index) {
+        if (resultsBuilder_ == null) {
+          return results_.get(index);
+        } else {
+          return resultsBuilder_.getMessage(index);
+        }
+      }
+      public Builder setResults(
+          int index, Common.MatchedUsers value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.set(index, value);
+          onChanged();
+        } else {
+          resultsBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      public Builder setResults(
+          int index, Common.MatchedUsers.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      public Builder addResults(Common.MatchedUsers value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.add(value);
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      public Builder addResults(
+          int index, Common.MatchedUsers value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.add(index, value);
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      public Builder addResults(
+          Common.MatchedUsers.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.add(builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      public Builder addResults(
+          int index, Common.MatchedUsers.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      public Builder addAllResults(
+          java.lang.Iterable<? extends Common.MatchedUsers> values) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          super.addAll(values, results_);
+          onChanged();
+        } else {
+          resultsBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      public Builder clearResults() {
+        if (resultsBuilder_ == null) {
+          results_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000002);
+          onChanged();
+        } else {
+          resultsBuilder_.clear();
+        }
+        return this;
+      }
+      public Builder removeResults(int index) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.remove(index);
+          onChanged();
+        } else {
+          resultsBuilder_.remove(index);
+        }
+        return this;
+      }
+      public Common.MatchedUsers.Builder getResultsBuilder(
+          int index) {
+        return getResultsFieldBuilder().getBuilder(index);
+      }
+      @Override
+	public Common.MatchedUsersOrBuilder getResultsOrBuilder(
+          int index) {
+        if (resultsBuilder_ == null) {
+          return results_.get(index);  } else {
+          return resultsBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      @Override
+	public java.util.List<? extends Common.MatchedUsersOrBuilder>
+           getResultsOrBuilderList() {
+        if (resultsBuilder_ != null) {
+          return resultsBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(results_);
+        }
+      }
+      public Common.MatchedUsers.Builder addResultsBuilder() {
+        return getResultsFieldBuilder().addBuilder(
+            Common.MatchedUsers.getDefaultInstance());
+      }
+      public Common.MatchedUsers.Builder addResultsBuilder(
+          int index) {
+        return getResultsFieldBuilder().addBuilder(
+            index, Common.MatchedUsers.getDefaultInstance());
+      }
+      public java.util.List<Common.MatchedUsers.Builder>
+           getResultsBuilderList() {
+        return getResultsFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          Common.MatchedUsers, Common.MatchedUsers.Builder, Common.MatchedUsersOrBuilder>
+          getResultsFieldBuilder() {
+        if (resultsBuilder_ == null) {
+          resultsBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              Common.MatchedUsers, Common.MatchedUsers.Builder, Common.MatchedUsersOrBuilder>(
+                  results_,
+                  ((bitField0_ & 0x00000002) == 0x00000002),
+                  getParentForChildren(),
+                  isClean());
+          results_ = null;
+        }
+        return resultsBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:BatchMatchedUsers)
+    }
+
+    static {
+      defaultInstance = new BatchMatchedUsers(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:BatchMatchedUsers)
+  }
+
+  public interface FederatedAutocompleteRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required string typed = 1;
+    boolean hasTyped();
+    String getTyped();
+
+    // repeated string domains = 2;
+    java.util.List<String> getDomainsList();
+    int getDomainsCount();
+    String getDomains(int index);
+
+    // required int32 num_responses = 3;
+    boolean hasNumResponses();
+    int getNumResponses();
+
+    // optional int32 budget_millis = 4;
+    boolean hasBudgetMillis();
+    int getBudgetMillis();
+  }
+  public static final class FederatedAutocompleteRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements FederatedAutocompleteRequestOrBuilder {
+    // Use FederatedAutocompleteRequest.newBuilder() to construct.
+    private FederatedAutocompleteRequest(Builder builder) {
+      super(builder);
+    }
+    private FederatedAutocompleteRequest(boolean noInit) {}
+
+    private static final FederatedAutocompleteRequest defaultInstance;
+    public static FederatedAutocompleteRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    @Override
+	public FederatedAutocompleteRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return Common.internal_static_FederatedAutocompleteRequest_descriptor;
+    }
+
+    @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return Common.internal_static_FederatedAutocompleteRequest_fieldAccessorTable;
+    }
+
+    private int bitField0_;
+    // required string typed = 1;
+    public static final int TYPED_FIELD_NUMBER = 1;
+    private java.lang.Object typed_;
+    @Override
+	public boolean hasTyped() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    @Override
+	public String getTyped() {
+      java.lang.Object ref = typed_;
+      if (ref instanceof String) {
+        return (String) ref;
+      } else {
+        com.google.protobuf.ByteString bs =
+            (com.google.protobuf.ByteString) ref;
+        String s = bs.toStringUtf8();
+        if (com.google.protobuf.Internal.isValidUtf8(bs)) {
+          typed_ = s;
+        }
+        return s;
+      }
+    }
+    private com.google.protobuf.ByteString getTypedBytes() {
+      java.lang.Object ref = typed_;
+      if (ref instanceof String) {
+        com.google.protobuf.ByteString b =
+            com.google.protobuf.ByteString.copyFromUtf8((String) ref);
+        typed_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
+    // repeated string domains = 2;
+    public static final int DOMAINS_FIELD_NUMBER = 2;
+    private com.google.protobuf.LazyStringList domains_;
+    @Override
+	public java.util.List<String>
+        getDomainsList() {
+      return domains_;
+    }
+    @Override
+	public int getDomainsCount() {
+      return domains_.size();
+    }
+    @Override
+	public String getDomains(int index) {
+      return domains_.get(index);
+    }
+
+    // required int32 num_responses = 3;
+    public static final int NUM_RESPONSES_FIELD_NUMBER = 3;
+    private int numResponses_;
+    @Override
+	public boolean hasNumResponses() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    @Override
+	public int getNumResponses() {
+      return numResponses_;
+    }
+
+    // optional int32 budget_millis = 4;
+    public static final int BUDGET_MILLIS_FIELD_NUMBER = 4;
+    private int budgetMillis_;
+    @Override
+	public boolean hasBudgetMillis() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    @Override
+	public int getBudgetMillis() {
+      return budgetMillis_;
+    }
+
+    private void initFields() {
+      typed_ = "";
+      domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      numResponses_ = 0;
+      budgetMillis_ = 0;
+    }
+    private byte memoizedIsInitialized = -1;
+    @Override
+	public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasTyped()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasNumResponses()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    @Override
+	public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(1, getTypedBytes());
+      }
+      for (int i = 0; i < domains_.size(); i++) {
+        output.writeBytes(2, domains_.getByteString(i));
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeInt32(3, numResponses_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeInt32(4, budgetMillis_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    @Override
+	public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(1, getTypedBytes());
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < domains_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(domains_.getByteString(i));
+        }
+        size += dataSize;
+        size += 1 * getDomainsList().size();
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(3, numResponses_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(4, budgetMillis_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static Common.FederatedAutocompleteRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.FederatedAutocompleteRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.FederatedAutocompleteRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.FederatedAutocompleteRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.FederatedAutocompleteRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.FederatedAutocompleteRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.FederatedAutocompleteRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.FederatedAutocompleteRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.FederatedAutocompleteRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.FederatedAutocompleteRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    @Override
+	public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(Common.FederatedAutocompleteRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    @Override
+	public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements Common.FederatedAutocompleteRequestOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return Common.internal_static_FederatedAutocompleteRequest_descriptor;
+      }
+
+      @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return Common.internal_static_FederatedAutocompleteRequest_fieldAccessorTable;
+      }
+
+      // Construct using Common.FederatedAutocompleteRequest.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      @Override
+	public Builder clear() {
+        super.clear();
+        typed_ = "";
+        bitField0_ = (bitField0_ & ~0x00000001);
+        domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        numResponses_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        budgetMillis_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        return this;
+      }
+
+      @Override
+	public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      @Override
+	public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return Common.FederatedAutocompleteRequest.getDescriptor();
+      }
+
+      @Override
+	public Common.FederatedAutocompleteRequest getDefaultInstanceForType() {
+        return Common.FederatedAutocompleteRequest.getDefaultInstance();
+      }
+
+      @Override
+	public Common.FederatedAutocompleteRequest build() {
+        Common.FederatedAutocompleteRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      private Common.FederatedAutocompleteRequest buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        Common.FederatedAutocompleteRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return result;
+      }
+
+      @Override
+	public Common.FederatedAutocompleteRequest buildPartial() {
+        Common.FederatedAutocompleteRequest result = new Common.FederatedAutocompleteRequest(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.typed_ = typed_;
+        if (((bitField0_ & 0x00000002) == 0x00000002)) {
+          domains_ = new com.google.protobuf.UnmodifiableLazyStringList(
+              domains_);
+          bitField0_ = (bitField0_ & ~0x00000002);
+        }
+        result.domains_ = domains_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.numResponses_ = numResponses_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.budgetMillis_ = budgetMillis_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      @Override
+	public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof Common.FederatedAutocompleteRequest) {
+          return mergeFrom((Common.FederatedAutocompleteRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(Common.FederatedAutocompleteRequest other) {
+        if (other == Common.FederatedAutocompleteRequest.getDefaultInstance()) return this;
+        if (other.hasTyped()) {
+          setTyped(other.getTyped());
+        }
+        if (!other.domains_.isEmpty()) {
+          if (domains_.isEmpty()) {
+            domains_ = other.domains_;
+            bitField0_ = (bitField0_ & ~0x00000002);
+          } else {
+            ensureDomainsIsMutable();
+            domains_.addAll(other.domains_);
+          }
+          onChanged();
+        }
+        if (other.hasNumResponses()) {
+          setNumResponses(other.getNumResponses());
+        }
+        if (other.hasBudgetMillis()) {
+          setBudgetMillis(other.getBudgetMillis());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      @Override
+	public final boolean isInitialized() {
+        if (!hasTyped()) {
+
+          return false;
+        }
+        if (!hasNumResponses()) {
+
+          return false;
+        }
+        return true;
+      }
+
+      @Override
+	public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              onChanged();
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                onChanged();
+                return this;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              typed_ = input.readBytes();
+              break;
+            }
+            case 18: {
+              ensureDomainsIsMutable();
+              domains_.add(input.readBytes());
+              break;
+            }
+            case 24: {
+              bitField0_ |= 0x00000004;
+              numResponses_ = input.readInt32();
+              break;
+            }
+            case 32: {
+              bitField0_ |= 0x00000008;
+              budgetMillis_ = input.readInt32();
+              break;
+            }
+          }
+        }
+      }
+
+      private int bitField0_;
+
+      // required string typed = 1;
+      private java.lang.Object typed_ = "";
+      @Override
+	public boolean hasTyped() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      @Override
+	public String getTyped() {
+        java.lang.Object ref = typed_;
+        if (!(ref instanceof String)) {
+          String s = ((com.google.protobuf.ByteString) ref).toStringUtf8();
+          typed_ = s;
+          return s;
+        } else {
+          return (String) ref;
+        }
+      }
+      public Builder setTyped(String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        typed_ = value;
+        onChanged();
+        return this;
+      }
+      public Builder clearTyped() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        typed_ = getDefaultInstance().getTyped();
+        onChanged();
+        return this;
+      }
+      void setTyped(com.google.protobuf.ByteString value) {
+        bitField0_ |= 0x00000001;
+        typed_ = value;
+        onChanged();
+      }
+
+      // repeated string domains = 2;
+      private com.google.protobuf.LazyStringList domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      private void ensureDomainsIsMutable() {
+        if (!((bitField0_ & 0x00000002) == 0x00000002)) {
+          domains_ = new com.google.protobuf.LazyStringArrayList(domains_);
+          bitField0_ |= 0x00000002;
+         }
+      }
+      @Override
+	public java.util.List<String>
+          getDomainsList() {
+        return java.util.Collections.unmodifiableList(domains_);
+      }
+      @Override
+	public int getDomainsCount() {
+        return domains_.size();
+      }
+      @Override
+	public String getDomains(int index) {
+        return domains_.get(index);
+      }
+      public Builder setDomains(
+          int index, String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureDomainsIsMutable();
+        domains_.set(index, value);
+        onChanged();
+        return this;
+      }
+      public Builder addDomains(String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureDomainsIsMutable();
+        domains_.add(value);
+        onChanged();
+        return this;
+      }
+      public Builder addAllDomains(
+          java.lang.Iterable<String> values) {
+        ensureDomainsIsMutable();
+        super.addAll(values, domains_);
+        onChanged();
+        return this;
+      }
+      public Builder clearDomains() {
+        domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        onChanged();
+        return this;
+      }
+      void addDomains(com.google.protobuf.ByteString value) {
+        ensureDomainsIsMutable();
+        domains_.add(value);
+        onChanged();
+      }
+
+      // required int32 num_responses = 3;
+      private int numResponses_ ;
+      @Override
+	public boolean hasNumResponses() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      @Override
+	public int getNumResponses() {
+        return numResponses_;
+      }
+      public Builder setNumResponses(int value) {
+        bitField0_ |= 0x00000004;
+        numResponses_ = value;
+        onChanged();
+        return this;
+      }
+      public Builder clearNumResponses() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        numResponses_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional int32 budget_millis = 4;
+      private int budgetMillis_ ;
+      @Override
+	public boolean hasBudgetMillis() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      @Override
+	public int getBudgetMillis() {
+        return budgetMillis_;
+      }
+      public Builder setBudgetMillis(int value) {
+        bitField0_ |= 0x00000008;
+        budgetMillis_ = value;
+        onChanged();
+        return this;
+      }
+      public Builder clearBudgetMillis() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        budgetMillis_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:FederatedAutocompleteRequest)
+    }
+
+    static {
+      defaultInstance = new FederatedAutocompleteRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:FederatedAutocompleteRequest)
+  }
+
+  public interface DeleteRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required int32 uid = 1;
+    boolean hasUid();
+    int getUid();
+
+    // required string domain = 2;
+    boolean hasDomain();
+    String getDomain();
+  }
+  public static final class DeleteRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements DeleteRequestOrBuilder {
+    // Use DeleteRequest.newBuilder() to construct.
+    private DeleteRequest(Builder builder) {
+      super(builder);
+    }
+    private DeleteRequest(boolean noInit) {}
+
+    private static final DeleteRequest defaultInstance;
+    public static DeleteRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    @Override
+	public DeleteRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return Common.internal_static_DeleteRequest_descriptor;
+    }
+
+    @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return Common.internal_static_DeleteRequest_fieldAccessorTable;
+    }
+
+    private int bitField0_;
+    // required int32 uid = 1;
+    public static final int UID_FIELD_NUMBER = 1;
+    private int uid_;
+    @Override
+	public boolean hasUid() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    @Override
+	public int getUid() {
+      return uid_;
+    }
+
+    // required string domain = 2;
+    public static final int DOMAIN_FIELD_NUMBER = 2;
+    private java.lang.Object domain_;
+    @Override
+	public boolean hasDomain() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    @Override
+	public String getDomain() {
+      java.lang.Object ref = domain_;
+      if (ref instanceof String) {
+        return (String) ref;
+      } else {
+        com.google.protobuf.ByteString bs =
+            (com.google.protobuf.ByteString) ref;
+        String s = bs.toStringUtf8();
+        if (com.google.protobuf.Internal.isValidUtf8(bs)) {
+          domain_ = s;
+        }
+        return s;
+      }
+    }
+    private com.google.protobuf.ByteString getDomainBytes() {
+      java.lang.Object ref = domain_;
+      if (ref instanceof String) {
+        com.google.protobuf.ByteString b =
+            com.google.protobuf.ByteString.copyFromUtf8((String) ref);
+        domain_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
+    private void initFields() {
+      uid_ = 0;
+      domain_ = "";
+    }
+    private byte memoizedIsInitialized = -1;
+    @Override
+	public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasUid()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasDomain()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    @Override
+	public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeInt32(1, uid_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(2, getDomainBytes());
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    @Override
+	public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(1, uid_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, getDomainBytes());
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static Common.DeleteRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.DeleteRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.DeleteRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.DeleteRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.DeleteRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.DeleteRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.DeleteRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.DeleteRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.DeleteRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.DeleteRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    @Override
+	public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(Common.DeleteRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    @Override
+	public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements Common.DeleteRequestOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return Common.internal_static_DeleteRequest_descriptor;
+      }
+
+      @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return Common.internal_static_DeleteRequest_fieldAccessorTable;
+      }
+
+      // Construct using Common.DeleteRequest.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      @Override
+	public Builder clear() {
+        super.clear();
+        uid_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        domain_ = "";
+        bitField0_ = (bitField0_ & ~0x00000002);
+        return this;
+      }
+
+      @Override
+	public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      @Override
+	public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return Common.DeleteRequest.getDescriptor();
+      }
+
+      @Override
+	public Common.DeleteRequest getDefaultInstanceForType() {
+        return Common.DeleteRequest.getDefaultInstance();
+      }
+
+      @Override
+	public Common.DeleteRequest build() {
+        Common.DeleteRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      private Common.DeleteRequest buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        Common.DeleteRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return result;
+      }
+
+      @Override
+	public Common.DeleteRequest buildPartial() {
+        Common.DeleteRequest result = new Common.DeleteRequest(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.uid_ = uid_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.domain_ = domain_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      @Override
+	public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof Common.DeleteRequest) {
+          return mergeFrom((Common.DeleteRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(Common.DeleteRequest other) {
+        if (other == Common.DeleteRequest.getDefaultInstance()) return this;
+        if (other.hasUid()) {
+          setUid(other.getUid());
+        }
+        if (other.hasDomain()) {
+          setDomain(other.getDomain());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      @Override
+	public final boolean isInitialized() {
+        if (!hasUid()) {
+
+          return false;
+        }
+        if (!hasDomain()) {
+
+          return false;
+        }
+        return true;
+      }
+
+      @Override
+	public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              onChanged();
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                onChanged();
+                return this;
+              }
+              break;
+            }
+            case 8: {
+              bitField0_ |= 0x00000001;
+              uid_ = input.readInt32();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              domain_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      }
+
+      private int bitField0_;
+
+      // required int32 uid = 1;
+      private int uid_ ;
+      @Override
+	public boolean hasUid() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      @Override
+	public int getUid() {
+        return uid_;
+      }
+      public Builder setUid(int value) {
+        bitField0_ |= 0x00000001;
+        uid_ = value;
+        onChanged();
+        return this;
+      }
+      public Builder clearUid() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        uid_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // required string domain = 2;
+      private java.lang.Object domain_ = "";
+      @Override
+	public boolean hasDomain() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      @Override
+	public String getDomain() {
+        java.lang.Object ref = domain_;
+        if (!(ref instanceof String)) {
+          String s = ((com.google.protobuf.ByteString) ref).toStringUtf8();
+          domain_ = s;
+          return s;
+        } else {
+          return (String) ref;
+        }
+      }
+      public Builder setDomain(String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+        domain_ = value;
+        onChanged();
+        return this;
+      }
+      public Builder clearDomain() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        domain_ = getDefaultInstance().getDomain();
+        onChanged();
+        return this;
+      }
+      void setDomain(com.google.protobuf.ByteString value) {
+        bitField0_ |= 0x00000002;
+        domain_ = value;
+        onChanged();
+      }
+
+      // @@protoc_insertion_point(builder_scope:DeleteRequest)
+    }
+
+    static {
+      defaultInstance = new DeleteRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:DeleteRequest)
+  }
+
+  public interface ClearRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // repeated string domains = 1;
+    java.util.List<String> getDomainsList();
+    int getDomainsCount();
+    String getDomains(int index);
+  }
+  public static final class ClearRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements ClearRequestOrBuilder {
+    // Use ClearRequest.newBuilder() to construct.
+    private ClearRequest(Builder builder) {
+      super(builder);
+    }
+    private ClearRequest(boolean noInit) {}
+
+    private static final ClearRequest defaultInstance;
+    public static ClearRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    @Override
+	public ClearRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return Common.internal_static_ClearRequest_descriptor;
+    }
+
+    @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return Common.internal_static_ClearRequest_fieldAccessorTable;
+    }
+
+    // repeated string domains = 1;
+    public static final int DOMAINS_FIELD_NUMBER = 1;
+    private com.google.protobuf.LazyStringList domains_;
+    @Override
+	public java.util.List<String>
+        getDomainsList() {
+      return domains_;
+    }
+    @Override
+	public int getDomainsCount() {
+      return domains_.size();
+    }
+    @Override
+	public String getDomains(int index) {
+      return domains_.get(index);
+    }
+
+    private void initFields() {
+      domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+    }
+    private byte memoizedIsInitialized = -1;
+    @Override
+	public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    @Override
+	public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      for (int i = 0; i < domains_.size(); i++) {
+        output.writeBytes(1, domains_.getByteString(i));
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    @Override
+	public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      {
+        int dataSize = 0;
+        for (int i = 0; i < domains_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(domains_.getByteString(i));
+        }
+        size += dataSize;
+        size += 1 * getDomainsList().size();
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static Common.ClearRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.ClearRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.ClearRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static Common.ClearRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.ClearRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.ClearRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static Common.ClearRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.ClearRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static Common.ClearRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static Common.ClearRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    @Override
+	public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(Common.ClearRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    @Override
+	public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements Common.ClearRequestOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return Common.internal_static_ClearRequest_descriptor;
+      }
+
+      @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return Common.internal_static_ClearRequest_fieldAccessorTable;
+      }
+
+      // Construct using Common.ClearRequest.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      @Override
+	public Builder clear() {
+        super.clear();
+        domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+
+      @Override
+	public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      @Override
+	public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return Common.ClearRequest.getDescriptor();
+      }
+
+      @Override
+	public Common.ClearRequest getDefaultInstanceForType() {
+        return Common.ClearRequest.getDefaultInstance();
+      }
+
+      @Override
+	public Common.ClearRequest build() {
+        Common.ClearRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      private Common.ClearRequest buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        Common.ClearRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return result;
+      }
+
+      @Override
+	public Common.ClearRequest buildPartial() {
+        Common.ClearRequest result = new Common.ClearRequest(this);
+        int from_bitField0_ = bitField0_;
+        if (((bitField0_ & 0x00000001) == 0x00000001)) {
+          domains_ = new com.google.protobuf.UnmodifiableLazyStringList(
+              domains_);
+          bitField0_ = (bitField0_ & ~0x00000001);
+        }
+        result.domains_ = domains_;
+        onBuilt();
+        return result;
+      }
+
+      @Override
+	public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof Common.ClearRequest) {
+          return mergeFrom((Common.ClearRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(Common.ClearRequest other) {
+        if (other == Common.ClearRequest.getDefaultInstance()) return this;
+        if (!other.domains_.isEmpty()) {
+          if (domains_.isEmpty()) {
+            domains_ = other.domains_;
+            bitField0_ = (bitField0_ & ~0x00000001);
+          } else {
+            ensureDomainsIsMutable();
+            domains_.addAll(other.domains_);
+          }
+          onChanged();
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      @Override
+	public final boolean isInitialized() {
+        return true;
+      }
+
+      @Override
+	public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              onChanged();
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                onChanged();
+                return this;
+              }
+              break;
+            }
+            case 10: {
+              ensureDomainsIsMutable();
+              domains_.add(input.readBytes());
+              break;
+            }
+          }
+        }
+      }
+
+      private int bitField0_;
+
+      // repeated string domains = 1;
+      private com.google.protobuf.LazyStringList domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      private void ensureDomainsIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          domains_ = new com.google.protobuf.LazyStringArrayList(domains_);
+          bitField0_ |= 0x00000001;
+         }
+      }
+      @Override
+	public java.util.List<String>
+          getDomainsList() {
+        return java.util.Collections.unmodifiableList(domains_);
+      }
+      @Override
+	public int getDomainsCount() {
+        return domains_.size();
+      }
+      @Override
+	public String getDomains(int index) {
+        return domains_.get(index);
+      }
+      public Builder setDomains(
+          int index, String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureDomainsIsMutable();
+        domains_.set(index, value);
+        onChanged();
+        return this;
+      }
+      public Builder addDomains(String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureDomainsIsMutable();
+        domains_.add(value);
+        onChanged();
+        return this;
+      }
+      public Builder addAllDomains(
+          java.lang.Iterable<String> values) {
+        ensureDomainsIsMutable();
+        super.addAll(values, domains_);
+        onChanged();
+        return this;
+      }
+      public Builder clearDomains() {
+        domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        onChanged();
+        return this;
+      }
+      void addDomains(com.google.protobuf.ByteString value) {
+        ensureDomainsIsMutable();
+        domains_.add(value);
+        onChanged();
+      }
+
+      // @@protoc_insertion_point(builder_scope:ClearRequest)
+    }
+
+    static {
+      defaultInstance = new ClearRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:ClearRequest)
+  }
+
+  public interface SnapshotRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+  }
+  public static final class SnapshotRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements SnapshotRequestOrBuilder {
+    // Use SnapshotRequest.newBuilder() to construct.
+    private SnapshotRequest(Builder builder) {
+      super(builder);
+    }
+    private SnapshotRequest(boolean noInit) {}
+
+    private static final SnapshotRequest defaultInstance;
+    public static SnapshotRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    @Override
+	public SnapshotRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return Common.internal_static_SnapshotRequest_descriptor;
+    }
+
+    @Override
+	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return Common.internal_static_SnapshotRequest_fieldAccessorTable;
+    }
+
+    private void initFields() {
+    }
+    private byte memoizedIsInitialized = -1;
+    @Override
+	public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    @Override
+	public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    @Override
+	public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -5405,41 +7842,41 @@ public final class Common {
       return super.writeReplace();
     }
 
-    public static Common.ClearRequest parseFrom(
+    public static Common.SnapshotRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data).buildParsed();
     }
-    public static Common.ClearRequest parseFrom(
+    public static Common.SnapshotRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data, extensionRegistry)
                .buildParsed();
     }
-    public static Common.ClearRequest parseFrom(byte[] data)
+    public static Common.SnapshotRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data).buildParsed();
     }
-    public static Common.ClearRequest parseFrom(
+    public static Common.SnapshotRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
       return newBuilder().mergeFrom(data, extensionRegistry)
                .buildParsed();
     }
-    public static Common.ClearRequest parseFrom(java.io.InputStream input)
+    public static Common.SnapshotRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
       return newBuilder().mergeFrom(input).buildParsed();
     }
-    public static Common.ClearRequest parseFrom(
+    public static Common.SnapshotRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
       return newBuilder().mergeFrom(input, extensionRegistry)
                .buildParsed();
     }
-    public static Common.ClearRequest parseDelimitedFrom(java.io.InputStream input)
+    public static Common.SnapshotRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
       Builder builder = newBuilder();
       if (builder.mergeDelimitedFrom(input)) {
@@ -5448,7 +7885,7 @@ public final class Common {
         return null;
       }
     }
-    public static Common.ClearRequest parseDelimitedFrom(
+    public static Common.SnapshotRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
@@ -5459,12 +7896,12 @@ public final class Common {
         return null;
       }
     }
-    public static Common.ClearRequest parseFrom(
+    public static Common.SnapshotRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
       return newBuilder().mergeFrom(input).buildParsed();
     }
-    public static Common.ClearRequest parseFrom(
+    public static Common.SnapshotRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
@@ -5475,7 +7912,7 @@ public final class Common {
     public static Builder newBuilder() { return Builder.create(); }
     @Override
 	public Builder newBuilderForType() { return newBuilder(); }
-    public static Builder newBuilder(Common.ClearRequest prototype) {
+    public static Builder newBuilder(Common.SnapshotRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     @Override
@@ -5489,19 +7926,19 @@ public final class Common {
     }
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
-       implements Common.ClearRequestOrBuilder {
+       implements Common.SnapshotRequestOrBuilder {
       public static final com.google.protobuf.Descriptors.Descriptor
           getDescriptor() {
-        return Common.internal_static_ClearRequest_descriptor;
+        return Common.internal_static_SnapshotRequest_descriptor;
       }
 
       @Override
 	protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return Common.internal_static_ClearRequest_fieldAccessorTable;
+        return Common.internal_static_SnapshotRequest_fieldAccessorTable;
       }
 
-      // Construct using Common.ClearRequest.newBuilder()
+      // Construct using Common.SnapshotRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
@@ -5521,8 +7958,6 @@ public final class Common {
       @Override
 	public Builder clear() {
         super.clear();
-        domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
-        bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
 
@@ -5534,26 +7969,26 @@ public final class Common {
       @Override
 	public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return Common.ClearRequest.getDescriptor();
+        return Common.SnapshotRequest.getDescriptor();
       }
 
       @Override
-	public Common.ClearRequest getDefaultInstanceForType() {
-        return Common.ClearRequest.getDefaultInstance();
+	public Common.SnapshotRequest getDefaultInstanceForType() {
+        return Common.SnapshotRequest.getDefaultInstance();
       }
 
       @Override
-	public Common.ClearRequest build() {
-        Common.ClearRequest result = buildPartial();
+	public Common.SnapshotRequest build() {
+        Common.SnapshotRequest result = buildPartial();
         if (!result.isInitialized()) {
           throw newUninitializedMessageException(result);
         }
         return result;
       }
 
-      private Common.ClearRequest buildParsed()
+      private Common.SnapshotRequest buildParsed()
           throws com.google.protobuf.InvalidProtocolBufferException {
-        Common.ClearRequest result = buildPartial();
+        Common.SnapshotRequest result = buildPartial();
         if (!result.isInitialized()) {
           throw newUninitializedMessageException(
             result).asInvalidProtocolBufferException();
@@ -5562,41 +7997,24 @@ public final class Common {
       }
 
       @Override
-	public Common.ClearRequest buildPartial() {
-        Common.ClearRequest result = new Common.ClearRequest(this);
-        int from_bitField0_ = bitField0_;
-        if (((bitField0_ & 0x00000001) == 0x00000001)) {
-          domains_ = new com.google.protobuf.UnmodifiableLazyStringList(
-              domains_);
-          bitField0_ = (bitField0_ & ~0x00000001);
-        }
-        result.domains_ = domains_;
+	public Common.SnapshotRequest buildPartial() {
+        Common.SnapshotRequest result = new Common.SnapshotRequest(this);
         onBuilt();
         return result;
       }
 
       @Override
 	public Builder mergeFrom(com.google.protobuf.Message other) {
-        if (other instanceof Common.ClearRequest) {
-          return mergeFrom((Common.ClearRequest)other);
+        if (other instanceof Common.SnapshotRequest) {
+          return mergeFrom((Common.SnapshotRequest)other);
         } else {
           super.mergeFrom(other);
           return this;
         }
       }
 
-      public Builder mergeFrom(Common.ClearRequest other) {
-        if (other == Common.ClearRequest.getDefaultInstance()) return this;
-        if (!other.domains_.isEmpty()) {
-          if (domains_.isEmpty()) {
-            domains_ = other.domains_;
-            bitField0_ = (bitField0_ & ~0x00000001);
-          } else {
-            ensureDomainsIsMutable();
-            domains_.addAll(other.domains_);
-          }
-          onChanged();
-        }
+      public Builder mergeFrom(Common.SnapshotRequest other) {
+        if (other == Common.SnapshotRequest.getDefaultInstance()) return this;
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -5630,85 +8048,20 @@ public final class Common {
               }
               break;
             }
-            case 10: {
-              ensureDomainsIsMutable();
-              domains_.add(input.readBytes());
-              break;
-            }
           }
         }
       }
 
-      private int bitField0_;
-
-      // repeated string domains = 1;
-      private com.google.protobuf.LazyStringList domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
-      private void ensureDomainsIsMutable() {
-        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
-          domains_ = new com.google.protobuf.LazyStringArrayList(domains_);
-          bitField0_ |= 0x00000001;
-         }
-      }
-      @Override
-	public java.util.List<String>
-          getDomainsList() {
-        return java.util.Collections.unmodifiableList(domains_);
-      }
-      @Override
-	public int getDomainsCount() {
-        return domains_.size();
-      }
-      @Override
-	public String getDomains(int index) {
-        return domains_.get(index);
-      }
-      public Builder setDomains(
-          int index, String value) {
-        if (value == null) {
-    throw new NullPointerException();
-  }
-  ensureDomainsIsMutable();
-        domains_.set(index, value);
-        onChanged();
-        return this;
-      }
-      public Builder addDomains(String value) {
-        if (value == null) {
-    throw new NullPointerException();
-  }
-  ensureDomainsIsMutable();
-        domains_.add(value);
-        onChanged();
-        return this;
-      }
-      public Builder addAllDomains(
-          java.lang.Iterable<String> values) {
-        ensureDomainsIsMutable();
-        super.addAll(values, domains_);
-        onChanged();
-        return this;
-      }
-      public Builder clearDomains() {
-        domains_ = com.google.protobuf.LazyStringArrayList.EMPTY;
-        bitField0_ = (bitField0_ & ~0x00000001);
-        onChanged();
-        return this;
-      }
-      void addDomains(com.google.protobuf.ByteString value) {
-        ensureDomainsIsMutable();
-        domains_.add(value);
-        onChanged();
-      }
 
-      // @@protoc_insertion_point(builder_scope:ClearRequest)
+      // @@protoc_insertion_point(builder_scope:SnapshotRequest)
     }
 
     static {
-      defaultInstance = new ClearRequest(true);
+      defaultInstance = new SnapshotRequest(true);
       defaultInstance.initFields();
     }
 
-    // @@protoc_insertion_point(class_scope:ClearRequest)
+    // @@protoc_insertion_point(class_scope:SnapshotRequest)
   }
 
   public static abstract class Autocompleter
@@ -5741,11 +8094,26 @@ public final class Common {
           Common.AutocompleteRequest request,
           com.google.protobuf.RpcCallback<Common.MatchedUsers> done);
 
+      public abstract void batchAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.BatchAutocompleteRequest request,
+          com.google.protobuf.RpcCallback<Common.BatchMatchedUsers> done);
+
+      public abstract void federatedAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.FederatedAutocompleteRequest request,
+          com.google.protobuf.RpcCallback<Common.MatchedUsers> done);
+
       public abstract void clearUsers(
           com.google.protobuf.RpcController controller,
           Common.ClearRequest request,
           com.google.protobuf.RpcCallback<Common.Status> done);
 
+      public abstract void snapshot(
+          com.google.protobuf.RpcController controller,
+          Common.SnapshotRequest request,
+          com.google.protobuf.RpcCallback<Common.Status> done);
+
     }
 
     public static com.google.protobuf.Service newReflectiveService(
@@ -5791,6 +8159,22 @@ public final class Common {
           impl.autocomplete(controller, request, done);
         }
 
+        @java.lang.Override
+        public  void batchAutocomplete(
+            com.google.protobuf.RpcController controller,
+            Common.BatchAutocompleteRequest request,
+            com.google.protobuf.RpcCallback<Common.BatchMatchedUsers> done) {
+          impl.batchAutocomplete(controller, request, done);
+        }
+
+        @java.lang.Override
+        public  void federatedAutocomplete(
+            com.google.protobuf.RpcController controller,
+            Common.FederatedAutocompleteRequest request,
+            com.google.protobuf.RpcCallback<Common.MatchedUsers> done) {
+          impl.federatedAutocomplete(controller, request, done);
+        }
+
         @java.lang.Override
         public  void clearUsers(
             com.google.protobuf.RpcController controller,
@@ -5799,6 +8183,14 @@ public final class Common {
           impl.clearUsers(controller, request, done);
         }
 
+        @java.lang.Override
+        public  void snapshot(
+            com.google.protobuf.RpcController controller,
+            Common.SnapshotRequest request,
+            com.google.protobuf.RpcCallback<Common.Status> done) {
+          impl.snapshot(controller, request, done);
+        }
+
       };
     }
 
@@ -5834,7 +8226,13 @@ public final class Common {
             case 4:
               return impl.autocomplete(controller, (Common.AutocompleteRequest)request);
             case 5:
+              return impl.batchAutocomplete(controller, (Common.BatchAutocompleteRequest)request);
+            case 6:
+              return impl.federatedAutocomplete(controller, (Common.FederatedAutocompleteRequest)request);
+            case 7:
               return impl.clearUsers(controller, (Common.ClearRequest)request);
+            case 8:
+              return impl.snapshot(controller, (Common.SnapshotRequest)request);
             default:
               throw new java.lang.AssertionError("Can't get here.");
           }
@@ -5861,7 +8259,13 @@ public final class Common {
             case 4:
               return Common.AutocompleteRequest.getDefaultInstance();
             case 5:
+              return Common.BatchAutocompleteRequest.getDefaultInstance();
+            case 6:
+              return Common.FederatedAutocompleteRequest.getDefaultInstance();
+            case 7:
               return Common.ClearRequest.getDefaultInstance();
+            case 8:
+              return Common.SnapshotRequest.getDefaultInstance();
             default:
               throw new java.lang.AssertionError("Can't get here.");
           }
@@ -5888,6 +8292,12 @@ public final class Common {
             case 4:
               return Common.MatchedUsers.getDefaultInstance();
             case 5:
+              return Common.BatchMatchedUsers.getDefaultInstance();
+            case 6:
+              return Common.MatchedUsers.getDefaultInstance();
+            case 7:
+              return Common.Status.getDefaultInstance();
+            case 8:
               return Common.Status.getDefaultInstance();
             default:
               throw new java.lang.AssertionError("Can't get here.");
@@ -5922,11 +8332,26 @@ public final class Common {
         Common.AutocompleteRequest request,
         com.google.protobuf.RpcCallback<Common.MatchedUsers> done);
 
+    public abstract void batchAutocomplete(
+        com.google.protobuf.RpcController controller,
+        Common.BatchAutocompleteRequest request,
+        com.google.protobuf.RpcCallback<Common.BatchMatchedUsers> done);
+
+    public abstract void federatedAutocomplete(
+        com.google.protobuf.RpcController controller,
+        Common.FederatedAutocompleteRequest request,
+        com.google.protobuf.RpcCallback<Common.MatchedUsers> done);
+
     public abstract void clearUsers(
         com.google.protobuf.RpcController controller,
         Common.ClearRequest request,
         com.google.protobuf.RpcCallback<Common.Status> done);
 
+    public abstract void snapshot(
+        com.google.protobuf.RpcController controller,
+        Common.SnapshotRequest request,
+        com.google.protobuf.RpcCallback<Common.Status> done);
+
     public static final
         com.google.protobuf.Descriptors.ServiceDescriptor
         getDescriptor() {
@@ -5977,10 +8402,25 @@ public final class Common {
               done));
           return;
         case 5:
+          this.batchAutocomplete(controller, (Common.BatchAutocompleteRequest)request,
+            com.google.protobuf.RpcUtil.<Common.BatchMatchedUsers>specializeCallback(
+              done));
+          return;
+        case 6:
+          this.federatedAutocomplete(controller, (Common.FederatedAutocompleteRequest)request,
+            com.google.protobuf.RpcUtil.<Common.MatchedUsers>specializeCallback(
+              done));
+          return;
+        case 7:
           this.clearUsers(controller, (Common.ClearRequest)request,
             com.google.protobuf.RpcUtil.<Common.Status>specializeCallback(
               done));
           return;
+        case 8:
+          this.snapshot(controller, (Common.SnapshotRequest)request,
+            com.google.protobuf.RpcUtil.<Common.Status>specializeCallback(
+              done));
+          return;
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -6007,7 +8447,13 @@ public final class Common {
         case 4:
           return Common.AutocompleteRequest.getDefaultInstance();
         case 5:
+          return Common.BatchAutocompleteRequest.getDefaultInstance();
+        case 6:
+          return Common.FederatedAutocompleteRequest.getDefaultInstance();
+        case 7:
           return Common.ClearRequest.getDefaultInstance();
+        case 8:
+          return Common.SnapshotRequest.getDefaultInstance();
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -6034,6 +8480,12 @@ public final class Common {
         case 4:
           return Common.MatchedUsers.getDefaultInstance();
         case 5:
+          return Common.BatchMatchedUsers.getDefaultInstance();
+        case 6:
+          return Common.MatchedUsers.getDefaultInstance();
+        case 7:
+          return Common.Status.getDefaultInstance();
+        case 8:
           return Common.Status.getDefaultInstance();
         default:
           throw new java.lang.AssertionError("Can't get here.");
@@ -6136,13 +8588,61 @@ public final class Common {
             Common.MatchedUsers.getDefaultInstance()));
       }
 
+      @Override
+	public  void batchAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.BatchAutocompleteRequest request,
+          com.google.protobuf.RpcCallback<Common.BatchMatchedUsers> done) {
+        channel.callMethod(
+          getDescriptor().getMethods().get(5),
+          controller,
+          request,
+          Common.BatchMatchedUsers.getDefaultInstance(),
+          com.google.protobuf.RpcUtil.generalizeCallback(
+            done,
+            Common.BatchMatchedUsers.class,
+            Common.BatchMatchedUsers.getDefaultInstance()));
+      }
+
+      @Override
+	public  void federatedAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.FederatedAutocompleteRequest request,
+          com.google.protobuf.RpcCallback<Common.MatchedUsers> done) {
+        channel.callMethod(
+          getDescriptor().getMethods().get(6),
+          controller,
+          request,
+          Common.MatchedUsers.getDefaultInstance(),
+          com.google.protobuf.RpcUtil.generalizeCallback(
+            done,
+            Common.MatchedUsers.class,
+            Common.MatchedUsers.getDefaultInstance()));
+      }
+
       @Override
 	public  void clearUsers(
           com.google.protobuf.RpcController controller,
           Common.ClearRequest request,
           com.google.protobuf.RpcCallback<Common.Status> done) {
         channel.callMethod(
-          getDescriptor().getMethods().get(5),
+          getDescriptor().getMethods().get(7),
+          controller,
+          request,
+          Common.Status.getDefaultInstance(),
+          com.google.protobuf.RpcUtil.generalizeCallback(
+            done,
+            Common.Status.class,
+            Common.Status.getDefaultInstance()));
+      }
+
+      @Override
+	public  void snapshot(
+          com.google.protobuf.RpcController controller,
+          Common.SnapshotRequest request,
+          com.google.protobuf.RpcCallback<Common.Status> done) {
+        channel.callMethod(
+          getDescriptor().getMethods().get(8),
           controller,
           request,
           Common.Status.getDefaultInstance(),
@@ -6184,10 +8684,25 @@ public final class Common {
           Common.AutocompleteRequest request)
           throws com.google.protobuf.ServiceException;
 
+      public Common.BatchMatchedUsers batchAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.BatchAutocompleteRequest request)
+          throws com.google.protobuf.ServiceException;
+
+      public Common.MatchedUsers federatedAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.FederatedAutocompleteRequest request)
+          throws com.google.protobuf.ServiceException;
+
       public Common.Status clearUsers(
           com.google.protobuf.RpcController controller,
           Common.ClearRequest request)
           throws com.google.protobuf.ServiceException;
+
+      public Common.Status snapshot(
+          com.google.protobuf.RpcController controller,
+          Common.SnapshotRequest request)
+          throws com.google.protobuf.ServiceException;
     }
 
     private static final class BlockingStub implements BlockingInterface {
@@ -6262,13 +8777,52 @@ public final class Common {
       }
 
 
+      @Override
+	public Common.BatchMatchedUsers batchAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.BatchAutocompleteRequest request)
+          throws com.google.protobuf.ServiceException {
+        return (Common.BatchMatchedUsers) channel.callBlockingMethod(
+          getDescriptor().getMethods().get(5),
+          controller,
+          request,
+          Common.BatchMatchedUsers.getDefaultInstance());
+      }
+
+
+      @Override
+	public Common.MatchedUsers federatedAutocomplete(
+          com.google.protobuf.RpcController controller,
+          Common.FederatedAutocompleteRequest request)
+          throws com.google.protobuf.ServiceException {
+        return (Common.MatchedUsers) channel.callBlockingMethod(
+          getDescriptor().getMethods().get(6),
+          controller,
+          request,
+          Common.MatchedUsers.getDefaultInstance());
+      }
+
+
       @Override
 	public Common.Status clearUsers(
           com.google.protobuf.RpcController controller,
           Common.ClearRequest request)
           throws com.google.protobuf.ServiceException {
         return (Common.Status) channel.callBlockingMethod(
-          getDescriptor().getMethods().get(5),
+          getDescriptor().getMethods().get(7),
+          controller,
+          request,
+          Common.Status.getDefaultInstance());
+      }
+
+
+      @Override
+	public Common.Status snapshot(
+          com.google.protobuf.RpcController controller,
+          Common.SnapshotRequest request)
+          throws com.google.protobuf.ServiceException {
+        return (Common.Status) channel.callBlockingMethod(
+          getDescriptor().getMethods().get(8),
           controller,
           request,
           Common.Status.getDefaultInstance());
@@ -6312,6 +8866,21 @@ public final class Common {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_AutocompleteRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_BatchAutocompleteRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_BatchAutocompleteRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_BatchMatchedUsers_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_BatchMatchedUsers_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_FederatedAutocompleteRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_FederatedAutocompleteRequest_fieldAccessorTable;
   private static com.google.protobuf.Descriptors.Descriptor
     internal_static_DeleteRequest_descriptor;
   private static
@@ -6322,6 +8891,11 @@ public final class Common {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_ClearRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_SnapshotRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_SnapshotRequest_fieldAccessorTable;
 
   public static com.google.protobuf.Descriptors.FileDescriptor
       getDescriptor() {
@@ -6343,17 +8917,29 @@ public final class Common {
       "art\030\001 \002(\005\022\013\n\003end\030\002 \002(\005\".\n\006Status\022\023\n\013stat",
       "us_code\030\001 \002(\005\022\017\n\007message\030\002 \002(\t\"K\n\014Matche" +
       "dUsers\022\027\n\006status\030\001 \002(\0132\007.Status\022\"\n\014match" +
-      "edUsers\030\002 \003(\0132\014.MatchedUser\"K\n\023Autocompl" +
+      "edUsers\030\002 \003(\0132\014.MatchedUser\"b\n\023Autocompl" +
       "eteRequest\022\r\n\005typed\030\001 \002(\t\022\016\n\006domain\030\002 \002(" +
-      "\t\022\025\n\rnum_responses\030\003 \002(\005\",\n\rDeleteReques" +
-      "t\022\013\n\003uid\030\001 \002(\005\022\016\n\006domain\030\002 \002(\t\"\037\n\014ClearR" +
-      "equest\022\017\n\007domains\030\001 \003(\t2\337\001\n\rAutocomplete" +
-      "r\022\033\n\010AddUsers\022\006.Users\032\007.Status\022\031\n\007AddUse" +
-      "r\022\005.User\032\007.Status\022\030\n\006Update\022\005.User\032\007.Sta" +
-      "tus\022!\n\006Delete\022\016.DeleteRequest\032\007.Status\0223",
-      "\n\014Autocomplete\022\024.AutocompleteRequest\032\r.M" +
-      "atchedUsers\022$\n\nClearUsers\022\r.ClearRequest" +
-      "\032\007.StatusB\003\210\001\001"
+      "\t\022\025\n\rnum_responses\030\003 \002(\005\022\025\n\rbudget_milli" +
+      "s\030\004 \001(\005\"B\n\030BatchAutocompleteRequest\022&\n\010r" +
+      "equests\030\001 \003(\0132\024.AutocompleteRequest\"L\n\021B" +
+      "atchMatchedUsers\022\027\n\006status\030\001 \002(\0132\007.Statu" +
+      "s\022\036\n\007results\030\002 \003(\0132\r.MatchedUsers\"l\n\034Fed" +
+      "eratedAutocompleteRequest\022\r\n\005typed\030\001 \002(\t",
+      "\022\017\n\007domains\030\002 \003(\t\022\025\n\rnum_responses\030\003 \002(\005" +
+      "\022\025\n\rbudget_millis\030\004 \001(\005\",\n\rDeleteRequest" +
+      "\022\013\n\003uid\030\001 \002(\005\022\016\n\006domain\030\002 \002(\t\"\037\n\014ClearRe" +
+      "quest\022\017\n\007domains\030\001 \003(\t\"\021\n\017SnapshotReques" +
+      "t2\221\003\n\rAutocompleter\022\033\n\010AddUsers\022\006.Users\032" +
+      "\007.Status\022\031\n\007AddUser\022\005.User\032\007.Status\022\030\n\006U" +
+      "pdate\022\005.User\032\007.Status\022!\n\006Delete\022\016.Delete" +
+      "Request\032\007.Status\0223\n\014Autocomplete\022\024.Autoc" +
+      "ompleteRequest\032\r.MatchedUsers\022B\n\021BatchAu" +
+      "tocomplete\022\031.BatchAutocompleteRequest\032\022.",
+      "BatchMatchedUsers\022E\n\025FederatedAutocomple" +
+      "te\022\035.FederatedAutocompleteRequest\032\r.Matc" +
+      "hedUsers\022$\n\nClearUsers\022\r.ClearRequest\032\007." +
+      "Status\022%\n\010Snapshot\022\020.SnapshotRequest\032\007.S" +
+      "tatusB\003\210\001\001"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -6414,11 +9000,35 @@ public final class Common {
           internal_static_AutocompleteRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_AutocompleteRequest_descriptor,
-              new java.lang.String[] { "Typed", "Domain", "NumResponses", },
+              new java.lang.String[] { "Typed", "Domain", "NumResponses", "BudgetMillis", },
               Common.AutocompleteRequest.class,
               Common.AutocompleteRequest.Builder.class);
-          internal_static_DeleteRequest_descriptor =
+          internal_static_BatchAutocompleteRequest_descriptor =
             getDescriptor().getMessageTypes().get(6);
+          internal_static_BatchAutocompleteRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_BatchAutocompleteRequest_descriptor,
+              new java.lang.String[] { "Requests", },
+              Common.BatchAutocompleteRequest.class,
+              Common.BatchAutocompleteRequest.Builder.class);
+          internal_static_BatchMatchedUsers_descriptor =
+            getDescriptor().getMessageTypes().get(7);
+          internal_static_BatchMatchedUsers_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_BatchMatchedUsers_descriptor,
+              new java.lang.String[] { "Status", "Results", },
+              Common.BatchMatchedUsers.class,
+              Common.BatchMatchedUsers.Builder.class);
+          internal_static_FederatedAutocompleteRequest_descriptor =
+            getDescriptor().getMessageTypes().get(8);
+          internal_static_FederatedAutocompleteRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_FederatedAutocompleteRequest_descriptor,
+              new java.lang.String[] { "Typed", "Domains", "NumResponses", "BudgetMillis", },
+              Common.FederatedAutocompleteRequest.class,
+              Common.FederatedAutocompleteRequest.Builder.class);
+          internal_static_DeleteRequest_descriptor =
+            getDescriptor().getMessageTypes().get(9);
           internal_static_DeleteRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_DeleteRequest_descriptor,
@@ -6426,13 +9036,21 @@ public final class Common {
               Common.DeleteRequest.class,
               Common.DeleteRequest.Builder.class);
           internal_static_ClearRequest_descriptor =
-            getDescriptor().getMessageTypes().get(7);
+            getDescriptor().getMessageTypes().get(10);
           internal_static_ClearRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_ClearRequest_descriptor,
               new java.lang.String[] { "Domains", },
               Common.ClearRequest.class,
               Common.ClearRequest.Builder.class);
+          internal_static_SnapshotRequest_descriptor =
+            getDescriptor().getMessageTypes().get(11);
+          internal_static_SnapshotRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_SnapshotRequest_descriptor,
+              new java.lang.String[] { },
+              Common.SnapshotRequest.class,
+              Common.SnapshotRequest.Builder.class);
           return null;
         }
       };
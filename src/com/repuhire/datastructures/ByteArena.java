@@ -0,0 +1,43 @@
+package com.repuhire.datastructures;
+
+/***
+ * Append-only store of byte records, each addressed by the position
+ * append returned for it. What a record holds, and so how long it is,
+ * is up to the caller.
+ *
+ * Arenas are not thread safe, but reads never change them, so any
+ * number of threads may read one as long as nobody appends meanwhile.
+ */
+public interface ByteArena {
+
+	/***
+	 * Appends a record, which is never split wherever the arena keeps it
+	 *
+	 * @param bytes Holds the record
+	 * @param offset Where the record starts in bytes
+	 * @param length The length of the record
+	 * @return The position of the record
+	 */
+	public long append(byte[] bytes, int offset, int length);
+
+	/***
+	 * @param position The position of a byte of a record
+	 * @return The byte
+	 */
+	public byte get(long position);
+
+	/***
+	 * Copies bytes of a record
+	 *
+	 * @param position The position of the first byte to copy
+	 * @param dst Where to copy the bytes
+	 * @param offset Where to copy the first byte in dst
+	 * @param length The number of bytes, which must all be of the same record
+	 */
+	public void get(long position, byte[] dst, int offset, int length);
+
+	/***
+	 * @return The number of bytes appended
+	 */
+	public long size();
+}
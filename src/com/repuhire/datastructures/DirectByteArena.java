@@ -0,0 +1,65 @@
+package com.repuhire.datastructures;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/***
+ * ByteArena keeping its records off heap, in direct ByteBuffers, so
+ * however many there are the garbage collector never has to scan or
+ * move them.
+ *
+ * Records are packed into chunks which start small and double up to
+ * MAX_CHUNK_BYTES, so small arenas stay small while large ones are not
+ * bound by the 2GB limit of a single buffer. A position holds the
+ * index of the chunk in its high int and the offset in its low int.
+ *
+ * Direct memory is only given back once the garbage collector finds
+ * the arena, or a chunk of it, unreachable; the JVM's direct memory
+ * limit, -XX:MaxDirectMemorySize, has to leave room for that.
+ */
+public class DirectByteArena implements ByteArena {
+
+	public static final int MIN_CHUNK_BYTES = 1 << 12;
+	public static final int MAX_CHUNK_BYTES = 1 << 26;
+
+	private final List<ByteBuffer> chunks = Lists.newArrayList();
+	private ByteBuffer current = null;
+	private long size = 0;
+
+	@Override
+	public long append(byte[] bytes, int offset, int length) {
+		if(current == null || current.remaining() < length) {
+
+			//A record larger than any chunk gets one of its own
+			int chunkBytes = current == null ? MIN_CHUNK_BYTES : Math.min(current.capacity() * 2, MAX_CHUNK_BYTES);
+			current = ByteBuffer.allocateDirect(Math.max(chunkBytes, length));
+			chunks.add(current);
+		}
+
+		long position = ((long) (chunks.size() - 1) << 32) | current.position();
+		current.put(bytes, offset, length);
+		size += length;
+		return position;
+	}
+
+	@Override
+	public byte get(long position) {
+		return chunks.get((int) (position >>> 32)).get((int) position);
+	}
+
+	@Override
+	public void get(long position, byte[] dst, int offset, int length) {
+		//Absolute bulk gets do not exist, so read through a view
+		//of our own rather than moving the shared buffer
+		ByteBuffer view = chunks.get((int) (position >>> 32)).duplicate();
+		view.position((int) position);
+		view.get(dst, offset, length);
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+}
@@ -0,0 +1,46 @@
+package com.repuhire.datastructures;
+
+import java.util.Arrays;
+
+/***
+ * ByteArena keeping every record back to back in one byte array,
+ * grown by half whenever it is full
+ */
+public class HeapByteArena implements ByteArena {
+
+	private byte[] bytes;
+	private int size = 0;
+
+	/***
+	 * @param capacity The number of bytes to make room for up front
+	 */
+	public HeapByteArena(int capacity) {
+		bytes = new byte[Math.max(capacity, 16)];
+	}
+
+	@Override
+	public long append(byte[] record, int offset, int length) {
+		if(size + length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length + (bytes.length >> 1), size + length));
+		}
+
+		System.arraycopy(record, offset, bytes, size, length);
+		size += length;
+		return size - length;
+	}
+
+	@Override
+	public byte get(long position) {
+		return bytes[(int) position];
+	}
+
+	@Override
+	public void get(long position, byte[] dst, int offset, int length) {
+		System.arraycopy(bytes, (int) position, dst, offset, length);
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+}
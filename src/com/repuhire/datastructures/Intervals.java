@@ -0,0 +1,104 @@
+package com.repuhire.datastructures;
+
+import java.util.Arrays;
+
+/***
+ * Reusable buffer of [start, end) intervals over non-negative ints
+ * which can be merged into the fewest intervals covering the same
+ * positions.
+ *
+ * Each interval is packed into one long, start in the high half and
+ * end in the low half, so sorting the longs sorts the intervals by
+ * start and the buffer never allocates once it has grown to size.
+ */
+public class Intervals {
+
+	private long[] intervals = new long[16];
+	private int size;
+
+	//Whether the intervals were added in ascending order,
+	//in which case consolidating needs no sort
+	private boolean sorted = true;
+
+	/***
+	 * Empties the buffer so it can be reused
+	 */
+	public void clear() {
+		size = 0;
+		sorted = true;
+	}
+
+	/***
+	 * Adds an interval
+	 *
+	 * @param start The first position, non-negative
+	 * @param end The position after the last one, at least start
+	 */
+	public void add(int start, int end) {
+		if(start < 0 || end < start) {
+			throw new IllegalArgumentException("Invalid interval " + start + " - " + end);
+		}
+
+		if(size == intervals.length) {
+			intervals = Arrays.copyOf(intervals, size * 2);
+		}
+
+		long interval = ((long) start << 32) | end;
+		if(size > 0 && intervals[size - 1] > interval) {
+			sorted = false;
+		}
+
+		intervals[size++] = interval;
+	}
+
+	/***
+	 * Merges overlapping and adjacent intervals in a single pass,
+	 * leaving them ascending on start. Example:
+	 *
+	 * 0 - 4, 1 - 2, 16 - 28, 3 - 7 are consolidated into just
+	 * 0 - 7, 16 - 28
+	 */
+	public void consolidate() {
+		if(!sorted) {
+			Arrays.sort(intervals, 0, size);
+			sorted = true;
+		}
+
+		if(size == 0) {
+			return;
+		}
+
+		int merged = 0;
+		int mergedStart = start(0);
+		int mergedEnd = end(0);
+
+		for(int i = 1; i < size; i++) {
+			int start = start(i);
+			int end = end(i);
+
+			//If we're in the range..
+			if(start <= mergedEnd) {
+				mergedEnd = Math.max(mergedEnd, end);
+			} else {
+				intervals[merged++] = ((long) mergedStart << 32) | mergedEnd;
+				mergedStart = start;
+				mergedEnd = end;
+			}
+		}
+
+		intervals[merged++] = ((long) mergedStart << 32) | mergedEnd;
+		size = merged;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int start(int i) {
+		return (int) (intervals[i] >>> 32);
+	}
+
+	public int end(int i) {
+		return (int) intervals[i];
+	}
+}
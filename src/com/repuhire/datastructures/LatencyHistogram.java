@@ -0,0 +1,137 @@
+package com.repuhire.datastructures;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***
+ * Histogram of latencies in microseconds which any number of threads
+ * record into without locking, as cheaply as one atomic increment.
+ *
+ * Buckets are laid out the HDR way: every power of two is split into
+ * SUB_BUCKETS equal buckets, so a latency is known to within 1/16th of
+ * itself whatever its magnitude, from 1us up to over an hour, in a few
+ * kilobytes. Latencies above that land in the last bucket.
+ *
+ * Draining takes the counts recorded so far and starts over, so each
+ * sample is reported exactly once even while others keep arriving.
+ */
+public class LatencyHistogram {
+
+	//Each power of two is split into 2^SUB_BUCKET_BITS buckets
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	//The largest latency told apart from larger ones, about 71 minutes
+	private static final int MAX_EXPONENT = 31;
+	public static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	private static final int NUM_BUCKETS = bucketOf(MAX_MICROS) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+	/***
+	 * @param micros A latency, clamped to 0 and MAX_MICROS
+	 */
+	public void record(long micros) {
+		counts.incrementAndGet(bucketOf(Math.max(0, Math.min(micros, MAX_MICROS))));
+	}
+
+	/***
+	 * Takes every sample recorded so far out of the histogram
+	 *
+	 * @return The samples taken
+	 */
+	public Snapshot drain() {
+		long[] drained = new long[NUM_BUCKETS];
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			if(counts.get(i) != 0) {
+				drained[i] = counts.getAndSet(i, 0);
+			}
+		}
+
+		return new Snapshot(drained);
+	}
+
+	/***
+	 * Values below SUB_BUCKETS have a bucket each; above, the leading
+	 * one bit picks the power of two and the next SUB_BUCKET_BITS bits
+	 * the bucket within it
+	 */
+	private static int bucketOf(long micros) {
+		if(micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+	}
+
+	/***
+	 * @return The largest value falling in a bucket
+	 */
+	private static long highestIn(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/***
+	 * Samples drained from a histogram; not thread safe
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+
+		private Snapshot(long[] counts) {
+			this.counts = counts;
+
+			long total = 0;
+			for(long bucketCount : counts) {
+				total += bucketCount;
+			}
+
+			this.count = total;
+		}
+
+		/***
+		 * @return The number of samples
+		 */
+		public long count() {
+			return count;
+		}
+
+		/***
+		 * @param percentile Between 0 and 100
+		 * @return A latency at least as high as that percentile of the
+		 * samples and at most 1/16th above it, or 0 if there are none
+		 */
+		public long percentile(double percentile) {
+			if(count == 0) {
+				return 0;
+			}
+
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= rank) {
+					return highestIn(i);
+				}
+			}
+
+			return MAX_MICROS;
+		}
+
+		/***
+		 * @return The highest latency, to within 1/16th, or 0 if there are none
+		 */
+		public long max() {
+			return percentile(100);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.repuhire.datastructures;
+
+import java.util.Arrays;
+
+/***
+ * Hash map from long keys to non-negative int values, kept in two
+ * primitive arrays so no entry or boxed key is ever allocated.
+ *
+ * Collisions are resolved by linear probing, and removals shift later
+ * entries of the same run back rather than leaving markers behind, so
+ * lookups never slow down however many entries come and go.
+ *
+ * LongIntHashMap is not thread safe.
+ */
+public class LongIntHashMap {
+
+	//Value of a free bucket, and what get returns for a missing key
+	public static final int NO_VALUE = -1;
+
+	//Grows once three quarters of the buckets are taken
+	private static final int MAX_LOAD_NUMERATOR = 3;
+	private static final int MAX_LOAD_DENOMINATOR = 4;
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	/***
+	 * @param expectedSize The number of entries the map should hold without growing
+	 */
+	public LongIntHashMap(int expectedSize) {
+		int capacity = 16;
+		while(capacity * MAX_LOAD_NUMERATOR / MAX_LOAD_DENOMINATOR < expectedSize) {
+			capacity *= 2;
+		}
+
+		allocate(capacity);
+	}
+
+	/***
+	 * @param key The key to look up
+	 * @return The value of the key, or NO_VALUE if it has none
+	 */
+	public int get(long key) {
+		int mask = keys.length - 1;
+
+		for(int bucket = bucketOf(key); values[bucket] != NO_VALUE; bucket = (bucket + 1) & mask) {
+			if(keys[bucket] == key) {
+				return values[bucket];
+			}
+		}
+
+		return NO_VALUE;
+	}
+
+	/***
+	 * Maps a key to a value, replacing its previous value if any
+	 *
+	 * @param key The key
+	 * @param value The value, which must not be negative
+	 * @return The previous value of the key, or NO_VALUE if it had none
+	 * @throws IllegalArgumentException if the value is negative
+	 */
+	public int put(long key, int value) {
+		if(value < 0) {
+			throw new IllegalArgumentException("Cannot map " + key + " to negative value " + value);
+		}
+
+		int mask = keys.length - 1;
+		int bucket = bucketOf(key);
+		for(; values[bucket] != NO_VALUE; bucket = (bucket + 1) & mask) {
+			if(keys[bucket] == key) {
+				int previous = values[bucket];
+				values[bucket] = value;
+				return previous;
+			}
+		}
+
+		keys[bucket] = key;
+		values[bucket] = value;
+		if(++size * MAX_LOAD_DENOMINATOR > keys.length * MAX_LOAD_NUMERATOR) {
+			rehash(keys.length * 2);
+		}
+
+		return NO_VALUE;
+	}
+
+	/***
+	 * @param key The key to remove
+	 * @return The value the key had, or NO_VALUE if it had none
+	 */
+	public int remove(long key) {
+		int mask = keys.length - 1;
+		int bucket = bucketOf(key);
+		while(values[bucket] != NO_VALUE && keys[bucket] != key) {
+			bucket = (bucket + 1) & mask;
+		}
+
+		int removed = values[bucket];
+		if(removed == NO_VALUE) {
+			return NO_VALUE;
+		}
+
+		//Move back every later entry of the run which the
+		//free bucket would otherwise cut off from its home
+		int free = bucket;
+		for(int next = (free + 1) & mask; values[next] != NO_VALUE; next = (next + 1) & mask) {
+			int home = bucketOf(keys[next]);
+			if(((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+		}
+
+		values[free] = NO_VALUE;
+		size--;
+		return removed;
+	}
+
+	/***
+	 * @return The number of keys mapped
+	 */
+	public int size() {
+		return size;
+	}
+
+	/***
+	 * Removes every entry
+	 */
+	public void clear() {
+		Arrays.fill(values, NO_VALUE);
+		size = 0;
+	}
+
+	private int bucketOf(long key) {
+		//Fibonacci hashing spreads sequential keys over the whole table
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> (64 - Integer.numberOfTrailingZeros(keys.length)));
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+
+		int mask = capacity - 1;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldValues[i] != NO_VALUE) {
+				int bucket = bucketOf(oldKeys[i]);
+				while(values[bucket] != NO_VALUE) {
+					bucket = (bucket + 1) & mask;
+				}
+
+				keys[bucket] = oldKeys[i];
+				values[bucket] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NO_VALUE);
+	}
+}
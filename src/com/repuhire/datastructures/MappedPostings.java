@@ -0,0 +1,84 @@
+package com.repuhire.datastructures;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/***
+ * Postings read in place from a buffer, typically a memory-mapped
+ * file, without copying them onto the heap.
+ *
+ * Each entry takes ENTRY_BYTES: the rank as a long followed by the
+ * identifier as an int, so entries can be binary searched. Only
+ * absolute reads are made, so one buffer can be shared by any number
+ * of threads as long as nobody writes to it.
+ */
+public class MappedPostings implements Postings {
+
+	public static final int ENTRY_BYTES = 12;
+
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final int size;
+
+	/***
+	 * @param buffer The buffer holding the postings
+	 * @param offset Where the first entry starts
+	 * @param size The number of entries
+	 */
+	public MappedPostings(ByteBuffer buffer, int offset, int size) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/***
+	 * Writes postings in the format read by MappedPostings
+	 *
+	 * @param postings The postings to write, whose identifiers must fit in an int
+	 * @param out Where to write them
+	 * @throws IOException if the output fails
+	 */
+	public static void write(Postings postings, DataOutput out) throws IOException {
+		for(int i = 0; i < postings.size(); i++) {
+			out.writeLong(postings.getRank(i));
+			out.writeInt((int) postings.getId(i));
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long getId(int index) {
+		return buffer.getInt(offset + index * ENTRY_BYTES + 8);
+	}
+
+	@Override
+	public long getRank(int index) {
+		return buffer.getLong(offset + index * ENTRY_BYTES);
+	}
+
+	@Override
+	public boolean contains(long id, long rank) {
+		int low = 0;
+		int high = size - 1;
+
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = PostingList.compare(getRank(mid), getId(mid), rank, id);
+
+			if(cmp < 0) {
+				low = mid + 1;
+			} else if(cmp > 0) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
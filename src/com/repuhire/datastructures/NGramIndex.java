@@ -0,0 +1,432 @@
+package com.repuhire.datastructures;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+/***
+ * Inverted index from the n-grams of a set of tokens to the
+ * identifiers owning those tokens, ordered by static rank.
+ *
+ * Every gram of length 1 through n is indexed, so a query shorter
+ * than n is answered by a single posting list, and a longer query by
+ * intersecting the postings of each of its n-grams. The result is a
+ * superset of the identifiers with a token containing the query, and
+ * is exact for queries of at most n characters.
+ */
+public class NGramIndex {
+
+	//Batches smaller than this are not worth splitting across threads
+	private static final int MIN_PARTITION_SIZE = 4096;
+
+	private final int gramLength;
+	private final Map<String, PostingList> postings = new HashMap<String, PostingList>();
+
+	/***
+	 * @param gramLength The longest gram to index
+	 * @throws IllegalArgumentException if the length is not positive
+	 */
+	public NGramIndex(int gramLength) {
+		if(gramLength <= 0) {
+			throw new IllegalArgumentException("Gram length must be positive, got " + gramLength);
+		}
+
+		this.gramLength = gramLength;
+	}
+
+	/***
+	 * Indexes the tokens of an identifier
+	 *
+	 * @param id The identifier owning the tokens
+	 * @param rank The static rank of the identifier
+	 * @param tokens The tokens to index
+	 */
+	public void add(long id, long rank, Collection<String> tokens) {
+		for(String gram : gramsOf(tokens)) {
+			PostingList posting = postings.get(gram);
+			if(posting == null) {
+				posting = new PostingList();
+				postings.put(gram, posting);
+			}
+
+			posting.add(id, rank);
+		}
+	}
+
+	/***
+	 * Builds the postings of many identifiers without touching the
+	 * index, so it can be done outside of any lock. Contiguous ranges of
+	 * the batch are handled by separate tasks on the executor.
+	 *
+	 * @param ids The identifiers owning the tokens
+	 * @param ranks The static rank of each identifier
+	 * @param tokens The tokens to index of each identifier
+	 * @param executor Where to build the partitions, or null to
+	 * build everything on the calling thread
+	 * @return The postings, to be handed to addAll once
+	 * @throws IllegalArgumentException if the arguments differ in length
+	 */
+	public Batch buildPostings(final long[] ids, final long[] ranks, final List<? extends Collection<String>> tokens, ExecutorService executor) {
+		if(ids.length != ranks.length || ids.length != tokens.size()) {
+			throw new IllegalArgumentException("Got " + ids.length + " identifiers, " + ranks.length + " ranks and " + tokens.size() + " token collections");
+		}
+
+		final int numPartitions = numPartitions(ids.length, executor);
+		List<Callable<List<Map<String, PostingList>>>> tasks = Lists.newArrayList();
+
+		for(int partition = 0; partition < numPartitions; partition++) {
+			final int from = (int) ((long) ids.length * partition / numPartitions);
+			final int to = (int) ((long) ids.length * (partition + 1) / numPartitions);
+
+			tasks.add(new Callable<List<Map<String, PostingList>>>() {
+				@Override
+				public List<Map<String, PostingList>> call() {
+					return partitionPostings(ids, ranks, tokens, from, to, numPartitions);
+				}
+			});
+		}
+
+		return new Batch(invokeAll(tasks, executor), numPartitions);
+	}
+
+	/***
+	 * Merges built postings into the index. Every gram belongs to a
+	 * single shard and each shard is merged by a separate task, so tasks
+	 * never touch the same posting; only the grams new to the index are
+	 * put into it afterwards, on the calling thread.
+	 *
+	 * @param batch Postings built by this index and not added yet
+	 * @param executor Where to merge the shards, or null to merge
+	 * everything on the calling thread
+	 */
+	public void addAll(final Batch batch, ExecutorService executor) {
+		List<Callable<Map<String, PostingList>>> tasks = Lists.newArrayList();
+
+		for(int shard = 0; shard < batch.numShards; shard++) {
+			final int mergedShard = shard;
+
+			tasks.add(new Callable<Map<String, PostingList>>() {
+				@Override
+				public Map<String, PostingList> call() {
+					return mergeShard(batch, mergedShard);
+				}
+			});
+		}
+
+		for(Map<String, PostingList> created : invokeAll(tasks, executor)) {
+			postings.putAll(created);
+		}
+	}
+
+	/***
+	 * Indexes the tokens of many identifiers at once on the calling thread
+	 *
+	 * @param ids The identifiers owning the tokens
+	 * @param ranks The static rank of each identifier
+	 * @param tokens The tokens to index of each identifier
+	 * @throws IllegalArgumentException if the arguments differ in length
+	 */
+	public void addAll(long[] ids, long[] ranks, List<? extends Collection<String>> tokens) {
+		addAll(buildPostings(ids, ranks, tokens, null), null);
+	}
+
+	/***
+	 * Removes the tokens of an identifier from the index. The tokens
+	 * and rank must be the same ones it was added with.
+	 *
+	 * @param id The identifier owning the tokens
+	 * @param rank The static rank it was indexed with
+	 * @param tokens The tokens it was indexed with
+	 */
+	public void remove(long id, long rank, Collection<String> tokens) {
+		for(String gram : gramsOf(tokens)) {
+			PostingList posting = postings.get(gram);
+			if(posting != null && posting.remove(id, rank) && posting.isEmpty()) {
+				postings.remove(gram);
+			}
+		}
+	}
+
+	/***
+	 * Finds the identifiers which may own a token containing each
+	 * of the query tokens.
+	 *
+	 * @param queryTokens Tokens which must all match
+	 * @return The candidate identifiers, best rank first
+	 */
+	public PostingIntersection candidates(List<String> queryTokens) {
+
+		List<PostingList> lists = Lists.newArrayList();
+		for(String token : queryTokens) {
+			for(String gram : queryGramsOf(token)) {
+				PostingList posting = postings.get(gram);
+				if(posting == null) {
+					return new PostingIntersection(Collections.<PostingList>emptyList());
+				}
+
+				lists.add(posting);
+			}
+		}
+
+		return new PostingIntersection(lists);
+	}
+
+	/***
+	 * Removes everything from the index
+	 */
+	public void clear() {
+		postings.clear();
+	}
+
+	/***
+	 * Writes every posting of the index
+	 *
+	 * @param out The stream to write to
+	 * @throws IOException if the stream fails
+	 */
+	public void writeTo(CodedOutputStream out) throws IOException {
+		out.writeUInt32NoTag(gramLength);
+		out.writeUInt32NoTag(postings.size());
+
+		for(Map.Entry<String, PostingList> entry : postings.entrySet()) {
+			out.writeStringNoTag(entry.getKey());
+			entry.getValue().writeTo(out);
+		}
+	}
+
+	/***
+	 * Reads an index written by writeTo
+	 *
+	 * @param in The stream to read from
+	 * @return The index read
+	 * @throws IOException if the stream fails or holds no index
+	 */
+	public static NGramIndex readFrom(CodedInputStream in) throws IOException {
+		int gramLength = in.readRawVarint32();
+		int numPostings = in.readRawVarint32();
+		if(gramLength <= 0 || numPostings < 0) {
+			throw new IOException("Corrupt index of gram length " + gramLength + " with " + numPostings + " postings");
+		}
+
+		NGramIndex index = new NGramIndex(gramLength);
+		for(int i = 0; i < numPostings; i++) {
+			in.resetSizeCounter();
+			index.postings.put(in.readString(), PostingList.readFrom(in));
+		}
+
+		return index;
+	}
+
+	public int getGramLength() {
+		return gramLength;
+	}
+
+	/***
+	 * @return Every gram indexed, in String order
+	 */
+	public List<String> sortedGrams() {
+		List<String> grams = Lists.newArrayList(postings.keySet());
+		Collections.sort(grams);
+		return grams;
+	}
+
+	/***
+	 * @param gram The gram to look up
+	 * @return The postings of the gram, or null if none are indexed;
+	 * must not be modified
+	 */
+	public PostingList getPostings(String gram) {
+		return postings.get(gram);
+	}
+
+	/***
+	 * Builds the postings of a range of the batch, split into shards
+	 * by gram, each posting in order
+	 */
+	private List<Map<String, PostingList>> partitionPostings(final long[] ids, final long[] ranks, List<? extends Collection<String>> tokens, int from, int to, int numShards) {
+
+		//Visiting the range in posting order makes every add an append
+		Integer[] order = new Integer[to - from];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = from + i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer arg0, Integer arg1) {
+				return PostingList.compare(ranks[arg0], ids[arg0], ranks[arg1], ids[arg1]);
+			}
+		});
+
+		List<Map<String, PostingList>> shards = Lists.newArrayListWithCapacity(numShards);
+		for(int shard = 0; shard < numShards; shard++) {
+			shards.add(new HashMap<String, PostingList>());
+		}
+
+		for(int i : order) {
+			for(String gram : gramsOf(tokens.get(i))) {
+				Map<String, PostingList> shard = shards.get(shardOf(gram, numShards));
+				PostingList posting = shard.get(gram);
+				if(posting == null) {
+					posting = new PostingList();
+					shard.put(gram, posting);
+				}
+
+				posting.add(ids[i], ranks[i]);
+			}
+		}
+
+		return shards;
+	}
+
+	/***
+	 * Merges one shard of every partition of a batch into the index
+	 *
+	 * @return The postings of grams the index did not have yet
+	 */
+	private Map<String, PostingList> mergeShard(Batch batch, int shard) {
+		Map<String, PostingList> created = new HashMap<String, PostingList>();
+
+		for(List<Map<String, PostingList>> partition : batch.postings) {
+			for(Map.Entry<String, PostingList> entry : partition.get(shard).entrySet()) {
+				PostingList posting = created.get(entry.getKey());
+				if(posting == null) {
+					posting = postings.get(entry.getKey());
+				}
+
+				if(posting == null) {
+					created.put(entry.getKey(), entry.getValue());
+				} else {
+					posting.addAll(entry.getValue());
+				}
+			}
+		}
+
+		return created;
+	}
+
+	/***
+	 * @return How many partitions a batch of the given size is worth splitting into
+	 */
+	private static int numPartitions(int batchSize, ExecutorService executor) {
+		if(executor == null) {
+			return 1;
+		}
+
+		return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), batchSize / MIN_PARTITION_SIZE));
+	}
+
+	private static int shardOf(String gram, int numShards) {
+		return (gram.hashCode() & Integer.MAX_VALUE) % numShards;
+	}
+
+	/***
+	 * Runs tasks on the executor, or on the calling thread if there is
+	 * no executor or a single task
+	 *
+	 * @return The results of the tasks, in order
+	 */
+	private static <T> List<T> invokeAll(List<Callable<T>> tasks, ExecutorService executor) {
+		List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+
+		try {
+			if(executor == null || tasks.size() == 1) {
+				for(Callable<T> task : tasks) {
+					results.add(task.call());
+				}
+			} else {
+				for(Future<T> result : executor.invokeAll(tasks)) {
+					results.add(result.get());
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while building the index", e);
+		} catch(ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		} catch(Exception e) {
+			throw Throwables.propagate(e);
+		}
+
+		return results;
+	}
+
+	/***
+	 * @return The distinct grams, of length 1 through n, of the tokens
+	 */
+	private Set<String> gramsOf(Collection<String> tokens) {
+		Set<String> grams = Sets.newHashSet();
+
+		for(String token : tokens) {
+			for(int start = 0; start < token.length(); start++) {
+				int maxEnd = Math.min(token.length(), start + gramLength);
+				for(int end = start + 1; end <= maxEnd; end++) {
+					grams.add(token.substring(start, end));
+				}
+			}
+		}
+
+		return grams;
+	}
+
+	/***
+	 * @return The token itself if it is no longer than n, otherwise its n-grams
+	 */
+	private Set<String> queryGramsOf(String token) {
+		return queryGrams(token, gramLength);
+	}
+
+	/***
+	 * Lists the grams to look up for a query token, which are the
+	 * token itself if it is no longer than the grams indexed,
+	 * otherwise its grams of that length
+	 *
+	 * @param token The query token
+	 * @param gramLength The longest gram indexed
+	 * @return The grams whose postings to intersect
+	 */
+	public static Set<String> queryGrams(String token, int gramLength) {
+		if(token.length() <= gramLength) {
+			return Collections.singleton(token);
+		}
+
+		Set<String> grams = Sets.newHashSet();
+		for(int start = 0; start + gramLength <= token.length(); start++) {
+			grams.add(token.substring(start, start + gramLength));
+		}
+
+		return grams;
+	}
+
+	/***
+	 * Postings built for a batch of identifiers, split into
+	 * partitions of the batch and shards of the grams
+	 */
+	public static class Batch {
+
+		//postings.get(partition).get(shard)
+		private final List<List<Map<String, PostingList>>> postings;
+		private final int numShards;
+
+		private Batch(List<List<Map<String, PostingList>>> postings, int numShards) {
+			this.postings = postings;
+			this.numShards = numShards;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.repuhire.datastructures;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/***
+ * Lazily walks the entries common to a set of posting lists, in
+ * posting order (best rank first). Nothing is materialized up front,
+ * so a caller which stops early only pays for what it visited.
+ */
+public class PostingIntersection {
+
+	private final Postings driver;
+	private final List<? extends Postings> others;
+	private int position = -1;
+
+	/***
+	 * @param lists The lists to intersect; an empty collection
+	 * intersects to nothing
+	 */
+	public PostingIntersection(List<? extends Postings> lists) {
+
+		if(lists.isEmpty()) {
+			this.driver = new PostingList();
+			this.others = Collections.emptyList();
+			return;
+		}
+
+		//Drive from the shortest list and probe the others
+		Collections.sort(lists, new Comparator<Postings>() {
+			@Override
+			public int compare(Postings arg0, Postings arg1) {
+				return arg0.size() - arg1.size();
+			}
+		});
+
+		this.driver = lists.get(0);
+		this.others = lists.subList(1, lists.size());
+	}
+
+	/***
+	 * Advances to the next common entry
+	 *
+	 * @return True iff there was one
+	 */
+	public boolean next() {
+		while(++position < driver.size()) {
+			long id = driver.getId(position);
+			long rank = driver.getRank(position);
+
+			boolean inAll = true;
+			for(Postings other : others) {
+				if(!other.contains(id, rank)) {
+					inAll = false;
+					break;
+				}
+			}
+
+			if(inAll) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public long id() {
+		return driver.getId(position);
+	}
+
+	public long rank() {
+		return driver.getRank(position);
+	}
+
+	/***
+	 * @return An upper bound on the number of entries in the intersection
+	 */
+	public int maxSize() {
+		return driver.size();
+	}
+}
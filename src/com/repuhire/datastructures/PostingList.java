@@ -0,0 +1,241 @@
+package com.repuhire.datastructures;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+/***
+ * Duplicate free list of long identifiers, each carrying a static
+ * rank, backed by primitive arrays.
+ *
+ * Entries are ordered by descending rank, then ascending identifier,
+ * so walking a list front to back visits the best ranked entries first.
+ */
+public class PostingList implements Postings {
+
+	private long[] ranks;
+	private long[] ids;
+	private int size;
+
+	public PostingList() {
+		this(4);
+	}
+
+	private PostingList(int capacity) {
+		this.ranks = new long[capacity];
+		this.ids = new long[capacity];
+	}
+
+	/***
+	 * Reads a list written by writeTo
+	 *
+	 * @param in The stream to read from
+	 * @return The list read
+	 * @throws IOException if the stream fails or holds no list
+	 */
+	public static PostingList readFrom(CodedInputStream in) throws IOException {
+		int size = in.readRawVarint32();
+		if(size < 0) {
+			throw new IOException("Corrupt posting list of size " + size);
+		}
+
+		PostingList list = new PostingList(Math.max(4, size));
+		for(int i = 0; i < size; i++) {
+			if(i == 0) {
+				list.ranks[i] = in.readSInt64();
+				list.ids[i] = in.readSInt64();
+			} else {
+				long rankDrop = in.readRawVarint64();
+				list.ranks[i] = list.ranks[i - 1] - rankDrop;
+				list.ids[i] = rankDrop == 0 ? list.ids[i - 1] + in.readRawVarint64() : in.readSInt64();
+			}
+		}
+
+		list.size = size;
+		return list;
+	}
+
+	/***
+	 * Writes the list compactly: entries at the same rank as the
+	 * previous one only take the varint of the gap between identifiers
+	 *
+	 * @param out The stream to write to
+	 * @throws IOException if the stream fails
+	 */
+	public void writeTo(CodedOutputStream out) throws IOException {
+		out.writeUInt32NoTag(size);
+
+		for(int i = 0; i < size; i++) {
+			if(i == 0) {
+				out.writeSInt64NoTag(ranks[i]);
+				out.writeSInt64NoTag(ids[i]);
+			} else {
+				long rankDrop = ranks[i - 1] - ranks[i];
+				out.writeUInt64NoTag(rankDrop);
+				if(rankDrop == 0) {
+					out.writeUInt64NoTag(ids[i] - ids[i - 1]);
+				} else {
+					out.writeSInt64NoTag(ids[i]);
+				}
+			}
+		}
+	}
+
+	/***
+	 * Adds an identifier, keeping the list ordered
+	 *
+	 * @param id The identifier to add
+	 * @param rank The static rank of the identifier
+	 * @return True iff the identifier was not already present at that rank
+	 */
+	public boolean add(long id, long rank) {
+		int index = indexOf(id, rank);
+		if(index >= 0) {
+			return false;
+		}
+
+		int insertAt = -(index + 1);
+		if(size == ids.length) {
+			ranks = Arrays.copyOf(ranks, size * 2);
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+
+		System.arraycopy(ranks, insertAt, ranks, insertAt + 1, size - insertAt);
+		System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+		ranks[insertAt] = rank;
+		ids[insertAt] = id;
+		size++;
+		return true;
+	}
+
+	/***
+	 * Adds every entry of another list in a single merging pass,
+	 * which beats adding them one by one once there are more than a few
+	 *
+	 * @param other The entries to add, which are left untouched
+	 * @return The number of entries which were not already present
+	 */
+	public int addAll(PostingList other) {
+		long[] mergedRanks = new long[Math.max(4, size + other.size)];
+		long[] mergedIds = new long[mergedRanks.length];
+		int merged = 0;
+		int i = 0;
+		int j = 0;
+
+		while(i < size || j < other.size) {
+			int cmp;
+			if(i == size) {
+				cmp = 1;
+			} else if(j == other.size) {
+				cmp = -1;
+			} else {
+				cmp = compare(ranks[i], ids[i], other.ranks[j], other.ids[j]);
+			}
+
+			if(cmp <= 0) {
+				mergedRanks[merged] = ranks[i];
+				mergedIds[merged++] = ids[i++];
+
+				//Already present
+				if(cmp == 0) {
+					j++;
+				}
+			} else {
+				mergedRanks[merged] = other.ranks[j];
+				mergedIds[merged++] = other.ids[j++];
+			}
+		}
+
+		int added = merged - size;
+		ranks = mergedRanks;
+		ids = mergedIds;
+		size = merged;
+		return added;
+	}
+
+	/***
+	 * Removes an identifier
+	 *
+	 * @param id The identifier to remove
+	 * @param rank The static rank it was added with
+	 * @return True iff the identifier was present
+	 */
+	public boolean remove(long id, long rank) {
+		int index = indexOf(id, rank);
+		if(index < 0) {
+			return false;
+		}
+
+		System.arraycopy(ranks, index + 1, ranks, index, size - index - 1);
+		System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+		size--;
+		return true;
+	}
+
+	@Override
+	public boolean contains(long id, long rank) {
+		return indexOf(id, rank) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public long getId(int index) {
+		return ids[index];
+	}
+
+	@Override
+	public long getRank(int index) {
+		return ranks[index];
+	}
+
+	/***
+	 * Binary searches for an entry
+	 *
+	 * @return The index of the entry if present, otherwise
+	 * (-(insertion point) - 1) as in Arrays.binarySearch
+	 */
+	private int indexOf(long id, long rank) {
+		int low = 0;
+		int high = size - 1;
+
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(ranks[mid], ids[mid], rank, id);
+
+			if(cmp < 0) {
+				low = mid + 1;
+			} else if(cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+	/***
+	 * Orders entries by descending rank, then ascending identifier
+	 */
+	public static int compare(long rank0, long id0, long rank1, long id1) {
+		if(rank0 != rank1) {
+			return rank0 > rank1 ? -1 : 1;
+		}
+
+		if(id0 != id1) {
+			return id0 < id1 ? -1 : 1;
+		}
+
+		return 0;
+	}
+}
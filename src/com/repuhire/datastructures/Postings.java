@@ -0,0 +1,21 @@
+package com.repuhire.datastructures;
+
+/***
+ * Read access to a duplicate free list of identifiers, each carrying
+ * a static rank, ordered by descending rank, then ascending identifier.
+ */
+public interface Postings {
+
+	public int size();
+
+	public long getId(int index);
+
+	public long getRank(int index);
+
+	/***
+	 * @param id The identifier to look for
+	 * @param rank The static rank it would be listed under
+	 * @return True iff the entry is in the list
+	 */
+	public boolean contains(long id, long rank);
+}
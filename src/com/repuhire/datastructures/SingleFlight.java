@@ -0,0 +1,131 @@
+package com.repuhire.datastructures;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/***
+ * Computes each value once for any number of threads asking for it at
+ * the same time: the first computes it, and those asking while it does
+ * wait for its value, or its exception, instead of computing their own.
+ * Nothing is kept once the computation is done.
+ *
+ * A computation is keyed and started from a generation of whatever it
+ * reads, e.g. a count of mutations, and is only shared with those
+ * asking from the same generation, so none of them gets a value older
+ * than the state it asked in.
+ *
+ * Those in a hurry can bound how long they wait for a computation under
+ * way, and get nothing once they have waited that long.
+ *
+ * @param <K> What identifies a computation
+ * @param <V> What it computes
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<K, Flight<V>>();
+
+	//Values waited for rather than computed
+	private final AtomicLong shared = new AtomicLong();
+
+	/***
+	 * Computes a value, or waits for the same computation under way
+	 *
+	 * @param key What identifies the computation
+	 * @param generation The generation of what the computation reads,
+	 * read before asking
+	 * @param computation What computes the value if it is not under way
+	 * from the same generation already
+	 * @return The value
+	 */
+	public V get(K key, long generation, Supplier<V> computation) {
+		return get(key, generation, Long.MAX_VALUE, computation);
+	}
+
+	/***
+	 * Computes a value, or waits a while for the same computation under way
+	 *
+	 * @param key What identifies the computation
+	 * @param generation The generation of what the computation reads,
+	 * read before asking
+	 * @param timeoutNanos The longest to wait for the computation under
+	 * way, Long.MAX_VALUE for as long as it takes
+	 * @param computation What computes the value if it is not under way
+	 * from the same generation already; never null
+	 * @return The value, or null if waited for longer than the timeout
+	 */
+	public V get(K key, long generation, long timeoutNanos, Supplier<V> computation) {
+		Flight<V> flight = new Flight<V>(generation);
+		Flight<V> underWay = flights.putIfAbsent(key, flight);
+
+		if(underWay != null) {
+			if(underWay.generation == generation) {
+				shared.incrementAndGet();
+				V value = underWay.await(timeoutNanos);
+				if(value == null) {
+					shared.decrementAndGet();
+				}
+
+				return value;
+			}
+
+			//Under way from another generation, which may be too old
+			return computation.get();
+		}
+
+		try {
+			V value = computation.get();
+			flight.value.set(value);
+			return value;
+		} catch(RuntimeException e) {
+			flight.value.setException(e);
+			throw e;
+		} catch(Error e) {
+			flight.value.setException(e);
+			throw e;
+		} finally {
+			flights.remove(key, flight);
+		}
+	}
+
+	/***
+	 * @return The number of values waited for rather than computed so far
+	 */
+	public long getShared() {
+		return shared.get();
+	}
+
+	private static class Flight<V> {
+		private final long generation;
+		private final SettableFuture<V> value = SettableFuture.create();
+
+		private Flight(long generation) {
+			this.generation = generation;
+		}
+
+		/***
+		 * @param timeoutNanos The longest to wait, Long.MAX_VALUE for as long as it takes
+		 * @return The value computed, rethrowing what computing it threw,
+		 * or null if not computed in time
+		 */
+		private V await(long timeoutNanos) {
+			try {
+				return timeoutNanos == Long.MAX_VALUE
+						? Uninterruptibles.getUninterruptibly(value)
+						: Uninterruptibles.getUninterruptibly(value, timeoutNanos, TimeUnit.NANOSECONDS);
+			} catch(ExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			} catch(TimeoutException e) {
+				return null;
+			}
+		}
+	}
+}
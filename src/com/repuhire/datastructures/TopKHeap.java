@@ -0,0 +1,149 @@
+package com.repuhire.datastructures;
+
+import java.util.Arrays;
+
+/***
+ * Bounded min-heap keeping the k best scored items offered to it,
+ * items being long identifiers.
+ *
+ * Items, scores and tie breaking orders live in primitive arrays and
+ * the arrays are kept across reset() calls, so a heap reused for many
+ * queries allocates nothing once it has grown to size.
+ *
+ * Of two items with the same score, the one offered with the lower
+ * order is the better one.
+ */
+public class TopKHeap {
+
+	private double[] scores = new double[16];
+	private int[] orders = new int[16];
+	private long[] items = new long[16];
+	private int size;
+	private int k;
+
+	/***
+	 * Empties the heap so it can be reused
+	 *
+	 * @param k The number of items to keep
+	 */
+	public void reset(int k) {
+		this.size = 0;
+		this.k = k;
+	}
+
+	/***
+	 * Offers an item, keeping it iff it is among the best k so far
+	 *
+	 * @param item The item
+	 * @param score The score of the item, higher is better
+	 * @param order The tie breaker, lower is better
+	 */
+	public void offer(long item, double score, int order) {
+		if(k <= 0) {
+			return;
+		}
+
+		if(size < k) {
+			if(size == scores.length) {
+				int capacity = size * 2;
+				scores = Arrays.copyOf(scores, capacity);
+				orders = Arrays.copyOf(orders, capacity);
+				items = Arrays.copyOf(items, capacity);
+			}
+
+			set(size, item, score, order);
+			siftUp(size++);
+		} else if(isWorse(scores[0], orders[0], score, order)) {
+			set(0, item, score, order);
+			siftDown(0);
+		}
+	}
+
+	public boolean isFull() {
+		return k > 0 && size == k;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/***
+	 * @return The score of the worst item kept
+	 */
+	public double worstScore() {
+		return scores[0];
+	}
+
+	/***
+	 * @return The worst item kept
+	 */
+	public long worstItem() {
+		return items[0];
+	}
+
+	/***
+	 * Removes the worst item kept
+	 */
+	public void removeWorst() {
+		size--;
+		set(0, items[size], scores[size], orders[size]);
+		siftDown(0);
+	}
+
+	private void set(int index, long item, double score, int order) {
+		items[index] = item;
+		scores[index] = score;
+		orders[index] = order;
+	}
+
+	private void swap(int i, int j) {
+		long item = items[i];
+		double score = scores[i];
+		int order = orders[i];
+		set(i, items[j], scores[j], orders[j]);
+		set(j, item, score, order);
+	}
+
+	private void siftUp(int index) {
+		while(index > 0) {
+			int parent = (index - 1) >>> 1;
+			if(!isWorse(scores[index], orders[index], scores[parent], orders[parent])) {
+				return;
+			}
+
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while(true) {
+			int worst = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+
+			if(left < size && isWorse(scores[left], orders[left], scores[worst], orders[worst])) {
+				worst = left;
+			}
+
+			if(right < size && isWorse(scores[right], orders[right], scores[worst], orders[worst])) {
+				worst = right;
+			}
+
+			if(worst == index) {
+				return;
+			}
+
+			swap(index, worst);
+			index = worst;
+		}
+	}
+
+	private static boolean isWorse(double score0, int order0, double score1, int order1) {
+		if(score0 != score1) {
+			return score0 < score1;
+		}
+
+		return order0 > order1;
+	}
+}
@@ -0,0 +1,93 @@
+package com.repuhire.datastructures.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.repuhire.datastructures.LatencyHistogram;
+
+/***
+ * Tests LatencyHistogram against percentiles of the exact latencies
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testPercentilesWithinBucket() {
+
+		//Latencies spread over every magnitude
+		Random random = new Random(21);
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] latencies = new long[100000];
+		for(int i = 0; i < latencies.length; i++) {
+			latencies[i] = (long) Math.pow(2, random.nextDouble() * 30);
+			histogram.record(latencies[i]);
+		}
+
+		Arrays.sort(latencies);
+		LatencyHistogram.Snapshot snapshot = histogram.drain();
+		Assert.assertEquals(latencies.length, snapshot.count());
+
+		for(double percentile : new double[]{0.1, 1, 50, 90, 99, 99.9, 99.99, 100}) {
+			long exact = latencies[(int) Math.ceil(percentile / 100 * latencies.length) - 1];
+			long estimate = snapshot.percentile(percentile);
+			Assert.assertTrue(percentile + ": " + estimate + " < " + exact, estimate >= exact);
+			Assert.assertTrue(percentile + ": " + estimate + " > " + exact, estimate <= exact + exact / 16);
+		}
+
+		//Draining starts over
+		Assert.assertEquals(0, histogram.drain().count());
+		Assert.assertEquals(0, histogram.drain().percentile(99));
+	}
+
+	@Test
+	public void testEdges() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(0);
+		histogram.record(15);
+		histogram.record(16);
+		histogram.record(Long.MAX_VALUE);
+
+		LatencyHistogram.Snapshot snapshot = histogram.drain();
+		Assert.assertEquals(5, snapshot.count());
+		Assert.assertEquals(0, snapshot.percentile(40));
+		Assert.assertEquals(15, snapshot.percentile(60));
+		Assert.assertEquals(16, snapshot.percentile(80));
+		Assert.assertEquals(LatencyHistogram.MAX_MICROS, snapshot.max());
+	}
+
+	@Test
+	public void testConcurrentRecording() throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final int perThread = 100000;
+
+		Thread[] threads = new Thread[4];
+		for(int i = 0; i < threads.length; i++) {
+			final int thread = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for(int j = 0; j < perThread; j++) {
+						histogram.record(thread * 1000 + j % 100);
+					}
+				}
+			};
+
+			threads[i].start();
+		}
+
+		//Samples drained meanwhile are each counted exactly once
+		long drained = 0;
+		for(Thread thread : threads) {
+			while(thread.isAlive()) {
+				drained += histogram.drain().count();
+			}
+		}
+
+		drained += histogram.drain().count();
+		Assert.assertEquals(threads.length * perThread, drained);
+	}
+}
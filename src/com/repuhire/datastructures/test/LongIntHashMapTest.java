@@ -0,0 +1,62 @@
+package com.repuhire.datastructures.test;
+
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.repuhire.datastructures.LongIntHashMap;
+
+/***
+ * Tests LongIntHashMap against a HashMap
+ */
+public class LongIntHashMapTest {
+
+	@Test
+	public void testMatchesHashMap() {
+
+		//Few distinct keys and many removals, so runs of colliding
+		//entries keep getting shifted back, through many resizes
+		Random random = new Random(15);
+		LongIntHashMap map = new LongIntHashMap();
+		Map<Long, Integer> expected = Maps.newHashMap();
+		long[] keys = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE};
+
+		for(int i = 0; i < 200000; i++) {
+			long key = i % 10 == 0 ? keys[random.nextInt(keys.length)] : random.nextInt(i < 100000 ? 4096 : 64) * 1024L;
+			int value = random.nextInt(Integer.MAX_VALUE);
+
+			if(random.nextInt(3) == 0) {
+				Assert.assertEquals(valueOf(expected.remove(key)), map.remove(key));
+			} else {
+				Assert.assertEquals(valueOf(expected.put(key, value)), map.put(key, value));
+			}
+
+			Assert.assertEquals(expected.size(), map.size());
+		}
+
+		for(long key = -1024; key < 4096 * 1024L; key += 1024) {
+			Assert.assertEquals(valueOf(expected.get(key)), map.get(key));
+		}
+
+		for(long key : keys) {
+			Assert.assertEquals(valueOf(expected.get(key)), map.get(key));
+		}
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeValue() {
+		new LongIntHashMap().put(1, -1);
+	}
+
+	private static int valueOf(Integer value) {
+		return value != null ? value : LongIntHashMap.NO_VALUE;
+	}
+}
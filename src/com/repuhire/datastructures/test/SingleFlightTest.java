@@ -0,0 +1,168 @@
+package com.repuhire.datastructures.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.repuhire.datastructures.SingleFlight;
+
+/***
+ * Tests that SingleFlight computes a value once for those asking at
+ * the same time from the same generation, and only for them
+ */
+public class SingleFlightTest {
+
+	private final SingleFlight<String, Integer> flights = new SingleFlight<String, Integer>();
+	private final AtomicInteger computed = new AtomicInteger();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testSharedWhileUnderWay() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<Integer> first = ask("key", 0, blocking(started, release, 42));
+		started.await();
+
+		//Asking meanwhile waits for the first value
+		Future<Integer> second = ask("key", 0, blocking(null, null, 43));
+		awaitShared(1);
+
+		release.countDown();
+		Assert.assertEquals(42, (int) first.get());
+		Assert.assertEquals(42, (int) second.get());
+		Assert.assertEquals(1, computed.get());
+
+		//Nothing is kept once done
+		Assert.assertEquals(44, (int) flights.get("key", 0, blocking(null, null, 44)));
+		Assert.assertEquals(2, computed.get());
+	}
+
+	@Test
+	public void testNotSharedAcrossKeysOrGenerations() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<Integer> first = ask("key", 0, blocking(started, release, 42));
+		started.await();
+
+		Assert.assertEquals(43, (int) flights.get("other", 0, blocking(null, null, 43)));
+		Assert.assertEquals(44, (int) flights.get("key", 1, blocking(null, null, 44)));
+
+		release.countDown();
+		Assert.assertEquals(42, (int) first.get());
+		Assert.assertEquals(3, computed.get());
+		Assert.assertEquals(0, flights.getShared());
+	}
+
+	@Test
+	public void testWaitTimesOut() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<Integer> first = ask("key", 0, blocking(started, release, 42));
+		started.await();
+
+		//Gives up on the value rather than computing its own
+		Assert.assertNull(flights.get("key", 0, TimeUnit.MILLISECONDS.toNanos(10), blocking(null, null, 43)));
+		Assert.assertEquals(0, flights.getShared());
+
+		release.countDown();
+		Assert.assertEquals(42, (int) first.get());
+		Assert.assertEquals(1, computed.get());
+
+		//Not waiting at all is fine when nothing is under way
+		Assert.assertEquals(44, (int) flights.get("key", 0, 0, blocking(null, null, 44)));
+	}
+
+	@Test
+	public void testFailureShared() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		Future<Integer> first = ask("key", 0, new Supplier<Integer>() {
+			@Override
+			public Integer get() {
+				started.countDown();
+				awaitQuietly(release);
+				throw new IllegalArgumentException("No such key");
+			}
+		});
+
+		started.await();
+		Future<Integer> second = ask("key", 0, blocking(null, null, 43));
+		awaitShared(1);
+		release.countDown();
+
+		assertFailed(first);
+		assertFailed(second);
+	}
+
+	private static void assertFailed(Future<Integer> asked) throws InterruptedException {
+		try {
+			asked.get();
+			Assert.fail();
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+			Assert.assertEquals("No such key", e.getCause().getMessage());
+		}
+	}
+
+	private Future<Integer> ask(final String key, final long generation, final Supplier<Integer> computation) {
+		return executor.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return flights.get(key, generation, computation);
+			}
+		});
+	}
+
+	/***
+	 * @return A computation of a value which signals it started and then
+	 * waits to be released, if given latches to do so
+	 */
+	private Supplier<Integer> blocking(final CountDownLatch started, final CountDownLatch release, final int value) {
+		return new Supplier<Integer>() {
+			@Override
+			public Integer get() {
+				computed.incrementAndGet();
+				if(started != null) {
+					started.countDown();
+					awaitQuietly(release);
+				}
+
+				return value;
+			}
+		};
+	}
+
+	private void awaitShared(long shared) throws InterruptedException {
+		while(flights.getShared() < shared) {
+			Thread.sleep(1);
+		}
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
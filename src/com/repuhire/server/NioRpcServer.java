@@ -0,0 +1,584 @@
+package com.repuhire.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.collect.Maps;
+import com.google.protobuf.BlockingService;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.MethodDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.ServiceException;
+import com.google.protobuf.UninitializedMessageException;
+import com.googlecode.protobuf.socketrpc.SocketRpcController;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.ErrorReason;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.Request;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.Response;
+
+/***
+ * Serves blocking protobuf services over the wire format of the
+ * socket RPC library, so its clients work unchanged: every request and
+ * response is a socket RPC Request or Response prefixed with its
+ * length as a varint.
+ *
+ * Rather than tie a thread to each connection, a few I/O threads each
+ * watch many connections with a selector, and hand every complete
+ * request to a compute pool to be answered. A connection has at most
+ * one request being answered at a time and is not read from meanwhile,
+ * so a client sending requests faster than they are answered is slowed
+ * down by TCP rather than buffered without limit. Clients may close the
+ * connection after each response, as the socket RPC ones do, or keep it
+ * open for more requests.
+ *
+ * Requests for some methods may be routed to pools of their own, e.g.
+ * so that mutations neither wait behind nor hold up a flood of queries.
+ * When a pool rejects a request, e.g. because its queue is full, the
+ * request fails with an RPC_ERROR right away.
+ *
+ * The controller each request is answered with is made as the request
+ * is queued, so it can carry decisions which should not wait for a
+ * thread, e.g. how much work the request gets under load.
+ */
+public class NioRpcServer {
+
+	private static final Logger LOGGER = Logger.getLogger(NioRpcServer.class.getName());
+
+	//A request longer than this closes its connection instead of being buffered
+	public static final int MAX_REQUEST_SIZE = 64 << 20;
+
+	//What each connection starts reading into, grown for longer requests
+	private static final int READ_BUFFER_SIZE = 4096;
+
+	//The longest varint32 length prefix
+	private static final int MAX_PREFIX_SIZE = 5;
+
+	private final int port;
+	private final ExecutorService computePool;
+	private final Map<String, BlockingService> services = Maps.newConcurrentMap();
+	private final Map<String, ExecutorService> methodPools = Maps.newConcurrentMap();
+	private final IoLoop[] ioLoops;
+
+	private volatile ControllerFactory controllerFactory = new ControllerFactory() {
+		@Override
+		public SocketRpcController newController(Request request) {
+			return new SocketRpcController();
+		}
+	};
+
+	/***
+	 * Makes the controllers requests are answered with
+	 */
+	public interface ControllerFactory {
+
+		/***
+		 * Called on an I/O thread as a request is queued
+		 *
+		 * @param request The request
+		 * @return The controller to answer it with
+		 */
+		SocketRpcController newController(Request request);
+	}
+
+	private volatile ServerSocketChannel serverChannel = null;
+	private volatile boolean running = false;
+
+	/***
+	 * @param port The port to listen on, or 0 for any free one
+	 * @param numIoThreads The number of threads reading and writing connections
+	 * @param computePool What answers the requests
+	 */
+	public NioRpcServer(int port, int numIoThreads, ExecutorService computePool) {
+		if(numIoThreads <= 0) {
+			throw new IllegalArgumentException("Number of I/O threads must be positive, got " + numIoThreads);
+		}
+
+		this.port = port;
+		this.computePool = computePool;
+		this.ioLoops = new IoLoop[numIoThreads];
+	}
+
+	/***
+	 * @param service A service to answer requests for, by its full name
+	 */
+	public void registerBlockingService(BlockingService service) {
+		services.put(service.getDescriptorForType().getFullName(), service);
+	}
+
+	/***
+	 * Answers the requests for a method on a pool of their own rather
+	 * than the compute pool
+	 *
+	 * @param methodName The name of the method, in whichever service
+	 * @param pool What answers its requests
+	 */
+	public void routeMethod(String methodName, ExecutorService pool) {
+		methodPools.put(methodName, pool);
+	}
+
+	/***
+	 * @param controllerFactory What makes the controllers requests are answered with
+	 */
+	public void setControllerFactory(ControllerFactory controllerFactory) {
+		this.controllerFactory = controllerFactory;
+	}
+
+	/***
+	 * Starts the I/O threads, then accepts connections on the calling
+	 * thread until shut down
+	 *
+	 * @throws IOException if the port cannot be listened on
+	 */
+	public void run() throws IOException {
+		bind();
+
+		try {
+			for(int next = 0; running; next = (next + 1) % ioLoops.length) {
+				SocketChannel channel;
+				try {
+					channel = serverChannel.accept();
+				} catch(ClosedChannelException e) {
+					break;
+				} catch(IOException e) {
+					LOGGER.log(Level.WARNING, "Could not accept connection", e);
+					continue;
+				}
+
+				//Spread connections over the I/O threads in turn
+				try {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					ioLoops[next].add(channel);
+				} catch(IOException e) {
+					LOGGER.log(Level.WARNING, "Could not set up connection", e);
+					closeQuietly(channel);
+				}
+			}
+		} finally {
+			shutDown();
+		}
+	}
+
+	/***
+	 * Binds the port and starts the I/O threads
+	 */
+	private synchronized void bind() throws IOException {
+		if(running) {
+			throw new IllegalStateException("The server is already running");
+		}
+
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket().setReuseAddress(true);
+			channel.socket().bind(new InetSocketAddress(port));
+
+			for(int i = 0; i < ioLoops.length; i++) {
+				ioLoops[i] = new IoLoop();
+			}
+		} catch(IOException e) {
+			closeQuietly(channel);
+			throw e;
+		}
+
+		serverChannel = channel;
+		running = true;
+
+		for(int i = 0; i < ioLoops.length; i++) {
+			Thread thread = new Thread(ioLoops[i], "rpc-io-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/***
+	 * Stops accepting connections and closes every open one. Requests
+	 * being answered finish, but their responses are dropped.
+	 */
+	public synchronized void shutDown() {
+		if(!running) {
+			return;
+		}
+
+		running = false;
+		closeQuietly(serverChannel);
+		for(IoLoop ioLoop : ioLoops) {
+			ioLoop.selector.wakeup();
+		}
+	}
+
+	/***
+	 * @return Whether the server is accepting connections
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/***
+	 * @return The port listened on, or -1 if the server is not running
+	 */
+	public int getLocalPort() {
+		ServerSocketChannel channel = serverChannel;
+		return running ? channel.socket().getLocalPort() : -1;
+	}
+
+	/***
+	 * @return What answers the requests for a method
+	 */
+	private ExecutorService poolFor(Request request) {
+		ExecutorService pool = methodPools.get(request.getMethodName());
+		return pool != null ? pool : computePool;
+	}
+
+	/***
+	 * Answers one request, never throwing
+	 *
+	 * @param request The socket RPC Request
+	 * @param controller The controller made for it as it was queued
+	 * @return The socket RPC Response
+	 */
+	private Response answer(Request request, SocketRpcController controller) {
+		BlockingService service = services.get(request.getServiceName());
+		if(service == null) {
+			return error("Could not find service: " + request.getServiceName(), ErrorReason.SERVICE_NOT_FOUND);
+		}
+
+		MethodDescriptor method = service.getDescriptorForType().findMethodByName(request.getMethodName());
+		if(method == null) {
+			return error("Could not find method " + request.getMethodName() + " in service " + request.getServiceName(), ErrorReason.METHOD_NOT_FOUND);
+		}
+
+		Message message;
+		try {
+			message = service.getRequestPrototype(method).newBuilderForType().mergeFrom(request.getRequestProto()).build();
+		} catch(InvalidProtocolBufferException e) {
+			return error("Invalid request proto", ErrorReason.BAD_REQUEST_PROTO);
+		} catch(UninitializedMessageException e) {
+			return error("Invalid request proto", ErrorReason.BAD_REQUEST_PROTO);
+		}
+
+		Message result;
+		try {
+			result = service.callBlockingMethod(method, controller, message);
+		} catch(ServiceException e) {
+			return error(e.getMessage(), ErrorReason.RPC_FAILED);
+		} catch(RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Error running method " + method.getFullName(), e);
+			return error("Error running method " + method.getFullName(), ErrorReason.RPC_ERROR);
+		}
+
+		Response.Builder response = Response.newBuilder().setCallback(result != null);
+		if(result != null) {
+			response.setResponseProto(result.toByteString());
+		}
+
+		if(controller.failed()) {
+			response.setError(controller.errorText()).setErrorReason(ErrorReason.RPC_FAILED);
+		}
+
+		return response.build();
+	}
+
+	private static Response error(String message, ErrorReason reason) {
+		return Response.newBuilder().setError(message != null ? message : reason.toString()).setErrorReason(reason).build();
+	}
+
+	/***
+	 * @return The response prefixed with its length, ready to be written
+	 */
+	private static ByteBuffer delimited(Response response) {
+		int size = response.getSerializedSize();
+		byte[] bytes = new byte[CodedOutputStream.computeRawVarint32Size(size) + size];
+
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		try {
+			out.writeRawVarint32(size);
+			response.writeTo(out);
+		} catch(IOException e) {
+			//Cannot happen writing to an array of the right size
+			throw new IllegalStateException(e);
+		}
+
+		return ByteBuffer.wrap(bytes);
+	}
+
+	private static void closeQuietly(java.nio.channels.Channel channel) {
+		try {
+			channel.close();
+		} catch(IOException e) {
+			LOGGER.log(Level.FINE, "Could not close channel", e);
+		}
+	}
+
+	/***
+	 * One I/O thread, reading requests off and writing responses to
+	 * the connections it was given
+	 */
+	private class IoLoop implements Runnable {
+
+		private final Selector selector;
+
+		//Connections to start watching, and ones with a response to write,
+		//handed over by the accepting thread and the compute pool
+		private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+		private final Queue<Connection> answered = new ConcurrentLinkedQueue<Connection>();
+
+		private IoLoop() throws IOException {
+			selector = Selector.open();
+		}
+
+		private void add(SocketChannel channel) {
+			accepted.add(channel);
+			selector.wakeup();
+		}
+
+		private void respond(Connection connection, Response response) {
+			connection.response = delimited(response);
+			answered.add(connection);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while(running) {
+					selector.select();
+
+					for(SocketChannel channel; (channel = accepted.poll()) != null; ) {
+						try {
+							new Connection(this, channel);
+						} catch(ClosedChannelException e) {
+							closeQuietly(channel);
+						}
+					}
+
+					for(Connection connection; (connection = answered.poll()) != null; ) {
+						connection.startWriting();
+					}
+
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while(keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+
+						Connection connection = (Connection) key.attachment();
+						try {
+							if(key.isWritable()) {
+								connection.write();
+							} else if(key.isReadable()) {
+								connection.read();
+							}
+						} catch(CancelledKeyException e) {
+							connection.close();
+						}
+					}
+				}
+			} catch(IOException e) {
+				LOGGER.log(Level.SEVERE, "I/O thread failed", e);
+			} finally {
+				for(SelectionKey key : selector.keys()) {
+					closeQuietly(key.channel());
+				}
+
+				for(SocketChannel channel; (channel = accepted.poll()) != null; ) {
+					closeQuietly(channel);
+				}
+
+				try {
+					selector.close();
+				} catch(IOException e) {
+					LOGGER.log(Level.FINE, "Could not close selector", e);
+				}
+			}
+		}
+	}
+
+	/***
+	 * A client connection, only ever touched by its I/O thread but for
+	 * the response handed over by the compute pool
+	 */
+	private class Connection {
+
+		private final IoLoop ioLoop;
+		private final SocketChannel channel;
+		private final SelectionKey key;
+
+		//Bytes read but not yet made into a request, ready to be read into
+		private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+		//The response being written, and the one answered but not yet written
+		private ByteBuffer out = null;
+		private volatile ByteBuffer response = null;
+
+		//Whether a request is being answered, and whether the client is done sending
+		private boolean answering = false;
+		private boolean endOfInput = false;
+
+		private Connection(IoLoop ioLoop, SocketChannel channel) throws ClosedChannelException {
+			this.ioLoop = ioLoop;
+			this.channel = channel;
+			this.key = channel.register(ioLoop.selector, SelectionKey.OP_READ, this);
+		}
+
+		private void read() {
+			int read;
+			try {
+				read = channel.read(in);
+			} catch(IOException e) {
+				close();
+				return;
+			}
+
+			if(read < 0) {
+				endOfInput = true;
+			}
+
+			if(!answering) {
+				nextRequest();
+			}
+		}
+
+		/***
+		 * Hands the next complete request read over to the pool answering it,
+		 * or closes the connection if there will be none
+		 */
+		private void nextRequest() {
+			in.flip();
+			int length = readLengthPrefix();
+			if(length > MAX_REQUEST_SIZE) {
+				LOGGER.warning("Closing connection sending a request of " + length + " bytes");
+				close();
+				return;
+			}
+
+			if(length < 0 || in.remaining() < length) {
+				//Incomplete: keep the prefix, making room for the rest if needed
+				int needed = in.position() + length;
+				in.position(0);
+				if(length >= 0 && in.capacity() < needed) {
+					ByteBuffer bigger = ByteBuffer.allocate(needed);
+					bigger.put(in);
+					in = bigger;
+				} else {
+					in.compact();
+				}
+
+				if(endOfInput) {
+					close();
+				}
+
+				return;
+			}
+
+			byte[] frame = new byte[length];
+			in.get(frame);
+			if(in.capacity() > READ_BUFFER_SIZE && in.remaining() <= READ_BUFFER_SIZE) {
+				//Do not hold on to the room a large request needed
+				ByteBuffer smaller = ByteBuffer.allocate(READ_BUFFER_SIZE);
+				smaller.put(in);
+				in = smaller;
+			} else {
+				in.compact();
+			}
+
+			answering = true;
+			key.interestOps(0);
+
+			//Parsed here to know which pool it goes to
+			final Request request;
+			try {
+				request = Request.parseFrom(frame);
+			} catch(InvalidProtocolBufferException e) {
+				response = delimited(error("Bad request data from client", ErrorReason.BAD_REQUEST_DATA));
+				startWriting();
+				return;
+			}
+
+			try {
+				final SocketRpcController controller = controllerFactory.newController(request);
+				poolFor(request).execute(new Runnable() {
+					@Override
+					public void run() {
+						ioLoop.respond(Connection.this, answer(request, controller));
+					}
+				});
+			} catch(RejectedExecutionException e) {
+				response = delimited(error("Server is overloaded", ErrorReason.RPC_ERROR));
+				startWriting();
+			}
+		}
+
+		/***
+		 * Reads the varint length prefix at the start of the input
+		 *
+		 * @return The length, or -1 if the prefix is not all read yet
+		 */
+		private int readLengthPrefix() {
+			int length = 0;
+			for(int shift = 0; shift < 7 * MAX_PREFIX_SIZE; shift += 7) {
+				if(!in.hasRemaining()) {
+					return -1;
+				}
+
+				byte b = in.get();
+				length |= (b & 0x7F) << shift;
+				if(b >= 0) {
+					return length < 0 ? Integer.MAX_VALUE : length;
+				}
+			}
+
+			//Too long for a varint32, which the size check rejects
+			return Integer.MAX_VALUE;
+		}
+
+		private void startWriting() {
+			if(!key.isValid()) {
+				close();
+				return;
+			}
+
+			out = response;
+			response = null;
+			write();
+		}
+
+		private void write() {
+			try {
+				channel.write(out);
+			} catch(IOException e) {
+				close();
+				return;
+			}
+
+			if(out.hasRemaining()) {
+				key.interestOps(SelectionKey.OP_WRITE);
+				return;
+			}
+
+			//Done with this request; the next may already be read
+			out = null;
+			answering = false;
+			key.interestOps(endOfInput ? 0 : SelectionKey.OP_READ);
+			nextRequest();
+		}
+
+		private void close() {
+			key.cancel();
+			closeQuietly(channel);
+		}
+	}
+}
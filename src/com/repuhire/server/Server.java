@@ -1,11 +1,29 @@
 package com.repuhire.server;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
-import com.googlecode.protobuf.socketrpc.RpcServer;
-import com.googlecode.protobuf.socketrpc.ServerRpcConnectionFactory;
-import com.googlecode.protobuf.socketrpc.SocketRpcConnectionFactories;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.googlecode.protobuf.socketrpc.SocketRpcController;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.Request;
+import com.repuhire.autocompleter.AdmissionController;
 import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.autocompleter.IndexMerger;
+import com.repuhire.autocompleter.SlowQueryLog;
+import com.repuhire.autocompleter.SnapshotManager;
+import com.repuhire.autocompleter.WriteAheadLog;
 import com.repuhire.common.Common.Autocompleter;
 
 /***
@@ -13,22 +31,25 @@ import com.repuhire.common.Common.Autocompleter;
  */
 public class Server {
 
+	private static final Logger LOGGER = Logger.getLogger(Server.class.getName());
+
+	//The RPCs answered apart from the queries
+	private static final Set<String> MUTATIONS = ImmutableSet.of("AddUsers", "AddUser", "Update", "Delete", "ClearUsers", "Snapshot");
+
 	public static void main(String[] args) {
-		int port = 12345;
-		int threadPoolSize = 10;
+		ServerConfig config;
 
-		if(args.length != 0 && args.length != 2) {
-			System.out.println("Takes two arguments: <PORT> <THREAD_POOL_SIZE>\nIf no arguments are specified, port default is: " + port + "\nthread pool size default is: " + threadPoolSize);
+		try {
+			config = ServerConfig.parse(args);
+		} catch(IllegalArgumentException e) {
+			System.out.println(e.getMessage() + "\n" + ServerConfig.USAGE);
 			return;
 		}
 
-		if(args.length == 2) {
-			port = Integer.parseInt(args[0]);
-			threadPoolSize = Integer.parseInt(args[1]);
-		}
-
-		System.out.println("Using port " + port + " with thread pool size " + threadPoolSize);
-		start(port, threadPoolSize);
+		String execution = config.getExecution() == ServerConfig.Execution.VIRTUAL_THREADS
+				? "virtual threads" : "thread pool size " + config.getThreadPoolSize();
+		System.out.println("Using port " + config.getPort() + " with " + execution + " and " + config.getIoThreads() + " I/O threads");
+		start(config);
 
 	}
 
@@ -39,10 +60,225 @@ public class Server {
 	 * @param threadPoolSize The thread pool size
 	 */
 	public static void start(int port, int threadPoolSize) {
-		ServerRpcConnectionFactory rpcConnectionFactory = SocketRpcConnectionFactories.createServerRpcConnectionFactory(port);
-		RpcServer server = new RpcServer(rpcConnectionFactory, Executors.newFixedThreadPool(threadPoolSize), true);
-		server.registerBlockingService(Autocompleter.newReflectiveBlockingService(AutocompleterService.getInstance())); // For blocking impl
-		server.run();
+		ServerConfig config = new ServerConfig();
+		config.setPort(port);
+		config.setThreadPoolSize(threadPoolSize);
+		start(config);
+	}
+
+	/***
+	 * Starts the server, first restoring the latest snapshot and
+	 * replaying the write-ahead log on top of it, if they are enabled,
+	 * then mapping large domains if that is
+	 *
+	 * @param config The configuration of the server
+	 */
+	public static void start(ServerConfig config) {
+		AutocompleterService service = AutocompleterService.getInstance();
+		SnapshotManager snapshots = null;
+		WriteAheadLog log = null;
+
+		service.setOffHeapRecords(config.isOffHeapRecords());
+		if(config.getSnapshotDirectory() != null) {
+			snapshots = startSnapshots(service, config);
+		}
+
+		if(config.getWalDirectory() != null) {
+			log = startWriteAheadLog(service, snapshots, config);
+		}
+
+		if(config.getMappedDirectory() != null) {
+			startIndexMerger(service, snapshots, config);
+		}
+
+		if(snapshots != null || log != null) {
+			stopOnShutdown(snapshots, log);
+		}
+
+		if(config.getMetricsIntervalSeconds() > 0) {
+			service.getMetrics().schedule(config.getMetricsIntervalSeconds());
+		}
+
+		if(config.getSlowQueryMillis() >= 0) {
+			service.setSlowQueryLog(new SlowQueryLog(config.getSlowQueryMillis(), SlowQueryLog.DEFAULT_CAPACITY));
+		}
+
+		//A few threads watch every connection, handing queries to the
+		//compute pool and mutations to a pool of their own
+		ExecutorService computePool = newComputePool(config, config.getThreadPoolSize(), "rpc-compute-%d");
+		ExecutorService mutationPool = newComputePool(config, config.getMutationThreads(), "rpc-mutation-%d");
+		final AdmissionController admission = new AdmissionController(queueDepthOf(computePool),
+				config.getDegradeQueuedRequests(), config.getShedQueuedRequests(), config.getDegradeLatencyMillis());
+		service.setAdmissionController(admission);
+
+		if(config.getExecution() == ServerConfig.Execution.VIRTUAL_THREADS && config.getDegradeLatencyMillis() == 0) {
+			LOGGER.warning("Virtual threads queue no requests, so without --degrade-latency-ms autocompletes are never degraded or shed");
+		}
+
+		NioRpcServer server = new NioRpcServer(config.getPort(), config.getIoThreads(), computePool);
+		server.registerBlockingService(Autocompleter.newReflectiveBlockingService(service)); // For blocking impl
+		for(String method : MUTATIONS) {
+			server.routeMethod(method, mutationPool);
+		}
+
+		//Queries are admitted before they wait for a thread, not after
+		server.setControllerFactory(new NioRpcServer.ControllerFactory() {
+			@Override
+			public SocketRpcController newController(Request request) {
+				return MUTATIONS.contains(request.getMethodName()) ? new SocketRpcController() : admission.admitQueued();
+			}
+		});
+
+		try {
+			server.run();
+		} catch(IOException e) {
+			throw new IllegalStateException("Could not serve on port " + config.getPort(), e);
+		} finally {
+			computePool.shutdown();
+			mutationPool.shutdown();
+		}
+	}
+
+	/***
+	 * @return What answers requests: a fixed pool which refuses them
+	 * once too many are waiting, or a virtual thread for each. The
+	 * latter needs no bound, as a connection has at most one request
+	 * being answered.
+	 * @throws IllegalStateException if virtual threads are asked for
+	 * but the JVM does not have them
+	 */
+	private static ExecutorService newComputePool(ServerConfig config, int numThreads, String nameFormat) {
+		if(config.getExecution() == ServerConfig.Execution.VIRTUAL_THREADS) {
+			return newVirtualThreadPerTaskExecutor();
+		}
+
+		return new ThreadPoolExecutor(numThreads, numThreads,
+				0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(config.getMaxQueuedRequests()),
+				new ThreadFactoryBuilder().setNameFormat(nameFormat).build());
+	}
+
+	/***
+	 * @return The number of requests waiting for a pool; always none for
+	 * virtual threads, which are then only degraded by latency, if at all
+	 */
+	private static Supplier<Integer> queueDepthOf(ExecutorService pool) {
+		if(!(pool instanceof ThreadPoolExecutor)) {
+			return Suppliers.ofInstance(0);
+		}
+
+		final BlockingQueue<Runnable> queue = ((ThreadPoolExecutor) pool).getQueue();
+		return new Supplier<Integer>() {
+			@Override
+			public Integer get() {
+				return queue.size();
+			}
+		};
+	}
+
+	/***
+	 * Looked up reflectively, so the server still builds and runs on
+	 * JVMs older than Java 21 as long as virtual threads are not used
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(NoSuchMethodException e) {
+			throw new IllegalStateException("Virtual threads need Java 21 or later, running on " + System.getProperty("java.version"));
+		} catch(IllegalAccessException e) {
+			throw new IllegalStateException("Could not create virtual threads", e);
+		} catch(InvocationTargetException e) {
+			throw new IllegalStateException("Could not create virtual threads", e.getCause());
+		}
+	}
+
+	/***
+	 * Restores the latest snapshot, then keeps taking them periodically
+	 */
+	private static SnapshotManager startSnapshots(AutocompleterService service, ServerConfig config) {
+		SnapshotManager snapshots = new SnapshotManager(service, config.getSnapshotDirectory());
+
+		try {
+			long start = System.currentTimeMillis();
+			if(snapshots.restore()) {
+				System.out.println("Restored snapshot " + snapshots.getSnapshotFile() + " in " + (System.currentTimeMillis() - start) + "ms");
+			}
+		} catch(IOException e) {
+			throw new IllegalStateException("Could not restore snapshot " + snapshots.getSnapshotFile(), e);
+		}
+
+		service.setSnapshotManager(snapshots);
+		if(config.getSnapshotIntervalSeconds() > 0) {
+			snapshots.schedule(config.getSnapshotIntervalSeconds());
+		}
+
+		return snapshots;
+	}
+
+	/***
+	 * Replays the mutations logged since the restored snapshot, then
+	 * logs every new one
+	 */
+	private static WriteAheadLog startWriteAheadLog(AutocompleterService service, SnapshotManager snapshots, ServerConfig config) {
+		File directory = config.getWalDirectory();
+		WriteAheadLog log;
+
+		try {
+			long start = System.currentTimeMillis();
+			long replayed = WriteAheadLog.replay(directory, snapshots != null ? snapshots.getRestoredLogSegment() : 0, service.getReplayTarget());
+			System.out.println("Replayed " + replayed + " logged mutations in " + (System.currentTimeMillis() - start) + "ms");
+
+			log = WriteAheadLog.open(directory, config.getWalSyncPolicy(), config.getWalSyncIntervalMillis());
+		} catch(IOException e) {
+			throw new IllegalStateException("Could not recover from write-ahead log " + directory, e);
+		}
+
+		service.setWriteAheadLog(log);
+		if(snapshots != null) {
+			snapshots.setWriteAheadLog(log);
+		}
+
+		return log;
+	}
+
+	/***
+	 * Cleans up after the mapped indexes of the last run, then keeps
+	 * merging domains into new ones periodically
+	 */
+	private static void startIndexMerger(AutocompleterService service, SnapshotManager snapshots, ServerConfig config) {
+		IndexMerger merger = new IndexMerger(service, config.getMappedDirectory(), config.getMappedMinUsers(), config.getMappedMaxDelta());
+
+		int deleted = merger.deleteUnused();
+		if(deleted > 0) {
+			System.out.println("Deleted " + deleted + " unused mapped indexes from " + config.getMappedDirectory());
+		}
+
+		if(snapshots != null) {
+			snapshots.setIndexMerger(merger);
+		}
+
+		merger.schedule(config.getMappedMergeIntervalSeconds());
+	}
+
+	/***
+	 * Takes a last snapshot and then closes the log when the JVM goes down
+	 */
+	private static void stopOnShutdown(final SnapshotManager snapshots, final WriteAheadLog log) {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				if(snapshots != null) {
+					snapshots.shutdown();
+				}
+
+				if(log != null) {
+					try {
+						log.close();
+					} catch(IOException e) {
+						System.err.println("Could not close write-ahead log: " + e.getMessage());
+					}
+				}
+			}
+		});
 	}
 
 }
@@ -0,0 +1,440 @@
+package com.repuhire.server;
+
+import java.io.File;
+
+import com.repuhire.autocompleter.WriteAheadLog;
+
+/***
+ * Everything the server can be configured with, parsed from the
+ * command line:
+ *
+ * [<PORT> <THREAD_POOL_SIZE>] [--option=value ...]
+ */
+public class ServerConfig {
+
+	/***
+	 * What answers the requests read off connections
+	 */
+	public enum Execution {
+		//A fixed pool of THREAD_POOL_SIZE threads with a bounded queue
+		FIXED_POOL,
+
+		//A new virtual thread for each request; needs Java 21
+		VIRTUAL_THREADS
+	}
+
+	public static final String USAGE =
+			"Arguments: [<PORT> <THREAD_POOL_SIZE>] [--option=value ...]\n" +
+			"Options:\n" +
+			"  --snapshot-dir=<DIR>            Restore from and save snapshots of all domains to DIR\n" +
+			"  --snapshot-interval-secs=<N>    Seconds between periodic snapshots, 0 for none (default 300)\n" +
+			"  --wal-dir=<DIR>                 Log every mutation to DIR and replay it on start\n" +
+			"  --wal-sync=<POLICY>             When a mutation is acknowledged: every-write (default),\n" +
+			"                                  interval or os\n" +
+			"  --wal-sync-interval-ms=<N>      Milliseconds between fsyncs under the interval policy (default 50)\n" +
+			"  --mapped-dir=<DIR>              Serve large domains from memory-mapped indexes in DIR\n" +
+			"  --mapped-min-users=<N>          Users from which a domain is mapped (default 100000)\n" +
+			"  --mapped-max-delta=<N>          Changes kept on heap before a mapped domain is merged (default 10000)\n" +
+			"  --mapped-merge-interval-secs=<N> Seconds between checks for domains to merge (default 60)\n" +
+			"  --off-heap-records=<BOOL>       Keep names and emails of on-heap users in direct memory (default false)\n" +
+			"  --io-threads=<N>                Threads reading and writing connections (default 2)\n" +
+			"  --execution=<MODE>              What answers requests: fixed-pool (default) of THREAD_POOL_SIZE\n" +
+			"                                  threads, or virtual-threads, one per request (Java 21+)\n" +
+			"  --max-queued-requests=<N>       Requests waiting for the fixed pool before more are refused (default 10000)\n" +
+			"  --mutation-threads=<N>          Fixed pool threads answering mutations apart from queries (default 2)\n" +
+			"  --degrade-queued-requests=<N>   Queries waiting from which autocompletes get fewer, cached matches (default 100)\n" +
+			"  --shed-queued-requests=<N>      Queries waiting from which only cached autocompletes are answered (default 1000)\n" +
+			"  --degrade-latency-ms=<N>        Average autocomplete latency from which they get fewer, cached matches, 0 for none (default 0)\n" +
+			"  --metrics-interval-secs=<N>     Seconds between logged reports of RPC latencies and counts, 0 for none (default 60)\n" +
+			"  --slow-query-ms=<N>             Log autocompletes taking N ms or more, phase by phase (default off)";
+
+	private int port = 12345;
+	private int threadPoolSize = 10;
+	private File snapshotDirectory = null;
+	private long snapshotIntervalSeconds = 300;
+	private File walDirectory = null;
+	private WriteAheadLog.SyncPolicy walSyncPolicy = WriteAheadLog.SyncPolicy.EVERY_WRITE;
+	private long walSyncIntervalMillis = 50;
+	private File mappedDirectory = null;
+	private int mappedMinUsers = 100000;
+	private int mappedMaxDelta = 10000;
+	private long mappedMergeIntervalSeconds = 60;
+	private boolean offHeapRecords = false;
+	private int ioThreads = 2;
+	private Execution execution = Execution.FIXED_POOL;
+	private int maxQueuedRequests = 10000;
+	private int mutationThreads = 2;
+	private int degradeQueuedRequests = 100;
+	private int shedQueuedRequests = 1000;
+	private long degradeLatencyMillis = 0;
+	private long metricsIntervalSeconds = 60;
+	private long slowQueryMillis = -1;
+
+	/***
+	 * Parses the command line
+	 *
+	 * @param args The arguments given to main
+	 * @return The configuration, defaults filled in
+	 * @throws IllegalArgumentException if an argument is malformed or unknown
+	 */
+	public static ServerConfig parse(String[] args) {
+		ServerConfig config = new ServerConfig();
+		int numPositional = 0;
+
+		for(String arg : args) {
+			if(!arg.startsWith("--")) {
+				if(numPositional == 0) {
+					config.setPort(parseInt("port", arg));
+				} else if(numPositional == 1) {
+					config.setThreadPoolSize(parseInt("thread pool size", arg));
+				} else {
+					throw new IllegalArgumentException("Unexpected argument " + arg);
+				}
+
+				numPositional++;
+				continue;
+			}
+
+			int equals = arg.indexOf('=');
+			if(equals < 0) {
+				throw new IllegalArgumentException("Option " + arg + " needs a value");
+			}
+
+			String option = arg.substring(2, equals);
+			String value = arg.substring(equals + 1);
+
+			if(option.equals("snapshot-dir")) {
+				config.setSnapshotDirectory(new File(value));
+			} else if(option.equals("snapshot-interval-secs")) {
+				config.setSnapshotIntervalSeconds(parseInt(option, value));
+			} else if(option.equals("wal-dir")) {
+				config.setWalDirectory(new File(value));
+			} else if(option.equals("wal-sync")) {
+				config.setWalSyncPolicy(parseSyncPolicy(value));
+			} else if(option.equals("wal-sync-interval-ms")) {
+				config.setWalSyncIntervalMillis(parseInt(option, value));
+			} else if(option.equals("mapped-dir")) {
+				config.setMappedDirectory(new File(value));
+			} else if(option.equals("mapped-min-users")) {
+				config.setMappedMinUsers(parseInt(option, value));
+			} else if(option.equals("mapped-max-delta")) {
+				config.setMappedMaxDelta(parseInt(option, value));
+			} else if(option.equals("mapped-merge-interval-secs")) {
+				config.setMappedMergeIntervalSeconds(parseInt(option, value));
+			} else if(option.equals("off-heap-records")) {
+				config.setOffHeapRecords(parseBoolean(option, value));
+			} else if(option.equals("io-threads")) {
+				config.setIoThreads(parseInt(option, value));
+			} else if(option.equals("execution")) {
+				config.setExecution(parseExecution(value));
+			} else if(option.equals("max-queued-requests")) {
+				config.setMaxQueuedRequests(parseInt(option, value));
+			} else if(option.equals("mutation-threads")) {
+				config.setMutationThreads(parseInt(option, value));
+			} else if(option.equals("degrade-queued-requests")) {
+				config.setDegradeQueuedRequests(parseInt(option, value));
+			} else if(option.equals("shed-queued-requests")) {
+				config.setShedQueuedRequests(parseInt(option, value));
+			} else if(option.equals("degrade-latency-ms")) {
+				config.setDegradeLatencyMillis(parseInt(option, value));
+			} else if(option.equals("metrics-interval-secs")) {
+				config.setMetricsIntervalSeconds(parseInt(option, value));
+			} else if(option.equals("slow-query-ms")) {
+				config.setSlowQueryMillis(parseInt(option, value));
+			} else {
+				throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+
+		if(numPositional == 1) {
+			throw new IllegalArgumentException("The port and thread pool size go together");
+		}
+
+		if(config.getShedQueuedRequests() < config.getDegradeQueuedRequests()) {
+			throw new IllegalArgumentException("Autocompletes cannot be shed before they are degraded, got "
+					+ config.getShedQueuedRequests() + " queued requests to shed and " + config.getDegradeQueuedRequests() + " to degrade");
+		}
+
+		return config;
+	}
+
+	private static WriteAheadLog.SyncPolicy parseSyncPolicy(String value) {
+		try {
+			return WriteAheadLog.SyncPolicy.valueOf(value.toUpperCase().replace('-', '_'));
+		} catch(IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid write-ahead log sync policy: " + value);
+		}
+	}
+
+	private static Execution parseExecution(String value) {
+		try {
+			return Execution.valueOf(value.toUpperCase().replace('-', '_'));
+		} catch(IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid execution mode: " + value);
+		}
+	}
+
+	private static boolean parseBoolean(String name, String value) {
+		if(!value.equals("true") && !value.equals("false")) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + value);
+		}
+
+		return value.equals("true");
+	}
+
+	private static int parseInt(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + value);
+		}
+	}
+
+	//-----
+	//Getters
+	//------
+	public int getPort() {
+		return port;
+	}
+
+	public int getThreadPoolSize() {
+		return threadPoolSize;
+	}
+
+	/***
+	 * @return Where snapshots live, or null if they are disabled
+	 */
+	public File getSnapshotDirectory() {
+		return snapshotDirectory;
+	}
+
+	public long getSnapshotIntervalSeconds() {
+		return snapshotIntervalSeconds;
+	}
+
+	/***
+	 * @return Where the write-ahead log lives, or null if it is disabled
+	 */
+	public File getWalDirectory() {
+		return walDirectory;
+	}
+
+	public WriteAheadLog.SyncPolicy getWalSyncPolicy() {
+		return walSyncPolicy;
+	}
+
+	public long getWalSyncIntervalMillis() {
+		return walSyncIntervalMillis;
+	}
+
+	/***
+	 * @return Where mapped indexes live, or null if they are disabled
+	 */
+	public File getMappedDirectory() {
+		return mappedDirectory;
+	}
+
+	public int getMappedMinUsers() {
+		return mappedMinUsers;
+	}
+
+	public int getMappedMaxDelta() {
+		return mappedMaxDelta;
+	}
+
+	public long getMappedMergeIntervalSeconds() {
+		return mappedMergeIntervalSeconds;
+	}
+
+	/***
+	 * @return Whether the names and emails of users are kept in direct memory
+	 */
+	public boolean isOffHeapRecords() {
+		return offHeapRecords;
+	}
+
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	public Execution getExecution() {
+		return execution;
+	}
+
+	public int getMaxQueuedRequests() {
+		return maxQueuedRequests;
+	}
+
+	public int getMutationThreads() {
+		return mutationThreads;
+	}
+
+	public int getDegradeQueuedRequests() {
+		return degradeQueuedRequests;
+	}
+
+	public int getShedQueuedRequests() {
+		return shedQueuedRequests;
+	}
+
+	/***
+	 * @return The average autocomplete latency from which they are degraded, or 0 if latency never degrades them
+	 */
+	public long getDegradeLatencyMillis() {
+		return degradeLatencyMillis;
+	}
+
+	public long getMetricsIntervalSeconds() {
+		return metricsIntervalSeconds;
+	}
+
+	/***
+	 * @return How long an autocomplete takes at least to be logged, or -1 if none are
+	 */
+	public long getSlowQueryMillis() {
+		return slowQueryMillis;
+	}
+
+	//-----
+	//Setters
+	//------
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public void setThreadPoolSize(int threadPoolSize) {
+		if(threadPoolSize <= 0) {
+			throw new IllegalArgumentException("Thread pool size must be positive, got " + threadPoolSize);
+		}
+
+		this.threadPoolSize = threadPoolSize;
+	}
+
+	public void setSnapshotDirectory(File snapshotDirectory) {
+		this.snapshotDirectory = snapshotDirectory;
+	}
+
+	public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+		if(snapshotIntervalSeconds < 0) {
+			throw new IllegalArgumentException("Snapshot interval cannot be negative, got " + snapshotIntervalSeconds);
+		}
+
+		this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+	}
+
+	public void setWalDirectory(File walDirectory) {
+		this.walDirectory = walDirectory;
+	}
+
+	public void setWalSyncPolicy(WriteAheadLog.SyncPolicy walSyncPolicy) {
+		this.walSyncPolicy = walSyncPolicy;
+	}
+
+	public void setWalSyncIntervalMillis(long walSyncIntervalMillis) {
+		if(walSyncIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Sync interval must be positive, got " + walSyncIntervalMillis);
+		}
+
+		this.walSyncIntervalMillis = walSyncIntervalMillis;
+	}
+
+	public void setMappedDirectory(File mappedDirectory) {
+		this.mappedDirectory = mappedDirectory;
+	}
+
+	public void setMappedMinUsers(int mappedMinUsers) {
+		if(mappedMinUsers <= 0) {
+			throw new IllegalArgumentException("Minimum users to map must be positive, got " + mappedMinUsers);
+		}
+
+		this.mappedMinUsers = mappedMinUsers;
+	}
+
+	public void setMappedMaxDelta(int mappedMaxDelta) {
+		if(mappedMaxDelta <= 0) {
+			throw new IllegalArgumentException("Maximum changes on heap must be positive, got " + mappedMaxDelta);
+		}
+
+		this.mappedMaxDelta = mappedMaxDelta;
+	}
+
+	public void setMappedMergeIntervalSeconds(long mappedMergeIntervalSeconds) {
+		if(mappedMergeIntervalSeconds <= 0) {
+			throw new IllegalArgumentException("Merge interval must be positive, got " + mappedMergeIntervalSeconds);
+		}
+
+		this.mappedMergeIntervalSeconds = mappedMergeIntervalSeconds;
+	}
+
+	public void setOffHeapRecords(boolean offHeapRecords) {
+		this.offHeapRecords = offHeapRecords;
+	}
+
+	public void setIoThreads(int ioThreads) {
+		if(ioThreads <= 0) {
+			throw new IllegalArgumentException("Number of I/O threads must be positive, got " + ioThreads);
+		}
+
+		this.ioThreads = ioThreads;
+	}
+
+	public void setExecution(Execution execution) {
+		this.execution = execution;
+	}
+
+	public void setMaxQueuedRequests(int maxQueuedRequests) {
+		if(maxQueuedRequests <= 0) {
+			throw new IllegalArgumentException("Maximum queued requests must be positive, got " + maxQueuedRequests);
+		}
+
+		this.maxQueuedRequests = maxQueuedRequests;
+	}
+
+	public void setMutationThreads(int mutationThreads) {
+		if(mutationThreads <= 0) {
+			throw new IllegalArgumentException("Number of mutation threads must be positive, got " + mutationThreads);
+		}
+
+		this.mutationThreads = mutationThreads;
+	}
+
+	public void setDegradeQueuedRequests(int degradeQueuedRequests) {
+		if(degradeQueuedRequests <= 0) {
+			throw new IllegalArgumentException("Queued requests to degrade at must be positive, got " + degradeQueuedRequests);
+		}
+
+		this.degradeQueuedRequests = degradeQueuedRequests;
+	}
+
+	public void setShedQueuedRequests(int shedQueuedRequests) {
+		if(shedQueuedRequests <= 0) {
+			throw new IllegalArgumentException("Queued requests to shed at must be positive, got " + shedQueuedRequests);
+		}
+
+		this.shedQueuedRequests = shedQueuedRequests;
+	}
+
+	public void setDegradeLatencyMillis(long degradeLatencyMillis) {
+		if(degradeLatencyMillis < 0) {
+			throw new IllegalArgumentException("Degrade latency cannot be negative, got " + degradeLatencyMillis);
+		}
+
+		this.degradeLatencyMillis = degradeLatencyMillis;
+	}
+
+	public void setMetricsIntervalSeconds(long metricsIntervalSeconds) {
+		if(metricsIntervalSeconds < 0) {
+			throw new IllegalArgumentException("Metrics interval cannot be negative, got " + metricsIntervalSeconds);
+		}
+
+		this.metricsIntervalSeconds = metricsIntervalSeconds;
+	}
+
+	public void setSlowQueryMillis(long slowQueryMillis) {
+		if(slowQueryMillis < 0) {
+			throw new IllegalArgumentException("Slow query threshold cannot be negative, got " + slowQueryMillis);
+		}
+
+		this.slowQueryMillis = slowQueryMillis;
+	}
+}
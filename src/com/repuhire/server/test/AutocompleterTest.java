@@ -1,10 +1,16 @@
 package com.repuhire.server.test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import junit.framework.Assert;
 
@@ -19,16 +25,21 @@ import com.googlecode.protobuf.socketrpc.RpcChannels;
 import com.googlecode.protobuf.socketrpc.RpcConnectionFactory;
 import com.googlecode.protobuf.socketrpc.SocketRpcConnectionFactories;
 import com.googlecode.protobuf.socketrpc.SocketRpcController;
+import com.repuhire.autocompleter.AutocompleterService;
 import com.repuhire.common.Common.AutocompleteRequest;
 import com.repuhire.common.Common.Autocompleter;
 import com.repuhire.common.Common.Autocompleter.BlockingInterface;
+import com.repuhire.common.Common.BatchAutocompleteRequest;
+import com.repuhire.common.Common.BatchMatchedUsers;
 import com.repuhire.common.Common.ClearRequest;
 import com.repuhire.common.Common.DeleteRequest;
+import com.repuhire.common.Common.FederatedAutocompleteRequest;
 import com.repuhire.common.Common.MatchedUser;
 import com.repuhire.common.Common.MatchedUser.HighlightIndices;
 import com.repuhire.common.Common.MatchedUsers;
 import com.repuhire.common.Common.Status;
 import com.repuhire.common.Common.User;
+import com.repuhire.common.Common.Users;
 import com.repuhire.datastructures.Pair;
 import com.repuhire.server.Server;
 
@@ -292,8 +303,32 @@ public class AutocompleterTest {
 	}
 
 	@Test
-	public void testTimesRecommendedWorking() {
+	public void testTimesRecommendedWorking() throws ServiceException {
 
+		clearUsersFromDomains("domain1");
+
+		addUserToDomain("domain1", "John", "Smith", "johnsmith@johnsmith.com", 0, 1);
+		addUserToDomain("domain1", "John", "Tackie", "johntackie@johntackie.com", 50, 2);
+		addUserToDomain("domain1", "Johanna", "White", "johanna@white.com", 5, 3);
+
+		//Same quality of match, so the most recommended comes first
+		MatchedUsers result = service.autocomplete(rpcController, getAutocompleteRequest("domain1", "joh", 5));
+		Assert.assertEquals(3, result.getMatchedUsersCount());
+		Assert.assertEquals(2, result.getMatchedUsers(0).getUser().getUid());
+		Assert.assertEquals(3, result.getMatchedUsers(1).getUser().getUid());
+		Assert.assertEquals(1, result.getMatchedUsers(2).getUser().getUid());
+
+		//Scores stay within 0 - 1 and descend
+		double previous = 1;
+		for(MatchedUser matchedUser : result.getMatchedUsersList()) {
+			Assert.assertTrue(matchedUser.getScore() >= 0 && matchedUser.getScore() <= previous);
+			previous = matchedUser.getScore();
+		}
+
+		//Asking for one only gives back the best
+		result = service.autocomplete(rpcController, getAutocompleteRequest("domain1", "joh", 1));
+		Assert.assertEquals(1, result.getMatchedUsersCount());
+		Assert.assertEquals(2, result.getMatchedUsers(0).getUser().getUid());
 	}
 
 	@Test
@@ -328,8 +363,239 @@ public class AutocompleterTest {
 	}
 
 	@Test
-	public void testBatchAdd() {
+	public void testBatchAdd() throws ServiceException {
+
+		clearUsersFromDomains("domain1", "domain2");
+		addUserToDomain("domain1", "Joe", "Doe", "joe@joe.com", 0, 1);
+
+		//Users of both domains in one batch, one clashing with a stored
+		//user and one clashing with an earlier user of the batch
+		Users.Builder batch = Users.newBuilder();
+		batch.addUsers(makeUser("domain1", "John", "Smith", "johnsmith@johnsmith.com", 0, 2));
+		batch.addUsers(makeUser("domain2", "John", "White", "email@white.com", 0, 2));
+		batch.addUsers(makeUser("domain1", "Joe", "Clone", "clone@joe.com", 0, 1));
+		batch.addUsers(makeUser("domain1", "John", "Tackie", "johntackie@johntackie.com", 0, 3));
+		batch.addUsers(makeUser("domain1", "John", "Again", "again@johnsmith.com", 0, 2));
+
+		//The failures are reported, the rest of the batch still goes in
+		Status status = service.addUsers(rpcController, batch.build());
+		Assert.assertEquals(500, status.getStatusCode());
+		Assert.assertTrue(status.getMessage(), status.getMessage().startsWith("2 of 5 users failed"));
+
+		MatchedUsers result = service.autocomplete(rpcController, getAutocompleteRequest("domain1", "j", 5));
+		Assert.assertEquals(3, result.getMatchedUsersCount());
+		result = service.autocomplete(rpcController, getAutocompleteRequest("domain1", "clone", 5));
+		Assert.assertEquals(0, result.getMatchedUsersCount());
+		result = service.autocomplete(rpcController, getAutocompleteRequest("domain1", "smith", 5));
+		Assert.assertEquals("John Smith 2 johnsmith@johnsmith.com", toString(result.getMatchedUsers(0).getUser()));
+		result = service.autocomplete(rpcController, getAutocompleteRequest("domain2", "j", 5));
+		Assert.assertEquals(1, result.getMatchedUsersCount());
+
+		//A clean batch succeeds
+		batch = Users.newBuilder();
+		batch.addUsers(makeUser("domain2", "Joe", "Black", "email@black.com", 0, 5));
+		Assert.assertEquals(200, service.addUsers(rpcController, batch.build()).getStatusCode());
+	}
+
+	@Test
+	public void testBatchAutocomplete() throws ServiceException {
+
+		clearUsersFromDomains("domain1", "domain2");
+		addUserToDomain("domain1", "John", "Smith", "johnsmith@johnsmith.com", 0, 1);
+		addUserToDomain("domain1", "John", "Tackie", "johntackie@johntackie.com", 50, 2);
+		addUserToDomain("domain1", "Johanna", "White", "johanna@white.com", 5, 3);
+		addUserToDomain("domain2", "Joe", "Doe", "joe@joe.com", 0, 1);
+
+		//Repeated queries, both domains interleaved, nothing typed,
+		//and a domain which does not exist
+		List<AutocompleteRequest> requests = Lists.newArrayList();
+		requests.add(getAutocompleteRequest("domain1", "joh", 5));
+		requests.add(getAutocompleteRequest("domain2", "jo", 5));
+		requests.add(getAutocompleteRequest("domain1", " JOH ", 1));
+		requests.add(getAutocompleteRequest("domain1", "john s", 5));
+		requests.add(getAutocompleteRequest("domain1", " ", 5));
+		requests.add(getAutocompleteRequest("noSuchDomain", "jo", 5));
+		requests.add(getAutocompleteRequest("domain1", "jo", 5).toBuilder().setBudgetMillis(10000).build());
+
+		BatchMatchedUsers batch = service.batchAutocomplete(rpcController, BatchAutocompleteRequest.newBuilder().addAllRequests(requests).build());
+		Assert.assertEquals(200, batch.getStatus().getStatusCode());
+		Assert.assertEquals(requests.size(), batch.getResultsCount());
+
+		//Each answer is what the query gets on its own
+		for(int i = 0; i < requests.size() - 2; i++) {
+			Assert.assertEquals(requests.get(i).toString(), service.autocomplete(rpcController, requests.get(i)), batch.getResults(i));
+		}
+
+		Assert.assertEquals(1, batch.getResults(2).getMatchedUsersCount());
+		Assert.assertEquals(0, batch.getResults(4).getMatchedUsersCount());
+		Assert.assertEquals(500, batch.getResults(5).getStatus().getStatusCode());
+
+		//Budgets fail rather than being ignored
+		Assert.assertEquals(500, batch.getResults(6).getStatus().getStatusCode());
+		Assert.assertTrue(batch.getResults(6).getStatus().getMessage().contains("not supported in batches"));
+	}
+
+	@Test
+	public void testFederatedAutocomplete() throws ServiceException {
+
+		String[] domains = {"fedDomain1", "fedDomain2", "fedDomain3"};
+		String[] names = {"john", "joanna", "mary ann", "smith", "jo", "hari", "annsley", "tackie"};
+		clearUsersFromDomains(domains);
+
+		//Domains of different sizes, with many ties between them
+		Random random = new Random(18);
+		Users.Builder users = Users.newBuilder();
+		for(int domain = 0; domain < domains.length; domain++) {
+			for(int uid = 0; uid < 100 * (domain + 1); uid++) {
+				String firstName = names[random.nextInt(names.length)];
+				String lastName = names[random.nextInt(names.length)];
+				users.addUsers(makeUser(domains[domain], firstName, lastName, uid + "@" + domains[domain] + ".com", random.nextInt(20), uid));
+			}
+		}
+
+		Assert.assertEquals(200, service.addUsers(rpcController, users.build()).getStatusCode());
+
+		for(String typed : new String[]{"j", "jo", "an", "a s", "ith", "zz"}) {
+			for(int numResponses : new int[]{1, 5, 50, 1000}) {
+
+				//The same as ranking every domain in full and merging, ties
+				//going to the earlier domain and then to the domain's order
+				List<MatchedUser> expected = Lists.newArrayList();
+				for(String domain : domains) {
+					expected.addAll(service.autocomplete(rpcController, getAutocompleteRequest(domain, typed, 1000)).getMatchedUsersList());
+				}
+
+				Collections.sort(expected, new Comparator<MatchedUser>() {
+					@Override
+					public int compare(MatchedUser first, MatchedUser second) {
+						return Double.compare(second.getScore(), first.getScore());
+					}
+				});
+
+				FederatedAutocompleteRequest.Builder request = FederatedAutocompleteRequest.newBuilder();
+				request.setTyped(typed).setNumResponses(numResponses).addAllDomains(Arrays.asList(domains));
+				MatchedUsers result = service.federatedAutocomplete(rpcController, request.build());
+
+				Assert.assertEquals(200, result.getStatus().getStatusCode());
+				Assert.assertEquals(typed + " " + numResponses, expected.subList(0, Math.min(numResponses, expected.size())), result.getMatchedUsersList());
+			}
+		}
+
+		FederatedAutocompleteRequest.Builder request = FederatedAutocompleteRequest.newBuilder();
+		request.setTyped("jo").setNumResponses(5).addDomains("fedDomain1").addDomains("noSuchDomain");
+		Assert.assertEquals(500, service.federatedAutocomplete(rpcController, request.build()).getStatus().getStatusCode());
+	}
+
+	@Test
+	public void testBudget() throws ServiceException {
+
+		clearUsersFromDomains("budgetDomain");
+		addUserToDomain("budgetDomain", "John", "Smith", "johnsmith@johnsmith.com", 0, 1);
+		addUserToDomain("budgetDomain", "Joe", "Doe", "joe@joe.com", 0, 2);
+
+		//Answered in full within a generous budget
+		AutocompleteRequest request = getAutocompleteRequest("budgetDomain", "jo", 5).toBuilder().setBudgetMillis(10000).build();
+		MatchedUsers matched = service.autocomplete(rpcController, request);
+		Assert.assertEquals(200, matched.getStatus().getStatusCode());
+		Assert.assertEquals(2, matched.getMatchedUsersCount());
+
+		request = request.toBuilder().setBudgetMillis(0).build();
+		Assert.assertEquals(500, service.autocomplete(rpcController, request).getStatus().getStatusCode());
+	}
+
+	@Test
+	public void testBudgetRunsOut() throws ServiceException {
+
+		clearUsersFromDomains("bigBudgetDomain");
+		for(int uid = 0; uid < 100000; uid += 10000) {
+			Users.Builder batch = Users.newBuilder();
+			for(int i = uid; i < uid + 10000; i++) {
+				batch.addUsers(makeUser("bigBudgetDomain", "Xavier", "Budget" + i, "xavier" + i + "@budget.com", 0, i));
+			}
+
+			Assert.assertEquals(200, service.addUsers(rpcController, batch.build()).getStatusCode());
+		}
+
+		//Every user matches inside the last name, so none can be ruled
+		//out early and a millisecond is not enough to rank them all
+		AutocompleteRequest request = getAutocompleteRequest("bigBudgetDomain", "udg", 5).toBuilder().setBudgetMillis(1).build();
+		MatchedUsers matched = service.autocomplete(rpcController, request);
+		Assert.assertEquals(206, matched.getStatus().getStatusCode());
+		Assert.assertTrue(matched.getStatus().getMessage(), matched.getStatus().getMessage().contains("budget"));
+		Assert.assertTrue(matched.getMatchedUsersCount() <= 5);
+
+		//Which leaves the same query without a budget answered in full
+		matched = service.autocomplete(rpcController, getAutocompleteRequest("bigBudgetDomain", "udg", 5));
+		Assert.assertEquals(200, matched.getStatus().getStatusCode());
+		Assert.assertEquals(5, matched.getMatchedUsersCount());
+
+		//Across domains, one budget covers them all
+		clearUsersFromDomains("budgetDomain");
+		addUserToDomain("budgetDomain", "Joe", "Budget", "joe@budget.com", 0, 1);
+		FederatedAutocompleteRequest federated = FederatedAutocompleteRequest.newBuilder()
+				.setTyped("udg")
+				.setNumResponses(5)
+				.addDomains("budgetDomain")
+				.addDomains("bigBudgetDomain")
+				.setBudgetMillis(1)
+				.build();
+		matched = service.federatedAutocomplete(rpcController, federated);
+		Assert.assertEquals(206, matched.getStatus().getStatusCode());
+		Assert.assertTrue(matched.getMatchedUsersCount() <= 5);
+
+		matched = service.federatedAutocomplete(rpcController, federated.toBuilder().setBudgetMillis(10000).build());
+		Assert.assertEquals(200, matched.getStatus().getStatusCode());
+		Assert.assertEquals(5, matched.getMatchedUsersCount());
+
+		federated = federated.toBuilder().setBudgetMillis(0).build();
+		Assert.assertEquals(500, service.federatedAutocomplete(rpcController, federated).getStatus().getStatusCode());
+
+		clearUsersFromDomains("budgetDomain", "bigBudgetDomain");
+	}
+
+	@Test
+	public void testMetricsReport() throws ServiceException {
+
+		clearUsersFromDomains("metricsDomain");
+		addUserToDomain("metricsDomain", "John", "Smith", "johnsmith@johnsmith.com", 0, 1);
+		addUserToDomain("metricsDomain", "Joe", "Doe", "joe@joe.com", 0, 2);
+
+		//Only what happens from here on is reported
+		AutocompleterService.getInstance().getMetrics().report();
+
+		service.autocomplete(rpcController, getAutocompleteRequest("metricsDomain", "j", 5));
+		service.autocomplete(rpcController, getAutocompleteRequest("metricsDomain", "joh", 5));
+		service.autocomplete(rpcController, getAutocompleteRequest("noSuchDomain", "j", 5));
+
+		String report = AutocompleterService.getInstance().getMetrics().report();
+		Assert.assertTrue(report, report.contains("autocomplete: 3 calls"));
+		Assert.assertTrue(report, report.contains("1 failed, 3 results"));
+		Assert.assertTrue(report, report.contains("domain metricsDomain: 2 calls"));
+		Assert.assertFalse(report, report.contains("noSuchDomain"));
+	}
+
+	@Test
+	public void testMetricsReportRecreatedDomain() throws ServiceException {
+
+		clearUsersFromDomains("recreatedDomain");
+		for(int uid = 1; uid <= 50; uid++) {
+			addUserToDomain("recreatedDomain", "John", "Smith" + uid, uid + "@johnsmith.com", 0, uid);
+		}
+
+		service.autocomplete(rpcController, getAutocompleteRequest("recreatedDomain", "j", 5));
+		AutocompleterService.getInstance().getMetrics().report();
+
+		//The recreated domain scans far fewer candidates than the one it
+		//replaces, which must not be counted against it
+		clearUsersFromDomains("recreatedDomain");
+		addUserToDomain("recreatedDomain", "Joe", "Doe", "joe@joe.com", 0, 1);
+		addUserToDomain("recreatedDomain", "John", "Smith", "johnsmith@johnsmith.com", 0, 2);
+		service.autocomplete(rpcController, getAutocompleteRequest("recreatedDomain", "j", 5));
 
+		String report = AutocompleterService.getInstance().getMetrics().report();
+		Matcher scanned = Pattern.compile("domain recreatedDomain: \\d+ calls \\([^)]*\\), (\\d+) candidates scanned").matcher(report);
+		Assert.assertTrue(report, scanned.find());
+		Assert.assertTrue(report, Long.parseLong(scanned.group(1)) > 0);
 	}
 
 	/***
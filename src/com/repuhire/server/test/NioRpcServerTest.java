@@ -0,0 +1,304 @@
+package com.repuhire.server.test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ServiceException;
+import com.googlecode.protobuf.socketrpc.RpcChannels;
+import com.googlecode.protobuf.socketrpc.SocketRpcConnectionFactories;
+import com.googlecode.protobuf.socketrpc.SocketRpcController;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.ErrorReason;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.Request;
+import com.googlecode.protobuf.socketrpc.SocketRpcProtos.Response;
+import com.repuhire.autocompleter.AutocompleterService;
+import com.repuhire.common.Common.Autocompleter;
+import com.repuhire.common.Common.Autocompleter.BlockingInterface;
+import com.repuhire.common.Common.ClearRequest;
+import com.repuhire.common.Common.Status;
+import com.repuhire.common.Common.User;
+import com.repuhire.server.NioRpcServer;
+import com.repuhire.user.test.TestUsers;
+
+public class NioRpcServerTest {
+
+	private ThreadPoolExecutor computePool;
+	private NioRpcServer server;
+
+	@Before
+	public void start() throws InterruptedException {
+		computePool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+		server = new NioRpcServer(0, 1, computePool);
+		server.registerBlockingService(Autocompleter.newReflectiveBlockingService(AutocompleterService.getInstance()));
+
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					server.run();
+				} catch(IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}.start();
+
+		while(!server.isRunning()) {
+			Thread.sleep(10);
+		}
+	}
+
+	@After
+	public void stop() {
+		server.shutDown();
+		computePool.shutdownNow();
+	}
+
+	@Test
+	public void testManyOpenConnections() throws IOException, ServiceException {
+
+		//Far more open connections than threads serving them
+		List<Socket> idle = Lists.newArrayList();
+		try {
+			for(int i = 0; i < 500; i++) {
+				idle.add(new Socket("localhost", server.getLocalPort()));
+			}
+
+			//Clients of the socket RPC library connect once per call
+			BlockingInterface client = Autocompleter.newBlockingStub(RpcChannels.newBlockingRpcChannel(
+					SocketRpcConnectionFactories.createRpcConnectionFactory("localhost", server.getLocalPort())));
+			for(int i = 0; i < 50; i++) {
+				Status status = client.addUser(new SocketRpcController(), makeUser("nioDomain", i));
+				Assert.assertEquals(200, status.getStatusCode());
+			}
+		} finally {
+			for(Socket socket : idle) {
+				socket.close();
+			}
+		}
+	}
+
+	@Test
+	public void testPipelinedRequestsTrickling() throws IOException {
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		try {
+			//Two requests written a byte at a time, then a third at once
+			byte[] requests = concat(
+					delimited(request("ClearUsers", ClearRequest.newBuilder().addDomains("nioDomain").build().toByteString())),
+					delimited(request("AddUser", makeUser("nioDomain", 1).toByteString())));
+
+			OutputStream out = socket.getOutputStream();
+			for(byte b : requests) {
+				out.write(b);
+				out.flush();
+			}
+
+			out.write(delimited(request("AddUser", makeUser("nioDomain", 2).toByteString())));
+			out.flush();
+
+			InputStream in = socket.getInputStream();
+			for(int i = 0; i < 3; i++) {
+				Response response = Response.parseDelimitedFrom(in);
+				Assert.assertFalse(response.getError(), response.hasError());
+				Assert.assertEquals(200, Status.parseFrom(response.getResponseProto()).getStatusCode());
+			}
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write(delimited(request("NoSuchMethod", ByteString.EMPTY)));
+			out.write(delimited(Request.newBuilder(request("AddUser", ByteString.EMPTY)).setServiceName("NoSuchService").build()));
+			out.write(delimited(request("AddUser", ByteString.copyFromUtf8("not a user"))));
+			out.flush();
+
+			InputStream in = socket.getInputStream();
+			Assert.assertEquals(ErrorReason.METHOD_NOT_FOUND, Response.parseDelimitedFrom(in).getErrorReason());
+			Assert.assertEquals(ErrorReason.SERVICE_NOT_FOUND, Response.parseDelimitedFrom(in).getErrorReason());
+			Assert.assertEquals(ErrorReason.BAD_REQUEST_PROTO, Response.parseDelimitedFrom(in).getErrorReason());
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testOverloaded() throws IOException, InterruptedException {
+
+		//Take up both compute threads and the one place in the queue
+		final CountDownLatch release = new CountDownLatch(1);
+		for(int i = 0; i < 3; i++) {
+			computePool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						release.await();
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write(delimited(request("AddUser", makeUser("nioDomain", 1).toByteString())));
+			out.flush();
+
+			Response response = Response.parseDelimitedFrom(socket.getInputStream());
+			Assert.assertEquals(ErrorReason.RPC_ERROR, response.getErrorReason());
+		} finally {
+			release.countDown();
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testRoutedMethodsSkipBusyPool() throws IOException, ServiceException {
+		ThreadPoolExecutor mutationPool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+		server.routeMethod("AddUser", mutationPool);
+
+		//Take up both compute threads and the one place in the queue
+		final CountDownLatch release = new CountDownLatch(1);
+		for(int i = 0; i < 3; i++) {
+			computePool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						release.await();
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		AutocompleterService.getInstance().clearUsers(null, ClearRequest.newBuilder().addDomains("routedDomain").build());
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write(delimited(request("AddUser", makeUser("routedDomain", 1).toByteString())));
+			out.write(delimited(request("ClearUsers", ClearRequest.newBuilder().addDomains("routedDomain").build().toByteString())));
+			out.flush();
+
+			//The mutation is answered on its own pool, the other is refused
+			Response added = Response.parseDelimitedFrom(socket.getInputStream());
+			Assert.assertFalse(added.hasErrorReason());
+			Assert.assertEquals(200, Status.parseFrom(added.getResponseProto()).getStatusCode());
+
+			Response cleared = Response.parseDelimitedFrom(socket.getInputStream());
+			Assert.assertEquals(ErrorReason.RPC_ERROR, cleared.getErrorReason());
+		} finally {
+			release.countDown();
+			socket.close();
+			mutationPool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testControllerMadeAsQueued() throws IOException, InterruptedException {
+		final CountDownLatch queued = new CountDownLatch(1);
+		server.setControllerFactory(new NioRpcServer.ControllerFactory() {
+			@Override
+			public SocketRpcController newController(Request request) {
+				queued.countDown();
+				return new SocketRpcController();
+			}
+		});
+
+		//Take up both compute threads, leaving the one place in the queue
+		final CountDownLatch release = new CountDownLatch(1);
+		for(int i = 0; i < 2; i++) {
+			computePool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						release.await();
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write(delimited(request("AddUser", makeUser("queuedDomain", 1).toByteString())));
+			out.flush();
+
+			//Before any thread is free to answer it
+			Assert.assertTrue(queued.await(10, TimeUnit.SECONDS));
+			release.countDown();
+
+			Response response = Response.parseDelimitedFrom(socket.getInputStream());
+			Assert.assertFalse(response.hasErrorReason());
+		} finally {
+			release.countDown();
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testOversizedRequestClosesConnection() throws IOException {
+		Socket socket = new Socket("localhost", server.getLocalPort());
+		try {
+			CodedOutputStream out = CodedOutputStream.newInstance(socket.getOutputStream());
+			out.writeRawVarint32(NioRpcServer.MAX_REQUEST_SIZE + 1);
+			out.flush();
+
+			Assert.assertEquals(-1, new DataInputStream(socket.getInputStream()).read());
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static Request request(String method, ByteString requestProto) {
+		return Request.newBuilder()
+				.setServiceName(Autocompleter.getDescriptor().getFullName())
+				.setMethodName(method)
+				.setRequestProto(requestProto)
+				.build();
+	}
+
+	private static byte[] delimited(Request request) throws IOException {
+		int size = request.getSerializedSize();
+		byte[] bytes = new byte[CodedOutputStream.computeRawVarint32Size(size) + size];
+
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		out.writeRawVarint32(size);
+		request.writeTo(out);
+		return bytes;
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] both = new byte[first.length + second.length];
+		System.arraycopy(first, 0, both, 0, first.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		return both;
+	}
+
+	private static User makeUser(String domain, long uid) {
+		return TestUsers.makeUser(domain, "Nio", "User" + uid, uid);
+	}
+}
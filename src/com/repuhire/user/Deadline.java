@@ -0,0 +1,56 @@
+package com.repuhire.user;
+
+/***
+ * When a query has to be answered by. Matches arriving after the next
+ * keystroke are of no use, so a query running out of time stops looking
+ * and returns the best matches it found so far instead.
+ *
+ * Deadline is thread safe, so the structures answering a query together
+ * can share one.
+ */
+public class Deadline {
+
+	//The System.nanoTime() to answer by
+	private final long nanoTime;
+
+	//Whether the query was cut short
+	volatile boolean missed = false;
+
+	/***
+	 * @param nanoTime The System.nanoTime() to answer by
+	 */
+	public Deadline(long nanoTime) {
+		this.nanoTime = nanoTime;
+	}
+
+	/***
+	 * @return Whether the time to answer by has come
+	 */
+	boolean passed() {
+		return System.nanoTime() - nanoTime >= 0;
+	}
+
+	/***
+	 * @return How long until the time to answer by, in nanoseconds;
+	 * negative once it has passed
+	 */
+	public long remainingNanos() {
+		return nanoTime - System.nanoTime();
+	}
+
+	/***
+	 * Marks the query as cut short, e.g. when it took the matches of an
+	 * identical query which ran out of time
+	 */
+	public void miss() {
+		missed = true;
+	}
+
+	/***
+	 * @return Whether the query ran out of time, so its matches may not
+	 * be the best there are
+	 */
+	public boolean isMissed() {
+		return missed;
+	}
+}
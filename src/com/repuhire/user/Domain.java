@@ -30,7 +30,7 @@ public class Domain {
 	public boolean equals(Object obj) {
 		if(obj instanceof Domain) {
 			Domain other = (Domain) obj;
-			return Objects.equal(other, obj);
+			return Objects.equal(domainIdentifier, other.domainIdentifier);
 		} else {
 			return false;
 		}
@@ -0,0 +1,422 @@
+package com.repuhire.user;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.repuhire.common.Common.User;
+import com.repuhire.datastructures.MappedPostings;
+import com.repuhire.datastructures.NGramIndex;
+import com.repuhire.datastructures.PostingIntersection;
+import com.repuhire.datastructures.Postings;
+
+/***
+ * Immutable index of a set of users, serving autocompletes straight
+ * from a memory-mapped file so neither the users nor their postings
+ * take up heap, and the OS pages them in and out as needed.
+ *
+ * Users are numbered by slot in ascending UID order, and postings list
+ * slots rather than UIDs; ordering slots is ordering UIDs, so the
+ * postings are in the same order an NGramIndex of the UIDs would be.
+ *
+ * Layout, big endian:
+ *   header: magic, version, gram length, number of users, number of
+ *           grams, offset of the gram table (ints)
+ *   user table, by slot: UID, rank (longs), offset of the record (int)
+ *   gram table, in String order: offset of the gram, offset and
+ *           size of its postings (ints)
+ *   records: lowercased first and last names (length, then chars),
+ *           then the User protobuf (length, then bytes)
+ *   grams: length, then chars
+ *   postings: as written by MappedPostings
+ *
+ * A mapped buffer is at most 2GB, which bounds the size of a file.
+ */
+public class MappedUserIndex {
+
+	//"ACMI"
+	private static final int MAGIC = 0x41434d49;
+	private static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 24;
+	private static final int USER_ENTRY_BYTES = 20;
+	private static final int GRAM_ENTRY_BYTES = 12;
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private final int gramLength;
+	private final int numUsers;
+	private final int numGrams;
+	private final int gramTableOffset;
+
+	private MappedUserIndex(File file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+
+		if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a mapped user index");
+		}
+
+		if(buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported mapped user index version " + buffer.getInt(4) + " in " + file);
+		}
+
+		this.gramLength = buffer.getInt(8);
+		this.numUsers = buffer.getInt(12);
+		this.numGrams = buffer.getInt(16);
+		this.gramTableOffset = buffer.getInt(20);
+
+		if(gramLength <= 0 || numUsers < 0 || numGrams < 0 || gramTableOffset != HEADER_BYTES + (long) numUsers * USER_ENTRY_BYTES
+				|| gramTableOffset + (long) numGrams * GRAM_ENTRY_BYTES > buffer.capacity()) {
+			throw new IOException("Corrupt mapped user index " + file);
+		}
+	}
+
+	/***
+	 * Maps an index file written by write
+	 *
+	 * @param file The file to map
+	 * @return The index, reading from the file from now on
+	 * @throws IOException if the file cannot be mapped or holds no index
+	 */
+	public static MappedUserIndex open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+
+		//The mapping outlives the file handle
+		try {
+			MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+			return new MappedUserIndex(file, buffer);
+		} finally {
+			in.close();
+		}
+	}
+
+	/***
+	 * Writes an index of users to a file, building its postings in parallel
+	 *
+	 * @param file The file to write, replaced if it exists
+	 * @param gramLength The longest name gram to index
+	 * @param users The users to index, no two of the same UID
+	 * @param executor Where to build postings, or null to build
+	 * them on the calling thread
+	 * @throws IOException if the file cannot be written or the index
+	 * would be too large to map
+	 * @throws IllegalArgumentException if two users have the same UID
+	 */
+	public static void write(File file, int gramLength, List<User> users, ExecutorService executor) throws IOException {
+		User[] sorted = users.toArray(new User[users.size()]);
+		Arrays.sort(sorted, new Comparator<User>() {
+			@Override
+			public int compare(User arg0, User arg1) {
+				return arg0.getUid() < arg1.getUid() ? -1 : (arg0.getUid() == arg1.getUid() ? 0 : 1);
+			}
+		});
+
+		long[] slots = new long[sorted.length];
+		long[] ranks = new long[sorted.length];
+		String[] firstNames = new String[sorted.length];
+		String[] lastNames = new String[sorted.length];
+		List<List<String>> tokens = Lists.newArrayListWithCapacity(sorted.length);
+		for(int slot = 0; slot < sorted.length; slot++) {
+			if(slot > 0 && sorted[slot].getUid() == sorted[slot - 1].getUid()) {
+				throw new IllegalArgumentException("Two users have UID " + sorted[slot].getUid());
+			}
+
+			slots[slot] = slot;
+			ranks[slot] = sorted[slot].getTimesRecommended();
+			firstNames[slot] = sorted[slot].getFirstName().toLowerCase();
+			lastNames[slot] = sorted[slot].getLastName().toLowerCase();
+			tokens.add(StoredUserStructure.nameTokens(sorted[slot].getFirstName(), sorted[slot].getLastName()));
+		}
+
+		NGramIndex postings = new NGramIndex(gramLength);
+		postings.addAll(postings.buildPostings(slots, ranks, tokens, executor), executor);
+		List<String> grams = postings.sortedGrams();
+
+		//Lay everything out up front, since the tables come first
+		long offset = HEADER_BYTES + (long) sorted.length * USER_ENTRY_BYTES + (long) grams.size() * GRAM_ENTRY_BYTES;
+		long[] recordOffsets = new long[sorted.length];
+		for(int slot = 0; slot < sorted.length; slot++) {
+			recordOffsets[slot] = offset;
+			offset += 12 + 2 * (firstNames[slot].length() + lastNames[slot].length()) + sorted[slot].getSerializedSize();
+		}
+
+		long[] gramOffsets = new long[grams.size()];
+		for(int i = 0; i < gramOffsets.length; i++) {
+			gramOffsets[i] = offset;
+			offset += 4 + 2 * grams.get(i).length();
+		}
+
+		long[] postingsOffsets = new long[grams.size()];
+		for(int i = 0; i < postingsOffsets.length; i++) {
+			postingsOffsets[i] = offset;
+			offset += (long) postings.getPostings(grams.get(i)).size() * MappedPostings.ENTRY_BYTES;
+		}
+
+		if(offset > Integer.MAX_VALUE) {
+			throw new IOException("An index of " + sorted.length + " users takes " + offset + " bytes, too many to map");
+		}
+
+		FileOutputStream fileOut = new FileOutputStream(file);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(gramLength);
+			out.writeInt(sorted.length);
+			out.writeInt(grams.size());
+			out.writeInt(HEADER_BYTES + sorted.length * USER_ENTRY_BYTES);
+
+			for(int slot = 0; slot < sorted.length; slot++) {
+				out.writeLong(sorted[slot].getUid());
+				out.writeLong(ranks[slot]);
+				out.writeInt((int) recordOffsets[slot]);
+			}
+
+			for(int i = 0; i < gramOffsets.length; i++) {
+				out.writeInt((int) gramOffsets[i]);
+				out.writeInt((int) postingsOffsets[i]);
+				out.writeInt(postings.getPostings(grams.get(i)).size());
+			}
+
+			for(int slot = 0; slot < sorted.length; slot++) {
+				writeChars(firstNames[slot], out);
+				writeChars(lastNames[slot], out);
+				out.writeInt(sorted[slot].getSerializedSize());
+				sorted[slot].writeTo(out);
+			}
+
+			for(String gram : grams) {
+				writeChars(gram, out);
+			}
+
+			for(String gram : grams) {
+				MappedPostings.write(postings.getPostings(gram), out);
+			}
+
+			out.flush();
+			fileOut.getFD().sync();
+		} finally {
+			fileOut.close();
+		}
+	}
+
+	/***
+	 * Finds the slots of the users which may own a name token containing
+	 * each of the query tokens, as NGramIndex.candidates does
+	 *
+	 * @param queryTokens Tokens which must all match
+	 * @return The candidate slots, best rank first
+	 */
+	public PostingIntersection candidates(List<String> queryTokens) {
+		List<Postings> lists = Lists.newArrayList();
+
+		for(String token : queryTokens) {
+			for(String gram : NGramIndex.queryGrams(token, gramLength)) {
+				Postings gramPostings = postingsOf(gram);
+				if(gramPostings == null) {
+					return new PostingIntersection(Collections.<Postings>emptyList());
+				}
+
+				lists.add(gramPostings);
+			}
+		}
+
+		return new PostingIntersection(lists);
+	}
+
+	/***
+	 * @param uid The UID to look up
+	 * @return The slot of the user of that UID, or -1 if there is none
+	 */
+	public int slotOf(long uid) {
+		int low = 0;
+		int high = numUsers - 1;
+
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			long midUid = uid(mid);
+
+			if(midUid < uid) {
+				low = mid + 1;
+			} else if(midUid > uid) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	public long uid(int slot) {
+		return buffer.getLong(HEADER_BYTES + slot * USER_ENTRY_BYTES);
+	}
+
+	/***
+	 * @return The static rank the user of the slot is indexed under,
+	 * which is its number of recommendations
+	 */
+	public long rank(int slot) {
+		return buffer.getLong(HEADER_BYTES + slot * USER_ENTRY_BYTES + 8);
+	}
+
+	/***
+	 * Copies the lowercased first name of a user
+	 *
+	 * @param slot The slot of the user
+	 * @param into Where to copy it, grown if needed
+	 */
+	public void readFirstName(int slot, Name into) {
+		readChars(recordOffset(slot), into);
+	}
+
+	/***
+	 * Copies the lowercased last name of a user
+	 *
+	 * @param slot The slot of the user
+	 * @param into Where to copy it, grown if needed
+	 */
+	public void readLastName(int slot, Name into) {
+		int firstNameOffset = recordOffset(slot);
+		readChars(firstNameOffset + 4 + 2 * buffer.getInt(firstNameOffset), into);
+	}
+
+	/***
+	 * Decodes the full user of a slot, which allocates, so is best
+	 * kept for the users which make it into the results
+	 *
+	 * @param slot The slot of the user
+	 * @return The user
+	 */
+	public User user(int slot) {
+		int offset = recordOffset(slot);
+		offset += 4 + 2 * buffer.getInt(offset);
+		offset += 4 + 2 * buffer.getInt(offset);
+
+		byte[] bytes = new byte[buffer.getInt(offset)];
+		ByteBuffer record = buffer.duplicate();
+		record.position(offset + 4);
+		record.get(bytes);
+
+		try {
+			return User.parseFrom(bytes);
+		} catch(InvalidProtocolBufferException e) {
+			throw new IllegalStateException("Corrupt user in slot " + slot + " of " + file, e);
+		}
+	}
+
+	/***
+	 * @return The number of users in the index
+	 */
+	public int size() {
+		return numUsers;
+	}
+
+	public int getGramLength() {
+		return gramLength;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	private int recordOffset(int slot) {
+		return buffer.getInt(HEADER_BYTES + slot * USER_ENTRY_BYTES + 16);
+	}
+
+	/***
+	 * Binary searches the gram table
+	 *
+	 * @return The postings of the gram, or null if it is not indexed
+	 */
+	private Postings postingsOf(String gram) {
+		int low = 0;
+		int high = numGrams - 1;
+
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int entry = gramTableOffset + mid * GRAM_ENTRY_BYTES;
+			int cmp = compareChars(buffer.getInt(entry), gram);
+
+			if(cmp < 0) {
+				low = mid + 1;
+			} else if(cmp > 0) {
+				high = mid - 1;
+			} else {
+				return new MappedPostings(buffer, buffer.getInt(entry + 4), buffer.getInt(entry + 8));
+			}
+		}
+
+		return null;
+	}
+
+	/***
+	 * String.compareTo between the chars at an offset and a string
+	 */
+	private int compareChars(int offset, String string) {
+		int length = buffer.getInt(offset);
+		int common = Math.min(length, string.length());
+
+		for(int i = 0; i < common; i++) {
+			char c = buffer.getChar(offset + 4 + 2 * i);
+			if(c != string.charAt(i)) {
+				return c - string.charAt(i);
+			}
+		}
+
+		return length - string.length();
+	}
+
+	private void readChars(int offset, Name into) {
+		int length = buffer.getInt(offset);
+		if(into.chars.length < length) {
+			into.chars = new char[Math.max(length, 2 * into.chars.length)];
+		}
+
+		for(int i = 0; i < length; i++) {
+			into.chars[i] = buffer.getChar(offset + 4 + 2 * i);
+		}
+
+		into.length = length;
+	}
+
+	private static void writeChars(String string, DataOutputStream out) throws IOException {
+		out.writeInt(string.length());
+		out.writeChars(string);
+	}
+
+	/***
+	 * Reusable buffer for a name read from the index
+	 */
+	public static class Name {
+
+		private char[] chars = new char[32];
+		private int length = 0;
+
+		/***
+		 * @return The chars of the name, followed by garbage; must not be modified
+		 */
+		public char[] getChars() {
+			return chars;
+		}
+
+		public int getLength() {
+			return length;
+		}
+	}
+}
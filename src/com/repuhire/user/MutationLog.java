@@ -0,0 +1,42 @@
+package com.repuhire.user;
+
+import java.util.List;
+
+import com.repuhire.common.Common.User;
+
+/***
+ * Receives every mutation of the users, in the order the mutations
+ * took effect.
+ *
+ * StoredUserStructure reports a mutation while still holding its
+ * write lock, so mutations of the same domain are reported in exactly
+ * the order they were applied. Implementations should only buffer
+ * the mutation and return quickly.
+ */
+public interface MutationLog {
+
+	/***
+	 * @param user The user which was added
+	 */
+	void added(User user);
+
+	/***
+	 * @param users The users which were added together, all of one domain
+	 */
+	void addedAll(List<User> users);
+
+	/***
+	 * @param user The new information of the user which was updated
+	 */
+	void updated(User user);
+
+	/***
+	 * @param user The user which was deleted
+	 */
+	void deleted(User user);
+
+	/***
+	 * @param domainIdentifier The domain which was cleared
+	 */
+	void cleared(String domainIdentifier);
+}
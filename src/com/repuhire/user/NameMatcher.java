@@ -0,0 +1,164 @@
+package com.repuhire.user;
+
+import java.util.List;
+
+import com.repuhire.common.Common.MatchedUser.HighlightIndices;
+import com.repuhire.datastructures.Intervals;
+
+/***
+ * Matches the typed tokens of one query against lowercased names.
+ *
+ * Deciding whether, and how well, a candidate matches works directly
+ * on the names' char arrays and allocates nothing; highlights are only
+ * computed for the users which make it into the results.
+ */
+public class NameMatcher {
+
+	//Quality of a single token match, by where it matched
+	public static final double FIRST_NAME_PREFIX_QUALITY = 1.0;
+	public static final double LAST_NAME_PREFIX_QUALITY = 0.9;
+	public static final double TOKEN_START_QUALITY = 0.75;
+	public static final double INFIX_QUALITY = 0.5;
+
+	private final char[][] tokens;
+
+	//Scratch buffer for the highlights of one name at a time
+	private final Intervals highlights = new Intervals();
+
+	/***
+	 * @param tokens The lowercased, non-empty typed tokens
+	 */
+	public NameMatcher(List<String> tokens) {
+		this.tokens = new char[tokens.size()][];
+
+		for(int i = 0; i < this.tokens.length; i++) {
+			this.tokens[i] = tokens.get(i).toCharArray();
+		}
+	}
+
+	/***
+	 * Determines how well the names match every token. A first name
+	 * prefix beats a last name prefix beats a token start beats an infix,
+	 * and the best match of each token counts.
+	 *
+	 * @param firstName The lowercased first name
+	 * @param lastName The lowercased last name
+	 * @return The average quality of the tokens' matches in [0, 1],
+	 * or a negative number if some token matches neither name
+	 */
+	public double quality(char[] firstName, char[] lastName) {
+		return quality(firstName, firstName.length, lastName, lastName.length);
+	}
+
+	/***
+	 * Determines how well the names match every token, as quality(char[], char[])
+	 * does, for names which only fill the start of their arrays
+	 *
+	 * @param firstName The lowercased first name
+	 * @param firstNameLength The number of chars of the first name
+	 * @param lastName The lowercased last name
+	 * @param lastNameLength The number of chars of the last name
+	 * @return The average quality of the tokens' matches in [0, 1],
+	 * or a negative number if some token matches neither name
+	 */
+	public double quality(char[] firstName, int firstNameLength, char[] lastName, int lastNameLength) {
+		return quality(firstName, 0, firstNameLength, lastName, 0, lastNameLength);
+	}
+
+	/***
+	 * Determines how well the names match every token, as quality(char[], char[])
+	 * does, for names held anywhere within their arrays
+	 *
+	 * @param firstName The array holding the lowercased first name
+	 * @param firstNameStart Where the first name starts
+	 * @param firstNameLength The number of chars of the first name
+	 * @param lastName The array holding the lowercased last name
+	 * @param lastNameStart Where the last name starts
+	 * @param lastNameLength The number of chars of the last name
+	 * @return The average quality of the tokens' matches in [0, 1],
+	 * or a negative number if some token matches neither name
+	 */
+	public double quality(char[] firstName, int firstNameStart, int firstNameLength,
+			char[] lastName, int lastNameStart, int lastNameLength) {
+		double quality = 0;
+
+		for(char[] token : tokens) {
+			double tokenQuality = Math.max(
+					bestQuality(token, firstName, firstNameStart, firstNameLength, FIRST_NAME_PREFIX_QUALITY),
+					bestQuality(token, lastName, lastNameStart, lastNameLength, LAST_NAME_PREFIX_QUALITY));
+
+			//No match
+			if(tokenQuality < 0) {
+				return -1;
+			}
+
+			quality += tokenQuality;
+		}
+
+		return quality / tokens.length;
+	}
+
+	/***
+	 * Finds where every token occurs in a name, the same way
+	 * StoredUserStructure.allIndicesOf does, and highlights those
+	 * occurrences with as few highlights as possible.
+	 *
+	 * @param name The lowercased name
+	 * @return The consolidated highlights, ascending on start
+	 */
+	public List<HighlightIndices> highlights(char[] name) {
+		highlights.clear();
+
+		//Occurrences of each token come in ascending order,
+		//so a single token needs no sorting at all
+		for(char[] token : tokens) {
+			for(int index = indexOf(token, name, 0, name.length, 0); index >= 0; index = indexOf(token, name, 0, name.length, index + token.length)) {
+				highlights.add(index, index + token.length);
+			}
+		}
+
+		highlights.consolidate();
+		return StoredUserStructure.toHighlightIndices(highlights);
+	}
+
+	/***
+	 * @return The quality of the best occurrence of the token in
+	 * the name, or a negative number if it does not occur
+	 */
+	private static double bestQuality(char[] token, char[] name, int nameStart, int nameLength, double prefixQuality) {
+		double best = -1;
+
+		for(int index = indexOf(token, name, nameStart, nameLength, 0); index >= 0; index = indexOf(token, name, nameStart, nameLength, index + token.length)) {
+			if(index == 0) {
+				return prefixQuality;
+			} else if(name[nameStart + index - 1] == ' ') {
+				best = TOKEN_START_QUALITY;
+			} else if(best < 0) {
+				best = INFIX_QUALITY;
+			}
+		}
+
+		return best;
+	}
+
+	/***
+	 * String.indexOf over the haystackLength chars of an array
+	 * from haystackStart, returning indices relative to it
+	 */
+	private static int indexOf(char[] needle, char[] haystack, int haystackStart, int haystackLength, int from) {
+		int last = haystackLength - needle.length;
+
+		outer:
+		for(int start = from; start <= last; start++) {
+			for(int i = 0; i < needle.length; i++) {
+				if(haystack[haystackStart + start + i] != needle[i]) {
+					continue outer;
+				}
+			}
+
+			return start;
+		}
+
+		return -1;
+	}
+}
@@ -0,0 +1,85 @@
+package com.repuhire.user;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.repuhire.datastructures.PostingList;
+
+/***
+ * Bounded LRU cache of the users matching recently typed queries
+ * of one domain.
+ *
+ * Typing only ever extends a query, and every user matching an extended
+ * query also matches the query it extends. So the matches of the longest
+ * cached prefix of a new query are a complete candidate set for it, and
+ * usually a far smaller one than the index would produce.
+ *
+ * The cache holds no user data and must be cleared whenever a user of
+ * the domain changes.
+ */
+public class QueryCache {
+
+	//Bounds memory per domain to roughly
+	//MAX_ENTRIES * MAX_MATCHES_PER_ENTRY * 16 bytes
+	public static final int MAX_ENTRIES = 64;
+	public static final int MAX_MATCHES_PER_ENTRY = 1024;
+
+	//Bumped on every clear, so on every mutation of the domain
+	private volatile long generation = 0;
+
+	private final Map<String, PostingList> matches = new LinkedHashMap<String, PostingList>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 2215409367155294301L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PostingList> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/***
+	 * Finds the cached matches of the longest cached prefix of a query
+	 *
+	 * @param normalizedQuery The lowercased typed tokens joined by single spaces
+	 * @return The matches of that prefix in rank order, or null if none is cached.
+	 * The returned list must not be modified.
+	 */
+	public synchronized PostingList longestPrefixMatches(String normalizedQuery) {
+		for(int length = normalizedQuery.length(); length > 0; length--) {
+			PostingList cached = matches.get(normalizedQuery.substring(0, length));
+			if(cached != null) {
+				return cached;
+			}
+		}
+
+		return null;
+	}
+
+	/***
+	 * Remembers every user matching a query
+	 *
+	 * @param normalizedQuery The lowercased typed tokens joined by single spaces
+	 * @param queryMatches All of the matches of the query, which will
+	 * not be modified afterwards
+	 */
+	public synchronized void put(String normalizedQuery, PostingList queryMatches) {
+		if(queryMatches.size() <= MAX_MATCHES_PER_ENTRY) {
+			matches.put(normalizedQuery, queryMatches);
+		}
+	}
+
+	/***
+	 * Forgets everything; to be called on every mutation of the domain
+	 */
+	public synchronized void clear() {
+		matches.clear();
+		generation++;
+	}
+
+	/***
+	 * @return The number of times the cache was cleared
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+}
@@ -0,0 +1,96 @@
+package com.repuhire.user;
+
+/***
+ * Where the time of one autocomplete went, phase by phase, and how
+ * many candidates it went through, filled in by StoredUserStructure
+ * when asked to trace a query.
+ *
+ * QueryTrace is not thread safe; each query gets its own.
+ */
+public class QueryTrace {
+
+	//Nanoseconds spent in each phase
+	long tokenizeNanos;
+	long lockWaitNanos;
+	long candidatesNanos;
+	long matchNanos;
+	long resultsNanos;
+
+	//Whether candidates came from the matches of an earlier keystroke
+	boolean refined;
+
+	//Candidates the indexes could have given, those matched against the
+	//typed tokens before ranking cut the query short, and those matching
+	int maxCandidates;
+	int candidatesScanned;
+	int matches;
+
+	//Whether the query waited for an identical one to answer it instead
+	private boolean shared;
+
+	/***
+	 * @return Nanoseconds spent lowercasing and splitting the typed string
+	 */
+	public long getTokenizeNanos() {
+		return tokenizeNanos;
+	}
+
+	/***
+	 * @return Nanoseconds spent waiting for mutations to let go of the structure
+	 */
+	public long getLockWaitNanos() {
+		return lockWaitNanos;
+	}
+
+	/***
+	 * @return Nanoseconds spent looking up candidates in the query cache and indexes
+	 */
+	public long getCandidatesNanos() {
+		return candidatesNanos;
+	}
+
+	/***
+	 * @return Nanoseconds spent matching candidates against the typed tokens and ranking them
+	 */
+	public long getMatchNanos() {
+		return matchNanos;
+	}
+
+	/***
+	 * @return Nanoseconds spent highlighting the best matches and building their protobufs
+	 */
+	public long getResultsNanos() {
+		return resultsNanos;
+	}
+
+	/***
+	 * @return Whether the query shared the answer of an identical one,
+	 * so spent its time waiting rather than in any of the phases
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/***
+	 * @param shared Whether the query shared the answer of an identical one
+	 */
+	public void setShared(boolean shared) {
+		this.shared = shared;
+	}
+
+	public boolean isRefined() {
+		return refined;
+	}
+
+	public int getMaxCandidates() {
+		return maxCandidates;
+	}
+
+	public int getCandidatesScanned() {
+		return candidatesScanned;
+	}
+
+	public int getMatches() {
+		return matches;
+	}
+}
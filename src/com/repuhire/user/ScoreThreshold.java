@@ -0,0 +1,41 @@
+package com.repuhire.user;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * The score a match has to beat to make it into the results of a query
+ * answered by several structures at once, e.g. across domains.
+ *
+ * Once a structure holds k matches, the k best matches of all of them
+ * together score at least as high as its k-th, so each structure raises
+ * the threshold to its k-th score and the others stop looking as soon
+ * as none of their remaining candidates could beat it.
+ *
+ * ScoreThreshold is thread safe and only ever goes up.
+ */
+public class ScoreThreshold {
+
+	//Bits of the double threshold, so it can be raised atomically
+	private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+
+	/***
+	 * @return The score a match has to beat
+	 */
+	public double get() {
+		return Double.longBitsToDouble(bits.get());
+	}
+
+	/***
+	 * Raises the threshold, if the score is higher
+	 *
+	 * @param score The k-th best score of a structure holding at least k matches
+	 */
+	public void raise(double score) {
+		while(true) {
+			long current = bits.get();
+			if(score <= Double.longBitsToDouble(current) || bits.compareAndSet(current, Double.doubleToLongBits(score))) {
+				return;
+			}
+		}
+	}
+}
@@ -24,6 +24,11 @@ public class StoredUser {
 	//John Smith
 	private String fullName;
 
+	//Lowercased names, computed up front since
+	//every autocomplete reads them
+	private char[] lowerFirstName;
+	private char[] lowerLastName;
+
 	/***
 	 * Constructs a stored user from a fully instantiated
 	 * model
@@ -40,6 +45,7 @@ public class StoredUser {
 
 		this.user = user;
 		this.uid = user.getUid();
+		lowercaseNames();
 	}
 
 	//-------
@@ -64,6 +70,7 @@ public class StoredUser {
 		}
 
 		this.user = updated;
+		lowercaseNames();
 	}
 
 	/***
@@ -74,6 +81,14 @@ public class StoredUser {
 		this.fullName = null;
 	}
 
+	/***
+	 * Recomputes the lowercased names from the current user
+	 */
+	private void lowercaseNames() {
+		this.lowerFirstName = user.getFirstName().toLowerCase().toCharArray();
+		this.lowerLastName = user.getLastName().toLowerCase().toCharArray();
+	}
+
 	//------
 	//Getters
 	//-------
@@ -95,6 +110,20 @@ public class StoredUser {
 		return user.getFirstName();
 	}
 
+	/***
+	 * @return The lowercased first name; must not be modified
+	 */
+	public char[] getLowerFirstName() {
+		return lowerFirstName;
+	}
+
+	/***
+	 * @return The lowercased last name; must not be modified
+	 */
+	public char[] getLowerLastName() {
+		return lowerLastName;
+	}
+
 	public String getEmail() {
 		//Not memoized
 		return user.getEmail();
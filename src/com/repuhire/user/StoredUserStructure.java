@@ -1,23 +1,201 @@
 package com.repuhire.user;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.repuhire.common.Common.MatchedUser;
 import com.repuhire.common.Common.MatchedUser.HighlightIndices;
+import com.repuhire.common.Common.User;
+import com.repuhire.datastructures.Intervals;
+import com.repuhire.datastructures.NGramIndex;
+import com.repuhire.datastructures.PostingIntersection;
+import com.repuhire.datastructures.PostingList;
+import com.repuhire.datastructures.TopKHeap;
 
 /***
  * Data structure in charge of storing all of the users.
  * Optimized for quick prefix lookup.
+ *
+ * StoredUserStructure is thread safe. Autocompletes share a read lock
+ * and never block one another; mutations take the write lock only for
+ * as long as it takes to update the users and the index.
+ *
+ * Users may also be served from a MappedUserIndex on disk, the base,
+ * in which case only the users changed since the base was written are
+ * kept on heap, along with tombstones for the base users they replace
+ * or delete. Merging writes a new base of every user and brings the
+ * on-heap part back down to nothing.
  */
-public class StoredUserStructure extends HashMap<Long, StoredUser>{
+public class StoredUserStructure {
 
-	private static final long serialVersionUID = -6751388005945265976L;
+	//Trigrams keep the postings short while indexing only O(length)
+	//grams per name token
+	public static final int DEFAULT_GRAM_LENGTH = 3;
+
+	//Index from the grams of every lowercased name token to the UIDs
+	//of the users owning that token. Candidates are verified with
+	//a NameMatcher, which keeps the indexOf matching semantics
+	private NGramIndex gramIndex;
+
+	//Every user not served by the base, stored column by column
+	private UserColumns users = new UserColumns();
+
+	//Users mapped from disk, null if every user is on heap
+	private MappedUserIndex base = null;
+
+	//Slots of the base users since deleted or replaced on heap
+	private BitSet tombstones = new BitSet();
+	private int numTombstones = 0;
+
+	//UIDs mutated while a merge writes the next base, null if none is
+	private Set<Long> mergingUids = null;
+
+	//Matches of recently typed queries, cleared on every mutation
+	private final QueryCache queryCache = new QueryCache();
+
+	//Guards the users, the index, the base and tombstones
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	//Candidates matched against typed queries, for metrics
+	private final AtomicLong candidatesScanned = new AtomicLong();
+
+	//Told about every mutation under the write lock, null if none is
+	private volatile MutationLog mutationLog = null;
+
+	//Set once the domain is cleared, after which mutations are refused
+	//so none can slip in unlogged behind the clear
+	private boolean retired = false;
+
+	//Scoring weights; match quality and static rank add up to 1
+	private static final double MATCH_WEIGHT = 0.6;
+	private static final double STATIC_RANK_WEIGHT = 1 - MATCH_WEIGHT;
+
+	//Number of recommendations worth half of the static score
+	private static final double RECOMMENDATION_HALF_SCORE = 10;
+
+	//Candidates matched between looks at the clock; a power of two
+	private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+	//Scratch heap of each thread, reused by every autocomplete it runs,
+	//holding the UIDs of the best matches
+	private static final ThreadLocal<TopKHeap> TOP_K = new ThreadLocal<TopKHeap>() {
+		@Override
+		protected TopKHeap initialValue() {
+			return new TopKHeap();
+		}
+	};
+
+	public StoredUserStructure() {
+		this(DEFAULT_GRAM_LENGTH);
+	}
+
+	/***
+	 * @param gramLength The longest name gram to index
+	 */
+	public StoredUserStructure(int gramLength) {
+		this(new NGramIndex(gramLength));
+	}
+
+	private StoredUserStructure(NGramIndex gramIndex) {
+		this.gramIndex = gramIndex;
+	}
+
+	/***
+	 * Reads a structure written by writeTo, index included,
+	 * so nothing needs to be re-indexed
+	 *
+	 * @param in The stream to read from
+	 * @return The structure read, mapping its base again if it had one
+	 * @throws IOException if the stream fails or holds no structure,
+	 * or the base cannot be mapped
+	 */
+	public static StoredUserStructure readFrom(CodedInputStream in) throws IOException {
+		int numUsers = in.readRawVarint32();
+		if(numUsers < 0) {
+			throw new IOException("Corrupt structure of " + numUsers + " users");
+		}
+
+		UserColumns users = new UserColumns(numUsers, false);
+		for(int i = 0; i < numUsers; i++) {
+			in.resetSizeCounter();
+			User.Builder userBuilder = User.newBuilder();
+			in.readMessage(userBuilder, ExtensionRegistryLite.getEmptyRegistry());
+			users.add(userBuilder.build());
+		}
+
+		StoredUserStructure structure = new StoredUserStructure(NGramIndex.readFrom(in));
+		structure.users = users;
+
+		String baseFile = in.readString();
+		if(baseFile.length() > 0) {
+			structure.base = MappedUserIndex.open(new File(baseFile));
+
+			int numTombstones = in.readRawVarint32();
+			for(int i = 0; i < numTombstones; i++) {
+				long uid = in.readSInt64();
+				int slot = structure.base.slotOf(uid);
+				if(slot < 0) {
+					throw new IOException("User " + uid + " is deleted from " + baseFile + " but not in it");
+				}
+
+				structure.tombstone(slot);
+			}
+		}
+
+		return structure;
+	}
+
+	/***
+	 * Writes every user along with the index, as of a single point in
+	 * time. Only a reference to the base is written, so its file must
+	 * be kept for as long as what is written is.
+	 *
+	 * @param out The stream to write to
+	 * @throws IOException if the stream fails
+	 */
+	public void writeTo(CodedOutputStream out) throws IOException {
+		lock.readLock().lock();
+		try {
+			out.writeUInt32NoTag(users.size());
+			for(int slot = 0; slot < users.numSlots(); slot++) {
+				if(users.isStored(slot)) {
+					out.writeMessageNoTag(users.user(slot));
+				}
+			}
+
+			gramIndex.writeTo(out);
+
+			out.writeStringNoTag(base != null ? base.getFile().getAbsolutePath() : "");
+			if(base != null) {
+				out.writeUInt32NoTag(numTombstones);
+				for(int slot = tombstones.nextSetBit(0); slot >= 0; slot = tombstones.nextSetBit(slot + 1)) {
+					out.writeSInt64NoTag(base.uid(slot));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 
 	/***
 	 * Removes a user from the structure
@@ -26,7 +204,35 @@ public class StoredUserStructure extends HashMap<Long, StoredUser>{
 	 * @return True iff a user was removed
 	 */
 	public boolean deleteUser(long uid) {
-		return this.remove(uid) != null;
+		lock.writeLock().lock();
+		try {
+			checkNotRetired();
+			int slot = users.slotOf(uid);
+			User removedUser;
+
+			if(slot >= 0) {
+				unindex(slot);
+				removedUser = users.user(slot);
+				users.remove(slot);
+			} else {
+				slot = liveSlotOf(uid);
+				if(slot < 0) {
+					return false;
+				}
+
+				tombstone(slot);
+				removedUser = base.user(slot);
+			}
+
+			touched(uid);
+			if(mutationLog != null) {
+				mutationLog.deleted(removedUser);
+			}
+
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/***
@@ -46,7 +252,12 @@ public class StoredUserStructure extends HashMap<Long, StoredUser>{
 	 * @return True iff this contains the user
 	 */
 	public boolean containsUser(long uid) {
-		return this.containsKey(uid);
+		lock.readLock().lock();
+		try {
+			return contains(uid);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/***
@@ -56,40 +267,596 @@ public class StoredUserStructure extends HashMap<Long, StoredUser>{
 	 * store already contains a user of the same UID
 	 */
 	public void addUser(StoredUser toAdd) {
+		lock.writeLock().lock();
+		try {
+			checkNotRetired();
+			if(contains(toAdd.getUid())) {
+				throw new IllegalArgumentException("Attempted to add a user with UID " + toAdd.getUid() + " when one already existed.");
+			}
+
+			index(users.add(toAdd.getUser()));
+			touched(toAdd.getUid());
+			if(mutationLog != null) {
+				mutationLog.added(toAdd.getUser());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/***
+	 * Adds many users to this structure at once, indexing them in bulk.
+	 * Users whose UID is already stored, or taken by an earlier user of
+	 * the batch, are skipped rather than failing the whole batch.
+	 *
+	 * @param toAdd The users to add to the data store
+	 * @return The users which were skipped
+	 */
+	public List<StoredUser> addUsers(List<StoredUser> toAdd) {
+		return addUsers(toAdd, null);
+	}
+
+	/***
+	 * Adds many users to this structure at once, building their index
+	 * entries in parallel. The entries are built before taking the write
+	 * lock, so the domain keeps answering autocompletes meanwhile, and
+	 * are merged into the index under it.
+	 *
+	 * @param toAdd The users to add to the data store
+	 * @param executor Where to build and merge index entries,
+	 * or null to do it all on the calling thread
+	 * @return The users which were skipped, either because their UID is
+	 * already stored or because an earlier user of the batch has it
+	 */
+	public List<StoredUser> addUsers(List<StoredUser> toAdd, ExecutorService executor) {
+		List<StoredUser> added = Lists.newArrayListWithCapacity(toAdd.size());
+		List<StoredUser> skipped = Lists.newArrayList();
+
+		lock.readLock().lock();
+		try {
+			Set<Long> batchUids = Sets.newHashSetWithExpectedSize(toAdd.size());
+			for(StoredUser user : toAdd) {
+				if(contains(user.getUid()) || !batchUids.add(user.getUid())) {
+					skipped.add(user);
+				} else {
+					added.add(user);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		NGramIndex.Batch postings = buildPostings(gramIndex, added, executor);
+
+		lock.writeLock().lock();
+		try {
+
+			checkNotRetired();
+
+			//Someone else may have added some of the users in the meantime
+			List<StoredUser> raced = Lists.newArrayList();
+			for(StoredUser user : added) {
+				if(contains(user.getUid())) {
+					raced.add(user);
+				}
+			}
+
+			if(!raced.isEmpty()) {
+				added.removeAll(raced);
+				skipped.addAll(raced);
+				postings = buildPostings(gramIndex, added, executor);
+			}
+
+			for(StoredUser user : added) {
+				users.add(user.getUser());
+				touched(user.getUid());
+			}
+
+			queryCache.clear();
+			gramIndex.addAll(postings, executor);
+
+			if(mutationLog != null && !added.isEmpty()) {
+				List<User> addedUsers = Lists.newArrayListWithCapacity(added.size());
+				for(StoredUser user : added) {
+					addedUsers.add(user.getUser());
+				}
+
+				mutationLog.addedAll(addedUsers);
+			}
+
+			return skipped;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/***
+	 * Builds the index entries of users, touching neither the users nor the index
+	 */
+	private static NGramIndex.Batch buildPostings(NGramIndex index, Collection<StoredUser> toIndex, ExecutorService executor) {
+		long[] uids = new long[toIndex.size()];
+		long[] ranks = new long[toIndex.size()];
+		List<List<String>> tokens = Lists.newArrayListWithCapacity(toIndex.size());
 
-		if(this.containsKey(toAdd.getUid())) {
-			throw new IllegalArgumentException("Attempted to add a user with UID " + toAdd.getUid() + " when one already existed.");
+		int i = 0;
+		for(StoredUser user : toIndex) {
+			uids[i] = user.getUid();
+			ranks[i++] = user.getTimesRecommended();
+			tokens.add(nameTokens(user));
 		}
 
-		this.put(toAdd.getUid(), toAdd);
+		return index.buildPostings(uids, ranks, tokens, executor);
+	}
+
+	/***
+	 * Updates the stored information of a user, keeping the
+	 * index in sync with the new names
+	 *
+	 * @param updated The new information for the user
+	 * @throws IllegalArgumentException If no user with that UID exists
+	 */
+	public void updateUser(User updated) {
+		lock.writeLock().lock();
+		try {
+			checkNotRetired();
+			int slot = users.slotOf(updated.getUid());
+
+			if(slot >= 0) {
+				unindex(slot);
+				users.update(slot, updated);
+				index(slot);
+			} else {
+
+				//Base users are replaced by an updated copy on heap
+				int baseSlot = liveSlotOf(updated.getUid());
+				if(baseSlot < 0) {
+					throw new IllegalArgumentException("No user exists with UID = " + updated.getUid());
+				}
+
+				tombstone(baseSlot);
+				index(users.add(updated));
+			}
+
+			touched(updated.getUid());
+			if(mutationLog != null) {
+				mutationLog.updated(updated);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/***
+	 * Marks the structure as no longer part of the service, after which
+	 * every mutation fails. Done under the write lock so the clear is
+	 * logged after every mutation which made it in.
+	 *
+	 * @param domainIdentifier The domain the structure held
+	 */
+	public void retire(String domainIdentifier) {
+		lock.writeLock().lock();
+		try {
+			if(!retired) {
+				retired = true;
+				if(mutationLog != null) {
+					mutationLog.cleared(domainIdentifier);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/***
+	 * @param mutationLog What to tell about every mutation from now on, or null for nothing
+	 */
+	public void setMutationLog(MutationLog mutationLog) {
+		this.mutationLog = mutationLog;
 	}
 
 	/***
 	 * Fetches a user from the UID
 	 *
 	 * @param uid The UID of the user to fetch
-	 * @return The user corresponding to this UID
+	 * @return A copy of the user corresponding to this UID
 	 */
 	public StoredUser getUser(long uid) {
-		if(containsUser(uid)) {
-			return this.get(uid);
-		} else {
-			throw new IllegalArgumentException("No user exists with UID = " + uid);
+		lock.readLock().lock();
+		try {
+			if(!contains(uid)) {
+				throw new IllegalArgumentException("No user exists with UID = " + uid);
+			}
+
+			return findUser(uid);
+		} finally {
+			lock.readLock().unlock();
 		}
 	}
 
 	/***
-	 * Finds a set of matching users given a typed string
+	 * @return The number of users stored
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return users.size() + (base != null ? base.size() - numTombstones : 0);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/***
+	 * @return The number of users and tombstones kept on heap, which
+	 * is every user if there is no base
+	 */
+	public int getDeltaSize() {
+		lock.readLock().lock();
+		try {
+			return users.size() + numTombstones;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/***
+	 * Moves the names and emails of the users not served by the
+	 * base on or off heap. Off heap, only what autocompletes read for
+	 * every candidate stays on heap: UIDs, ranks, lowercased names and the
+	 * index. The rest is read back for matches and getUser alone.
+	 *
+	 * @param offHeap Whether to keep the records off heap from now on
+	 */
+	public void setOffHeapRecords(boolean offHeap) {
+		lock.writeLock().lock();
+		try {
+			users.setOffHeap(offHeap);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/***
+	 * @return Whether the records of users are kept off heap
+	 */
+	public boolean isOffHeapRecords() {
+		lock.readLock().lock();
+		try {
+			return users.isOffHeap();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/***
+	 * @return The number of candidates autocompletes have matched
+	 * against what was typed, ever growing
+	 */
+	public long getCandidatesScanned() {
+		return candidatesScanned.get();
+	}
+
+	/***
+	 * @return A number which changes whenever a mutation may change
+	 * the answer to a query, and only goes up
+	 */
+	public long getGeneration() {
+		return queryCache.getGeneration();
+	}
+
+	/***
+	 * @return The file of the base, or null if every user is on heap
+	 */
+	public File getBaseFile() {
+		lock.readLock().lock();
+		try {
+			return base != null ? base.getFile() : null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/***
+	 * Writes every user to a new base and serves them from it, leaving
+	 * only the users mutated meanwhile on heap. The structure keeps
+	 * answering autocompletes and taking mutations while the base is
+	 * written; the write lock is only taken to capture the users at the
+	 * start and to switch over to the new base at the end.
+	 *
+	 * The previous base file is no longer needed by the structure
+	 * afterwards, but may still be by a snapshot.
+	 *
+	 * @param file Where to write the new base
+	 * @param executor Where to build its postings, or null to
+	 * build them on the calling thread
+	 * @return True iff the new base is served, false if the
+	 * domain was cleared meanwhile
+	 * @throws IOException if the base cannot be written or mapped
+	 * @throws IllegalStateException if a merge is already under way
+	 */
+	public boolean mergeInto(File file, ExecutorService executor) throws IOException {
+		MappedUserIndex mergedBase;
+		BitSet mergedTombstones;
+		List<User> merged;
+		int gramLength;
+
+		lock.writeLock().lock();
+		try {
+			if(retired) {
+				return false;
+			}
+
+			if(mergingUids != null) {
+				throw new IllegalStateException("A merge is already under way");
+			}
+
+			mergedBase = base;
+			mergedTombstones = (BitSet) tombstones.clone();
+			gramLength = gramIndex.getGramLength();
+			merged = Lists.newArrayListWithCapacity(users.size() + (base != null ? base.size() - numTombstones : 0));
+			for(int slot = 0; slot < users.numSlots(); slot++) {
+				if(users.isStored(slot)) {
+					merged.add(users.user(slot));
+				}
+			}
+
+			mergingUids = new HashSet<Long>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		//The base is immutable, so it is safe to read unlocked
+		MappedUserIndex next = null;
+		try {
+			if(mergedBase != null) {
+				for(int slot = 0; slot < mergedBase.size(); slot++) {
+					if(!mergedTombstones.get(slot)) {
+						merged.add(mergedBase.user(slot));
+					}
+				}
+			}
+
+			MappedUserIndex.write(file, gramLength, merged, executor);
+			next = MappedUserIndex.open(file);
+		} finally {
+			if(next == null) {
+				lock.writeLock().lock();
+				mergingUids = null;
+				lock.writeLock().unlock();
+			}
+		}
+
+		lock.writeLock().lock();
+		try {
+			Set<Long> raced = mergingUids;
+			mergingUids = null;
+
+			if(retired) {
+				return false;
+			}
+
+			//The users mutated meanwhile are newer on heap than in the
+			//new base, if they are in it at all
+			UserColumns newUsers = new UserColumns(raced.size(), users.isOffHeap());
+			List<StoredUser> kept = Lists.newArrayList();
+			BitSet newTombstones = new BitSet();
+			for(long uid : raced) {
+				int slot = users.slotOf(uid);
+				if(slot >= 0) {
+					User user = users.user(slot);
+					newUsers.add(user);
+					kept.add(new StoredUser(user));
+				}
+
+				int baseSlot = next.slotOf(uid);
+				if(baseSlot >= 0) {
+					newTombstones.set(baseSlot);
+				}
+			}
+
+			NGramIndex newIndex = new NGramIndex(gramLength);
+			newIndex.addAll(buildPostings(newIndex, kept, null), null);
+
+			users = newUsers;
+			gramIndex = newIndex;
+			base = next;
+			tombstones = newTombstones;
+			numTombstones = newTombstones.cardinality();
+			queryCache.clear();
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/***
+	 * Finds the best matching users given a typed string.
+	 *
+	 * Each match is scored between 0 and 1 from how well the typed tokens
+	 * match (a first name prefix beats a last name prefix beats a token
+	 * start beats an infix) and from how often the user was recommended.
 	 *
 	 * @param typedSoFar The string typed so far to "match" on
 	 * @param numResponses The maximum number of desired matches
-	 * @return A collection of users who match what was typed in
+	 * @return The best matching users, best first
 	 */
 	public Collection<MatchedUser> autocomplete(String typedSoFar, int numResponses) {
+		return autocomplete(typedSoFar, numResponses, null);
+	}
+
+	/***
+	 * Finds the best matching users given a typed string, as one of
+	 * several structures answering the same query together. Matches
+	 * which cannot beat the shared threshold may be left out, and the
+	 * threshold is raised once this structure has numResponses matches.
+	 *
+	 * @param typedSoFar The string typed so far to "match" on
+	 * @param numResponses The maximum number of desired matches
+	 * @param threshold What the structures answering the query share,
+	 * or null if this one answers it alone
+	 * @return The best matching users which may beat the threshold, best first
+	 */
+	public Collection<MatchedUser> autocomplete(String typedSoFar, int numResponses, ScoreThreshold threshold) {
+		return autocomplete(typedSoFar, numResponses, threshold, null);
+	}
+
+	/***
+	 * Finds the best matching users given a typed string, timing each
+	 * phase of the query
+	 *
+	 * @param typedSoFar The string typed so far to "match" on
+	 * @param numResponses The maximum number of desired matches
+	 * @param threshold What the structures answering the query share,
+	 * or null if this one answers it alone
+	 * @param trace Where to record the timings and candidate counts, or null
+	 * @return The best matching users which may beat the threshold, best first
+	 */
+	public Collection<MatchedUser> autocomplete(String typedSoFar, int numResponses, ScoreThreshold threshold, QueryTrace trace) {
+		return autocomplete(typedSoFar, numResponses, threshold, trace, null);
+	}
+
+	/***
+	 * Finds the best matching users given a typed string, or the best
+	 * found by a deadline if it passes first
+	 *
+	 * @param typedSoFar The string typed so far to "match" on
+	 * @param numResponses The maximum number of desired matches
+	 * @param threshold What the structures answering the query share,
+	 * or null if this one answers it alone
+	 * @param trace Where to record the timings and candidate counts, or null
+	 * @param deadline When to stop looking, marked as missed if the
+	 * query stopped early, or null to run the query to completion
+	 * @return The best matching users which may beat the threshold, best
+	 * first, among those looked at before the deadline
+	 */
+	public Collection<MatchedUser> autocomplete(String typedSoFar, int numResponses, ScoreThreshold threshold, QueryTrace trace, Deadline deadline) {
+
+		long start = trace != null ? System.nanoTime() : 0;
+		List<String> tokens = tokenize(typedSoFar);
+		if(trace != null) {
+			long now = System.nanoTime();
+			trace.tokenizeNanos = now - start;
+			start = now;
+		}
+
+		//If nothing is typed, we don't autocomplete
+		if(tokens.isEmpty() || numResponses <= 0) {
+			return Collections.emptyList();
+		}
 
+		lock.readLock().lock();
+		try {
+			if(trace != null) {
+				trace.lockWaitNanos = System.nanoTime() - start;
+			}
+
+			return autocomplete(tokens, numResponses, threshold, trace, deadline, false);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/***
+	 * Finds the best matching users given a typed string only if the
+	 * query cache holds the matches of it or of an earlier keystroke,
+	 * so at most MAX_MATCHES_PER_ENTRY candidates are looked at
+	 *
+	 * @param typedSoFar The string typed so far to "match" on
+	 * @param numResponses The maximum number of desired matches
+	 * @return The best matching users, best first, or null if the
+	 * query cache cannot answer the query
+	 */
+	public Collection<MatchedUser> autocompleteCached(String typedSoFar, int numResponses) {
+		List<String> tokens = tokenize(typedSoFar);
+		if(tokens.isEmpty() || numResponses <= 0) {
+			return Collections.emptyList();
+		}
+
+		lock.readLock().lock();
+		try {
+			return autocomplete(tokens, numResponses, null, null, null, true);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/***
+	 * Answers many autocompletes at once, as autocomplete would one by
+	 * one, under a single read lock. Queries typed alike are tokenized
+	 * and ranked once, for the most matches any of them asks for, and
+	 * shorter queries go first so that longer ones typed after them can
+	 * refine their matches from the query cache.
+	 *
+	 * @param typedSoFar The string typed for each query
+	 * @param numResponses The maximum number of desired matches of each query
+	 * @return The best matching users of each query, best first,
+	 * in the order of the queries
+	 */
+	public List<List<MatchedUser>> autocompleteAll(List<String> typedSoFar, int[] numResponses) {
+		String[] normalizedQueries = new String[typedSoFar.size()];
+		Map<String, List<String>> tokensByQuery = Maps.newHashMap();
+		Map<String, Integer> mostResponses = Maps.newHashMap();
+
+		for(int i = 0; i < normalizedQueries.length; i++) {
+			List<String> tokens = tokenize(typedSoFar.get(i));
+			if(tokens.isEmpty() || numResponses[i] <= 0) {
+				continue;
+			}
+
+			String normalizedQuery = Joiner.on(' ').join(tokens);
+			normalizedQueries[i] = normalizedQuery;
+			tokensByQuery.put(normalizedQuery, tokens);
+
+			Integer most = mostResponses.get(normalizedQuery);
+			mostResponses.put(normalizedQuery, most == null ? numResponses[i] : Math.max(most, numResponses[i]));
+		}
+
+		List<String> distinctQueries = Lists.newArrayList(tokensByQuery.keySet());
+		Collections.sort(distinctQueries, new Comparator<String>() {
+			@Override
+			public int compare(String first, String second) {
+				return first.length() - second.length();
+			}
+		});
+
+		Map<String, List<MatchedUser>> matches = Maps.newHashMap();
+		lock.readLock().lock();
+		try {
+			for(String normalizedQuery : distinctQueries) {
+				matches.put(normalizedQuery, autocomplete(tokensByQuery.get(normalizedQuery), mostResponses.get(normalizedQuery), null, null, null, false));
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		//The best k matches of a query are the first k of its best k' > k
+		List<List<MatchedUser>> retVal = Lists.newArrayListWithCapacity(normalizedQueries.length);
+		for(int i = 0; i < normalizedQueries.length; i++) {
+			if(normalizedQueries[i] == null) {
+				retVal.add(Collections.<MatchedUser>emptyList());
+			} else {
+				List<MatchedUser> queryMatches = matches.get(normalizedQueries[i]);
+				retVal.add(queryMatches.subList(0, Math.min(numResponses[i], queryMatches.size())));
+			}
+		}
+
+		return retVal;
+	}
+
+	/***
+	 * @param typedSoFar The string typed so far
+	 * @return What it is matched as: its lowercased tokens joined by
+	 * single spaces, the same for any two strings typed alike
+	 */
+	public static String normalize(String typedSoFar) {
+		return Joiner.on(' ').join(tokenize(typedSoFar));
+	}
+
+	/***
+	 * Splits what was typed into lowercased, non-empty tokens
+	 */
+	private static List<String> tokenize(String typedSoFar) {
 		String[] tokenized = typedSoFar.trim().split(" ");
 		List<String> tokens = Lists.newArrayList();
-		ArrayList<MatchedUser> retVal = Lists.newArrayList();
 
 		for(String tok : tokenized) {
 			if(tok.trim().length() > 0) {
@@ -97,76 +864,331 @@ public class StoredUserStructure extends HashMap<Long, StoredUser>{
 			}
 		}
 
-		//If nothing is typed, we don't autocomplete
-		if(tokens.isEmpty() || numResponses <= 0) {
-			return retVal;
+		return tokens;
+	}
+
+	/***
+	 * Ranks the users matching every token; the caller holds the read lock
+	 *
+	 * @param tokens The lowercased, non-empty typed tokens
+	 * @param numResponses The maximum number of desired matches
+	 * @param threshold Shared with the other structures answering the query, or null
+	 * @param trace Where to record the timings and candidate counts, or null
+	 * @param deadline When to stop looking, or null
+	 * @param cachedOnly Whether to give up rather than go to the indexes
+	 * @return The best matching users, best first, or null if only
+	 * cached matches were to be used and there were none
+	 */
+	private List<MatchedUser> autocomplete(List<String> tokens, int numResponses, ScoreThreshold threshold, QueryTrace trace,
+			Deadline deadline, boolean cachedOnly) {
+		long start = trace != null ? System.nanoTime() : 0;
+
+		//Narrow down the matches of an earlier keystroke if we can,
+		//otherwise go to the indexes. Candidates are UIDs, looked up
+		//on heap and then in the base, and base candidates are slots
+		String normalizedQuery = Joiner.on(' ').join(tokens);
+		PostingList refined = queryCache.longestPrefixMatches(normalizedQuery);
+		PostingIntersection candidates;
+		PostingIntersection baseCandidates = null;
+
+		if(refined != null) {
+			candidates = new PostingIntersection(Lists.newArrayList(refined));
+		} else if(cachedOnly) {
+			return null;
+		} else {
+			candidates = gramIndex.candidates(tokens);
+			if(base != null) {
+				baseCandidates = base.candidates(tokens);
+			}
 		}
 
-		//TODO beef this up
-		for(StoredUser user : values()) {
+		//Small candidate sets are matched in full so the next keystroke
+		//can refine them; big ones stop as early as the ranking allows
+		int maxCandidates = candidates.maxSize() + (baseCandidates != null ? baseCandidates.maxSize() : 0);
+		PostingList allMatches = maxCandidates <= QueryCache.MAX_MATCHES_PER_ENTRY ? new PostingList() : null;
 
-			String firstName = user.getFirstName().toLowerCase();
-			String lastName = user.getLastName().toLowerCase();
+		if(trace != null) {
+			long now = System.nanoTime();
+			trace.candidatesNanos = now - start;
+			trace.refined = refined != null;
+			trace.maxCandidates = maxCandidates;
+			start = now;
+		}
 
-			List<HighlightIndices> firstNameHighlightIndices = Lists.newArrayList();
-			List<HighlightIndices> lastNameHighlightIndices = Lists.newArrayList();
-			boolean foundMatchForAllTokens = true;
+		//Min-heap holding the best numResponses matches seen so far
+		NameMatcher matcher = new NameMatcher(tokens);
+		TopKHeap topK = TOP_K.get();
+		topK.reset(numResponses);
+		int visited = 0;
+		int matched = 0;
 
-			for(String token : tokens) {
+		//Names of base users are read into these
+		MappedUserIndex.Name firstName = base != null ? new MappedUserIndex.Name() : null;
+		MappedUserIndex.Name lastName = base != null ? new MappedUserIndex.Name() : null;
 
-				List<Integer> firstNameIndices = allIndicesOf(token, firstName);
-				List<Integer> lastNameIndices = allIndicesOf(token, lastName);
+		boolean hasCandidate = candidates.next();
+		boolean hasBaseCandidate = nextLiveCandidate(baseCandidates);
 
-				//No match
-				if(firstNameIndices.isEmpty() && lastNameIndices.isEmpty()) {
-					foundMatchForAllTokens = false;
-					break;
-				}
+		while(hasCandidate || hasBaseCandidate) {
 
-				for(Integer firstNameIndex : firstNameIndices) {
-					HighlightIndices.Builder highlightIndexBuilder = HighlightIndices.newBuilder();
-					highlightIndexBuilder.setStart(firstNameIndex);
-					highlightIndexBuilder.setEnd(firstNameIndex + token.length());
-					firstNameHighlightIndices.add(highlightIndexBuilder.build());
-				}
+			//Take the candidates of both in posting order, so they are
+			//visited exactly as if every user were in a single index
+			boolean fromBase = hasBaseCandidate && (!hasCandidate
+					|| PostingList.compare(baseCandidates.rank(), base.uid((int) baseCandidates.id()), candidates.rank(), candidates.id()) < 0);
+			long rank = fromBase ? baseCandidates.rank() : candidates.rank();
 
-				for(Integer lastNameIndex : lastNameIndices) {
-					HighlightIndices.Builder highlightIndexBuilder = HighlightIndices.newBuilder();
-					highlightIndexBuilder.setStart(lastNameIndex);
-					highlightIndexBuilder.setEnd(lastNameIndex + token.length());
-					lastNameHighlightIndices.add(highlightIndexBuilder.build());
-				}
+			//Candidates arrive best rank first, so once even a perfect match
+			//at this rank cannot beat the k-th best, no later one can either.
+			//Nor can it make the results of the query once it cannot beat
+			//the k-th best of another structure answering it; a tie still
+			//might, depending on how the results get merged
+			if(allMatches == null && (topK.isFull() && maxScore(rank) <= topK.worstScore()
+					|| threshold != null && maxScore(rank) < threshold.get())) {
+				break;
 			}
 
-			if(!foundMatchForAllTokens) {
+			//Out of time: the best matches so far will have to do, which
+			//are at least those of the first candidates looked at
+			if(deadline != null && visited != 0 && (visited & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && deadline.passed()) {
+				deadline.missed = true;
+				break;
+			}
+
+			long uid;
+			double quality;
+
+			if(fromBase) {
+				int slot = (int) baseCandidates.id();
+				uid = base.uid(slot);
+				quality = baseQuality(slot, matcher, firstName, lastName);
+				hasBaseCandidate = nextLiveCandidate(baseCandidates);
+			} else {
+				uid = candidates.id();
+				int slot = users.slotOf(uid);
+				quality = slot >= 0
+						? users.quality(slot, matcher)
+						: baseQuality(liveSlotOf(uid), matcher, firstName, lastName);
+				hasCandidate = candidates.next();
+			}
+
+			visited++;
+
+			//No match
+			if(quality < 0) {
 				continue;
 			}
 
-			MatchedUser.Builder userBuilder = MatchedUser.newBuilder();
+			matched++;
 
-			//Add in first name highlights
-			consolidateHighlightIndices(firstNameHighlightIndices);
-			for(HighlightIndices hi : firstNameHighlightIndices) {
-				userBuilder.addFirstNameHighlights(hi);
+			if(allMatches != null) {
+				allMatches.add(uid, rank);
 			}
 
-			//Add in last name highlights
-			consolidateHighlightIndices(lastNameHighlightIndices);
-			for(HighlightIndices hi : lastNameHighlightIndices) {
-				userBuilder.addLastNameHighlights(hi);
+			double score = STATIC_RANK_WEIGHT * staticScore(rank) + MATCH_WEIGHT * quality;
+			topK.offer(uid, score, visited);
+			if(threshold != null && topK.isFull()) {
+				threshold.raise(topK.worstScore());
 			}
+		}
+
+		//Matches of a query cut short are not all of them
+		if(allMatches != null && (deadline == null || !deadline.missed)) {
+			queryCache.put(normalizedQuery, allMatches);
+		}
+
+		candidatesScanned.addAndGet(visited);
+		if(trace != null) {
+			long now = System.nanoTime();
+			trace.matchNanos = now - start;
+			trace.candidatesScanned = visited;
+			trace.matches = matched;
+			start = now;
+		}
 
-			userBuilder.setUser(user.getUser());
-			userBuilder.setScore(1);
-			retVal.add(userBuilder.build());
+		//Only the winners get turned into protobufs, worst first
+		MatchedUser[] retVal = new MatchedUser[topK.size()];
+		for(int i = retVal.length - 1; i >= 0; i--) {
+			retVal[i] = toMatchedUser(findUser(topK.worstItem()), topK.worstScore(), matcher);
+			topK.removeWorst();
+		}
+
+		if(trace != null) {
+			trace.resultsNanos = System.nanoTime() - start;
+		}
 
-			if(numResponses == retVal.size()) {
-				return retVal;
+		return Arrays.asList(retVal);
+	}
+
+	/***
+	 * Advances to the next base candidate which is not tombstoned
+	 *
+	 * @param baseCandidates The slots of the base candidates, or null if there are none
+	 * @return True iff there was one
+	 */
+	private boolean nextLiveCandidate(PostingIntersection baseCandidates) {
+		if(baseCandidates == null) {
+			return false;
+		}
+
+		while(baseCandidates.next()) {
+			if(!tombstones.get((int) baseCandidates.id())) {
+				return true;
 			}
+		}
+
+		return false;
+	}
+
+	/***
+	 * Matches the names of a base user in place
+	 */
+	private double baseQuality(int slot, NameMatcher matcher, MappedUserIndex.Name firstName, MappedUserIndex.Name lastName) {
+		base.readFirstName(slot, firstName);
+		base.readLastName(slot, lastName);
+		return matcher.quality(firstName.getChars(), firstName.getLength(), lastName.getChars(), lastName.getLength());
+	}
+
+	/***
+	 * Builds the protobuf of a match, highlights included
+	 *
+	 * @param user The matched user
+	 * @param score The score of the match
+	 * @param matcher The matcher of the query
+	 * @return The match as sent back to the client
+	 */
+	private static MatchedUser toMatchedUser(StoredUser user, double score, NameMatcher matcher) {
+		MatchedUser.Builder userBuilder = MatchedUser.newBuilder();
+
+		//Add in first name highlights
+		userBuilder.addAllFirstNameHighlights(matcher.highlights(user.getLowerFirstName()));
+
+		//Add in last name highlights
+		userBuilder.addAllLastNameHighlights(matcher.highlights(user.getLowerLastName()));
+
+		userBuilder.setUser(user.getUser());
+		userBuilder.setScore(score);
+		return userBuilder.build();
+	}
 
+	/***
+	 * @return Whether a user of the UID is stored, on heap or in the base
+	 */
+	private boolean contains(long uid) {
+		return users.slotOf(uid) >= 0 || liveSlotOf(uid) >= 0;
+	}
+
+	/***
+	 * @return A copy of the user of the UID, which must be stored
+	 */
+	private StoredUser findUser(long uid) {
+		int slot = users.slotOf(uid);
+		return new StoredUser(slot >= 0 ? users.user(slot) : base.user(liveSlotOf(uid)));
+	}
+
+	/***
+	 * @return The slot of the UID in the base, or -1 if it
+	 * is not there or tombstoned
+	 */
+	private int liveSlotOf(long uid) {
+		if(base == null) {
+			return -1;
 		}
 
-		return retVal;
+		int slot = base.slotOf(uid);
+		return slot >= 0 && !tombstones.get(slot) ? slot : -1;
+	}
+
+	/***
+	 * Hides a user of the base, which must not be hidden already
+	 */
+	private void tombstone(int slot) {
+		queryCache.clear();
+		tombstones.set(slot);
+		numTombstones++;
+	}
+
+	/***
+	 * Notes a mutated UID for a merge under way to reconcile
+	 */
+	private void touched(long uid) {
+		if(mergingUids != null) {
+			mergingUids.add(uid);
+		}
+	}
+
+	/***
+	 * @throws IllegalArgumentException if the domain was cleared
+	 */
+	private void checkNotRetired() {
+		if(retired) {
+			throw new IllegalArgumentException("The domain was cleared while being modified");
+		}
+	}
+
+	/***
+	 * Maps the number of recommendations onto [0, 1), saturating
+	 * so a handful of recommendations already counts for a lot
+	 *
+	 * @param timesRecommended The static rank of a user
+	 * @return The static part of the score
+	 */
+	private static double staticScore(long timesRecommended) {
+		if(timesRecommended <= 0) {
+			return 0;
+		}
+
+		return timesRecommended / (timesRecommended + RECOMMENDATION_HALF_SCORE);
+	}
+
+	/***
+	 * @param timesRecommended The static rank of a user
+	 * @return The best score a user of that rank could possibly get
+	 */
+	private static double maxScore(long timesRecommended) {
+		return STATIC_RANK_WEIGHT * staticScore(timesRecommended) + MATCH_WEIGHT * NameMatcher.FIRST_NAME_PREFIX_QUALITY;
+	}
+
+	private void index(int slot) {
+		queryCache.clear();
+		gramIndex.add(users.uid(slot), users.timesRecommended(slot), users.nameTokens(slot));
+	}
+
+	private void unindex(int slot) {
+		queryCache.clear();
+		gramIndex.remove(users.uid(slot), users.timesRecommended(slot), users.nameTokens(slot));
+	}
+
+	/***
+	 * Splits the lowercased first and last names of a user into
+	 * space separated tokens. Typed tokens never contain spaces
+	 * so they can only ever match within one of these.
+	 *
+	 * @param user The user to tokenize
+	 * @return The name tokens of the user
+	 */
+	private static List<String> nameTokens(StoredUser user) {
+		return nameTokens(user.getFirstName(), user.getLastName());
+	}
+
+	/***
+	 * Splits the lowercased names into space separated tokens
+	 *
+	 * @param firstName The first name
+	 * @param lastName The last name
+	 * @return The name tokens
+	 */
+	static List<String> nameTokens(String firstName, String lastName) {
+		List<String> tokens = Lists.newArrayList();
+
+		for(String name : new String[]{firstName, lastName}) {
+			for(String tok : name.toLowerCase().split(" ")) {
+				if(tok.length() > 0) {
+					tokens.add(tok);
+				}
+			}
+		}
+
+		return tokens;
 	}
 
 	/***
@@ -204,50 +1226,32 @@ public class StoredUserStructure extends HashMap<Long, StoredUser>{
 			return;
 		}
 
-		//Sort so it's ascending on start value
-		Collections.sort(indices, new Comparator<HighlightIndices>(){
-			@Override
-			public int compare(HighlightIndices arg0, HighlightIndices arg1) {
-				return (new Integer(arg0.getStart())).compareTo(new Integer(arg1.getStart()));
-			}
-		});
-
-		//Take the left-most guy
-		HighlightIndices leftMost = indices.remove(0);
-
-		//Walk through indices
-		ArrayList<HighlightIndices> indicesCopy = Lists.newArrayList(indices);
-		for(HighlightIndices hi : indicesCopy) {
-
-			int leftMostStart = leftMost.getStart();
-			int leftMostEnd = leftMost.getEnd();
+		Intervals intervals = new Intervals();
+		for(HighlightIndices hi : indices) {
+			intervals.add(hi.getStart(), hi.getEnd());
+		}
 
-			int hiStart = hi.getStart();
-			int hiEnd = hi.getEnd();
+		intervals.consolidate();
+		indices.clear();
+		indices.addAll(toHighlightIndices(intervals));
+	}
 
-			//If we're in the range..
-			if(leftMostStart <= hiStart && hiStart <= leftMostEnd) {
-				indices.remove(hi);
-				HighlightIndices.Builder hiBuilder = HighlightIndices.newBuilder();
-				hiBuilder.setStart(leftMostStart);
-				hiBuilder.setEnd(Math.max(hiEnd, leftMostEnd));
-				leftMost = hiBuilder.build();
-			} else {
-				indices.add(leftMost);
-				leftMost = hi;
-			}
-		}
+	/***
+	 * Turns intervals into the highlights sent back to the client
+	 *
+	 * @param intervals The intervals to highlight
+	 * @return One highlight per interval, in the same order
+	 */
+	static List<HighlightIndices> toHighlightIndices(Intervals intervals) {
+		List<HighlightIndices> retVal = Lists.newArrayListWithCapacity(intervals.size());
 
-		if(!indices.contains(leftMost)) {
-			indices.add(leftMost);
+		for(int i = 0; i < intervals.size(); i++) {
+			HighlightIndices.Builder hiBuilder = HighlightIndices.newBuilder();
+			hiBuilder.setStart(intervals.start(i));
+			hiBuilder.setEnd(intervals.end(i));
+			retVal.add(hiBuilder.build());
 		}
 
-		//Sort so it's ascending on start value
-		Collections.sort(indices, new Comparator<HighlightIndices>(){
-			@Override
-			public int compare(HighlightIndices arg0, HighlightIndices arg1) {
-				return (new Integer(arg0.getStart())).compareTo(new Integer(arg1.getStart()));
-			}
-		});
+		return retVal;
 	}
 }
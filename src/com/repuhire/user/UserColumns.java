@@ -0,0 +1,478 @@
+package com.repuhire.user;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.repuhire.common.Common.User;
+import com.repuhire.datastructures.ByteArena;
+import com.repuhire.datastructures.DirectByteArena;
+import com.repuhire.datastructures.HeapByteArena;
+import com.repuhire.datastructures.LongIntHashMap;
+
+/***
+ * Users stored column by column rather than as one object graph each.
+ *
+ * Every user takes a slot, and each of its fields lives in a primitive
+ * array indexed by slot. Its lowercased names are packed into a shared
+ * char arena, where autocompletes match them in place, and its original
+ * names and email into a record of a shared ByteArena as UTF-8, each
+ * preceded by its length as a varint. A User is only built back when
+ * one is asked for, so a stored user costs a few dozen bytes plus its
+ * strings instead of a protobuf, its Strings, a map entry and a boxed key.
+ *
+ * Records may be kept off heap, in which case only what autocompletes
+ * read for every candidate stays on heap: the UIDs, ranks, lowercased
+ * names and offsets.
+ *
+ * Slots of removed users are reused. The strings of removed and updated
+ * users are left in their arena until they make up half of it, at which
+ * point the arena is compacted.
+ *
+ * UserColumns is not thread safe.
+ */
+public class UserColumns {
+
+	//The strings of a slot, in the order they are packed into its record
+	private static final int FIRST_NAME = 0;
+	private static final int LAST_NAME = 1;
+	private static final int EMAIL = 2;
+
+	//Arena chars or bytes which may go to waste before compacting, at the least
+	private static final int MIN_COMPACTED_GARBAGE = 1 << 16;
+
+	//Name start of a free slot
+	private static final int FREE = -1;
+
+	//Columns, indexed by slot
+	private long[] uids;
+	private long[] timesRecommended;
+	private int[] nameStarts;
+	private int[] firstNameLengths;
+	private int[] lastNameLengths;
+	private long[] recordStarts;
+	private String[] domains;
+
+	//Slots below this were used at some point, those of removed users are free
+	private int numSlots = 0;
+	private int[] freeSlots = new int[16];
+	private int numFreeSlots = 0;
+
+	private final LongIntHashMap slotsByUid;
+
+	//Lowercased first and last names of every slot, back to back
+	private char[] names;
+	private int namesSize = 0;
+	private int namesGarbage = 0;
+
+	//Records of the original first name, last name and email of every slot
+	private ByteArena records;
+	private boolean offHeap;
+	private long recordsGarbage = 0;
+
+	//Domains are shared by every user of a structure, so each is kept once
+	private final Map<String, String> domainNames = Maps.newHashMap();
+
+	public UserColumns() {
+		this(16, false);
+	}
+
+	/***
+	 * @param expectedSize The number of users to make room for up front
+	 * @param offHeap Whether to keep the records off heap
+	 */
+	public UserColumns(int expectedSize, boolean offHeap) {
+		int capacity = Math.max(expectedSize, 16);
+		uids = new long[capacity];
+		timesRecommended = new long[capacity];
+		nameStarts = new int[capacity];
+		firstNameLengths = new int[capacity];
+		lastNameLengths = new int[capacity];
+		recordStarts = new long[capacity];
+		domains = new String[capacity];
+		names = new char[capacity * 16];
+		records = newArena(offHeap, capacity * 32);
+		this.offHeap = offHeap;
+		slotsByUid = new LongIntHashMap(expectedSize);
+	}
+
+	private static ByteArena newArena(boolean offHeap, int capacity) {
+		return offHeap ? new DirectByteArena() : new HeapByteArena(capacity);
+	}
+
+	/***
+	 * Stores a user
+	 *
+	 * @param user The user to store
+	 * @return The slot of the user
+	 * @throws IllegalArgumentException If a user of the same UID is stored
+	 */
+	public int add(User user) {
+		if(slotOf(user.getUid()) >= 0) {
+			throw new IllegalArgumentException("Attempted to add a user with UID " + user.getUid() + " when one already existed.");
+		}
+
+		int slot;
+		if(numFreeSlots > 0) {
+			slot = freeSlots[--numFreeSlots];
+		} else {
+			if(numSlots == uids.length) {
+				grow(numSlots + (numSlots >> 1));
+			}
+
+			slot = numSlots++;
+		}
+
+		uids[slot] = user.getUid();
+		slotsByUid.put(user.getUid(), slot);
+		set(slot, user);
+		return slot;
+	}
+
+	/***
+	 * Replaces a stored user with an updated copy of the same UID
+	 *
+	 * @param slot The slot of the user
+	 * @param updated The new information for the user
+	 * @throws IllegalArgumentException if the updated user has another UID
+	 */
+	public void update(int slot, User updated) {
+		if(updated.getUid() != uids[slot]) {
+			throw new IllegalArgumentException("Attempt to update a stored user " +
+					"with the model of another stored user. " +
+					"Original UID = " + uids[slot] +
+					", updater's UID = " + updated.getUid());
+		}
+
+		discardStrings(slot);
+		set(slot, updated);
+		compactIfWasteful();
+	}
+
+	/***
+	 * Removes a stored user, freeing its slot for reuse
+	 *
+	 * @param slot The slot of the user
+	 */
+	public void remove(int slot) {
+		slotsByUid.remove(uids[slot]);
+		discardStrings(slot);
+		nameStarts[slot] = FREE;
+		domains[slot] = null;
+
+		if(numFreeSlots == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, numFreeSlots * 2);
+		}
+
+		freeSlots[numFreeSlots++] = slot;
+		compactIfWasteful();
+	}
+
+	/***
+	 * Moves every record on or off heap
+	 *
+	 * @param offHeap Whether to keep the records off heap from now on
+	 */
+	public void setOffHeap(boolean offHeap) {
+		if(offHeap != this.offHeap) {
+			copyRecords(newArena(offHeap, (int) Math.min(records.size() - recordsGarbage, Integer.MAX_VALUE - 8)));
+			this.offHeap = offHeap;
+		}
+	}
+
+	/***
+	 * @return Whether the records are kept off heap
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/***
+	 * @param uid The UID of a user
+	 * @return The slot of the user, or -1 if it is not stored
+	 */
+	public int slotOf(long uid) {
+		return slotsByUid.get(uid);
+	}
+
+	/***
+	 * @return The number of users stored
+	 */
+	public int size() {
+		return slotsByUid.size();
+	}
+
+	/***
+	 * @return One more than the highest slot a user may take; slots below
+	 * it hold users unless isStored says otherwise
+	 */
+	public int numSlots() {
+		return numSlots;
+	}
+
+	/***
+	 * @param slot A slot below numSlots
+	 * @return Whether the slot holds a user
+	 */
+	public boolean isStored(int slot) {
+		return nameStarts[slot] != FREE;
+	}
+
+	public long uid(int slot) {
+		return uids[slot];
+	}
+
+	public long timesRecommended(int slot) {
+		return timesRecommended[slot];
+	}
+
+	/***
+	 * Matches the lowercased names of a user in place
+	 *
+	 * @param slot The slot of the user
+	 * @param matcher The matcher of the query
+	 * @return What matcher.quality says of the names
+	 */
+	public double quality(int slot, NameMatcher matcher) {
+		int start = nameStarts[slot];
+		return matcher.quality(
+				names, start, firstNameLengths[slot],
+				names, start + firstNameLengths[slot], lastNameLengths[slot]);
+	}
+
+	/***
+	 * Splits the lowercased names of a user into space separated tokens,
+	 * the same way StoredUserStructure.nameTokens does
+	 *
+	 * @param slot The slot of the user
+	 * @return The name tokens of the user
+	 */
+	public List<String> nameTokens(int slot) {
+		List<String> tokens = Lists.newArrayList();
+
+		int start = nameStarts[slot];
+		for(int length : new int[]{firstNameLengths[slot], lastNameLengths[slot]}) {
+			int end = start + length;
+
+			int tokenStart = start;
+			for(int i = start; i <= end; i++) {
+				if(i == end || names[i] == ' ') {
+					if(i > tokenStart) {
+						tokens.add(new String(names, tokenStart, i - tokenStart));
+					}
+
+					tokenStart = i + 1;
+				}
+			}
+
+			start = end;
+		}
+
+		return tokens;
+	}
+
+	/***
+	 * Builds the User stored in a slot
+	 *
+	 * @param slot The slot of the user
+	 * @return The user, equal to the one stored
+	 */
+	public User user(int slot) {
+		User.Builder userBuilder = User.newBuilder();
+
+		userBuilder.setUid(uids[slot]);
+		long position = recordStarts[slot];
+		byte[] utf8 = new byte[recordBytes(slot)];
+		records.get(position, utf8, 0, utf8.length);
+
+		int[] next = {0};
+		userBuilder.setFirstName(readString(utf8, next));
+		userBuilder.setLastName(readString(utf8, next));
+		userBuilder.setEmail(readString(utf8, next));
+		userBuilder.setDomain(domains[slot]);
+		userBuilder.setTimesRecommended(timesRecommended[slot]);
+
+		return userBuilder.build();
+	}
+
+	/***
+	 * Fills in every column of a slot but the UID, packing
+	 * the strings of the user at the end of the arenas
+	 */
+	private void set(int slot, User user) {
+		String lowerFirstName = user.getFirstName().toLowerCase();
+		String lowerLastName = user.getLastName().toLowerCase();
+
+		int chars = lowerFirstName.length() + lowerLastName.length();
+		if(namesSize + chars > names.length) {
+			names = Arrays.copyOf(names, Math.max(names.length + (names.length >> 1), namesSize + chars));
+		}
+
+		nameStarts[slot] = namesSize;
+		firstNameLengths[slot] = lowerFirstName.length();
+		lastNameLengths[slot] = lowerLastName.length();
+		lowerFirstName.getChars(0, lowerFirstName.length(), names, namesSize);
+		lowerLastName.getChars(0, lowerLastName.length(), names, namesSize + lowerFirstName.length());
+		namesSize += chars;
+
+		recordStarts[slot] = appendRecord(user.getFirstName(), user.getLastName(), user.getEmail());
+
+		timesRecommended[slot] = user.getTimesRecommended();
+		domains[slot] = domainName(user.getDomain());
+	}
+
+	/***
+	 * Appends a record of strings, each as its length then its UTF-8 bytes
+	 *
+	 * @return The position of the record
+	 */
+	private long appendRecord(String... strings) {
+		byte[][] utf8 = new byte[strings.length][];
+		int length = 0;
+		for(int i = 0; i < strings.length; i++) {
+			utf8[i] = strings[i].getBytes(Charsets.UTF_8);
+
+			//At most five bytes of length
+			length += 5 + utf8[i].length;
+		}
+
+		byte[] record = new byte[length];
+		int size = 0;
+		for(byte[] string : utf8) {
+			int stringLength = string.length;
+			while((stringLength & ~0x7f) != 0) {
+				record[size++] = (byte) ((stringLength & 0x7f) | 0x80);
+				stringLength >>>= 7;
+			}
+
+			record[size++] = (byte) stringLength;
+			System.arraycopy(string, 0, record, size, string.length);
+			size += string.length;
+		}
+
+		return records.append(record, 0, size);
+	}
+
+	/***
+	 * Decodes the string of a record starting at next[0], and moves next[0] past it
+	 */
+	private static String readString(byte[] record, int[] next) {
+		int position = next[0];
+		int length = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = record[position++];
+			length |= (b & 0x7f) << shift;
+			shift += 7;
+		} while(b < 0);
+
+		next[0] = position + length;
+		return new String(record, position, length, Charsets.UTF_8);
+	}
+
+	/***
+	 * @return The number of bytes the record of a slot takes
+	 */
+	private int recordBytes(int slot) {
+		long start = recordStarts[slot];
+		long position = start;
+
+		for(int string = FIRST_NAME; string <= EMAIL; string++) {
+			int length = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = records.get(position++);
+				length |= (b & 0x7f) << shift;
+				shift += 7;
+			} while(b < 0);
+
+			position += length;
+		}
+
+		return (int) (position - start);
+	}
+
+	private String domainName(String domain) {
+		String shared = domainNames.get(domain);
+		if(shared == null) {
+			domainNames.put(domain, domain);
+			shared = domain;
+		}
+
+		return shared;
+	}
+
+	/***
+	 * Counts the strings of a slot as garbage, before they are replaced or dropped
+	 */
+	private void discardStrings(int slot) {
+		namesGarbage += firstNameLengths[slot] + lastNameLengths[slot];
+		recordsGarbage += recordBytes(slot);
+	}
+
+	private void grow(int capacity) {
+		uids = Arrays.copyOf(uids, capacity);
+		timesRecommended = Arrays.copyOf(timesRecommended, capacity);
+		nameStarts = Arrays.copyOf(nameStarts, capacity);
+		firstNameLengths = Arrays.copyOf(firstNameLengths, capacity);
+		lastNameLengths = Arrays.copyOf(lastNameLengths, capacity);
+		recordStarts = Arrays.copyOf(recordStarts, capacity);
+		domains = Arrays.copyOf(domains, capacity);
+	}
+
+	/***
+	 * Copies the strings of every stored user into a new arena once
+	 * garbage takes up half of the current one, so each arena stays
+	 * within about twice the size of what it holds
+	 */
+	private void compactIfWasteful() {
+		if(namesGarbage >= MIN_COMPACTED_GARBAGE && namesGarbage * 2 >= namesSize) {
+			char[] compacted = new char[Math.max(namesSize - namesGarbage, 16)];
+			int compactedSize = 0;
+
+			for(int slot = 0; slot < numSlots; slot++) {
+				if(isStored(slot)) {
+					int chars = firstNameLengths[slot] + lastNameLengths[slot];
+					System.arraycopy(names, nameStarts[slot], compacted, compactedSize, chars);
+					nameStarts[slot] = compactedSize;
+					compactedSize += chars;
+				}
+			}
+
+			names = compacted;
+			namesSize = compactedSize;
+			namesGarbage = 0;
+		}
+
+		if(recordsGarbage >= MIN_COMPACTED_GARBAGE && recordsGarbage * 2 >= records.size()) {
+			copyRecords(newArena(offHeap, (int) Math.min(records.size() - recordsGarbage, Integer.MAX_VALUE - 8)));
+		}
+	}
+
+	/***
+	 * Copies the record of every stored user into a new arena, leaving garbage behind
+	 */
+	private void copyRecords(ByteArena copy) {
+		byte[] record = new byte[64];
+
+		for(int slot = 0; slot < numSlots; slot++) {
+			if(isStored(slot)) {
+				int bytes = recordBytes(slot);
+				if(bytes > record.length) {
+					record = new byte[Math.max(bytes, record.length * 2)];
+				}
+
+				records.get(recordStarts[slot], record, 0, bytes);
+				recordStarts[slot] = copy.append(record, 0, bytes);
+			}
+		}
+
+		records = copy;
+		recordsGarbage = 0;
+	}
+}
@@ -1,6 +1,16 @@
 package com.repuhire.user.test;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
@@ -8,8 +18,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.repuhire.common.Common.MatchedUser;
 import com.repuhire.common.Common.MatchedUser.HighlightIndices;
+import com.repuhire.common.Common.User;
 import com.repuhire.datastructures.Pair;
+import com.repuhire.user.Deadline;
+import com.repuhire.user.StoredUser;
 import com.repuhire.user.StoredUserStructure;
 
 /***
@@ -55,6 +71,481 @@ public class StoredUserStructureTest {
 		assertConsolidateWorked(input, input);
 	}
 
+	@Test
+	public void testConsolidateMatchesOriginal() {
+
+		//Random highlights, consolidated by both the current and the
+		//original implementation
+		Random random = new Random(7);
+
+		for(int trial = 0; trial < 5000; trial++) {
+			int numHighlights = random.nextInt(12);
+			int span = 1 + random.nextInt(40);
+
+			List<HighlightIndices> input = Lists.newArrayList();
+			for(int i = 0; i < numHighlights; i++) {
+				int start = random.nextInt(span);
+				input.add(HighlightIndices.newBuilder().setStart(start).setEnd(start + 1 + random.nextInt(5)).build());
+			}
+
+			List<HighlightIndices> expected = Lists.newArrayList(input);
+			originalConsolidateHighlightIndices(expected);
+			List<HighlightIndices> actual = Lists.newArrayList(input);
+			StoredUserStructure.consolidateHighlightIndices(actual);
+
+			//Same positions highlighted, by ascending, non-touching highlights
+			Assert.assertEquals(input.toString(), highlighted(expected), highlighted(actual));
+			for(int i = 1; i < actual.size(); i++) {
+				Assert.assertTrue(actual.toString(), actual.get(i - 1).getEnd() < actual.get(i).getStart());
+			}
+
+			//The original could leave a highlight behind next to the one it
+			//got merged into; whenever it did not, the outputs are identical
+			if(isConsolidated(expected)) {
+				Assert.assertEquals(input.toString(), expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testIndexFollowsUpdatesAndDeletes() {
+
+		StoredUserStructure users = new StoredUserStructure();
+		users.addUser(new StoredUser(makeUser("Mary Ann", "Smith", 1)));
+		users.addUser(new StoredUser(makeUser("John", "Tackie", 2)));
+
+		//Infix matches still work, and across tokens of a first name
+		Assert.assertEquals(1, users.autocomplete("mit", 5).size());
+		Assert.assertEquals(1, users.autocomplete("ann ar", 5).size());
+		Assert.assertEquals(2, users.autocomplete("a", 5).size());
+
+		//Renaming Mary should drop her from "mit"
+		users.updateUser(makeUser("Mary", "Jones", 1));
+		Assert.assertEquals(0, users.autocomplete("mit", 5).size());
+		Assert.assertEquals(1, users.autocomplete("jon", 5).size());
+
+		//Deleting John should drop him from "a"
+		Assert.assertTrue(users.deleteUser(2));
+		Assert.assertEquals(1, users.autocomplete("a", 5).size());
+		Assert.assertEquals(0, users.autocomplete("tack", 5).size());
+	}
+
+	@Test
+	public void testMatchingIndependentOfGramLength() {
+
+		for(int gramLength = 1; gramLength <= 4; gramLength++) {
+			StoredUserStructure users = new StoredUserStructure(gramLength);
+			users.addUser(new StoredUser(makeUser("Abxd", "Bcyz", 1)));
+			users.addUser(new StoredUser(makeUser("Abcde", "Smith", 2)));
+
+			//"abc" has all of its bigrams in user 1, but split across names
+			Assert.assertEquals(1, users.autocomplete("abc", 5).size());
+			Assert.assertEquals(2, users.autocomplete("b", 5).size());
+			Assert.assertEquals(1, users.autocomplete("bcde smi", 5).size());
+			Assert.assertEquals(0, users.autocomplete("abcdef", 5).size());
+		}
+	}
+
+	@Test
+	public void testMatchQualityRanking() {
+
+		StoredUserStructure users = new StoredUserStructure();
+		users.addUser(new StoredUser(makeUser("Ann", "Smith", 1)));
+		users.addUser(new StoredUser(makeUser("Joanna", "Smith", 2)));
+		users.addUser(new StoredUser(makeUser("Mary Ann", "Smith", 3)));
+		users.addUser(new StoredUser(makeUser("Mary", "Annsley", 4)));
+
+		//First name prefix, last name prefix, token start, then infix
+		List<MatchedUser> result = Lists.newArrayList(users.autocomplete("ann", 5));
+		Assert.assertEquals(4, result.size());
+		Assert.assertEquals(1, result.get(0).getUser().getUid());
+		Assert.assertEquals(4, result.get(1).getUser().getUid());
+		Assert.assertEquals(3, result.get(2).getUser().getUid());
+		Assert.assertEquals(2, result.get(3).getUser().getUid());
+	}
+
+	@Test
+	public void testTopKMatchesFullRanking() {
+
+		//Early termination must never change which users come back
+		Random random = new Random(42);
+		StoredUserStructure users = new StoredUserStructure();
+		String[] names = {"john", "joanna", "mary ann", "smith", "jo", "hari", "annsley", "tackie"};
+
+		for(long uid = 0; uid < 500; uid++) {
+			User.Builder user = makeUser(names[random.nextInt(names.length)], names[random.nextInt(names.length)], uid).toBuilder();
+			user.setTimesRecommended(random.nextInt(40));
+			users.addUser(new StoredUser(user.build()));
+		}
+
+		for(String typed : new String[]{"j", "jo", "an", "a s", "ith", "n"}) {
+			List<MatchedUser> all = Lists.newArrayList(users.autocomplete(typed, Integer.MAX_VALUE));
+			for(int k = 1; k <= 20; k++) {
+				List<MatchedUser> topK = Lists.newArrayList(users.autocomplete(typed, k));
+				Assert.assertEquals(all.subList(0, Math.min(k, all.size())), topK);
+			}
+		}
+	}
+
+	@Test
+	public void testBulkAddMatchesIncrementalAdd() {
+
+		//Bulk loading into a populated structure must index
+		//exactly like adding the same users one by one
+		Random random = new Random(9);
+		StoredUserStructure incremental = new StoredUserStructure();
+		StoredUserStructure bulk = new StoredUserStructure();
+		String[] names = {"john", "joanna", "mary ann", "smith", "jo", "hari", "annsley", "tackie"};
+
+		List<User> generated = Lists.newArrayList();
+		for(long uid = 0; uid < 400; uid++) {
+			User.Builder user = makeUser(names[random.nextInt(names.length)], names[random.nextInt(names.length)], uid).toBuilder();
+			user.setTimesRecommended(random.nextInt(10));
+			generated.add(user.build());
+		}
+
+		List<StoredUser> batch = Lists.newArrayList();
+		for(User user : generated) {
+			incremental.addUser(new StoredUser(user));
+
+			if(user.getUid() < 100) {
+				bulk.addUser(new StoredUser(user));
+			} else {
+				batch.add(new StoredUser(user));
+			}
+		}
+
+		//UIDs already stored or repeated within the batch get skipped
+		batch.add(new StoredUser(makeUser("clash", "stored", 7)));
+		batch.add(new StoredUser(makeUser("clash", "batch", 250)));
+
+		List<StoredUser> skipped = bulk.addUsers(batch);
+		Assert.assertEquals(2, skipped.size());
+		Assert.assertEquals(7, skipped.get(0).getUid());
+		Assert.assertEquals(250, skipped.get(1).getUid());
+		Assert.assertEquals(incremental.size(), bulk.size());
+
+		for(String typed : new String[]{"j", "jo", "an", "a s", "ith", "n", "clash"}) {
+			Assert.assertEquals(typed, incremental.autocomplete(typed, Integer.MAX_VALUE), bulk.autocomplete(typed, Integer.MAX_VALUE));
+		}
+	}
+
+	@Test
+	public void testParallelBulkAdd() throws Exception {
+
+		//Big enough a batch to get split across every core
+		Random random = new Random(11);
+		StoredUserStructure sequential = new StoredUserStructure();
+		StoredUserStructure parallel = new StoredUserStructure();
+		String[] names = {"john", "joanna", "mary ann", "smith", "jo", "hari", "annsley", "tackie"};
+
+		List<StoredUser> batch = Lists.newArrayList();
+		for(long uid = 0; uid < 50000; uid++) {
+			User.Builder user = makeUser(names[random.nextInt(names.length)], names[random.nextInt(names.length)] + uid % 97, uid).toBuilder();
+			user.setTimesRecommended(random.nextInt(10));
+			sequential.addUser(new StoredUser(user.build()));
+			batch.add(new StoredUser(user.build()));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			parallel.addUser(batch.remove(0));
+			Assert.assertEquals(0, parallel.addUsers(batch, executor).size());
+		} finally {
+			executor.shutdown();
+		}
+
+		Assert.assertEquals(sequential.size(), parallel.size());
+		for(String typed : new String[]{"j", "jo", "an", "a s", "ith", "n", "h 4", "y 96"}) {
+			Assert.assertEquals(typed, sequential.autocomplete(typed, 100), parallel.autocomplete(typed, 100));
+		}
+	}
+
+	@Test
+	public void testKeystrokeRefinement() {
+
+		StoredUserStructure users = new StoredUserStructure();
+		users.addUser(new StoredUser(makeUser("John", "Smith", 1)));
+		users.addUser(new StoredUser(makeUser("Joanna", "Johnson", 2)));
+		users.addUser(new StoredUser(makeUser("Mary", "Jones", 3)));
+
+		Assert.assertEquals(3, users.autocomplete("j", 5).size());
+		Assert.assertEquals(3, users.autocomplete("jo", 5).size());
+		Assert.assertEquals(2, users.autocomplete("joh", 5).size());
+		Assert.assertEquals(1, users.autocomplete("joh smi", 5).size());
+
+		//A mutation must not leave a stale refinement behind
+		users.addUser(new StoredUser(makeUser("Johanna", "Smithers", 4)));
+		Assert.assertEquals(2, users.autocomplete("joh smi", 5).size());
+		users.updateUser(makeUser("Jon", "Smith", 1));
+		Assert.assertEquals(1, users.autocomplete("joh smi", 5).size());
+		Assert.assertEquals(2, users.autocomplete("jo smi", 5).size());
+		users.deleteUser(4);
+		Assert.assertEquals(1, users.autocomplete("jo smi", 5).size());
+
+		//Going back to a shorter query is not a refinement
+		Assert.assertEquals(3, users.autocomplete("jo", 5).size());
+	}
+
+	@Test
+	public void testDeadline() {
+
+		StoredUserStructure users = new StoredUserStructure();
+		for(int uid = 0; uid < 500; uid++) {
+			users.addUser(new StoredUser(makeUser("John" + uid, "Smith", uid)));
+		}
+
+		//Out of time before the first candidate, which still leaves
+		//the best of the first few looked at
+		Deadline passed = new Deadline(System.nanoTime());
+		Assert.assertEquals(5, users.autocomplete("jo", 5, null, null, passed).size());
+		Assert.assertTrue(passed.isMissed());
+
+		//Which must not leave the matches of a query cut short to refine
+		Assert.assertEquals(5, users.autocomplete("joh", 5).size());
+
+		Deadline generous = new Deadline(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+		Assert.assertEquals(5, users.autocomplete("john smith", 5, null, null, generous).size());
+		Assert.assertFalse(generous.isMissed());
+	}
+
+	@Test
+	public void testMappedBaseMatchesOnHeap() throws Exception {
+
+		//Serving users from a mapped base, with the changes since on heap,
+		//must rank and highlight exactly like keeping every user on heap
+		final Random random = new Random(13);
+		final StoredUserStructure onHeap = new StoredUserStructure();
+		final StoredUserStructure mapped = new StoredUserStructure();
+
+		for(long uid = 0; uid < 2000; uid++) {
+			User user = randomUser(random, uid);
+			onHeap.addUser(new StoredUser(user));
+			mapped.addUser(new StoredUser(user));
+		}
+
+		File directory = Files.createTempDir();
+		Assert.assertTrue(mapped.mergeInto(new File(directory, "base1.idx"), null));
+		Assert.assertEquals(0, mapped.getDeltaSize());
+		Assert.assertEquals(onHeap.size(), mapped.size());
+		assertSameMatches(onHeap, mapped);
+
+		//Adds, updates and deletes of base users land on heap
+		mutateBoth(random, onHeap, mapped, 300);
+		Assert.assertTrue(mapped.getDeltaSize() > 0);
+		Assert.assertEquals(onHeap.size(), mapped.size());
+		assertSameMatches(onHeap, mapped);
+
+		//Users mutated while a merge is under way stay on heap after it
+		Thread mutator = new Thread() {
+			@Override
+			public void run() {
+				mutateBoth(random, onHeap, mapped, 300);
+			}
+		};
+
+		mutator.start();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Assert.assertTrue(mapped.mergeInto(new File(directory, "base2.idx"), executor));
+		} finally {
+			executor.shutdown();
+			mutator.join();
+		}
+
+		Assert.assertEquals(new File(directory, "base2.idx"), mapped.getBaseFile());
+		Assert.assertEquals(onHeap.size(), mapped.size());
+		assertSameMatches(onHeap, mapped);
+		for(long uid = 0; uid < 2500; uid++) {
+			Assert.assertEquals(onHeap.containsUser(uid), mapped.containsUser(uid));
+			if(onHeap.containsUser(uid)) {
+				Assert.assertEquals(onHeap.getUser(uid).getUser(), mapped.getUser(uid).getUser());
+			}
+		}
+
+		for(File file : directory.listFiles()) {
+			file.delete();
+		}
+
+		directory.delete();
+	}
+
+	@Test
+	public void testChurnMatchesFreshLoad() {
+
+		//Enough updates and deletes to reuse slots and compact the
+		//arenas many times over, with records on and then off heap
+		Random random = new Random(14);
+		StoredUserStructure churned = new StoredUserStructure();
+		Map<Long, User> expected = Maps.newHashMap();
+
+		User unicode = makeUser("Zo\u00eb", "\u00d1\u00fa\u00f1ez \u65e5\u672c", 5000);
+		churned.addUser(new StoredUser(unicode));
+		expected.put(unicode.getUid(), unicode);
+
+		for(int i = 0; i < 30000; i++) {
+			if(i == 15000) {
+				churned.setOffHeapRecords(true);
+				Assert.assertTrue(churned.isOffHeapRecords());
+			}
+
+			long uid = random.nextInt(2500);
+			User user = randomUser(random, uid);
+
+			if(!expected.containsKey(uid)) {
+				churned.addUser(new StoredUser(user));
+				expected.put(uid, user);
+			} else if(random.nextBoolean()) {
+				churned.updateUser(user);
+				expected.put(uid, user);
+			} else {
+				Assert.assertTrue(churned.deleteUser(uid));
+				expected.remove(uid);
+			}
+		}
+
+		StoredUserStructure fresh = new StoredUserStructure();
+		for(User user : expected.values()) {
+			fresh.addUser(new StoredUser(user));
+		}
+
+		Assert.assertEquals(expected.size(), churned.size());
+		for(User user : expected.values()) {
+			Assert.assertEquals(user, churned.getUser(user.getUid()).getUser());
+		}
+
+		assertSameMatches(fresh, churned);
+		Assert.assertEquals(1, churned.autocomplete("\u00f1\u00fa\u00f1", 5).size());
+	}
+
+	private void mutateBoth(Random random, StoredUserStructure onHeap, StoredUserStructure mapped, int numMutations) {
+		for(int i = 0; i < numMutations; i++) {
+			long uid = random.nextInt(2500);
+			User user = randomUser(random, uid);
+
+			switch(random.nextInt(3)) {
+			case 0:
+				if(!onHeap.containsUser(uid)) {
+					onHeap.addUser(new StoredUser(user));
+					mapped.addUser(new StoredUser(user));
+				}
+				break;
+			case 1:
+				if(onHeap.containsUser(uid)) {
+					onHeap.updateUser(user);
+					mapped.updateUser(user);
+				}
+				break;
+			default:
+				Assert.assertEquals(onHeap.deleteUser(uid), mapped.deleteUser(uid));
+			}
+		}
+	}
+
+	private void assertSameMatches(StoredUserStructure expected, StoredUserStructure actual) {
+		for(String typed : new String[]{"j", "jo", "joa", "an", "a s", "ith", "n", "h 4", "y 96", "tackie hari", "zz"}) {
+			for(int numResponses : new int[]{1, 10, Integer.MAX_VALUE}) {
+				Assert.assertEquals(typed, expected.autocomplete(typed, numResponses), actual.autocomplete(typed, numResponses));
+			}
+		}
+	}
+
+	private User randomUser(Random random, long uid) {
+		String[] names = {"john", "joanna", "mary ann", "smith", "jo", "hari", "annsley", "tackie", "Jo Ann"};
+		User.Builder user = makeUser(names[random.nextInt(names.length)], names[random.nextInt(names.length)] + uid % 97, uid).toBuilder();
+		user.setTimesRecommended(random.nextInt(10));
+		return user.build();
+	}
+
+	private User makeUser(String firstName, String lastName, long uid) {
+		User.Builder userBuilder = User.newBuilder();
+
+		userBuilder.setUid(uid);
+		userBuilder.setFirstName(firstName);
+		userBuilder.setLastName(lastName);
+		userBuilder.setDomain("domain1");
+		userBuilder.setEmail(uid + "@domain1.com");
+		userBuilder.setTimesRecommended(0);
+
+		return userBuilder.build();
+	}
+
+	private static BitSet highlighted(List<HighlightIndices> highlights) {
+		BitSet retVal = new BitSet();
+
+		for(HighlightIndices hi : highlights) {
+			retVal.set(hi.getStart(), hi.getEnd());
+		}
+
+		return retVal;
+	}
+
+	private static boolean isConsolidated(List<HighlightIndices> highlights) {
+		for(int i = 1; i < highlights.size(); i++) {
+			if(highlights.get(i - 1).getEnd() >= highlights.get(i).getStart()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/***
+	 * The original, quadratic consolidation the current one replaced
+	 */
+	private static void originalConsolidateHighlightIndices(List<HighlightIndices> indices) {
+
+		if(indices.isEmpty()) {
+			return;
+		}
+
+		//Sort so it's ascending on start value
+		Collections.sort(indices, new Comparator<HighlightIndices>(){
+			@Override
+			public int compare(HighlightIndices arg0, HighlightIndices arg1) {
+				return Integer.valueOf(arg0.getStart()).compareTo(arg1.getStart());
+			}
+		});
+
+		//Take the left-most guy
+		HighlightIndices leftMost = indices.remove(0);
+
+		//Walk through indices
+		ArrayList<HighlightIndices> indicesCopy = Lists.newArrayList(indices);
+		for(HighlightIndices hi : indicesCopy) {
+
+			int leftMostStart = leftMost.getStart();
+			int leftMostEnd = leftMost.getEnd();
+
+			int hiStart = hi.getStart();
+			int hiEnd = hi.getEnd();
+
+			//If we're in the range..
+			if(leftMostStart <= hiStart && hiStart <= leftMostEnd) {
+				indices.remove(hi);
+				HighlightIndices.Builder hiBuilder = HighlightIndices.newBuilder();
+				hiBuilder.setStart(leftMostStart);
+				hiBuilder.setEnd(Math.max(hiEnd, leftMostEnd));
+				leftMost = hiBuilder.build();
+			} else {
+				indices.add(leftMost);
+				leftMost = hi;
+			}
+		}
+
+		if(!indices.contains(leftMost)) {
+			indices.add(leftMost);
+		}
+
+		//Sort so it's ascending on start value
+		Collections.sort(indices, new Comparator<HighlightIndices>(){
+			@Override
+			public int compare(HighlightIndices arg0, HighlightIndices arg1) {
+				return Integer.valueOf(arg0.getStart()).compareTo(arg1.getStart());
+			}
+		});
+	}
+
 	private void assertConsolidateWorked(List<Pair<Integer, Integer>> input, List<Pair<Integer, Integer>> output) {
 
 		List<HighlightIndices> transformedInput = Lists.newArrayList();
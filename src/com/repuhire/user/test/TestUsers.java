@@ -0,0 +1,50 @@
+package com.repuhire.user.test;
+
+import com.repuhire.common.Common.User;
+
+/***
+ * Makes the users the tests add, update and look for
+ */
+public class TestUsers {
+
+	/***
+	 * Prevent instantiation
+	 */
+	private TestUsers() {}
+
+	/***
+	 * Makes a user never recommended
+	 *
+	 * @param domain The domain of the user
+	 * @param firstName The first name of the user
+	 * @param lastName The last name of the user
+	 * @param uid The UID of the user
+	 * @return The user, whose email is made of its UID and domain
+	 */
+	public static User makeUser(String domain, String firstName, String lastName, long uid) {
+		return makeUser(domain, firstName, lastName, uid, 0);
+	}
+
+	/***
+	 * Makes a user
+	 *
+	 * @param domain The domain of the user
+	 * @param firstName The first name of the user
+	 * @param lastName The last name of the user
+	 * @param uid The UID of the user
+	 * @param timesRecommended The number of times the user has been recommended
+	 * @return The user, whose email is made of its UID and domain
+	 */
+	public static User makeUser(String domain, String firstName, String lastName, long uid, long timesRecommended) {
+		User.Builder userBuilder = User.newBuilder();
+
+		userBuilder.setUid(uid);
+		userBuilder.setFirstName(firstName);
+		userBuilder.setLastName(lastName);
+		userBuilder.setDomain(domain);
+		userBuilder.setEmail(uid + "@" + domain + ".com");
+		userBuilder.setTimesRecommended(timesRecommended);
+
+		return userBuilder.build();
+	}
+}